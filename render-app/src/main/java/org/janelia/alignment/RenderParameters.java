@@ -49,6 +49,7 @@ import org.janelia.alignment.match.MontageRelativePosition;
 import org.janelia.alignment.spec.ChannelNamesAndWeights;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
+import org.janelia.alignment.transform.ApproximatedCoordinateTransform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -136,6 +137,9 @@ public class RenderParameters implements Serializable {
     @Parameter(names = "--channels", description = "Specify channel(s) and weights to render (e.g. 'DAPI' or 'DAPI__0.7__TdTomato__0.3').")
     private String channels;
 
+    @Parameter(names = "--tpsMaxError", description = "Maximum error (in pixels) for grid approximations of thin plate spline transforms (0 renders exact transforms, omit for the default)")
+    private Double thinPlateSplineMaxError;
+
     private MipmapPathBuilder mipmapPathBuilder;
     private List<FilterSpec> filterSpecs;
 
@@ -564,11 +568,25 @@ public class RenderParameters implements Serializable {
         this.excludeMask = (excludeMask != null) && excludeMask;
     }
 
+    /**
+     * @return maximum error (in pixels) for thin plate spline approximations when rendering,
+     *         falling back to {@link ApproximatedCoordinateTransform#getDefaultMaxError()} when not specified.
+     *         Values less than or equal to zero disable approximation.
+     */
+    public double getThinPlateSplineMaxError() {
+        return thinPlateSplineMaxError == null ?
+               ApproximatedCoordinateTransform.getDefaultMaxError() : thinPlateSplineMaxError;
+    }
+
+    public void setThinPlateSplineMaxError(final Double thinPlateSplineMaxError) {
+        this.thinPlateSplineMaxError = thinPlateSplineMaxError;
+    }
+
     public void setDoFilter(final Boolean filter) {
         doFilter = (filter != null) && filter;
     }
 
-    Integer getBackgroundRGBColor() {
+    public Integer getBackgroundRGBColor() {
         return backgroundRGBColor;
     }
 
@@ -827,6 +845,10 @@ public class RenderParameters implements Serializable {
             sb.append("channels=").append(channels).append(", ");
         }
 
+        if (thinPlateSplineMaxError != null) {
+            sb.append("tpsMaxError=").append(thinPlateSplineMaxError).append(", ");
+        }
+
         if (in != null) {
             sb.append("in='").append(in).append("', ");
         }
@@ -947,6 +969,7 @@ public class RenderParameters implements Serializable {
             backgroundRGBColor = mergedValue(backgroundRGBColor, baseParameters.backgroundRGBColor);
             fillWithNoise = mergedValue(fillWithNoise, baseParameters.fillWithNoise, false);
             channels = mergedValue(channels, baseParameters.channels);
+            thinPlateSplineMaxError = mergedValue(thinPlateSplineMaxError, baseParameters.thinPlateSplineMaxError);
             mipmapPathBuilder = mergedValue(mipmapPathBuilder, baseParameters.mipmapPathBuilder);
             filterSpecs = mergedValue(filterSpecs, baseParameters.filterSpecs);
 
@@ -989,7 +1012,11 @@ public class RenderParameters implements Serializable {
         }
 
         if (force || !isMinBoundsDefined()) {
-            final Rectangle2D.Double minBounds = TileSpec.deriveBoundingBox(tileSpecs, meshCellSize, force, null);
+            final Rectangle2D.Double minBounds = TileSpec.deriveBoundingBox(tileSpecs,
+                                                                                meshCellSize,
+                                                                                force,
+                                                                                null,
+                                                                                numberOfThreads);
             minBoundsMinX = minBounds.x - paddingLeft;
             minBoundsMinY = minBounds.y - paddingTop;
             minBoundsMaxX = minBounds.x + minBounds.width + paddingRight;
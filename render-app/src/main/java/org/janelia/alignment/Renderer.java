@@ -29,6 +29,7 @@ import org.janelia.alignment.mipmap.AveragedChannelMipmapSource;
 import org.janelia.alignment.mipmap.MipmapSource;
 import org.janelia.alignment.mipmap.RenderedCanvasMipmapSource;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -106,7 +107,7 @@ public class Renderer {
                         renderParameters.isConvertToGray(),
                         renderParameters.getQuality());
 
-        final long saveStop = System.currentTimeMillis();
+        final long saveStop = RenderMetrics.recordTimeSince(RenderMetrics.ENCODE_TIMER, saveStart);
 
         LOG.debug("validateRenderAndSaveImage: processing took {} milliseconds (open target: [}, render tiles:{}, save target:{})",
                   saveStop - mainStart,
@@ -224,7 +225,7 @@ public class Renderer {
 
         }
 
-        final long drawImageStop = System.currentTimeMillis();
+        final long drawImageStop = RenderMetrics.recordTimeSince(RenderMetrics.CONVERSION_TIMER, drawImageStart);
 
         LOG.debug("renderToBufferedImage: exit, {} tiles processed in {} milliseconds, draw image:{}",
                   numberOfTileSpecs,
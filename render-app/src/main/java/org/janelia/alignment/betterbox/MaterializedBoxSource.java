@@ -0,0 +1,368 @@
+package org.janelia.alignment.betterbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import mpicbg.trakem2.transform.AffineModel2D;
+
+import org.janelia.alignment.ImageAndMask;
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.Utils;
+import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.ChannelSpec;
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.TileSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds render parameters that reference previously materialized box images
+ * (see {@link BoxData#getAbsoluteLevelFile}) instead of source tiles.
+ *
+ * This allows zoomed-out requests that cover too many source tiles to render quickly
+ * to be rendered from a coarser mipmap pyramid level or from a layer's low resolution
+ * overview image (e.g. [root]/1024x1024/small/[z].png) whenever either is available.
+ */
+public class MaterializedBoxSource {
+
+    private final File boxDirectory;
+    private final int boxWidth;
+    private final int boxHeight;
+
+    /**
+     * @param  boxDirectory  base directory for all boxes with the specified dimensions
+     *                       (e.g. /nrs/spc/rendered_boxes/spc/aibs_mm2_data/1024x1024).
+     * @param  boxWidth      width of each box image.
+     * @param  boxHeight     height of each box image.
+     */
+    public MaterializedBoxSource(final File boxDirectory,
+                                 final int boxWidth,
+                                 final int boxHeight) {
+        this.boxDirectory = boxDirectory;
+        this.boxWidth = boxWidth;
+        this.boxHeight = boxHeight;
+    }
+
+    /**
+     * @param  materializedBoxRootPath  root path for a stack's materialized boxes.
+     *
+     * @return list of box sources (one for each set of box dimensions) found in the specified root path.
+     */
+    public static List<MaterializedBoxSource> findAll(final String materializedBoxRootPath) {
+
+        final List<MaterializedBoxSource> sources = new ArrayList<>();
+
+        if (materializedBoxRootPath != null) {
+            final File[] boxDirectories = new File(materializedBoxRootPath).listFiles(File::isDirectory);
+            if (boxDirectories != null) {
+                Arrays.sort(boxDirectories);
+                for (final File boxDirectory : boxDirectories) {
+                    final Matcher m = BOX_DIRECTORY_NAME_PATTERN.matcher(boxDirectory.getName());
+                    if (m.matches()) {
+                        sources.add(new MaterializedBoxSource(boxDirectory,
+                                                              Integer.parseInt(m.group(1)),
+                                                              Integer.parseInt(m.group(2))));
+                    }
+                }
+            }
+        }
+
+        return sources;
+    }
+
+    /**
+     * @param  materializedBoxRootPath  root path for the stack's materialized boxes (or null if none exist).
+     * @param  stackBounds              bounds of the stack (or null if unknown).
+     * @param  requestedParameters      parameters for the original (source tile) request.
+     * @param  maxNumberOfBoxes         maximum number of box images to render.
+     *
+     * @return parameters for rendering the requested area from the best available materialized data
+     *         (a pyramid level first, then a layer overview) or null if no materialized data is available.
+     */
+    public static RenderParameters buildFallbackParameters(final String materializedBoxRootPath,
+                                                           final Bounds stackBounds,
+                                                           final RenderParameters requestedParameters,
+                                                           final int maxNumberOfBoxes) {
+
+        RenderParameters fallbackParameters = null;
+
+        final Double z = getZ(requestedParameters);
+
+        if (z != null) {
+
+            final List<MaterializedBoxSource> sources = findAll(materializedBoxRootPath);
+
+            for (final MaterializedBoxSource source : sources) {
+                fallbackParameters = source.buildPyramidParameters(requestedParameters,
+                                                                   z,
+                                                                   stackBounds,
+                                                                   maxNumberOfBoxes);
+                if (fallbackParameters != null) {
+                    break;
+                }
+            }
+
+            if ((fallbackParameters == null) && (stackBounds != null)) {
+                for (final MaterializedBoxSource source : sources) {
+                    fallbackParameters = source.buildOverviewParameters(requestedParameters, z, stackBounds);
+                    if (fallbackParameters != null) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return fallbackParameters;
+    }
+
+    /**
+     * @param  requestedParameters  parameters for the original (source tile) request.
+     * @param  z                    layer being rendered.
+     * @param  stackBounds          bounds of the stack (or null if unknown).
+     *                              Box rows and columns are relative to the stack's minimum x and y,
+     *                              so a (0,0) grid origin is assumed when bounds are unknown.
+     * @param  maxNumberOfBoxes     maximum number of box images to render.
+     *
+     * @return parameters for rendering the requested area from the finest materialized level whose
+     *         resolution is not finer than needed (or from coarser levels if that level is not available),
+     *         or null if no suitable level has been materialized for the layer.
+     */
+    public RenderParameters buildPyramidParameters(final RenderParameters requestedParameters,
+                                                   final double z,
+                                                   final Bounds stackBounds,
+                                                   final int maxNumberOfBoxes) {
+
+        RenderParameters pyramidParameters = null;
+
+        final double scale = requestedParameters.getScale();
+        final int requestedLevel = scale >= 1.0 ? 0 : (int) Math.floor(Math.log(1.0 / scale) / Math.log(2));
+
+        final double gridMinX = getGridOrigin(stackBounds == null ? null : stackBounds.getMinX());
+        final double gridMinY = getGridOrigin(stackBounds == null ? null : stackBounds.getMinY());
+
+        // levels may be sparse (e.g. when only some levels were generated), so check every configured level
+        for (final int level : getLevels()) {
+
+            if (level < requestedLevel) {
+                continue;
+            }
+
+            final File layerDirectory = new File(new File(boxDirectory, String.valueOf(level)),
+                                                 String.valueOf((int) z));
+            if (! layerDirectory.isDirectory()) {
+                continue;
+            }
+
+            final double levelFactor = Math.pow(2, level);
+            final double worldBoxWidth = boxWidth * levelFactor;
+            final double worldBoxHeight = boxHeight * levelFactor;
+
+            final double minX = requestedParameters.getX() - gridMinX;
+            final double minY = requestedParameters.getY() - gridMinY;
+            final double maxX = minX + requestedParameters.getWidth();
+            final double maxY = minY + requestedParameters.getHeight();
+
+            final int firstRow = Math.max(0, (int) Math.floor(minY / worldBoxHeight));
+            final int lastRow = (int) Math.ceil(maxY / worldBoxHeight) - 1;
+            final int firstColumn = Math.max(0, (int) Math.floor(minX / worldBoxWidth));
+            final int lastColumn = (int) Math.ceil(maxX / worldBoxWidth) - 1;
+
+            final long numberOfBoxes = (long) Math.max(0, lastRow - firstRow + 1) *
+                                       Math.max(0, lastColumn - firstColumn + 1);
+            if (numberOfBoxes > maxNumberOfBoxes) {
+                continue;
+            }
+
+            pyramidParameters = buildParametersWithoutTiles(requestedParameters);
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    final File boxFile = findBoxFile(new BoxData(z, level, row, column));
+                    if (boxFile != null) {
+                        pyramidParameters.addTileSpec(
+                                buildTileSpec(boxFile, z, boxWidth, boxHeight, levelFactor,
+                                              gridMinX + (column * worldBoxWidth),
+                                              gridMinY + (row * worldBoxHeight)));
+                    }
+                }
+            }
+
+            LOG.debug("buildPyramidParameters: found {} boxes for level {} in {}",
+                      pyramidParameters.numberOfTileSpecs(), level, layerDirectory);
+
+            break;
+        }
+
+        return pyramidParameters;
+    }
+
+    /**
+     * @param  requestedParameters  parameters for the original (source tile) request.
+     * @param  z                    layer being rendered.
+     * @param  stackBounds          bounds of the stack.
+     *
+     * @return parameters for rendering the requested area from the layer's overview image
+     *         or null if an overview image has not been materialized for the layer.
+     */
+    public RenderParameters buildOverviewParameters(final RenderParameters requestedParameters,
+                                                    final double z,
+                                                    final Bounds stackBounds) {
+
+        RenderParameters overviewParameters = null;
+
+        final File overviewDirectory = new File(boxDirectory, "small");
+        final File overviewFile = findFile(overviewDirectory, String.valueOf((int) z));
+
+        if ((overviewFile != null) && (stackBounds.getMaxX() != null) && (stackBounds.getMaxY() != null)) {
+
+            try {
+
+                // overviews are rendered from (0,0) so that the larger stack dimension fits the image
+                final int[] overviewSize = readImageSize(overviewFile);
+                final double stackMaxX = stackBounds.getMaxX();
+                final double stackMaxY = stackBounds.getMaxY();
+                final double overviewFactor;
+                if (stackMaxX > stackMaxY) {
+                    overviewFactor = stackMaxX / overviewSize[0];
+                } else {
+                    overviewFactor = stackMaxY / overviewSize[1];
+                }
+
+                overviewParameters = buildParametersWithoutTiles(requestedParameters);
+                overviewParameters.addTileSpec(
+                        buildTileSpec(overviewFile, z, overviewSize[0], overviewSize[1], overviewFactor, 0, 0));
+
+                LOG.debug("buildOverviewParameters: using {} with factor {}", overviewFile, overviewFactor);
+
+            } catch (final IOException e) {
+                LOG.warn("failed to read overview image " + overviewFile, e);
+            }
+        }
+
+        return overviewParameters;
+    }
+
+    @Override
+    public String toString() {
+        return boxDirectory.getAbsolutePath();
+    }
+
+    /**
+     * @return sorted list of all level numbers that have been materialized for this source.
+     */
+    private List<Integer> getLevels() {
+        final List<Integer> levels = new ArrayList<>();
+        final File[] levelDirectories = boxDirectory.listFiles(File::isDirectory);
+        if (levelDirectories != null) {
+            for (final File levelDirectory : levelDirectories) {
+                if (LEVEL_DIRECTORY_NAME_PATTERN.matcher(levelDirectory.getName()).matches()) {
+                    levels.add(Integer.parseInt(levelDirectory.getName()));
+                }
+            }
+        }
+        Collections.sort(levels);
+        return levels;
+    }
+
+    private File findBoxFile(final BoxData boxData) {
+        final File levelFile = boxData.getAbsoluteLevelFile(boxDirectory.getAbsolutePath(), "");
+        return findFile(levelFile.getParentFile(), levelFile.getName());
+    }
+
+    private static File findFile(final File directory,
+                                 final String baseName) {
+        File file = null;
+        for (final String format : BOX_FORMATS) {
+            final File candidate = new File(directory, baseName + "." + format);
+            if (candidate.exists()) {
+                file = candidate;
+                break;
+            }
+        }
+        return file;
+    }
+
+    private static double getGridOrigin(final Double stackMin) {
+        return stackMin == null ? 0.0 : stackMin;
+    }
+
+    private static Double getZ(final RenderParameters requestedParameters) {
+        Double z = null;
+        if (requestedParameters.hasTileSpecs()) {
+            z = requestedParameters.getTileSpecs().get(0).getZ();
+        }
+        return z;
+    }
+
+    private static RenderParameters buildParametersWithoutTiles(final RenderParameters requestedParameters) {
+        final RenderParameters parameters = new RenderParameters(null,
+                                                                 requestedParameters.getX(),
+                                                                 requestedParameters.getY(),
+                                                                 requestedParameters.getWidth(),
+                                                                 requestedParameters.getHeight(),
+                                                                 requestedParameters.getScale());
+        parameters.setConvertToGray(requestedParameters.isConvertToGray());
+        parameters.setBackgroundRGBColor(requestedParameters.getBackgroundRGBColor());
+        parameters.quality = requestedParameters.getQuality();
+        return parameters;
+    }
+
+    private static TileSpec buildTileSpec(final File imageFile,
+                                          final double z,
+                                          final int imageWidth,
+                                          final int imageHeight,
+                                          final double factor,
+                                          final double x,
+                                          final double y) {
+        final ChannelSpec channelSpec = new ChannelSpec();
+        channelSpec.putMipmap(0, new ImageAndMask(imageFile, null));
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setTileId(imageFile.getAbsolutePath());
+        tileSpec.setZ(z);
+        tileSpec.addChannel(channelSpec);
+        tileSpec.addTransformSpecs(
+                Collections.singletonList(
+                        new LeafTransformSpec(AffineModel2D.class.getName(),
+                                              factor + " 0 0 " + factor + " " + x + " " + y)));
+        tileSpec.setWidth((double) imageWidth);
+        tileSpec.setHeight((double) imageHeight);
+        tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(), true);
+        return tileSpec;
+    }
+
+    private static int[] readImageSize(final File imageFile)
+            throws IOException {
+
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(imageFile)) {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (! readers.hasNext()) {
+                throw new IOException("no reader found for " + imageFile);
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(MaterializedBoxSource.class);
+
+    private static final Pattern BOX_DIRECTORY_NAME_PATTERN = Pattern.compile("(\\d+)x(\\d+)");
+    private static final Pattern LEVEL_DIRECTORY_NAME_PATTERN = Pattern.compile("\\d+");
+    /** Box image formats in the order they are checked (png is the box generator default). */
+    private static final List<String> BOX_FORMATS = Arrays.asList(Utils.PNG_FORMAT, Utils.JPEG_FORMAT, "tif");
+}
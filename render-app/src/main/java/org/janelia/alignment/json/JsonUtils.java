@@ -9,8 +9,10 @@ import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.text.SimpleDateFormat;
 import java.util.List;
@@ -37,15 +39,28 @@ public class JsonUtils {
         }
     }
 
-    public static final ObjectMapper FAST_MAPPER = new ObjectMapper().
-            setSerializationInclusion(JsonInclude.Include.NON_NULL).
-            setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY).
-            setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE).
-            setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE).
-            setVisibility(PropertyAccessor.SETTER, JsonAutoDetect.Visibility.NONE).
-            configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).
-            configure(DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES, false).
-            setDateFormat(getDateFormat());
+    /** Media type for Smile (binary JSON) encoded data. */
+    public static final String SMILE_MEDIA_TYPE = "application/x-jackson-smile";
+
+    private static ObjectMapper configureForRenderData(final ObjectMapper mapper) {
+        return mapper.
+                setSerializationInclusion(JsonInclude.Include.NON_NULL).
+                setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY).
+                setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE).
+                setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE).
+                setVisibility(PropertyAccessor.SETTER, JsonAutoDetect.Visibility.NONE).
+                configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).
+                configure(DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES, false).
+                setDateFormat(getDateFormat());
+    }
+
+    public static final ObjectMapper FAST_MAPPER = configureForRenderData(new ObjectMapper());
+
+    /**
+     * Mapper with the same configuration as {@link #FAST_MAPPER} that reads and writes
+     * Smile (binary JSON) encoded data instead of text.
+     */
+    public static final ObjectMapper SMILE_MAPPER = configureForRenderData(new ObjectMapper(new SmileFactory()));
 
     public static final ObjectMapper MAPPER = FAST_MAPPER.copy().
             setDefaultPrettyPrinter(new ArraysOnNewLinePrettyPrinter()).
@@ -106,6 +121,15 @@ public class JsonUtils {
             }
         }
 
+        public T fromSmile(final InputStream smile)
+                throws IllegalArgumentException {
+            try {
+                return SMILE_MAPPER.readValue(smile, valueType);
+            } catch (final IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
     }
 
     public static class GenericHelper<T> {
@@ -143,6 +167,15 @@ public class JsonUtils {
             }
         }
 
+        public T fromSmile(final InputStream smile)
+                throws IllegalArgumentException {
+            try {
+                return SMILE_MAPPER.readValue(smile, typeReference);
+            } catch (final IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
     }
 
 }
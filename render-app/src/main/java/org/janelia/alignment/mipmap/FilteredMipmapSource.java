@@ -6,6 +6,7 @@ import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWith
 
 import org.janelia.alignment.ChannelMap;
 import org.janelia.alignment.filter.Filter;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +66,8 @@ public class FilteredMipmapSource
 
         final long filterStop = System.currentTimeMillis();
 
+        RenderMetrics.getRegistry().recordTime(RenderMetrics.FILTER_TIMER, filterStop - filterStart);
+
         LOG.debug("getChannels: {} took {} milliseconds to filter level {}",
                   getSourceName(),
                   filterStop - filterStart,
@@ -26,7 +26,9 @@ import org.janelia.alignment.mapper.SingleChannelMapper;
 import org.janelia.alignment.mapper.SingleChannelWithAlphaMapper;
 import org.janelia.alignment.mapper.SingleChannelWithBinaryMaskMapper;
 import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.transform.ThinPlateSplineApproximationCache;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -206,7 +208,22 @@ public class RenderedCanvasMipmapSource
 
         final List<TransformableCanvas> canvasList = new ArrayList<>(renderParameters.numberOfTileSpecs());
 
+        // use the same mesh resolution as pixel mapping to bound approximated (thin plate spline) transforms
+        final double meshCellSize = renderParameters.getRes(renderParameters.getScale());
+
+        // each distinct (e.g. layer level) spline is approximated once for all of the tiles that use it
+        final ThinPlateSplineApproximationCache approximationCache =
+                new ThinPlateSplineApproximationCache(meshCellSize, renderParameters.getThinPlateSplineMaxError());
+        final List<CoordinateTransformList<CoordinateTransform>> transformLists =
+                new ArrayList<>(renderParameters.numberOfTileSpecs());
+        for (final TileSpec tileSpec : renderParameters.getTileSpecs()) {
+            transformLists.add(approximationCache.register(tileSpec.getCollapsedTransformList(),
+                                                           tileSpec.getWidth(),
+                                                           tileSpec.getHeight()));
+        }
+
         MipmapSource source;
+        int tileIndex = 0;
         for (final TileSpec tileSpec : renderParameters.getTileSpecs()) {
 
             source = new UrlMipmapSource("tile '" + tileSpec.getTileId() + "'",
@@ -224,7 +241,8 @@ public class RenderedCanvasMipmapSource
                                                   renderParameters.getFilters());
             }
 
-            canvasList.add(new TransformableCanvas(source, tileSpec.getTransforms().getNewInstanceAsList()));
+            canvasList.add(new TransformableCanvas(source, approximationCache.approximate(transformLists.get(tileIndex))));
+            tileIndex++;
         }
 
         return canvasList;
@@ -385,6 +403,9 @@ public class RenderedCanvasMipmapSource
 
                 final long mapStop = System.currentTimeMillis();
 
+                RenderMetrics.getRegistry().recordTime(RenderMetrics.MESH_BUILD_TIMER, meshCreationStop - mapStart);
+                RenderMetrics.getRegistry().recordTime(RenderMetrics.PIXEL_MAPPING_TIMER, mapStop - meshCreationStop);
+
                 LOG.debug("mapPixels: mapping of {} took {} milliseconds to process (mesh:{}, map{}:{})",
                           source.getSourceName(),
                           mapStop - mapStart,
@@ -11,6 +11,7 @@ import org.janelia.alignment.ChannelMap;
 import org.janelia.alignment.ImageAndMask;
 import org.janelia.alignment.spec.ChannelSpec;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -162,6 +163,9 @@ public class UrlMipmapSource
 
                 final long loadAdditionalChannelsStop = System.currentTimeMillis();
 
+                RenderMetrics.getRegistry().recordTime(RenderMetrics.SOURCE_LOAD_TIMER,
+                                                       loadAdditionalChannelsStop - loadMipStart);
+
                 LOG.debug("getChannels: {} took {} milliseconds to load level {} (first mip:{}, downSampleLevels:{}, first mask:{}, additional channels:{}), cacheSize:{}",
                           sourceName,
                           loadAdditionalChannelsStop - loadMipStart,
@@ -72,6 +72,11 @@ public class InterpolatedTransformSpec
                                                             lambda));
     }
 
+    @Override
+    protected TransformSpec copyWithMetaData(final TransformSpecMetaData metaData) {
+        return new InterpolatedTransformSpec(getId(), metaData, a, b, lambda);
+    }
+
     @Override
     protected CoordinateTransform buildInstance()
             throws IllegalArgumentException {
@@ -102,6 +102,13 @@ public class LeafTransformSpec extends TransformSpec {
         flattenedList.addSpec(this);
     }
 
+    @Override
+    protected TransformSpec copyWithMetaData(final TransformSpecMetaData metaData) {
+        final LeafTransformSpec copy = new LeafTransformSpec(getId(), metaData, className, dataString);
+        copy.clazz = clazz;
+        return copy;
+    }
+
     protected CoordinateTransform buildInstance()
             throws IllegalArgumentException {
 
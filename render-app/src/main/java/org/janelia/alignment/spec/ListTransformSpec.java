@@ -25,6 +25,9 @@ public class ListTransformSpec extends TransformSpec {
 
     private List<TransformSpec> specList;
 
+    /** Incremented whenever specs are added, removed, or resolved (used to detect stale derived data). */
+    private transient long modificationCount;
+
     public ListTransformSpec() {
         this(null, null);
     }
@@ -52,16 +55,34 @@ public class ListTransformSpec extends TransformSpec {
 
     public void addSpec(final TransformSpec spec) {
         specList.add(spec);
+        modificationCount++;
     }
 
     public void removeLastSpec() {
         if (specList.size() > 0) {
             specList.remove(specList.size() - 1);
+            modificationCount++;
         }
     }
 
     public void addAllSpecs(final List<TransformSpec> specs) {
         this.specList.addAll(specs);
+        modificationCount++;
+    }
+
+    /**
+     * @return number of times this list or any nested list has been changed
+     *         (allows callers to detect that data derived from the list is out of date).
+     */
+    @JsonIgnore
+    public long getModificationCount() {
+        long count = modificationCount;
+        for (final TransformSpec spec : specList) {
+            if (spec instanceof ListTransformSpec) {
+                count += ((ListTransformSpec) spec).getModificationCount();
+            }
+        }
+        return count;
     }
 
     public int size() {
@@ -96,6 +117,7 @@ public class ListTransformSpec extends TransformSpec {
             spec = i.next();
             if (spec == null) {
                 i.remove();
+                modificationCount++;
             }
         }
     }
@@ -129,6 +151,7 @@ public class ListTransformSpec extends TransformSpec {
         for (final TransformSpec spec : specList) {
             spec.resolveReferences(idToSpecMap);
         }
+        modificationCount++;
     }
 
     @Override
@@ -142,16 +165,18 @@ public class ListTransformSpec extends TransformSpec {
         }
 
         // merge parent meta data with all flattened children
+        // (using copies since children may be shared with other lists or cached)
         if (parentMetaData != null) {
             for (int i = startIndex; i < flattenedList.size(); i++) {
                 final TransformSpec childSpec = flattenedList.getSpec(i);
-                final TransformSpecMetaData childMetaData = childSpec.getMetaData();
-                if (childMetaData == null) {
-                    childSpec.setMetaData(parentMetaData);
-                } else {
-                    childMetaData.merge(parentMetaData);
+                final TransformSpecMetaData mergedMetaData = new TransformSpecMetaData();
+                if (childSpec.getMetaData() != null) {
+                    mergedMetaData.merge(childSpec.getMetaData());
                 }
+                mergedMetaData.merge(parentMetaData);
+                flattenedList.specList.set(i, childSpec.copyWithMetaData(mergedMetaData));
             }
+            flattenedList.modificationCount++;
         }
 
     }
@@ -227,6 +252,13 @@ public class ListTransformSpec extends TransformSpec {
         return (CoordinateTransformList<CoordinateTransform>) super.getNewInstance();
     }
 
+    @Override
+    protected TransformSpec copyWithMetaData(final TransformSpecMetaData metaData) {
+        final ListTransformSpec copy = new ListTransformSpec(getId(), metaData);
+        copy.specList.addAll(specList);
+        return copy;
+    }
+
     @Override
     protected CoordinateTransform buildInstance()
             throws IllegalArgumentException {
@@ -103,6 +103,15 @@ public class ReferenceTransformSpec extends TransformSpec {
         resolvedInstance.flatten(flattenedList);
     }
 
+    @Override
+    protected TransformSpec copyWithMetaData(final TransformSpecMetaData metaData) {
+        final ReferenceTransformSpec copy = new ReferenceTransformSpec(refId);
+        copy.setMetaData(metaData);
+        copy.effectiveRefId = effectiveRefId;
+        copy.resolvedInstance = resolvedInstance;
+        return copy;
+    }
+
     @Override
     protected CoordinateTransform buildInstance()
             throws IllegalArgumentException {
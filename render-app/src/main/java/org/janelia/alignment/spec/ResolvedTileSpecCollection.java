@@ -9,11 +9,20 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.validator.TileSpecValidator;
+import org.janelia.alignment.transform.AffineCollapser;
+import org.janelia.alignment.transform.ApproximatedCoordinateTransform;
+import org.janelia.alignment.transform.ThinPlateSplineApproximationCache;
 import org.janelia.alignment.util.ProcessTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +41,8 @@ public class ResolvedTileSpecCollection implements Serializable {
     private final Map<String, TileSpec> tileIdToSpecMap;
 
     private transient TileSpecValidator tileSpecValidator;
+    private transient int numberOfThreads;
+    private transient boolean collapseAffineTransforms;
 
     // no-arg constructor needed for JSON deserialization
     public ResolvedTileSpecCollection() {
@@ -54,6 +65,8 @@ public class ResolvedTileSpecCollection implements Serializable {
         this.transformIdToSpecMap = new HashMap<>(transformSpecs.size() * 2);
         this.tileIdToSpecMap = new HashMap<>(tileSpecs.size() * 2);
         this.tileSpecValidator = null;
+        this.numberOfThreads = 1;
+        this.collapseAffineTransforms = false;
 
         transformSpecs.forEach(this::addTransformSpecToCollection);
         tileSpecs.forEach(this::addTileSpecToCollection);
@@ -69,6 +82,29 @@ public class ResolvedTileSpecCollection implements Serializable {
         this.tileSpecValidator = tileSpecValidator;
     }
 
+    /**
+     * Sets the number of threads used for bulk tile operations
+     * (bounding box derivation and validation) on this collection.
+     * Results are the same regardless of the number of threads.
+     *
+     * @param  numberOfThreads  number of threads to use (values less than 2 process tiles sequentially).
+     */
+    public void setNumberOfThreads(final int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * @param  collapseAffineTransforms  if true, {@link #resolveTileSpecs} will replace each tile's
+     *                                   transform list with a flattened list where runs of consecutive
+     *                                   affine transforms are collapsed into a single affine transform
+     *                                   (see {@link AffineCollapser}).  Collapsed specs lose their ids,
+     *                                   so this should only be enabled for collections that are not
+     *                                   re-saved with references to the original specs.
+     */
+    public void setCollapseAffineTransforms(final boolean collapseAffineTransforms) {
+        this.collapseAffineTransforms = collapseAffineTransforms;
+    }
+
     /**
      * @return true if the a tile spec with the specified id exits in this collection; otherwise false.
      */
@@ -94,7 +130,8 @@ public class ResolvedTileSpecCollection implements Serializable {
     @JsonIgnore
     public Collection<TileSpec> getTileSpecs()
             throws IllegalArgumentException {
-        resolveTileSpecs(); // this needs to be done here for collections deserialized from JSON
+        // this needs to be done here for collections deserialized from JSON
+        tileIdToSpecMap.values().forEach(this::resolveTileSpec);
         return tileIdToSpecMap.values();
     }
 
@@ -151,6 +188,30 @@ public class ResolvedTileSpecCollection implements Serializable {
     public void addTransformSpecToTile(final String tileId,
                                        final TransformSpec transformSpec,
                                        final boolean replaceLast) throws IllegalArgumentException {
+        addTransformSpecToTile(tileId, transformSpec, replaceLast, true);
+    }
+
+    /**
+     * Adds the specified transform spec to the specified tile.
+     *
+     * @param  tileId             identifies the tile to which the transform should be added.
+     *
+     * @param  transformSpec      the transform to add.
+     *
+     * @param  replaceLast        if true, the specified transform will replace the tile's last transform;
+     *                            otherwise, the specified transform will simply be appended.
+     *
+     * @param  deriveBoundingBox  if true, the tile's bounding box is recalculated immediately;
+     *                            otherwise the caller is responsible for calling {@link #recalculateBoundingBoxes}
+     *                            once all changes have been made (allowing boxes to be derived in parallel).
+     *
+     * @throws IllegalArgumentException
+     *   if the specified tile cannot be found or the specified transform cannot be fully resolved.
+     */
+    public void addTransformSpecToTile(final String tileId,
+                                       final TransformSpec transformSpec,
+                                       final boolean replaceLast,
+                                       final boolean deriveBoundingBox) throws IllegalArgumentException {
 
         final TileSpec tileSpec = tileIdToSpecMap.get(tileId);
 
@@ -176,15 +237,21 @@ public class ResolvedTileSpecCollection implements Serializable {
         // so we need to re-resolve the tile before re-deriving the bounding box
         resolveTileSpec(tileSpec);
 
-        tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(), true);
+        if (deriveBoundingBox) {
+            tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(), true);
+        }
     }
 
+    /**
+     * Re-resolves every tile in this collection and then recalculates each tile's bounding box
+     * using this collection's configured number of threads.
+     */
     public void recalculateBoundingBoxes() {
-        for (final TileSpec tileSpec : tileIdToSpecMap.values()) {
-            // re-resolve each tile to pick up any changes
-            resolveTileSpec(tileSpec);
-            tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(), true);
-        }
+
+        // resolution updates shared (reference) transform specs, so keep it single threaded
+        resolveTileSpecs();
+
+        deriveBoundingBoxes("recalculateBoundingBoxes");
     }
 
     /**
@@ -218,14 +285,12 @@ public class ResolvedTileSpecCollection implements Serializable {
         final ProcessTimer timer = new ProcessTimer();
         int tileSpecCount = 0;
         for (final String tileId : tileIdToSpecMap.keySet()) {
-            addTransformSpecToTile(tileId, referenceTransformSpec, replaceLast);
+            addTransformSpecToTile(tileId, referenceTransformSpec, replaceLast, false);
             tileSpecCount++;
-            if (timer.hasIntervalPassed()) {
-                LOG.info("addReferenceTransformToAllTiles: added transform to {} out of {} tiles",
-                         tileSpecCount, tileIdToSpecMap.size());
-            }
         }
 
+        deriveBoundingBoxes("addReferenceTransformToAllTiles");
+
         LOG.info("addReferenceTransformToAllTiles: added transform to {} tiles, elapsedSeconds={}",
                  tileSpecCount, timer.getElapsedSeconds());
     }
@@ -241,14 +306,12 @@ public class ResolvedTileSpecCollection implements Serializable {
     public void validateCollection(final Double expectedZ)
             throws IllegalArgumentException {
 
-        Double actualZ;
-
         if (getTileCount() == 0) {
             throw new IllegalArgumentException("collection does not have any tiles " +
                                                "(maybe they were removed by a prior validation process)");
         }
 
-        for (final TileSpec tileSpec : tileIdToSpecMap.values()) {
+        forEachTileSpec("validateCollection", tileSpec -> {
 
             if (! tileSpec.isBoundingBoxDefined(tileSpec.getMeshCellSize())) {
                 throw new IllegalArgumentException("tile with id '" + tileSpec.getTileId() + "' is missing bounding " +
@@ -256,7 +319,7 @@ public class ResolvedTileSpecCollection implements Serializable {
             }
 
             if (expectedZ != null) {
-                actualZ = tileSpec.getZ();
+                final Double actualZ = tileSpec.getZ();
                 if (actualZ == null) {
                     throw new IllegalArgumentException(getBadTileZValueMessage(expectedZ, tileSpec));
                 } else {
@@ -269,7 +332,7 @@ public class ResolvedTileSpecCollection implements Serializable {
             if (tileSpecValidator != null) {
                 tileSpecValidator.validate(tileSpec);
             }
-        }
+        });
     }
 
     /**
@@ -296,14 +359,13 @@ public class ResolvedTileSpecCollection implements Serializable {
     public void removeInvalidTileSpecs() {
 
         if (tileSpecValidator != null) {
-            final Iterator<Map.Entry<String, TileSpec>> i = tileIdToSpecMap.entrySet().iterator();
-            Map.Entry<String, TileSpec> entry;
-            while (i.hasNext()) {
-                entry = i.next();
-                if (isTileInvalid(entry.getValue())) {
-                    i.remove();
+            final Set<String> invalidTileIds = Collections.synchronizedSet(new HashSet<>());
+            forEachTileSpec("removeInvalidTileSpecs", tileSpec -> {
+                if (isTileInvalid(tileSpec)) {
+                    invalidTileIds.add(tileSpec.getTileId());
                 }
-            }
+            });
+            tileIdToSpecMap.keySet().removeAll(invalidTileIds);
         }
 
         removeUnreferencedTransforms();
@@ -377,7 +439,9 @@ public class ResolvedTileSpecCollection implements Serializable {
     }
 
     /**
-     * Resolves referenced transform specs for all tile specs in this collection.
+     * Resolves referenced transform specs for all tile specs in this collection
+     * and collapses consecutive affine transforms if that has been enabled
+     * (see {@link #setCollapseAffineTransforms}).
      *
      * @throws IllegalArgumentException
      *   if a transform spec reference cannot be resolved.
@@ -385,6 +449,13 @@ public class ResolvedTileSpecCollection implements Serializable {
     public void resolveTileSpecs()
             throws IllegalArgumentException {
         tileIdToSpecMap.values().forEach(this::resolveTileSpec);
+        if (collapseAffineTransforms) {
+            for (final TileSpec tileSpec : tileIdToSpecMap.values()) {
+                if (tileSpec.hasTransforms()) {
+                    tileSpec.setTransforms(AffineCollapser.collapse(tileSpec.getTransforms()));
+                }
+            }
+        }
     }
 
     @Override
@@ -421,6 +492,126 @@ public class ResolvedTileSpecCollection implements Serializable {
         }
     }
 
+    /**
+     * Derives the bounding box for every tile spec in this collection.
+     * Thin plate spline transforms shared by many tiles (e.g. layer level splines) are approximated
+     * once (see {@link ThinPlateSplineApproximationCache}) instead of being evaluated exactly for every tile.
+     *
+     * @param  context  context for log messages.
+     */
+    private void deriveBoundingBoxes(final String context) {
+
+        final ThinPlateSplineApproximationCache approximationCache = buildApproximationCache(context);
+
+        forEachTileSpec(context,
+                        tileSpec -> tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(),
+                                                               true,
+                                                               true,
+                                                               approximationCache));
+    }
+
+    /**
+     * @return a cache with every tile in this collection registered or null if none of the tiles
+     *         have thin plate spline transforms (or approximation is disabled).
+     */
+    private ThinPlateSplineApproximationCache buildApproximationCache(final String context) {
+
+        final double maxError = ApproximatedCoordinateTransform.getDefaultMaxError();
+        if ((maxError <= 0) || (tileIdToSpecMap.size() < 2)) {
+            return null;
+        }
+
+        double sampleSpacing = Double.MAX_VALUE;
+        for (final TileSpec tileSpec : tileIdToSpecMap.values()) {
+            sampleSpacing = Math.min(sampleSpacing, tileSpec.getMeshCellSize());
+        }
+
+        final ThinPlateSplineApproximationCache approximationCache =
+                new ThinPlateSplineApproximationCache(sampleSpacing, maxError);
+
+        forEachTileSpec(context + " (approximation registration)", tileSpec -> {
+            if (tileSpec.hasWidthAndHeightDefined()) {
+                approximationCache.register(tileSpec.getTransformList(), tileSpec.getWidth(), tileSpec.getHeight());
+            }
+        });
+
+        return approximationCache.size() > 0 ? approximationCache : null;
+    }
+
+    /**
+     * Applies the specified consumer to every tile spec in this collection,
+     * using this collection's configured number of threads.
+     *
+     * @param  context           context for log messages.
+     * @param  tileSpecConsumer  operation to apply to each tile spec.
+     */
+    private void forEachTileSpec(final String context,
+                                 final Consumer<TileSpec> tileSpecConsumer) {
+        forEachTileSpec(context, new ArrayList<>(tileIdToSpecMap.values()), numberOfThreads, tileSpecConsumer);
+    }
+
+    /**
+     * Applies the specified consumer to every tile spec in the specified list using a pool
+     * with the specified number of threads (the pool is shut down before returning).
+     *
+     * Tile specs are processed independently, so the consumer must only modify the tile spec it is given.
+     * If any tile fails, the failure for the first failed tile (in list order) is rethrown
+     * so that results do not depend upon thread scheduling.
+     *
+     * @param  context           context for log messages.
+     * @param  tileSpecList      tile specs to process.
+     * @param  numberOfThreads   number of threads to use (values less than 2 process tiles sequentially).
+     * @param  tileSpecConsumer  operation to apply to each tile spec.
+     */
+    static void forEachTileSpec(final String context,
+                                final List<TileSpec> tileSpecList,
+                                final int numberOfThreads,
+                                final Consumer<TileSpec> tileSpecConsumer) {
+
+        if ((numberOfThreads < 2) || (tileSpecList.size() < 2)) {
+            tileSpecList.forEach(tileSpecConsumer);
+            return;
+        }
+
+        final int tileCount = tileSpecList.size();
+        final RuntimeException[] failures = new RuntimeException[tileCount];
+        final AtomicInteger processedCount = new AtomicInteger(0);
+        final ProcessTimer timer = new ProcessTimer();
+
+        final ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+        try {
+            pool.submit(() -> IntStream.range(0, tileCount).parallel().forEach(i -> {
+                try {
+                    tileSpecConsumer.accept(tileSpecList.get(i));
+                } catch (final RuntimeException e) {
+                    failures[i] = e;
+                }
+                final int count = processedCount.incrementAndGet();
+                synchronized (timer) {
+                    if (timer.hasIntervalPassed()) {
+                        LOG.info("{}: processed {} out of {} tiles", context, count, tileCount);
+                    }
+                }
+            })).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(context + " was interrupted", e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(context + " failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        for (final RuntimeException failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        LOG.info("{}: processed {} tiles with {} threads, elapsedSeconds={}",
+                 context, tileCount, numberOfThreads, timer.getElapsedSeconds());
+    }
+
     private boolean isTileInvalid(final TileSpec tileSpec) {
         boolean isInvalid = false;
         try {
@@ -86,6 +86,36 @@ public class TileBoundsRTree {
         return convertResultsToList(searchResults);
     }
 
+    /**
+     * @return all tiles whose bounds contain (or touch) the specified point.
+     *         Tree geometries are stored with float precision, so candidate tiles are
+     *         filtered against their exact double bounds before being returned.
+     */
+    public List<TileBounds> findTilesContainingPoint(final double x,
+                                                     final double y) {
+        return findTilesIntersectingBox(x, y, x, y);
+    }
+
+    /**
+     * @return all tiles whose bounds intersect (or touch) the specified box.
+     *         Unlike {@link #findTilesInBox}, candidate tiles are filtered against their exact double bounds,
+     *         so results match the database intersects box query.
+     */
+    public List<TileBounds> findTilesIntersectingBox(final double minX,
+                                                     final double minY,
+                                                     final double maxX,
+                                                     final double maxY) {
+        final List<TileBounds> candidateTiles = findTilesInBox(minX - 1, minY - 1, maxX + 1, maxY + 1);
+        final List<TileBounds> matchingTiles = new ArrayList<>(candidateTiles.size());
+        for (final TileBounds tileBounds : candidateTiles) {
+            if ((tileBounds.getMinX() <= maxX) && (tileBounds.getMaxX() >= minX) &&
+                (tileBounds.getMinY() <= maxY) && (tileBounds.getMaxY() >= minY)) {
+                matchingTiles.add(tileBounds);
+            }
+        }
+        return matchingTiles;
+    }
+
     /**
      * @return all tiles that intersect the specified circle.
      */
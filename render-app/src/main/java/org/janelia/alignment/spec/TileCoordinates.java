@@ -7,8 +7,14 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
 import mpicbg.models.NoninvertibleModelException;
 
 import org.janelia.alignment.json.JsonUtils;
@@ -162,6 +168,142 @@ public class TileCoordinates implements Serializable {
         return buildWorldInstance(tileSpec.getTileId(), world);
     }
 
+    /**
+     * Transforms a list of local coordinates into world coordinates.
+     * Points are grouped by tile so that each tile is only looked up once and all of a tile's points
+     * are transformed with a single transform list instance.
+     *
+     * @param  localCoordinatesList  local coordinates to transform.
+     *
+     * @param  tileSpecLookup        returns the tile spec for a tile id
+     *                               (may return null or throw a runtime exception if the tile cannot be found).
+     *
+     * @return list of world coordinates in the same order as the specified local coordinates.
+     *         Coordinates that cannot be transformed are returned as the original local coordinates
+     *         with an error message.
+     */
+    public static List<TileCoordinates> getWorldCoordinates(final List<TileCoordinates> localCoordinatesList,
+                                                            final Function<String, TileSpec> tileSpecLookup) {
+        return getWorldCoordinates(localCoordinatesList, tileSpecLookup, null);
+    }
+
+    /**
+     * Transforms a list of local coordinates into world coordinates
+     * (see {@link #getWorldCoordinates(List, Function)}).
+     *
+     * @param  localCoordinatesList  local coordinates to transform.
+     *
+     * @param  tileSpecLookup        returns the tile spec for a tile id
+     *                               (may return null or throw a runtime exception if the tile cannot be found).
+     *
+     * @param  progressListener      called with the total number of processed points after each tile's points
+     *                               have been processed (or null to skip progress notification).
+     *
+     * @return list of world coordinates in the same order as the specified local coordinates.
+     *         Coordinates that cannot be transformed are returned as the original local coordinates
+     *         with an error message.
+     */
+    public static List<TileCoordinates> getWorldCoordinates(final List<TileCoordinates> localCoordinatesList,
+                                                            final Function<String, TileSpec> tileSpecLookup,
+                                                            final IntConsumer progressListener) {
+
+        final TileCoordinates[] worldCoordinates = new TileCoordinates[localCoordinatesList.size()];
+        final Map<String, List<Integer>> tileIdToIndexes = new LinkedHashMap<>();
+
+        TileCoordinates coordinates;
+        double[] local;
+        int processedCount = 0;
+        for (int i = 0; i < localCoordinatesList.size(); i++) {
+            coordinates = localCoordinatesList.get(i);
+            try {
+
+                if (coordinates == null) {
+                    throw new IllegalArgumentException("coordinates are missing");
+                }
+
+                if (coordinates.getTileId() == null) {
+                    throw new IllegalArgumentException("tileId is missing");
+                }
+
+                local = coordinates.getLocal();
+                if (local == null) {
+                    throw new IllegalArgumentException("local values are missing");
+                } else if (local.length < 2) {
+                    throw new IllegalArgumentException("local values must include both x and y");
+                }
+
+                tileIdToIndexes.computeIfAbsent(coordinates.getTileId(), k -> new ArrayList<>()).add(i);
+
+            } catch (final Throwable t) {
+                LOG.warn("getWorldCoordinates: caught exception for list item {}, adding original coordinates with error message to list", i, t);
+                worldCoordinates[i] = buildErrorInstance(coordinates, t);
+                processedCount++;
+            }
+        }
+
+        for (final Map.Entry<String, List<Integer>> entry : tileIdToIndexes.entrySet()) {
+
+            final String tileId = entry.getKey();
+            final List<Integer> indexes = entry.getValue();
+
+            TileSpec tileSpec = null;
+            CoordinateTransformList<CoordinateTransform> transformList = null;
+            try {
+
+                tileSpec = tileSpecLookup.apply(tileId);
+                if (tileSpec == null) {
+                    throw new IllegalArgumentException("tile spec with id '" + tileId + "' cannot be found");
+                }
+
+                // one transform list instance is shared by all of the tile's points
+                transformList = tileSpec.hasTransforms() ? tileSpec.getTransformList() : null;
+
+            } catch (final Throwable t) {
+                LOG.warn("getWorldCoordinates: caught exception for {} list items with tile id {}, adding original coordinates with error message to list", indexes.size(), tileId, t);
+                for (final Integer i : indexes) {
+                    worldCoordinates[i] = buildErrorInstance(localCoordinatesList.get(i), t);
+                }
+            }
+
+            if (tileSpec != null) {
+                final Double z = tileSpec.getZ();
+                final double[] point = new double[2];
+                for (final Integer i : indexes) {
+                    try {
+                        local = localCoordinatesList.get(i).getLocal();
+                        point[0] = local[0];
+                        point[1] = local[1];
+                        if (transformList != null) {
+                            transformList.applyInPlace(point);
+                        }
+                        final double[] world = (z == null) ?
+                                               new double[] {point[0], point[1]} :
+                                               new double[] {point[0], point[1], z};
+                        worldCoordinates[i] = buildWorldInstance(tileId, world);
+                    } catch (final Throwable t) {
+                        LOG.warn("getWorldCoordinates: caught exception for list item {}, adding original coordinates with error message to list", i, t);
+                        worldCoordinates[i] = buildErrorInstance(localCoordinatesList.get(i), t);
+                    }
+                }
+            }
+
+            processedCount += indexes.size();
+            if (progressListener != null) {
+                progressListener.accept(processedCount);
+            }
+        }
+
+        return Arrays.asList(worldCoordinates);
+    }
+
+    private static TileCoordinates buildErrorInstance(final TileCoordinates coordinates,
+                                                      final Throwable t) {
+        final TileCoordinates errorCoordinates =
+                (coordinates == null) ? TileCoordinates.buildLocalInstance(null, null) : coordinates;
+        errorCoordinates.setError(t.getMessage());
+        return errorCoordinates;
+    }
+
     public String toJson() {
         return JSON_HELPER.toJson(this);
     }
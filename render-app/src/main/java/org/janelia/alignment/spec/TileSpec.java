@@ -33,6 +33,9 @@ import org.janelia.alignment.ImageAndMask;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
+import org.janelia.alignment.transform.AffineCollapser;
+import org.janelia.alignment.transform.InverseTransformMeshIndex;
+import org.janelia.alignment.transform.ThinPlateSplineApproximationCache;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -70,6 +73,9 @@ public class TileSpec implements Serializable {
     private ListTransformSpec transforms;
     private double meshCellSize = RenderParameters.DEFAULT_MESH_CELL_SIZE;
 
+    /** Lazily built inverse index (discarded whenever this tile's transforms or size change). */
+    private transient volatile CachedInverseTransformIndex inverseTransformIndex;
+
     public TileSpec() {
         this.mipmapLevels = new TreeMap<>();
         this.transforms = new ListTransformSpec();
@@ -173,7 +179,7 @@ public class TileSpec implements Serializable {
             throw new IllegalStateException("width and height must be set to create transform mesh");
         }
 
-        final CoordinateTransformList<CoordinateTransform> ctList = getTransformList();
+        final CoordinateTransformList<CoordinateTransform> ctList = getCollapsedTransformList();
         return new TransformMesh(ctList,
                                  getNumberOfTrianglesCoveringWidth(meshCellSize),
                                  width,
@@ -193,7 +199,7 @@ public class TileSpec implements Serializable {
             throw new IllegalStateException("width and height must be set to create transform mesh");
         }
 
-        final CoordinateTransformList<CoordinateTransform> ctList = getTransformList();
+        final CoordinateTransformList<CoordinateTransform> ctList = getCollapsedTransformList();
         return new CoordinateTransformMesh(ctList,
                                            getNumberOfTrianglesCoveringWidth(meshCellSize),
                                            width,
@@ -212,6 +218,26 @@ public class TileSpec implements Serializable {
      */
     public void deriveBoundingBox(final double meshCellSize, final boolean force, final boolean sloppy)
             throws IllegalStateException {
+        deriveBoundingBox(meshCellSize, force, sloppy, null);
+    }
+
+    /**
+     * Derives this tile's bounding box attributes.
+     *
+     * @param  force               if true, attributes will always be derived;
+     *                             otherwise attributes will only be derived if they do not already exist.
+     * @param  approximationCache  cache of thin plate spline approximations with which this tile's
+     *                             transform list has already been registered
+     *                             (or null to derive the box with exact transforms).
+     *
+     * @throws IllegalStateException
+     *   if width or height have not been defined for this tile.
+     */
+    public void deriveBoundingBox(final double meshCellSize,
+                                  final boolean force,
+                                  final boolean sloppy,
+                                  final ThinPlateSplineApproximationCache approximationCache)
+            throws IllegalStateException {
 
         if (force || (!isBoundingBoxDefined(meshCellSize))) {
             if (sloppy) {
@@ -219,7 +245,9 @@ public class TileSpec implements Serializable {
                     throw new IllegalStateException("width and height must be set to create a bounding box");
                 }
 
-                final CoordinateTransformList<CoordinateTransform> ctList = getTransformList();
+                final CoordinateTransformList<CoordinateTransform> ctList =
+                        approximationCache == null ? getTransformList() :
+                        approximationCache.approximate(getTransformList());
                 final ArrayList<double[]> borderSamples = new ArrayList<>();
 
                 /* top and bottom */
@@ -252,9 +280,18 @@ public class TileSpec implements Serializable {
                 setBoundingBox(new Rectangle((int)xMin, (int)yMin, (int)Math.ceil(xMax - xMin), (int)Math.ceil(yMax - yMin)), meshCellSize);
 //                setBoundingBox(new Rectangle((int)xMin, (int)yMin, (int)(xMax - xMin), (int)(yMax - yMin)), meshCellSize);
 
-            } else {
+            } else if (approximationCache == null) {
                 final TransformMesh mesh = getTransformMesh(meshCellSize);
                 setBoundingBox(mesh.getBoundingBox(), meshCellSize);
+            } else {
+                if (! hasWidthAndHeightDefined()) {
+                    throw new IllegalStateException("width and height must be set to create transform mesh");
+                }
+                final TransformMesh mesh = new TransformMesh(approximationCache.approximate(getCollapsedTransformList()),
+                                                             getNumberOfTrianglesCoveringWidth(meshCellSize),
+                                                             width,
+                                                             height);
+                setBoundingBox(mesh.getBoundingBox(), meshCellSize);
             }
         }
     }
@@ -291,10 +328,39 @@ public class TileSpec implements Serializable {
             final double meshCellSize,
             final boolean force,
             final Rectangle2D.Double preallocated) throws IllegalStateException {
+        return deriveBoundingBox(tileSpecs, meshCellSize, force, preallocated, 1);
+    }
+
+    /**
+     * @param  tileSpecs        collection of tile specs.
+     * @param  meshCellSize     specifies the resolution to estimate the individual bounding boxes.
+     * @param  force            if true, attributes will always be derived;
+     *                          otherwise attributes will only be derived if they do not already exist.
+     * @param  preallocated     optional pre-allocated bounding box instance to use for result.
+     * @param  numberOfThreads  number of threads to use for deriving the individual bounding boxes
+     *                          (the result is the same regardless of the number of threads).
+     *
+     * @return the bounding box of a collection of {@link TileSpec}s.
+     *         The returned bounding box is the union rectangle of all tiles individual bounding boxes.
+     */
+    public static Rectangle2D.Double deriveBoundingBox(
+            final Iterable<TileSpec> tileSpecs,
+            final double meshCellSize,
+            final boolean force,
+            final Rectangle2D.Double preallocated,
+            final int numberOfThreads) throws IllegalStateException {
+
+        final List<TileSpec> tileSpecList = new ArrayList<>();
+        tileSpecs.forEach(tileSpecList::add);
+
+        ResolvedTileSpecCollection.forEachTileSpec("deriveBoundingBox",
+                                                   tileSpecList,
+                                                   numberOfThreads,
+                                                   t -> t.deriveBoundingBox(meshCellSize, force));
+
         final double[] min = new double[] { Double.MAX_VALUE, Double.MAX_VALUE };
         final double[] max = new double[] { -Double.MAX_VALUE, -Double.MAX_VALUE };
-        for (final TileSpec t : tileSpecs) {
-            t.deriveBoundingBox(meshCellSize, force);
+        for (final TileSpec t : tileSpecList) {
             final double tMinX = t.getMinX();
             final double tMinY = t.getMinY();
             final double tMaxX = t.getMaxX();
@@ -318,7 +384,7 @@ public class TileSpec implements Serializable {
                     max[1] - min[1]);
         else {
             box = preallocated;
-            box.setRect(min[0], min[1], max[0] - min[0], max[1] - max[1]);
+            box.setRect(min[0], min[1], max[0] - min[0], max[1] - min[1]);
         }
         return box;
     }
@@ -347,6 +413,39 @@ public class TileSpec implements Serializable {
         return worldCoordinates;
     }
 
+    /**
+     * Transforms a batch of local coordinates into world coordinates in place.
+     * The tile's transform list is instantiated once for the whole batch and a single
+     * point buffer is reused, so no objects are allocated per point.
+     *
+     * @param  xs  local x coordinates (replaced with world x coordinates).
+     * @param  ys  local y coordinates (replaced with world y coordinates).
+     *
+     * @throws IllegalArgumentException
+     *   if the coordinate arrays have different lengths.
+     */
+    public void applyTransformsInPlace(final double[] xs,
+                                       final double[] ys)
+            throws IllegalArgumentException {
+
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("x and y coordinate arrays must have the same length but xs has " +
+                                               xs.length + " values while ys has " + ys.length + " values");
+        }
+
+        if (hasTransforms()) {
+            final CoordinateTransformList<CoordinateTransform> ctl = getTransformList();
+            final double[] point = new double[2];
+            for (int i = 0; i < xs.length; i++) {
+                point[0] = xs[i];
+                point[1] = ys[i];
+                ctl.applyInPlace(point);
+                xs[i] = point[0];
+                ys[i] = point[1];
+            }
+        }
+    }
+
     /**
      * @param  x  world x coordinate to inversely transform into local coordinate.
      * @param  y  world y coordinate to inversely transform into local coordinate.
@@ -365,8 +464,7 @@ public class TileSpec implements Serializable {
         final double[] localCoordinates;
         final double[] l = new double[] {x, y};
         if (hasTransforms()) {
-            final CoordinateTransformMesh mesh = getCoordinateTransformMesh(meshCellSize);
-            mesh.applyInverseInPlace(l);
+            getInverseTransformIndex(meshCellSize).applyInverseInPlace(l);
         }
 
         if (z == null) {
@@ -378,6 +476,40 @@ public class TileSpec implements Serializable {
         return localCoordinates;
     }
 
+    /**
+     * The index is built the first time it is requested and then cached with this tile so that
+     * subsequent inverse transformations for the tile do not need to rebuild the transform mesh.
+     * The cached index is discarded if this tile's size is changed or if its transform list is replaced or
+     * modified (including changes made directly to the list returned by {@link #getTransforms()}).
+     *
+     * @param  meshCellSize  mesh cell size for the index.
+     *
+     * @return inverse transform index for this tile.
+     *
+     * @throws IllegalStateException
+     *   if width or height have not been defined for this tile.
+     */
+    public InverseTransformMeshIndex getInverseTransformIndex(final double meshCellSize)
+            throws IllegalStateException {
+
+        if (! hasWidthAndHeightDefined()) {
+            throw new IllegalStateException("width and height must be set to create transform mesh");
+        }
+
+        final int numX = getNumberOfTrianglesCoveringWidth(meshCellSize);
+        final long transformsModificationCount = transforms == null ? -1 : transforms.getModificationCount();
+
+        CachedInverseTransformIndex cachedIndex = inverseTransformIndex;
+        if ((cachedIndex == null) || (! cachedIndex.isCurrent(numX, transforms, transformsModificationCount))) {
+            cachedIndex = new CachedInverseTransformIndex(
+                    new InverseTransformMeshIndex(getTransformList(), numX, width, height),
+                    transforms,
+                    transformsModificationCount);
+            inverseTransformIndex = cachedIndex;
+        }
+        return cachedIndex.index;
+    }
+
     public boolean hasWidthAndHeightDefined() {
         return ((width != null) && (height != null));
     }
@@ -392,6 +524,7 @@ public class TileSpec implements Serializable {
 
     public void setWidth(final Double width) {
         this.width = width;
+        this.inverseTransformIndex = null;
     }
 
     public int getHeight() {
@@ -404,6 +537,7 @@ public class TileSpec implements Serializable {
 
     public void setHeight(final Double height) {
         this.height = height;
+        this.inverseTransformIndex = null;
     }
 
     @JsonIgnore
@@ -544,14 +678,17 @@ public class TileSpec implements Serializable {
 
     public void setTransforms(final ListTransformSpec transforms) {
         this.transforms = transforms;
+        this.inverseTransformIndex = null;
     }
 
     public void addTransformSpecs(final List<TransformSpec> transformSpecs) {
         transforms.addAllSpecs(transformSpecs);
+        inverseTransformIndex = null;
     }
 
     public void removeLastTransformSpec() {
         transforms.removeLastSpec();
+        inverseTransformIndex = null;
     }
 
     /**
@@ -561,6 +698,7 @@ public class TileSpec implements Serializable {
         final ListTransformSpec flattenedList = new ListTransformSpec();
         transforms.flatten(flattenedList);
         transforms = flattenedList;
+        inverseTransformIndex = null;
     }
 
     /**
@@ -585,6 +723,7 @@ public class TileSpec implements Serializable {
         } else {
             transforms = transforms.flattenAndFilter(excludeAfterLastLabels, excludeFirstAndAllAfterLabels);
         }
+        inverseTransformIndex = null;
     }
 
     /**
@@ -631,6 +770,59 @@ public class TileSpec implements Serializable {
         return ctl;
     }
 
+    /**
+     * Get a copy of this {@link TileSpec}'s transforms with consecutive affine family transforms
+     * (e.g. montage, rough, and fine alignment affines) collapsed into a single affine
+     * (see {@link AffineCollapser}) to reduce the per-point work for mesh building and rendering.
+     *
+     * Results match {@link #getTransformList()} within floating point precision,
+     * but the structure of the list differs.
+     *
+     * @return collapsed transform list copy for this tile spec.
+     *
+     * @throws IllegalArgumentException
+     *   if the list cannot be generated.
+     */
+    @JsonIgnore
+    public CoordinateTransformList<CoordinateTransform> getCollapsedTransformList()
+            throws IllegalArgumentException {
+        return AffineCollapser.collapse(getTransformList());
+    }
+
+    /**
+     * @return a copy of this spec whose attributes, mipmap levels, channel list, and top level transform list
+     *         can be changed (e.g. flattened, filtered, or re-bounded) without affecting this spec.
+     *         Layout, image, channel, and transform spec instances are shared with this spec.
+     */
+    public TileSpec shallowCopy() {
+        final TileSpec copy = new TileSpec();
+        copy.tileId = tileId;
+        copy.layout = layout;
+        copy.groupId = groupId;
+        copy.z = z;
+        copy.minX = minX;
+        copy.minY = minY;
+        copy.maxX = maxX;
+        copy.maxY = maxY;
+        copy.width = width;
+        copy.height = height;
+        copy.minIntensity = minIntensity;
+        copy.maxIntensity = maxIntensity;
+        copy.mipmapLevels = new TreeMap<>(mipmapLevels);
+        copy.channels = channels == null ? null : new ArrayList<>(channels);
+        copy.mipmapPathBuilder = mipmapPathBuilder;
+        if (transforms == null) {
+            copy.transforms = null;
+        } else {
+            copy.transforms = new ListTransformSpec(transforms.getId(), transforms.getMetaData());
+            for (int i = 0; i < transforms.size(); i++) {
+                copy.transforms.addSpec(transforms.getSpec(i));
+            }
+        }
+        copy.meshCellSize = meshCellSize;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return tileId;
@@ -667,4 +859,30 @@ public class TileSpec implements Serializable {
 
     private static final JsonUtils.Helper<TileSpec> JSON_HELPER =
             new JsonUtils.Helper<>(TileSpec.class);
+
+    /**
+     * Inverse index along with the transform list (and list modification count) used to build it.
+     */
+    private static class CachedInverseTransformIndex {
+
+        private final InverseTransformMeshIndex index;
+        private final ListTransformSpec transforms;
+        private final long transformsModificationCount;
+
+        private CachedInverseTransformIndex(final InverseTransformMeshIndex index,
+                                            final ListTransformSpec transforms,
+                                            final long transformsModificationCount) {
+            this.index = index;
+            this.transforms = transforms;
+            this.transformsModificationCount = transformsModificationCount;
+        }
+
+        private boolean isCurrent(final int numX,
+                                  final ListTransformSpec currentTransforms,
+                                  final long currentTransformsModificationCount) {
+            return (index.getNumX() == numX) &&
+                   (transforms == currentTransforms) &&
+                   (transformsModificationCount == currentTransformsModificationCount);
+        }
+    }
 }
@@ -163,6 +163,14 @@ public abstract class TransformSpec implements Serializable {
      */
     public abstract void flatten(ListTransformSpec flattenedList) throws IllegalStateException;
 
+    /**
+     * @param  metaData  meta data for the copy.
+     *
+     * @return a shallow copy of this specification with the specified meta data.
+     *         Flattening uses copies so that (potentially shared) specifications are never modified.
+     */
+    protected abstract TransformSpec copyWithMetaData(final TransformSpecMetaData metaData);
+
 
     public String toJson() {
         return JSON_HELPER.toJson(this);
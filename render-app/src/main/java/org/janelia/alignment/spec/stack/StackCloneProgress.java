@@ -0,0 +1,114 @@
+package org.janelia.alignment.spec.stack;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.janelia.alignment.json.JsonUtils;
+
+/**
+ * Progress information for a stack clone operation.
+ */
+public class StackCloneProgress
+        implements Serializable {
+
+    private final StackId fromStackId;
+    private final Date startTimestamp;
+    private final Date lastUpdateTimestamp;
+    private final String currentCollection;
+    private final Integer partitionCount;
+    private final Integer completedPartitionCount;
+    private final Long expectedDocumentCount;
+    private final Long copiedDocumentCount;
+    private final Boolean complete;
+
+    // no-arg constructor needed for JSON deserialization
+    @SuppressWarnings("unused")
+    private StackCloneProgress() {
+        this.fromStackId = null;
+        this.startTimestamp = null;
+        this.lastUpdateTimestamp = null;
+        this.currentCollection = null;
+        this.partitionCount = null;
+        this.completedPartitionCount = null;
+        this.expectedDocumentCount = null;
+        this.copiedDocumentCount = null;
+        this.complete = null;
+    }
+
+    /**
+     * @param  fromStackId              stack being cloned.
+     * @param  startTimestamp           time the clone operation started.
+     * @param  currentCollection        name of the collection currently being copied.
+     * @param  partitionCount           number of partitions for the current collection.
+     * @param  completedPartitionCount  number of partitions that have been fully copied.
+     * @param  expectedDocumentCount    number of documents expected to be copied for the current collection.
+     * @param  copiedDocumentCount      number of documents copied so far for the current collection.
+     * @param  complete                 indicates whether the entire clone operation has completed.
+     */
+    public StackCloneProgress(final StackId fromStackId,
+                              final Date startTimestamp,
+                              final String currentCollection,
+                              final Integer partitionCount,
+                              final Integer completedPartitionCount,
+                              final Long expectedDocumentCount,
+                              final Long copiedDocumentCount,
+                              final Boolean complete) {
+        this.fromStackId = fromStackId;
+        this.startTimestamp = startTimestamp;
+        this.lastUpdateTimestamp = new Date();
+        this.currentCollection = currentCollection;
+        this.partitionCount = partitionCount;
+        this.completedPartitionCount = completedPartitionCount;
+        this.expectedDocumentCount = expectedDocumentCount;
+        this.copiedDocumentCount = copiedDocumentCount;
+        this.complete = complete;
+    }
+
+    public StackId getFromStackId() {
+        return fromStackId;
+    }
+
+    public Date getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public Date getLastUpdateTimestamp() {
+        return lastUpdateTimestamp;
+    }
+
+    public String getCurrentCollection() {
+        return currentCollection;
+    }
+
+    public Integer getPartitionCount() {
+        return partitionCount;
+    }
+
+    public Integer getCompletedPartitionCount() {
+        return completedPartitionCount;
+    }
+
+    public Long getExpectedDocumentCount() {
+        return expectedDocumentCount;
+    }
+
+    public Long getCopiedDocumentCount() {
+        return copiedDocumentCount;
+    }
+
+    public Boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    public String toJson() {
+        return JSON_HELPER.toJson(this);
+    }
+
+    private static final JsonUtils.Helper<StackCloneProgress> JSON_HELPER =
+            new JsonUtils.Helper<>(StackCloneProgress.class);
+}
@@ -15,6 +15,7 @@ import org.janelia.alignment.util.CollectionNameUtil;
  */
 public class StackId implements Comparable<StackId>, Serializable {
 
+    public static final String LAYER_COLLECTION_SUFFIX = "layer";
     public static final String SECTION_COLLECTION_SUFFIX = "section";
     public static final String TILE_COLLECTION_SUFFIX = "tile";
     public static final String TRANSFORM_COLLECTION_SUFFIX = "transform";
@@ -101,6 +102,11 @@ public class StackId implements Comparable<StackId>, Serializable {
         return v;
     }
 
+    @JsonIgnore
+    public String getLayerCollectionName() {
+        return getCollectionName(LAYER_COLLECTION_SUFFIX);
+    }
+
     @JsonIgnore
     public String getSectionCollectionName() {
         return getCollectionName(SECTION_COLLECTION_SUFFIX);
@@ -26,6 +26,7 @@ public class StackMetaData implements Comparable<StackMetaData>, Serializable {
     private final StackVersion currentVersion;
     private StackStats stats;
     private HierarchicalStack hierarchicalData;
+    private StackCloneProgress cloneProgress;
 
     // no-arg constructor needed for JSON deserialization
     @SuppressWarnings("unused")
@@ -37,6 +38,7 @@ public class StackMetaData implements Comparable<StackMetaData>, Serializable {
         this.currentVersion = null;
         this.stats = null;
         this.hierarchicalData = null;
+        this.cloneProgress = null;
     }
 
     public StackMetaData(final StackId stackId,
@@ -48,6 +50,7 @@ public class StackMetaData implements Comparable<StackMetaData>, Serializable {
         this.currentVersion = currentVersion;
         this.stats = null;
         this.hierarchicalData = null;
+        this.cloneProgress = null;
     }
 
     public StackId getStackId() {
@@ -291,6 +294,14 @@ public class StackMetaData implements Comparable<StackMetaData>, Serializable {
         this.hierarchicalData = hierarchicalData;
     }
 
+    public StackCloneProgress getCloneProgress() {
+        return cloneProgress;
+    }
+
+    public void setCloneProgress(final StackCloneProgress cloneProgress) {
+        this.cloneProgress = cloneProgress;
+    }
+
     @SuppressWarnings({"ConstantConditions", "NullableProblems"})
     @Override
     public int compareTo(final StackMetaData that) {
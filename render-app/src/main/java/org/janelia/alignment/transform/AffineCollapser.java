@@ -0,0 +1,163 @@
+package org.janelia.alignment.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mpicbg.models.AbstractAffineModel2D;
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.ListTransformSpec;
+import org.janelia.alignment.spec.TransformSpec;
+import org.janelia.alignment.spec.TransformSpecMetaData;
+
+/**
+ * Normalizes transform lists by multiplying runs of consecutive affine family models
+ * (translation, rigid, similarity, and affine 2D models) into a single {@link AffineModel2D}.
+ *
+ * Nested lists are flattened before collapsing so that affines split across
+ * referenced or nested list specs are also combined.  Results are mathematically identical to applying
+ * the original list, but each point only requires one affine application per run.
+ */
+public class AffineCollapser {
+
+    /**
+     * @param  transformList  list to normalize (not modified).
+     *
+     * @return a new list with each run of consecutive affine models collapsed into one affine model.
+     */
+    public static CoordinateTransformList<CoordinateTransform> collapse(final CoordinateTransformList<CoordinateTransform> transformList) {
+        final CoordinateTransformList<CoordinateTransform> collapsedList = new CoordinateTransformList<>();
+        final AffineModel2D[] pendingAffine = { null };
+        addCollapsed(transformList, collapsedList, pendingAffine);
+        if (pendingAffine[0] != null) {
+            collapsedList.add(pendingAffine[0]);
+        }
+        return collapsedList;
+    }
+
+    /**
+     * Spec version of {@link #collapse(CoordinateTransformList)} for normalizing stored transform lists.
+     * Single (un-collapsed) specs are retained as is.  Each collapsed run is replaced by an
+     * anonymous affine leaf spec that keeps the labels of all specs in the run.
+     *
+     * @param  listSpec  fully resolved list to normalize (not modified).
+     *
+     * @return a new flattened list with each run of consecutive affine specs collapsed into one affine spec.
+     *
+     * @throws IllegalArgumentException
+     *   if any of the specs cannot be instantiated.
+     */
+    public static ListTransformSpec collapse(final ListTransformSpec listSpec)
+            throws IllegalArgumentException {
+
+        final ListTransformSpec flattenedList = new ListTransformSpec();
+        listSpec.flatten(flattenedList);
+
+        final ListTransformSpec collapsedList = new ListTransformSpec(listSpec.getId(), listSpec.getMetaData());
+        final List<TransformSpec> pendingSpecs = new ArrayList<>();
+        AffineModel2D pendingAffine = null;
+
+        TransformSpec spec;
+        CoordinateTransform ct;
+        for (int i = 0; i < flattenedList.size(); i++) {
+            spec = flattenedList.getSpec(i);
+            ct = spec.getNewInstance();
+            if (ct instanceof AbstractAffineModel2D) {
+                final AffineModel2D affine = toAffine((AbstractAffineModel2D) ct);
+                if (pendingAffine == null) {
+                    pendingAffine = affine;
+                } else {
+                    pendingAffine.preConcatenate(affine);
+                }
+                pendingSpecs.add(spec);
+            } else {
+                addCollapsedSpec(pendingSpecs, pendingAffine, collapsedList);
+                pendingAffine = null;
+                collapsedList.addSpec(spec);
+            }
+        }
+
+        addCollapsedSpec(pendingSpecs, pendingAffine, collapsedList);
+
+        return collapsedList;
+    }
+
+    private static void addCollapsedSpec(final List<TransformSpec> pendingSpecs,
+                                         final AffineModel2D pendingAffine,
+                                         final ListTransformSpec collapsedList) {
+
+        if (pendingSpecs.size() == 1) {
+
+            collapsedList.addSpec(pendingSpecs.get(0));
+
+        } else if (pendingSpecs.size() > 1) {
+
+            final TransformSpecMetaData mergedMetaData = new TransformSpecMetaData();
+            for (final TransformSpec pendingSpec : pendingSpecs) {
+                if (pendingSpec.getMetaData() != null) {
+                    mergedMetaData.merge(pendingSpec.getMetaData());
+                }
+            }
+
+            final mpicbg.trakem2.transform.AffineModel2D model = new mpicbg.trakem2.transform.AffineModel2D();
+            model.set(pendingAffine);
+
+            collapsedList.addSpec(new LeafTransformSpec(null,
+                                                        mergedMetaData,
+                                                        model.getClass().getName(),
+                                                        model.toDataString()));
+        }
+
+        pendingSpecs.clear();
+    }
+
+    private static AffineModel2D toAffine(final AbstractAffineModel2D model) {
+        // data is in 'java' order: m00, m10, m01, m11, m02, m12
+        final double[] affineData = new double[6];
+        model.toArray(affineData);
+        final AffineModel2D affine = new AffineModel2D();
+        affine.set(affineData[0], affineData[1], affineData[2],
+                   affineData[3], affineData[4], affineData[5]);
+        return affine;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addCollapsed(final CoordinateTransformList<CoordinateTransform> transformList,
+                                     final CoordinateTransformList<CoordinateTransform> collapsedList,
+                                     final AffineModel2D[] pendingAffine) {
+
+        final List<CoordinateTransform> list = transformList.getList(null);
+
+        for (final CoordinateTransform ct : list) {
+
+            if (ct instanceof CoordinateTransformList) {
+
+                addCollapsed((CoordinateTransformList<CoordinateTransform>) ct, collapsedList, pendingAffine);
+
+            } else if (ct instanceof AbstractAffineModel2D) {
+
+                final AffineModel2D affine = toAffine((AbstractAffineModel2D) ct);
+
+                if (pendingAffine[0] == null) {
+                    pendingAffine[0] = affine;
+                } else {
+                    // pending affine is applied first, then this one
+                    pendingAffine[0].preConcatenate(affine);
+                }
+
+            } else {
+
+                if (pendingAffine[0] != null) {
+                    collapsedList.add(pendingAffine[0]);
+                    pendingAffine[0] = null;
+                }
+                collapsedList.add(ct);
+
+            }
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.janelia.alignment.transform;
+
+import java.io.Serializable;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.composite.RealComposite;
+
+/**
+ * Evaluates an {@link AffineWarpField} by interpolating affine coefficients directly from the field's
+ * values array instead of going through the ImgLib2 view and interpolator chain built by
+ * {@link AffineWarpField#getAccessor()}.
+ *
+ * Results match the ImgLib2 accessor for the two supported interpolators (n-linear and nearest neighbor):
+ * affine values are centered within their grid cells and the grid border is extended for locations
+ * outside the field.
+ *
+ * Evaluation only uses local variables, so instances can be shared across threads.
+ */
+public class AffineWarpFieldEvaluator
+        implements Serializable {
+
+    private final double[] values;
+    private final int rowCount;
+    private final int columnCount;
+    private final int affineCount;
+    private final double xScale;
+    private final double yScale;
+    private final boolean nearestNeighbor;
+
+    /**
+     * @param  affineWarpField  field to evaluate.
+     *
+     * @throws IllegalArgumentException
+     *   if the field's interpolator is not supported.
+     */
+    public AffineWarpFieldEvaluator(final AffineWarpField affineWarpField)
+            throws IllegalArgumentException {
+
+        final InterpolatorFactory<RealComposite<DoubleType>, RandomAccessible<RealComposite<DoubleType>>> factory =
+                affineWarpField.getInterpolatorFactory();
+
+        if (! isSupported(factory)) {
+            throw new IllegalArgumentException("interpolator factory " + factory + " is not supported");
+        }
+
+        // values array is referenced (not copied) so that changes to the field are reflected here
+        this.values = affineWarpField.getValues();
+        this.rowCount = affineWarpField.getRowCount();
+        this.columnCount = affineWarpField.getColumnCount();
+        this.affineCount = rowCount * columnCount;
+        this.xScale = affineWarpField.getXScale();
+        this.yScale = affineWarpField.getYScale();
+        this.nearestNeighbor = factory instanceof NearestNeighborInterpolatorFactory;
+    }
+
+    /**
+     * @return true if the specified factory can be evaluated by this class; otherwise false.
+     */
+    public static boolean isSupported(final InterpolatorFactory<RealComposite<DoubleType>, RandomAccessible<RealComposite<DoubleType>>> factory) {
+        return (factory instanceof NLinearInterpolatorFactory) ||
+               (factory instanceof NearestNeighborInterpolatorFactory);
+    }
+
+    /**
+     * Applies the interpolated affine for the specified location to the location.
+     *
+     * @param  location  location to transform in place.
+     */
+    public void applyInPlace(final double[] location) {
+
+        final double x = location[0];
+        final double y = location[1];
+
+        // grid coordinates (affines are centered within their cells)
+        final double gridX = (x / xScale) - 0.5;
+        final double gridY = (y / yScale) - 0.5;
+
+        final double m00;
+        final double m10;
+        final double m01;
+        final double m11;
+        final double m02;
+        final double m12;
+
+        if (nearestNeighbor) {
+
+            final int column = clamp((int) Math.floor(gridX + 0.5), columnCount);
+            final int row = clamp((int) Math.floor(gridY + 0.5), rowCount);
+            final int index = (row * columnCount) + column;
+
+            m00 = values[index];
+            m10 = values[index + affineCount];
+            m01 = values[index + (2 * affineCount)];
+            m11 = values[index + (3 * affineCount)];
+            m02 = values[index + (4 * affineCount)];
+            m12 = values[index + (5 * affineCount)];
+
+        } else {
+
+            final double floorX = Math.floor(gridX);
+            final double floorY = Math.floor(gridY);
+            final double wx = gridX - floorX;
+            final double wy = gridY - floorY;
+
+            final int column0 = clamp((int) floorX, columnCount);
+            final int column1 = clamp((int) floorX + 1, columnCount);
+            final int row0 = clamp((int) floorY, rowCount);
+            final int row1 = clamp((int) floorY + 1, rowCount);
+
+            final int i00 = (row0 * columnCount) + column0;
+            final int i10 = (row0 * columnCount) + column1;
+            final int i01 = (row1 * columnCount) + column0;
+            final int i11 = (row1 * columnCount) + column1;
+
+            final double w00 = (1.0 - wx) * (1.0 - wy);
+            final double w10 = wx * (1.0 - wy);
+            final double w01 = (1.0 - wx) * wy;
+            final double w11 = wx * wy;
+
+            m00 = interpolate(0, i00, i10, i01, i11, w00, w10, w01, w11);
+            m10 = interpolate(affineCount, i00, i10, i01, i11, w00, w10, w01, w11);
+            m01 = interpolate(2 * affineCount, i00, i10, i01, i11, w00, w10, w01, w11);
+            m11 = interpolate(3 * affineCount, i00, i10, i01, i11, w00, w10, w01, w11);
+            m02 = interpolate(4 * affineCount, i00, i10, i01, i11, w00, w10, w01, w11);
+            m12 = interpolate(5 * affineCount, i00, i10, i01, i11, w00, w10, w01, w11);
+        }
+
+        // stolen from AffineModel2D.applyInPlace
+        location[0] = x * m00 + y * m01 + m02;
+        location[1] = x * m10 + y * m11 + m12;
+    }
+
+    private double interpolate(final int offset,
+                               final int i00,
+                               final int i10,
+                               final int i01,
+                               final int i11,
+                               final double w00,
+                               final double w10,
+                               final double w01,
+                               final double w11) {
+        return (values[offset + i00] * w00) +
+               (values[offset + i10] * w10) +
+               (values[offset + i01] * w01) +
+               (values[offset + i11] * w11);
+    }
+
+    private static int clamp(final int index,
+                             final int count) {
+        return index < 0 ? 0 : (index >= count ? count - 1 : index);
+    }
+
+}
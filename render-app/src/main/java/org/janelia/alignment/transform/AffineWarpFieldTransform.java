@@ -21,8 +21,11 @@ public class AffineWarpFieldTransform
     private double[] locationOffsets;
     private AffineWarpField affineWarpField;
 
-    // ImgLib2 accessor for warp field
-    private RealRandomAccess<RealComposite<DoubleType>> warpFieldAccessor;
+    // direct evaluator for the common (n-linear and nearest neighbor) interpolators
+    private AffineWarpFieldEvaluator warpFieldEvaluator;
+
+    // per-thread ImgLib2 accessors for any other interpolators (accessors are not thread safe)
+    private transient ThreadLocal<RealRandomAccess<RealComposite<DoubleType>>> warpFieldAccessor;
 
     /**
      * This constructor applies identity transform to entire space with no offset.
@@ -66,20 +69,11 @@ public class AffineWarpFieldTransform
         location[0] = location[0] - locationOffsets[0];
         location[1] = location[1] - locationOffsets[1];
 
-        warpFieldAccessor.setPosition(location);
-        final RealComposite<DoubleType> coefficients = warpFieldAccessor.get();
-
-        final double m00 = coefficients.get(0).getRealDouble();
-        final double m10 = coefficients.get(1).getRealDouble();
-        final double m01 = coefficients.get(2).getRealDouble();
-        final double m11 = coefficients.get(3).getRealDouble();
-        final double m02 = coefficients.get(4).getRealDouble();
-        final double m12 = coefficients.get(5).getRealDouble();
-
-        // stolen from AffineModel2D.applyInPlace
-        final double l0 = location[0];
-        location[0] = l0 * m00 + location[1] * m01 + m02;
-        location[1] = l0 * m10 + location[1] * m11 + m12;
+        if (warpFieldEvaluator == null) {
+            applyAccessorInPlace(location);
+        } else {
+            warpFieldEvaluator.applyInPlace(location);
+        }
 
         // restore (add) offsets back once warp field has been applied
         location[0] = location[0] + locationOffsets[0];
@@ -181,14 +175,52 @@ public class AffineWarpFieldTransform
                                             affineWarpField.getCopy());
     }
 
+    /**
+     * Applies the warp field to the specified location using an ImgLib2 accessor.
+     * This is only used for interpolators that are not supported by {@link AffineWarpFieldEvaluator}.
+     *
+     * @param  location  offset location to transform in place.
+     */
+    private void applyAccessorInPlace(final double[] location) {
+
+        if (warpFieldAccessor == null) {
+            // transient thread local is lost when a java serialized instance is restored
+            warpFieldAccessor = ThreadLocal.withInitial(affineWarpField::getAccessor);
+        }
+
+        final RealRandomAccess<RealComposite<DoubleType>> accessor = warpFieldAccessor.get();
+        accessor.setPosition(location);
+        final RealComposite<DoubleType> coefficients = accessor.get();
+
+        final double m00 = coefficients.get(0).getRealDouble();
+        final double m10 = coefficients.get(1).getRealDouble();
+        final double m01 = coefficients.get(2).getRealDouble();
+        final double m11 = coefficients.get(3).getRealDouble();
+        final double m02 = coefficients.get(4).getRealDouble();
+        final double m12 = coefficients.get(5).getRealDouble();
+
+        // stolen from AffineModel2D.applyInPlace
+        final double l0 = location[0];
+        location[0] = l0 * m00 + location[1] * m01 + m02;
+        location[1] = l0 * m10 + location[1] * m11 + m12;
+    }
+
     private void setWarpFieldAccessor() throws IllegalArgumentException {
-        // set accessor and validate interpolator factory instance
+        // validate interpolator factory instance
         try {
-            warpFieldAccessor = affineWarpField.getAccessor();
+            affineWarpField.getAccessor();
         } catch (final Exception e) {
             final String factoryClassName = affineWarpField.getInterpolatorFactory().getClass().getCanonicalName();
             throw new IllegalArgumentException("interpolator factory class '" + factoryClassName + "' does not implement required interface", e);
         }
+
+        if (AffineWarpFieldEvaluator.isSupported(affineWarpField.getInterpolatorFactory())) {
+            warpFieldEvaluator = new AffineWarpFieldEvaluator(affineWarpField);
+            warpFieldAccessor = null;
+        } else {
+            warpFieldEvaluator = null;
+            warpFieldAccessor = ThreadLocal.withInitial(affineWarpField::getAccessor);
+        }
     }
 
     /**
@@ -0,0 +1,377 @@
+package org.janelia.alignment.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.trakem2.transform.ThinPlateSplineTransform;
+
+/**
+ * Approximates an expensive coordinate transform within a bounded source domain by sampling the exact transform
+ * on a regular grid and bilinearly interpolating between the sampled target locations.
+ *
+ * The grid starts coarse and is repeatedly refined (by halving the sample spacing) until the
+ * difference between the interpolated coarse grid and exact samples at the next finer level is within
+ * the specified maximum error.  If the error cannot be met before the spacing drops below the specified
+ * minimum spacing, the exact transform is used everywhere.
+ * Locations outside of the sampled domain are always mapped with the exact transform.
+ *
+ * This is primarily intended for {@link ThinPlateSplineTransform} instances built from many landmarks
+ * (see {@link #approximateThinPlateSplines}) where each exact evaluation is proportional to the number of landmarks.
+ */
+public class ApproximatedCoordinateTransform
+        implements CoordinateTransform {
+
+    /** Default maximum approximation error (in pixels) for thin plate spline transforms. */
+    public static final double DEFAULT_MAX_ERROR = 0.1;
+
+    private static volatile double defaultMaxError = DEFAULT_MAX_ERROR;
+
+    /**
+     * @return maximum error (in pixels) used when tile transforms are approximated for rendering requests
+     *         that do not specify their own maximum.  Values less than or equal to zero disable approximation.
+     */
+    public static double getDefaultMaxError() {
+        return defaultMaxError;
+    }
+
+    /**
+     * @param  maxError  maximum error (in pixels) to use when tile transforms are approximated.
+     *                   Specify a value less than or equal to zero to disable approximation.
+     */
+    public static void setDefaultMaxError(final double maxError) {
+        defaultMaxError = maxError;
+    }
+
+    private final CoordinateTransform exactTransform;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    private double spacing;
+    private int columnCount;
+    private int rowCount;
+    private double[] targetX;
+    private double[] targetY;
+    private double measuredError;
+    private boolean useExactTransform;
+
+    /**
+     * Samples the exact transform within the specified domain.
+     *
+     * @param  exactTransform  transform to approximate.
+     * @param  minX            minimum x of the source domain.
+     * @param  minY            minimum y of the source domain.
+     * @param  maxX            maximum x of the source domain.
+     * @param  maxY            maximum y of the source domain.
+     * @param  maxError        maximum acceptable distance (in target pixels) between approximated and exact locations.
+     * @param  minSpacing      minimum grid spacing worth sampling
+     *                         (typically the mesh cell size since approximation does not help beyond that).
+     */
+    public ApproximatedCoordinateTransform(final CoordinateTransform exactTransform,
+                                           final double minX,
+                                           final double minY,
+                                           final double maxX,
+                                           final double maxY,
+                                           final double maxError,
+                                           final double minSpacing) {
+
+        this.exactTransform = exactTransform;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        final double domainSize = Math.max(1.0, Math.max(maxX - minX, maxY - minY));
+
+        this.spacing = domainSize / INITIAL_CELLS_PER_SIDE;
+        this.columnCount = Math.max(2, (int) Math.ceil((maxX - minX) / spacing) + 1);
+        this.rowCount = Math.max(2, (int) Math.ceil((maxY - minY) / spacing) + 1);
+        this.targetX = new double[columnCount * rowCount];
+        this.targetY = new double[columnCount * rowCount];
+        this.measuredError = Double.MAX_VALUE;
+        this.useExactTransform = true;
+
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                sampleLocation((row * columnCount) + column, row, column);
+            }
+        }
+
+        while (useExactTransform) {
+
+            final double finerSpacing = spacing / 2.0;
+            final int finerColumnCount = (2 * (columnCount - 1)) + 1;
+            final int finerRowCount = (2 * (rowCount - 1)) + 1;
+
+            if ((finerSpacing < minSpacing) || ((finerColumnCount * finerRowCount) > MAX_SAMPLE_COUNT)) {
+                break; // approximation is not worthwhile, so leave useExactTransform set
+            }
+
+            final double[] coarseX = targetX;
+            final double[] coarseY = targetY;
+            final int coarseColumnCount = columnCount;
+
+            spacing = finerSpacing;
+            columnCount = finerColumnCount;
+            rowCount = finerRowCount;
+            targetX = new double[columnCount * rowCount];
+            targetY = new double[columnCount * rowCount];
+
+            // reuse coarse samples (every other finer sample) and only evaluate the new locations
+            double error = 0.0;
+            for (int row = 0; row < rowCount; row++) {
+                for (int column = 0; column < columnCount; column++) {
+
+                    final int index = (row * columnCount) + column;
+
+                    if (((row % 2) == 0) && ((column % 2) == 0)) {
+
+                        final int coarseIndex = ((row / 2) * coarseColumnCount) + (column / 2);
+                        targetX[index] = coarseX[coarseIndex];
+                        targetY[index] = coarseY[coarseIndex];
+
+                    } else {
+
+                        sampleLocation(index, row, column);
+
+                        // coarse bilinear value at this location is the average of its coarse neighbors
+                        final int r0 = row / 2;
+                        final int c0 = column / 2;
+                        final int r1 = r0 + (row % 2);
+                        final int c1 = c0 + (column % 2);
+                        final int i00 = (r0 * coarseColumnCount) + c0;
+                        final int i01 = (r0 * coarseColumnCount) + c1;
+                        final int i10 = (r1 * coarseColumnCount) + c0;
+                        final int i11 = (r1 * coarseColumnCount) + c1;
+                        final double approximateX = (coarseX[i00] + coarseX[i01] + coarseX[i10] + coarseX[i11]) / 4.0;
+                        final double approximateY = (coarseY[i00] + coarseY[i01] + coarseY[i10] + coarseY[i11]) / 4.0;
+
+                        final double dx = approximateX - targetX[index];
+                        final double dy = approximateY - targetY[index];
+                        error = Math.max(error, Math.sqrt((dx * dx) + (dy * dy)));
+                    }
+                }
+            }
+
+            if (error <= maxError) {
+                // coarse grid is accurate enough, so use the (already sampled and smoother) finer grid
+                measuredError = error;
+                useExactTransform = false;
+            }
+        }
+
+        if (useExactTransform) {
+            // release samples that will never be used
+            targetX = null;
+            targetY = null;
+        }
+    }
+
+    /**
+     * @return true if the exact transform is used for all locations
+     *         (because the maximum error could not be met with a worthwhile grid).
+     */
+    public boolean isUsingExactTransform() {
+        return useExactTransform;
+    }
+
+    /**
+     * @return maximum error measured for the grid one level coarser than the one in use
+     *         (an upper bound for the expected error of this approximation).
+     */
+    public double getMeasuredError() {
+        return measuredError;
+    }
+
+    /**
+     * @return number of grid samples used for the approximation.
+     */
+    public int getSampleCount() {
+        return useExactTransform ? 0 : targetX.length;
+    }
+
+    @Override
+    public double[] apply(final double[] location) {
+        final double[] out = location.clone();
+        applyInPlace(out);
+        return out;
+    }
+
+    @Override
+    public void applyInPlace(final double[] location) {
+
+        final double x = location[0];
+        final double y = location[1];
+
+        if (useExactTransform || (x < minX) || (x > maxX) || (y < minY) || (y > maxY)) {
+
+            exactTransform.applyInPlace(location);
+
+        } else {
+
+            final double gridX = (x - minX) / spacing;
+            final double gridY = (y - minY) / spacing;
+            final int column = Math.min((int) gridX, columnCount - 2);
+            final int row = Math.min((int) gridY, rowCount - 2);
+            final double wx = gridX - column;
+            final double wy = gridY - row;
+
+            final int i00 = (row * columnCount) + column;
+            final int i01 = i00 + 1;
+            final int i10 = i00 + columnCount;
+            final int i11 = i10 + 1;
+
+            final double w00 = (1.0 - wx) * (1.0 - wy);
+            final double w01 = wx * (1.0 - wy);
+            final double w10 = (1.0 - wx) * wy;
+            final double w11 = wx * wy;
+
+            location[0] = (targetX[i00] * w00) + (targetX[i01] * w01) + (targetX[i10] * w10) + (targetX[i11] * w11);
+            location[1] = (targetY[i00] * w00) + (targetY[i01] * w01) + (targetY[i10] * w10) + (targetY[i11] * w11);
+        }
+    }
+
+    /**
+     * Builds a version of the specified transform list where each {@link ThinPlateSplineTransform} is replaced
+     * with an {@link ApproximatedCoordinateTransform} covering the domain mapped from a source (tile) of the
+     * specified size by the transforms that precede it.  Nested transform lists are flattened so that
+     * splines within them are also replaced.
+     *
+     * Each call samples the splines again, so use a {@link ThinPlateSplineApproximationCache} when the
+     * same spline is shared by many tiles.
+     *
+     * @param  transformList  list of transforms for a tile.
+     * @param  width          width of the tile.
+     * @param  height         height of the tile.
+     * @param  sampleSpacing  spacing for sampling the tile border when deriving domains
+     *                        (also used as the minimum grid spacing, typically the mesh cell size).
+     * @param  maxError       maximum approximation error; values less than or equal to zero disable approximation.
+     *
+     * @return the original list if it does not contain any thin plate spline transforms (or approximation
+     *         is disabled); otherwise a new (flattened) list with approximated transforms.
+     */
+    public static CoordinateTransformList<CoordinateTransform> approximateThinPlateSplines(
+            final CoordinateTransformList<CoordinateTransform> transformList,
+            final double width,
+            final double height,
+            final double sampleSpacing,
+            final double maxError) {
+
+        if ((maxError <= 0) || (width <= 0) || (height <= 0)) {
+            return transformList;
+        }
+
+        final List<CoordinateTransform> list = new ArrayList<>();
+        addFlattened(transformList, list);
+
+        boolean hasThinPlateSpline = false;
+        for (final CoordinateTransform ct : list) {
+            if (ct instanceof ThinPlateSplineTransform) {
+                hasThinPlateSpline = true;
+                break;
+            }
+        }
+
+        if (! hasThinPlateSpline) {
+            return transformList;
+        }
+
+        final double borderSpacing = Math.max(1.0, sampleSpacing);
+        final CoordinateTransformList<CoordinateTransform> approximatedList = new CoordinateTransformList<>();
+        final CoordinateTransformList<CoordinateTransform> precedingList = new CoordinateTransformList<>();
+        final double[] min = new double[2];
+        final double[] max = new double[2];
+
+        for (final CoordinateTransform ct : list) {
+
+            final CoordinateTransform transformToAdd;
+            if (ct instanceof ThinPlateSplineTransform) {
+                deriveTransformedBorderBounds(precedingList, width, height, borderSpacing, min, max);
+                // add a margin so that interior locations near the border stay within the grid
+                transformToAdd = new ApproximatedCoordinateTransform(ct,
+                                                                     min[0] - borderSpacing,
+                                                                     min[1] - borderSpacing,
+                                                                     max[0] + borderSpacing,
+                                                                     max[1] + borderSpacing,
+                                                                     maxError,
+                                                                     sampleSpacing);
+            } else {
+                transformToAdd = ct;
+            }
+
+            approximatedList.add(transformToAdd);
+            precedingList.add(transformToAdd);
+        }
+
+        return approximatedList;
+    }
+
+    /**
+     * Adds the leaf transforms from the specified list (and any nested lists) to the specified flattened list.
+     */
+    @SuppressWarnings("unchecked")
+    static void addFlattened(final CoordinateTransformList<CoordinateTransform> transformList,
+                             final List<CoordinateTransform> flattenedList) {
+        for (final CoordinateTransform ct : transformList.getList(null)) {
+            if (ct instanceof CoordinateTransformList) {
+                addFlattened((CoordinateTransformList<CoordinateTransform>) ct, flattenedList);
+            } else {
+                flattenedList.add(ct);
+            }
+        }
+    }
+
+    private void sampleLocation(final int index,
+                                final int row,
+                                final int column) {
+        final double[] location = { minX + (column * spacing), minY + (row * spacing) };
+        exactTransform.applyInPlace(location);
+        targetX[index] = location[0];
+        targetY[index] = location[1];
+    }
+
+    static void deriveTransformedBorderBounds(final CoordinateTransform transform,
+                                                      final double width,
+                                                      final double height,
+                                                      final double borderSpacing,
+                                                      final double[] min,
+                                                      final double[] max) {
+        min[0] = Double.MAX_VALUE;
+        min[1] = Double.MAX_VALUE;
+        max[0] = -Double.MAX_VALUE;
+        max[1] = -Double.MAX_VALUE;
+
+        final double[] location = new double[2];
+        for (double x = 0; x <= width; x += borderSpacing) {
+            updateBounds(transform, x, 0, location, min, max);
+            updateBounds(transform, x, height, location, min, max);
+        }
+        for (double y = 0; y <= height; y += borderSpacing) {
+            updateBounds(transform, 0, y, location, min, max);
+            updateBounds(transform, width, y, location, min, max);
+        }
+        updateBounds(transform, width, height, location, min, max);
+    }
+
+    private static void updateBounds(final CoordinateTransform transform,
+                                     final double x,
+                                     final double y,
+                                     final double[] location,
+                                     final double[] min,
+                                     final double[] max) {
+        location[0] = x;
+        location[1] = y;
+        transform.applyInPlace(location);
+        min[0] = Math.min(min[0], location[0]);
+        min[1] = Math.min(min[1], location[1]);
+        max[0] = Math.max(max[0], location[0]);
+        max[1] = Math.max(max[1], location[1]);
+    }
+
+    private static final int INITIAL_CELLS_PER_SIDE = 4;
+    private static final int MAX_SAMPLE_COUNT = 1024 * 1024;
+
+}
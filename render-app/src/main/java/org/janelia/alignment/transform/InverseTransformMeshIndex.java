@@ -0,0 +1,219 @@
+package org.janelia.alignment.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.IllDefinedDataPointsException;
+import mpicbg.models.NoninvertibleModelException;
+import mpicbg.models.NotEnoughDataPointsException;
+import mpicbg.trakem2.util.Pair;
+
+import org.janelia.alignment.RenderTransformMesh;
+
+/**
+ * Reusable inverse lookup structure for a transformed tile.
+ *
+ * The tile is meshed once (using the same triangle layout as
+ * {@link mpicbg.models.CoordinateTransformMesh}) and the inverse affine for each target (world) triangle
+ * is fit up front.  Target triangles are then binned into a uniform grid so that inverting a point
+ * only requires testing the handful of triangles in the point's grid cell instead of every
+ * triangle in the mesh.
+ *
+ * Instances are immutable once constructed and can safely be shared across threads.
+ */
+public class InverseTransformMeshIndex {
+
+    private static final double[] UNIT_WEIGHTS = new double[]{1.0, 1.0, 1.0};
+
+    private final int numX;
+    private final double[][][] triangles;
+    private final AffineModel2D[] inverseModels;
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final double cellSize;
+    private final int numberOfColumns;
+    private final int numberOfRows;
+    private final int[][] cellTriangleIndexes;
+
+    /**
+     * Meshes the specified transform and builds the inverse index.
+     *
+     * @param  transform  transform to mesh.
+     * @param  numX       number of triangles covering the width of the source (local) space.
+     * @param  width      width of the source space.
+     * @param  height     height of the source space.
+     */
+    public InverseTransformMeshIndex(final CoordinateTransform transform,
+                                     final int numX,
+                                     final double width,
+                                     final double height) {
+
+        this.numX = numX;
+
+        final RenderTransformMesh mesh = new RenderTransformMesh(transform, numX, width, height);
+
+        final List<double[][]> invertibleTriangles = new ArrayList<>(mesh.getAV().size());
+        final List<AffineModel2D> invertibleModels = new ArrayList<>(mesh.getAV().size());
+
+        double sumTriangleWidth = 0;
+        double sumTriangleHeight = 0;
+        final double[] min = new double[2];
+        final double[] max = new double[2];
+        final double[] meshMin = { Double.MAX_VALUE, Double.MAX_VALUE };
+        final double[] meshMax = { -Double.MAX_VALUE, -Double.MAX_VALUE };
+
+        for (final Pair<AffineModel2D, double[][]> apq : mesh.getAV()) {
+
+            final double[][] pq = apq.b;
+            final AffineModel2D inverseModel = new AffineModel2D();
+            try {
+                // fit target (world) vertices to source (local) vertices
+                inverseModel.fit(new double[][]{pq[2], pq[3]}, new double[][]{pq[0], pq[1]}, UNIT_WEIGHTS);
+            } catch (final NotEnoughDataPointsException | IllDefinedDataPointsException e) {
+                // degenerate (collapsed) target triangles cannot be inverted, so just leave them out
+                continue;
+            }
+
+            invertibleTriangles.add(pq);
+            invertibleModels.add(inverseModel);
+
+            RenderTransformMesh.calculateTargetBoundingBox(pq, min, max);
+            sumTriangleWidth += max[0] - min[0];
+            sumTriangleHeight += max[1] - min[1];
+            meshMin[0] = Math.min(meshMin[0], min[0]);
+            meshMin[1] = Math.min(meshMin[1], min[1]);
+            meshMax[0] = Math.max(meshMax[0], max[0]);
+            meshMax[1] = Math.max(meshMax[1], max[1]);
+        }
+
+        final int numberOfTriangles = invertibleTriangles.size();
+        this.triangles = invertibleTriangles.toArray(new double[numberOfTriangles][][]);
+        this.inverseModels = invertibleModels.toArray(new AffineModel2D[numberOfTriangles]);
+
+        if (numberOfTriangles == 0) {
+
+            this.minX = 0;
+            this.minY = 0;
+            this.maxX = -1;
+            this.maxY = -1;
+            this.cellSize = 1;
+            this.numberOfColumns = 0;
+            this.numberOfRows = 0;
+            this.cellTriangleIndexes = new int[0][];
+
+        } else {
+
+            this.minX = meshMin[0];
+            this.minY = meshMin[1];
+            this.maxX = meshMax[0];
+            this.maxY = meshMax[1];
+
+            // size cells to roughly match triangles so that each cell holds only a few triangles,
+            // but keep the total number of cells proportional to the number of triangles
+            final double meshWidth = Math.max(1.0, maxX - minX);
+            final double meshHeight = Math.max(1.0, maxY - minY);
+            final double averageTriangleSize = Math.max(sumTriangleWidth, sumTriangleHeight) / numberOfTriangles;
+            final double minimumCellSize = Math.sqrt((meshWidth * meshHeight) / (4.0 * numberOfTriangles));
+            this.cellSize = Math.max(1.0, Math.max(averageTriangleSize, minimumCellSize));
+            this.numberOfColumns = (int) Math.ceil(meshWidth / cellSize);
+            this.numberOfRows = (int) Math.ceil(meshHeight / cellSize);
+
+            final List<List<Integer>> cellLists = new ArrayList<>(numberOfColumns * numberOfRows);
+            for (int i = 0; i < numberOfColumns * numberOfRows; i++) {
+                cellLists.add(new ArrayList<>());
+            }
+
+            for (int t = 0; t < numberOfTriangles; t++) {
+                RenderTransformMesh.calculateTargetBoundingBox(triangles[t], min, max);
+                final int minColumn = getColumn(min[0]);
+                final int maxColumn = getColumn(max[0]);
+                final int minRow = getRow(min[1]);
+                final int maxRow = getRow(max[1]);
+                for (int row = minRow; row <= maxRow; row++) {
+                    for (int column = minColumn; column <= maxColumn; column++) {
+                        cellLists.get((row * numberOfColumns) + column).add(t);
+                    }
+                }
+            }
+
+            this.cellTriangleIndexes = new int[cellLists.size()][];
+            for (int i = 0; i < cellTriangleIndexes.length; i++) {
+                final List<Integer> cellList = cellLists.get(i);
+                cellTriangleIndexes[i] = new int[cellList.size()];
+                for (int j = 0; j < cellTriangleIndexes[i].length; j++) {
+                    cellTriangleIndexes[i][j] = cellList.get(j);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of triangles covering the width of the source space (used to build this index).
+     */
+    public int getNumX() {
+        return numX;
+    }
+
+    /**
+     * @return number of invertible triangles in this index.
+     */
+    public int getNumberOfTriangles() {
+        return triangles.length;
+    }
+
+    /**
+     * @param  location  target (world) location to inversely transform.
+     *
+     * @return source (local) location for the specified target location.
+     *
+     * @throws NoninvertibleModelException
+     *   if the location is not covered by the mesh.
+     */
+    public double[] applyInverse(final double[] location)
+            throws NoninvertibleModelException {
+        final double[] transformed = location.clone();
+        applyInverseInPlace(transformed);
+        return transformed;
+    }
+
+    /**
+     * Inversely transforms the specified target (world) location in place.
+     *
+     * @param  location  target location to inversely transform.
+     *
+     * @throws NoninvertibleModelException
+     *   if the location is not covered by the mesh.
+     */
+    public void applyInverseInPlace(final double[] location)
+            throws NoninvertibleModelException {
+
+        final double x = location[0];
+        final double y = location[1];
+
+        if ((x >= minX) && (x <= maxX) && (y >= minY) && (y <= maxY)) {
+            final int cellIndex = (getRow(y) * numberOfColumns) + getColumn(x);
+            for (final int t : cellTriangleIndexes[cellIndex]) {
+                if (RenderTransformMesh.isInTargetTriangle(triangles[t], x, y)) {
+                    inverseModels[t].applyInPlace(location);
+                    return;
+                }
+            }
+        }
+
+        throw new NoninvertibleModelException("Noninvertible location ( " + x + ", " + y + " )");
+    }
+
+    private int getColumn(final double x) {
+        return Math.min(numberOfColumns - 1, Math.max(0, (int) ((x - minX) / cellSize)));
+    }
+
+    private int getRow(final double y) {
+        return Math.min(numberOfRows - 1, Math.max(0, (int) ((y - minY) / cellSize)));
+    }
+
+}
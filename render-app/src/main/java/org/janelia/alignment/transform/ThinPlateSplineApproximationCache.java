@@ -0,0 +1,183 @@
+package org.janelia.alignment.transform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.trakem2.transform.ThinPlateSplineTransform;
+
+/**
+ * Shares {@link ApproximatedCoordinateTransform} instances for thin plate spline transforms that are used
+ * by many tiles (e.g. the layer level splines built by {@link org.janelia.alignment.warp.ThinPlateSplineBuilder})
+ * so that each distinct spline is only sampled once instead of once for every tile.
+ *
+ * Approximation happens in two phases: every tile's transform list is first {@link #register registered}
+ * so that the domain of each distinct spline grows to cover all tiles that use it, and then
+ * {@link #approximate} swaps the shared approximations into each registered list.
+ * Splines are identified by their data string, so tiles that reference the same spline spec share
+ * one approximation even though each tile builds its own spline instance.
+ *
+ * Registration is synchronized, and once all tiles have been registered, {@link #approximate} can be called
+ * concurrently (e.g. when bounding boxes for many tiles are derived in parallel).
+ */
+public class ThinPlateSplineApproximationCache {
+
+    private final double sampleSpacing;
+    private final double maxError;
+    private final Map<String, SplineDomain> keyToDomain;
+
+    /**
+     * @param  sampleSpacing  spacing for sampling tile borders when deriving domains
+     *                        (also used as the minimum grid spacing, typically the mesh cell size).
+     * @param  maxError       maximum approximation error; values less than or equal to zero disable approximation.
+     */
+    public ThinPlateSplineApproximationCache(final double sampleSpacing,
+                                             final double maxError) {
+        this.sampleSpacing = sampleSpacing;
+        this.maxError = maxError;
+        this.keyToDomain = new HashMap<>();
+    }
+
+    /**
+     * @return number of distinct splines registered with this cache.
+     */
+    public int size() {
+        return keyToDomain.size();
+    }
+
+    /**
+     * Includes the domain covered by a tile of the specified size in the approximation of each spline
+     * within the specified transform list.
+     *
+     * @param  transformList  list of transforms for a tile.
+     * @param  width          width of the tile.
+     * @param  height         height of the tile.
+     *
+     * @return the list to pass to {@link #approximate} once all tiles have been registered
+     *         (a flattened copy if the list contains splines, otherwise the original list).
+     */
+    public synchronized CoordinateTransformList<CoordinateTransform> register(final CoordinateTransformList<CoordinateTransform> transformList,
+                                                                 final double width,
+                                                                 final double height) {
+
+        if ((maxError <= 0) || (width <= 0) || (height <= 0)) {
+            return transformList;
+        }
+
+        final List<CoordinateTransform> list = new ArrayList<>();
+        ApproximatedCoordinateTransform.addFlattened(transformList, list);
+
+        final double borderSpacing = getBorderSpacing();
+        final CoordinateTransformList<CoordinateTransform> registeredList = new CoordinateTransformList<>();
+        final double[] min = new double[2];
+        final double[] max = new double[2];
+
+        boolean hasThinPlateSpline = false;
+        for (final CoordinateTransform ct : list) {
+
+            if (ct instanceof ThinPlateSplineTransform) {
+
+                ApproximatedCoordinateTransform.deriveTransformedBorderBounds(registeredList,
+                                                                              width,
+                                                                              height,
+                                                                              borderSpacing,
+                                                                              min,
+                                                                              max);
+
+                final String key = ((ThinPlateSplineTransform) ct).toDataString();
+                keyToDomain.computeIfAbsent(key, k -> new SplineDomain(ct)).include(min, max);
+                hasThinPlateSpline = true;
+            }
+
+            registeredList.add(ct);
+        }
+
+        return hasThinPlateSpline ? registeredList : transformList;
+    }
+
+    /**
+     * @param  transformList  list returned by {@link #register} (or a newly built list for a registered tile).
+     *
+     * @return a flattened copy of the specified list with each registered spline replaced by its
+     *         shared approximation (or the original list if it does not contain any registered splines).
+     */
+    public CoordinateTransformList<CoordinateTransform> approximate(final CoordinateTransformList<CoordinateTransform> transformList) {
+
+        if (keyToDomain.size() == 0) {
+            return transformList;
+        }
+
+        final List<CoordinateTransform> list = new ArrayList<>();
+        ApproximatedCoordinateTransform.addFlattened(transformList, list);
+
+        final CoordinateTransformList<CoordinateTransform> approximatedList = new CoordinateTransformList<>();
+        boolean hasRegisteredSpline = false;
+        SplineDomain domain;
+        for (final CoordinateTransform ct : list) {
+            domain = null;
+            if (ct instanceof ThinPlateSplineTransform) {
+                domain = keyToDomain.get(((ThinPlateSplineTransform) ct).toDataString());
+            }
+            if (domain == null) {
+                approximatedList.add(ct);
+            } else {
+                approximatedList.add(domain.getApproximation());
+                hasRegisteredSpline = true;
+            }
+        }
+
+        return hasRegisteredSpline ? approximatedList : transformList;
+    }
+
+    private double getBorderSpacing() {
+        return Math.max(1.0, sampleSpacing);
+    }
+
+    /**
+     * Tracks the combined source domain for one distinct spline and lazily builds its approximation.
+     */
+    private class SplineDomain {
+
+        private final CoordinateTransform exactTransform;
+        private final double[] min;
+        private final double[] max;
+        private ApproximatedCoordinateTransform approximation;
+
+        SplineDomain(final CoordinateTransform exactTransform) {
+            this.exactTransform = exactTransform;
+            this.min = new double[] { Double.MAX_VALUE, Double.MAX_VALUE };
+            this.max = new double[] { -Double.MAX_VALUE, -Double.MAX_VALUE };
+            this.approximation = null;
+        }
+
+        void include(final double[] tileMin,
+                     final double[] tileMax) {
+            if (approximation != null) {
+                throw new IllegalStateException("tiles cannot be registered after approximation has started");
+            }
+            min[0] = Math.min(min[0], tileMin[0]);
+            min[1] = Math.min(min[1], tileMin[1]);
+            max[0] = Math.max(max[0], tileMax[0]);
+            max[1] = Math.max(max[1], tileMax[1]);
+        }
+
+        synchronized ApproximatedCoordinateTransform getApproximation() {
+            if (approximation == null) {
+                final double borderSpacing = getBorderSpacing();
+                // add a margin so that interior locations near the border stay within the grid
+                approximation = new ApproximatedCoordinateTransform(exactTransform,
+                                                                     min[0] - borderSpacing,
+                                                                     min[1] - borderSpacing,
+                                                                     max[0] + borderSpacing,
+                                                                     max[1] + borderSpacing,
+                                                                     maxError,
+                                                                     sampleSpacing);
+            }
+            return approximation;
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.janelia.alignment.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link MetricsRegistry} that maintains a fixed bucket histogram for each timer
+ * and a simple running total for each counter.
+ *
+ * Bucket upper bounds (in milliseconds) are fixed so that snapshots can be exported
+ * directly in cumulative histogram formats (e.g. Prometheus).
+ */
+public class HistogramMetricsRegistry
+        implements MetricsRegistry {
+
+    /** Upper bounds (inclusive, in milliseconds) for all timer histogram buckets. */
+    public static final long[] BUCKET_UPPER_BOUNDS_MILLISECONDS =
+            { 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private final Map<String, Timer> timers;
+    private final Map<String, LongAdder> counters;
+
+    public HistogramMetricsRegistry() {
+        this.timers = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void recordTime(final String timerName,
+                           final long elapsedMilliseconds) {
+        timers.computeIfAbsent(timerName, k -> new Timer()).record(elapsedMilliseconds);
+    }
+
+    @Override
+    public void incrementCounter(final String counterName,
+                                 final long delta) {
+        counters.computeIfAbsent(counterName, k -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * @return snapshot of all timers sorted by name.
+     */
+    public Map<String, TimerSnapshot> getTimerSnapshots() {
+        final Map<String, TimerSnapshot> snapshots = new TreeMap<>();
+        for (final Map.Entry<String, Timer> entry : timers.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return snapshot of all counter values sorted by name.
+     */
+    public Map<String, Long> getCounterValues() {
+        final Map<String, Long> values = new TreeMap<>();
+        for (final Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().sum());
+        }
+        return values;
+    }
+
+    /**
+     * Removes all recorded timer and counter data.
+     */
+    public void clear() {
+        timers.clear();
+        counters.clear();
+    }
+
+    /**
+     * Point in time copy of a timer's histogram.
+     */
+    public static class TimerSnapshot {
+
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sumMilliseconds;
+
+        public TimerSnapshot(final long[] bucketCounts,
+                             final long count,
+                             final long sumMilliseconds) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sumMilliseconds = sumMilliseconds;
+        }
+
+        /**
+         * @return non-cumulative count of recorded times for each bucket in
+         *         {@link #BUCKET_UPPER_BOUNDS_MILLISECONDS} followed by the count of
+         *         times exceeding the largest bound.
+         */
+        public long[] getBucketCounts() {
+            return bucketCounts;
+        }
+
+        /**
+         * @return cumulative count of recorded times less than or equal to each bound in
+         *         {@link #BUCKET_UPPER_BOUNDS_MILLISECONDS} followed by the total count.
+         */
+        public long[] getCumulativeBucketCounts() {
+            final long[] cumulativeCounts = new long[bucketCounts.length];
+            long total = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                total += bucketCounts[i];
+                cumulativeCounts[i] = total;
+            }
+            return cumulativeCounts;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumMilliseconds() {
+            return sumMilliseconds;
+        }
+    }
+
+    private static class Timer {
+
+        private final LongAdder[] buckets;
+        private final LongAdder sum;
+
+        Timer() {
+            this.buckets = new LongAdder[BUCKET_UPPER_BOUNDS_MILLISECONDS.length + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+            this.sum = new LongAdder();
+        }
+
+        void record(final long elapsedMilliseconds) {
+            int bucketIndex = BUCKET_UPPER_BOUNDS_MILLISECONDS.length;
+            for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLISECONDS.length; i++) {
+                if (elapsedMilliseconds <= BUCKET_UPPER_BOUNDS_MILLISECONDS[i]) {
+                    bucketIndex = i;
+                    break;
+                }
+            }
+            buckets[bucketIndex].increment();
+            sum.add(elapsedMilliseconds);
+        }
+
+        TimerSnapshot getSnapshot() {
+            // derive count from the bucket values read for this snapshot so that they are always consistent
+            final long[] bucketCounts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                bucketCounts[i] = buckets[i].sum();
+                count += bucketCounts[i];
+            }
+            return new TimerSnapshot(bucketCounts, count, sum.sum());
+        }
+    }
+
+}
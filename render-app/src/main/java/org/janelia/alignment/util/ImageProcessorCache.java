@@ -4,6 +4,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
 import com.google.common.cache.Weigher;
 
 import ij.ImagePlus;
@@ -105,17 +106,25 @@ public class ImageProcessorCache {
                     }
                 };
 
+        final RemovalListener<CacheKey, ImageProcessor> removalListener =
+                notification -> {
+                    if (notification.wasEvicted()) {
+                        RenderMetrics.increment(RenderMetrics.CACHE_EVICTION_COUNTER);
+                    }
+                };
 
         if (recordStats) {
             cache = CacheBuilder.newBuilder()
                     .maximumWeight(maximumNumberOfCachedKilobytes)
                     .weigher(weigher)
+                    .removalListener(removalListener)
                     .recordStats()
                     .build(loader);
         } else {
             cache = CacheBuilder.newBuilder()
                     .maximumWeight(maximumNumberOfCachedKilobytes)
                     .weigher(weigher)
+                    .removalListener(removalListener)
                     .build(loader);
         }
 
@@ -146,12 +155,28 @@ public class ImageProcessorCache {
             throws IllegalArgumentException {
 
         final CacheKey key = new CacheKey(url, downSampleLevels, isMask,convertTo16Bit);
+
+        // single lookup so that each request is counted exactly once as either a hit or a miss
+        // (requests that wait for another thread's load are counted as hits)
+        final boolean[] wasLoaded = { false };
         final ImageProcessor imageProcessor;
         try {
-            imageProcessor = cache.get(key);
+            imageProcessor = cache.get(key, () -> {
+                wasLoaded[0] = true;
+                RenderMetrics.increment(RenderMetrics.CACHE_MISS_COUNTER);
+                return loadImageProcessor(key.getUri(),
+                                          key.getDownSampleLevels(),
+                                          key.isMask(),
+                                          key.isConvertTo16Bit());
+            });
         } catch (final Throwable t) {
             throw new IllegalArgumentException("failed to retrieve " + key + " from cache", t);
         }
+
+        if (! wasLoaded[0]) {
+            RenderMetrics.increment(RenderMetrics.CACHE_HIT_COUNTER);
+        }
+
         return imageProcessor.duplicate();
     }
 
@@ -241,6 +266,8 @@ public class ImageProcessorCache {
             // TODO: use Bio Formats to load strange formats
 
             // openers keep state about the file being opened, so we need to create a new opener for each load
+            final long decodeStart = System.currentTimeMillis();
+
             final Opener opener = new S3Opener();
             opener.setSilentMode(true);
 
@@ -257,6 +284,8 @@ public class ImageProcessorCache {
                 imageProcessor.multiply(256.0);
             }
 
+            RenderMetrics.recordTimeSince(RenderMetrics.DECODE_TIMER, decodeStart);
+
             // if we're going to down sample and we're supposed to cache originals, do so here
             if (cacheOriginalsForDownSampledImages && (downSampleLevels > 0)) {
 
@@ -273,8 +302,10 @@ public class ImageProcessorCache {
         if (downSampleLevels > 0) {
             // NOTE: The down sample methods return a safe copy and leave the source imageProcessor unmodified,
             //       so we don't need to duplicate a cached source instance before down sampling.
+            final long downSampleStart = System.currentTimeMillis();
             imageProcessor = Downsampler.downsampleImageProcessor(imageProcessor,
                                                                   downSampleLevels);
+            RenderMetrics.recordTimeSince(RenderMetrics.DOWNSAMPLE_TIMER, downSampleStart);
         }
 
         return imageProcessor;
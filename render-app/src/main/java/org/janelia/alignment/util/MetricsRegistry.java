@@ -0,0 +1,42 @@
+package org.janelia.alignment.util;
+
+/**
+ * Destination for timing and counter metrics recorded during rendering.
+ * Implementations must be thread safe since metrics are recorded concurrently by all render threads.
+ *
+ * @see RenderMetrics
+ */
+public interface MetricsRegistry {
+
+    /** Registry that simply ignores everything recorded to it. */
+    MetricsRegistry NO_OP = new MetricsRegistry() {
+        @Override
+        public void recordTime(final String timerName,
+                               final long elapsedMilliseconds) {
+        }
+
+        @Override
+        public void incrementCounter(final String counterName,
+                                     final long delta) {
+        }
+    };
+
+    /**
+     * Records an elapsed time for the specified timer.
+     *
+     * @param  timerName            name of the timer.
+     * @param  elapsedMilliseconds  elapsed time to record.
+     */
+    void recordTime(final String timerName,
+                    final long elapsedMilliseconds);
+
+    /**
+     * Increments the specified counter.
+     *
+     * @param  counterName  name of the counter.
+     * @param  delta        amount to add to the counter.
+     */
+    void incrementCounter(final String counterName,
+                          final long delta);
+
+}
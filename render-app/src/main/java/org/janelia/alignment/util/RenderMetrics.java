@@ -0,0 +1,105 @@
+package org.janelia.alignment.util;
+
+/**
+ * Shared access point for recording per-phase render metrics.
+ *
+ * By default, metrics are recorded to an in-memory {@link HistogramMetricsRegistry}.
+ * Applications that want to forward metrics elsewhere (or disable them) can plug in a different
+ * {@link MetricsRegistry} with {@link #setRegistry}.
+ */
+public class RenderMetrics {
+
+    /** Time to retrieve a source (or mask) image processor for a mipmap level (includes cache lookup). */
+    public static final String SOURCE_LOAD_TIMER = "render_source_load";
+
+    /** Time to open and decode a source image that was not already cached. */
+    public static final String DECODE_TIMER = "render_decode";
+
+    /** Time to down sample a decoded source image to the requested mipmap level. */
+    public static final String DOWNSAMPLE_TIMER = "render_downsample";
+
+    /** Time to apply all filters to a source image. */
+    public static final String FILTER_TIMER = "render_filter";
+
+    /** Time to build the transform mesh for a tile. */
+    public static final String MESH_BUILD_TIMER = "render_mesh_build";
+
+    /** Time to map source pixels to the target canvas for a tile. */
+    public static final String PIXEL_MAPPING_TIMER = "render_pixel_mapping";
+
+    /** Time to convert rendered target processors into an image. */
+    public static final String CONVERSION_TIMER = "render_conversion";
+
+    /** Time to encode a rendered image into its output format. */
+    public static final String ENCODE_TIMER = "render_encode";
+
+    /** Time a server render request waits in the render queue before it starts running. */
+    public static final String RENDER_QUEUE_WAIT_TIMER = "render_queue_wait";
+
+    /** Number of image processor requests served from the cache. */
+    public static final String CACHE_HIT_COUNTER = "image_processor_cache_hits";
+
+    /** Number of image processor requests that required loading. */
+    public static final String CACHE_MISS_COUNTER = "image_processor_cache_misses";
+
+    /** Number of image processors evicted from the cache because of size constraints. */
+    public static final String CACHE_EVICTION_COUNTER = "image_processor_cache_evictions";
+
+    /** Number of server render requests rejected because the render queue was saturated. */
+    public static final String RENDER_REJECTED_COUNTER = "render_requests_rejected";
+
+    /** Number of server render requests abandoned because they did not complete in time. */
+    public static final String RENDER_TIMEOUT_COUNTER = "render_requests_timed_out";
+
+    /** Number of server render requests served by waiting for an identical in progress render. */
+    public static final String RENDER_COALESCED_COUNTER = "render_requests_coalesced";
+
+    /** Number of server render requests served from the encoded image cache. */
+    public static final String ENCODED_IMAGE_CACHE_HIT_COUNTER = "encoded_image_cache_hits";
+
+    /** Number of server render requests that were not found in the encoded image cache. */
+    public static final String ENCODED_IMAGE_CACHE_MISS_COUNTER = "encoded_image_cache_misses";
+
+    private static volatile MetricsRegistry registry = new HistogramMetricsRegistry();
+
+    /**
+     * @return the registry currently receiving metrics.
+     */
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Plugs in a different registry for all subsequently recorded metrics.
+     *
+     * @param  registry  registry to use (or null to disable metrics recording).
+     */
+    public static void setRegistry(final MetricsRegistry registry) {
+        RenderMetrics.registry = registry == null ? MetricsRegistry.NO_OP : registry;
+    }
+
+    /**
+     * Records the time elapsed since the specified start time.
+     *
+     * @param  timerName  name of the timer.
+     * @param  startTime  start time (from {@link System#currentTimeMillis()}).
+     *
+     * @return the current time so that it can be used as the start of the next phase.
+     */
+    public static long recordTimeSince(final String timerName,
+                                       final long startTime) {
+        final long stopTime = System.currentTimeMillis();
+        registry.recordTime(timerName, stopTime - startTime);
+        return stopTime;
+    }
+
+    /**
+     * Increments the specified counter by one.
+     *
+     * @param  counterName  name of the counter.
+     */
+    public static void increment(final String counterName) {
+        registry.incrementCounter(counterName, 1);
+    }
+
+}
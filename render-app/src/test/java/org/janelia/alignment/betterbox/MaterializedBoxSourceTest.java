@@ -0,0 +1,191 @@
+package org.janelia.alignment.betterbox;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.imageio.ImageIO;
+
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.util.FileUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link MaterializedBoxSource} class.
+ */
+public class MaterializedBoxSourceTest {
+
+    private File rootDirectory;
+    private File boxDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        final SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_hhmmss_SSS");
+        rootDirectory = new File("test-materialized-box-" + sdf.format(new Date())).getCanonicalFile();
+        boxDirectory = new File(rootDirectory, "100x100");
+        for (int level = 0; level < 4; level++) {
+            mkdirs(new File(boxDirectory, String.valueOf(level)));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtil.deleteRecursive(rootDirectory);
+    }
+
+    @Test
+    public void testFindAll() throws Exception {
+        mkdirs(new File(rootDirectory, "not-a-box-directory"));
+        Assert.assertEquals("invalid number of sources found",
+                            1, MaterializedBoxSource.findAll(rootDirectory.getAbsolutePath()).size());
+        Assert.assertEquals("missing root should have no sources",
+                            0, MaterializedBoxSource.findAll(null).size());
+    }
+
+    @Test
+    public void testBuildPyramidParameters() throws Exception {
+
+        writeImage(new File(boxDirectory, "2/5/0/0.png"), 100, 100);
+        writeImage(new File(boxDirectory, "2/5/0/1.png"), 100, 100);
+
+        final RenderParameters requestedParameters = buildRequestedParameters(0.25);
+        final RenderParameters fallbackParameters =
+                MaterializedBoxSource.buildFallbackParameters(rootDirectory.getAbsolutePath(),
+                                                              null,
+                                                              requestedParameters,
+                                                              100);
+
+        Assert.assertNotNull("fallback parameters should have been built", fallbackParameters);
+        Assert.assertEquals("invalid number of boxes", 2, fallbackParameters.numberOfTileSpecs());
+        Assert.assertEquals("invalid scale", 0.25, fallbackParameters.getScale(), 0.0001);
+
+        final TileSpec secondBox = fallbackParameters.getTileSpecs().get(1);
+        Assert.assertEquals("invalid box minX", 400.0, secondBox.getMinX(), 0.0001);
+        Assert.assertEquals("invalid box maxX", 800.0, secondBox.getMaxX(), 0.0001);
+    }
+
+    @Test
+    public void testBuildPyramidParametersFromCoarserLevel() throws Exception {
+
+        mkdirs(new File(boxDirectory, "2"));
+        writeImage(new File(boxDirectory, "3/5/0/0.png"), 100, 100);
+
+        final RenderParameters fallbackParameters =
+                MaterializedBoxSource.buildFallbackParameters(rootDirectory.getAbsolutePath(),
+                                                              null,
+                                                              buildRequestedParameters(0.25),
+                                                              100);
+
+        Assert.assertNotNull("fallback parameters should have been built", fallbackParameters);
+        Assert.assertEquals("invalid number of boxes", 1, fallbackParameters.numberOfTileSpecs());
+        Assert.assertEquals("invalid box maxX",
+                            800.0, fallbackParameters.getTileSpecs().get(0).getMaxX(), 0.0001);
+    }
+
+    @Test
+    public void testBuildPyramidParametersAfterMissingLevel() throws Exception {
+
+        // levels 0 through 3 exist, 4 was never generated
+        writeImage(new File(boxDirectory, "5/5/0/0.png"), 100, 100);
+
+        final RenderParameters fallbackParameters =
+                MaterializedBoxSource.buildFallbackParameters(rootDirectory.getAbsolutePath(),
+                                                              null,
+                                                              buildRequestedParameters(0.0625),
+                                                              100);
+
+        Assert.assertNotNull("fallback parameters should have been built", fallbackParameters);
+        Assert.assertEquals("invalid number of boxes", 1, fallbackParameters.numberOfTileSpecs());
+        Assert.assertEquals("invalid box maxX",
+                            3200.0, fallbackParameters.getTileSpecs().get(0).getMaxX(), 0.0001);
+    }
+
+    @Test
+    public void testBuildPyramidParametersWithNonZeroOrigin() throws Exception {
+
+        writeImage(new File(boxDirectory, "2/5/0/0.png"), 100, 100);
+        writeImage(new File(boxDirectory, "2/5/0/1.png"), 100, 100);
+
+        final Bounds stackBounds = new Bounds(1000.0, 500.0, 5.0, 5000.0, 3000.0, 5.0);
+        final RenderParameters requestedParameters = new RenderParameters(null, 1000, 500, 800, 400, 0.25);
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setTileId("source-tile");
+        tileSpec.setZ(5.0);
+        requestedParameters.addTileSpec(tileSpec);
+
+        final RenderParameters fallbackParameters =
+                MaterializedBoxSource.buildFallbackParameters(rootDirectory.getAbsolutePath(),
+                                                              stackBounds,
+                                                              requestedParameters,
+                                                              100);
+
+        Assert.assertNotNull("fallback parameters should have been built", fallbackParameters);
+        Assert.assertEquals("invalid number of boxes", 2, fallbackParameters.numberOfTileSpecs());
+
+        final TileSpec firstBox = fallbackParameters.getTileSpecs().get(0);
+        Assert.assertEquals("invalid first box minX", 1000.0, firstBox.getMinX(), 0.0001);
+        Assert.assertEquals("invalid first box minY", 500.0, firstBox.getMinY(), 0.0001);
+
+        final TileSpec secondBox = fallbackParameters.getTileSpecs().get(1);
+        Assert.assertEquals("invalid second box minX", 1400.0, secondBox.getMinX(), 0.0001);
+        Assert.assertEquals("invalid second box maxX", 1800.0, secondBox.getMaxX(), 0.0001);
+    }
+
+    @Test
+    public void testBuildOverviewParameters() throws Exception {
+
+        writeImage(new File(boxDirectory, "small/5.png"), 50, 25);
+
+        final Bounds stackBounds = new Bounds(0.0, 0.0, 5.0, 1000.0, 500.0, 5.0);
+        final RenderParameters fallbackParameters =
+                MaterializedBoxSource.buildFallbackParameters(rootDirectory.getAbsolutePath(),
+                                                              stackBounds,
+                                                              buildRequestedParameters(0.25),
+                                                              100);
+
+        Assert.assertNotNull("fallback parameters should have been built", fallbackParameters);
+        Assert.assertEquals("invalid number of overviews", 1, fallbackParameters.numberOfTileSpecs());
+        final TileSpec overview = fallbackParameters.getTileSpecs().get(0);
+        Assert.assertEquals("invalid overview maxX", 1000.0, overview.getMaxX(), 0.0001);
+        Assert.assertEquals("invalid overview maxY", 500.0, overview.getMaxY(), 0.0001);
+    }
+
+    @Test
+    public void testNoMaterializedData() throws Exception {
+        Assert.assertNull("fallback parameters should not be built without materialized data",
+                          MaterializedBoxSource.buildFallbackParameters(rootDirectory.getAbsolutePath(),
+                                                                        null,
+                                                                        buildRequestedParameters(0.25),
+                                                                        100));
+    }
+
+    private RenderParameters buildRequestedParameters(final double scale) {
+        final RenderParameters requestedParameters = new RenderParameters(null, 0, 0, 800, 400, scale);
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setTileId("source-tile");
+        tileSpec.setZ(5.0);
+        requestedParameters.addTileSpec(tileSpec);
+        return requestedParameters;
+    }
+
+    private void writeImage(final File file,
+                            final int width,
+                            final int height)
+            throws IOException {
+        mkdirs(file.getParentFile());
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", file);
+    }
+
+    private void mkdirs(final File directory) {
+        if (! directory.exists() && ! directory.mkdirs()) {
+            throw new IllegalStateException("failed to create " + directory.getAbsolutePath());
+        }
+    }
+}
@@ -18,6 +18,8 @@ package org.janelia.alignment.spec;
 
 import java.awt.Rectangle;
 import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -78,6 +80,46 @@ public class ResolvedTileSpecCollectionTest {
                             expectedTransformCountAfterFilter, collection.getTransformCount());
     }
 
+    @Test
+    public void testParallelBoundingBoxDerivation() throws Exception {
+
+        final ResolvedTileSpecCollection sequentialCollection = loadSmallMontage();
+        final ResolvedTileSpecCollection parallelCollection = loadSmallMontage();
+        parallelCollection.setNumberOfThreads(4);
+
+        for (final ResolvedTileSpecCollection collection : new ResolvedTileSpecCollection[] {
+                sequentialCollection, parallelCollection }) {
+            collection.addTransformSpecToCollection(new LeafTransformSpec("move",
+                                                                          null,
+                                                                          AffineModel2D.class.getName(),
+                                                                          "1.1 0.05 -0.05 0.9 123 -456"));
+            collection.addReferenceTransformToAllTiles("move", false);
+        }
+
+        Assert.assertEquals("tile counts differ",
+                            sequentialCollection.getTileCount(), parallelCollection.getTileCount());
+
+        for (final TileSpec sequentialTileSpec : sequentialCollection.getTileSpecs()) {
+            final TileSpec parallelTileSpec = parallelCollection.getTileSpec(sequentialTileSpec.getTileId());
+            final String context = "for tile " + sequentialTileSpec.getTileId();
+            Assert.assertEquals("minX differs " + context, sequentialTileSpec.getMinX(), parallelTileSpec.getMinX());
+            Assert.assertEquals("minY differs " + context, sequentialTileSpec.getMinY(), parallelTileSpec.getMinY());
+            Assert.assertEquals("maxX differs " + context, sequentialTileSpec.getMaxX(), parallelTileSpec.getMaxX());
+            Assert.assertEquals("maxY differs " + context, sequentialTileSpec.getMaxY(), parallelTileSpec.getMaxY());
+        }
+
+        parallelCollection.validateCollection(parallelCollection.getTileSpecs().iterator().next().getZ());
+    }
+
+    private ResolvedTileSpecCollection loadSmallMontage() throws Exception {
+        final File jsonFile = new File("src/test/resources/warp-test/small_montage.json");
+        final List<TileSpec> tileSpecs;
+        try (Reader reader = new FileReader(jsonFile)) {
+            tileSpecs = TileSpec.fromJsonArray(reader);
+        }
+        return new ResolvedTileSpecCollection(new ArrayList<>(), tileSpecs);
+    }
+
     private TransformSpec getTransformSpec(final String transformId) {
         return new LeafTransformSpec(transformId,
                                      null,
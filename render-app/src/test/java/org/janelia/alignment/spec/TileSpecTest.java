@@ -16,11 +16,18 @@
  */
 package org.janelia.alignment.spec;
 
+import java.awt.geom.Rectangle2D;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import mpicbg.trakem2.transform.TranslationModel2D;
+
 import org.janelia.alignment.ImageAndMask;
 import org.junit.Assert;
 import org.junit.Test;
@@ -117,6 +124,64 @@ public class TileSpecTest {
         Assert.assertEquals("incorrect y for localCoordinates", localY, localCoordinates[1], MAX_DOUBLE_DELTA);
     }
 
+    @Test
+    public void testBatchTransform() throws Exception {
+        final byte[] jsonBytes = Files.readAllBytes(Paths.get("src/test/resources/tile-test/tile_with_non_invertible_transforms.json"));
+        final TileSpec tileSpec = TileSpec.fromJson(new String(jsonBytes));
+
+        final double[] xs = { 0, 30, 500, 1000 };
+        final double[] ys = { 0, 40, 700, 100 };
+        final double[][] expected = new double[xs.length][];
+        for (int i = 0; i < xs.length; i++) {
+            expected[i] = tileSpec.getWorldCoordinates(xs[i], ys[i]);
+        }
+
+        tileSpec.applyTransformsInPlace(xs, ys);
+
+        for (int i = 0; i < xs.length; i++) {
+            Assert.assertEquals("incorrect x for point " + i, expected[i][0], xs[i], MAX_DOUBLE_DELTA);
+            Assert.assertEquals("incorrect y for point " + i, expected[i][1], ys[i], MAX_DOUBLE_DELTA);
+        }
+    }
+
+    @Test
+    public void testBatchWorldCoordinatesWithFailingPoint() throws Exception {
+
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setTileId(EXPECTED_TILE_ID);
+        tileSpec.setZ(7.0);
+        tileSpec.addTransformSpecs(Collections.singletonList(
+                new LeafTransformSpec(FailingTranslationModel2D.class.getName(), "10 20")));
+
+        final List<TileCoordinates> localList = Arrays.asList(
+                TileCoordinates.buildLocalInstance(EXPECTED_TILE_ID, new double[] { 1, 2 }),
+                TileCoordinates.buildLocalInstance(EXPECTED_TILE_ID, new double[] { -1, 2 }),
+                TileCoordinates.buildLocalInstance(EXPECTED_TILE_ID, new double[] { 3, 4 }),
+                TileCoordinates.buildLocalInstance("missing-tile-id", new double[] { 5, 6 }));
+
+        final List<Integer> progressCounts = new ArrayList<>();
+        final List<TileCoordinates> worldList =
+                TileCoordinates.getWorldCoordinates(localList,
+                                                    tileId -> EXPECTED_TILE_ID.equals(tileId) ? tileSpec : null,
+                                                    progressCounts::add);
+
+        Assert.assertEquals("invalid number of world coordinates", localList.size(), worldList.size());
+
+        Assert.assertFalse("first point should not have error", worldList.get(0).hasError());
+        Assert.assertArrayEquals("invalid world values for first point",
+                                 new double[] { 11, 22, 7 }, worldList.get(0).getWorld(), MAX_DOUBLE_DELTA);
+
+        Assert.assertTrue("failing point should have error", worldList.get(1).hasError());
+
+        Assert.assertFalse("point after failing point should not have error", worldList.get(2).hasError());
+        Assert.assertArrayEquals("invalid world values for point after failing point",
+                                 new double[] { 13, 24, 7 }, worldList.get(2).getWorld(), MAX_DOUBLE_DELTA);
+
+        Assert.assertTrue("point for missing tile should have error", worldList.get(3).hasError());
+
+        Assert.assertEquals("invalid progress counts", Arrays.asList(3, 4), progressCounts);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testValidateWithMissingMipmaps() throws Exception {
 
@@ -180,6 +245,31 @@ public class TileSpecTest {
                  iterations, sloppyTime, meshTime);
     }
 
+    @Test
+    public void testDeriveBoundingBoxForCollection() throws Exception {
+        final String json = new String(Files.readAllBytes(Paths.get("src/test/resources/tile-test/tile_with_only_affine_transforms.json")));
+
+        final List<TileSpec> tileSpecs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final TileSpec tileSpec = TileSpec.fromJson(json);
+            tileSpec.setTileId("tile-" + i);
+            tileSpec.addTransformSpecs(Collections.singletonList(
+                    new LeafTransformSpec(TranslationModel2D.class.getName(), (i * 1000) + " " + (i * 500))));
+            tileSpecs.add(tileSpec);
+        }
+
+        final Rectangle2D.Double sequentialBox = TileSpec.deriveBoundingBox(tileSpecs, 64, true, null);
+
+        final Rectangle2D.Double parallelBox = new Rectangle2D.Double();
+        TileSpec.deriveBoundingBox(tileSpecs, 64, true, parallelBox, 3);
+
+        Assert.assertEquals("parallel box differs from sequential box", sequentialBox, parallelBox);
+        Assert.assertEquals("incorrect minX", 1108.0, parallelBox.getMinX(), MAX_DOUBLE_DELTA);
+        Assert.assertEquals("incorrect maxX", 19000.0 + 3774.0, parallelBox.getMaxX(), MAX_DOUBLE_DELTA);
+        Assert.assertEquals("incorrect minY", 1957.0, parallelBox.getMinY(), MAX_DOUBLE_DELTA);
+        Assert.assertEquals("incorrect maxY", 9500.0 + 4265.0, parallelBox.getMaxY(), MAX_DOUBLE_DELTA);
+    }
+
     private long getDerivationTime(final TileSpec tileSpec,
                                    final boolean sloppy,
                                    final int iterations) {
@@ -190,6 +280,19 @@ public class TileSpecTest {
         return System.currentTimeMillis() - start;
     }
 
+    /**
+     * Translation that fails for points with negative x values.
+     */
+    public static class FailingTranslationModel2D extends TranslationModel2D {
+        @Override
+        public void applyInPlace(final double[] location) {
+            if (location[0] < 0) {
+                throw new IllegalArgumentException("negative x is not supported");
+            }
+            super.applyInPlace(location);
+        }
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(TileSpecTest.class);
 
     private static final String EXPECTED_TILE_ID = "test-tile-id";
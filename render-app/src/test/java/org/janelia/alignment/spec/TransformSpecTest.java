@@ -170,6 +170,28 @@ public class TransformSpecTest {
 
     }
 
+    @Test
+    public void testFlattenDoesNotModifyChildren() throws Exception {
+
+        final Map<String, TransformSpec> idToSpecMap = new HashMap<>();
+        idToSpecMap.put(ref1.getRefId(), leaf1);
+        idToSpecMap.put(ref99.getRefId(), leaf2);
+        list6.resolveReferences(idToSpecMap);
+
+        final String roughLabel = "rough";
+        list4.addLabel(roughLabel);
+
+        final ListTransformSpec flattenedList = list6.flattenAndFilter(Collections.singleton(roughLabel), null);
+
+        Assert.assertEquals("incorrect size for flattened list", 4, flattenedList.size());
+        Assert.assertTrue("flattened leaf 2 is missing parent label",
+                          flattenedList.getSpec(3).hasLabel(roughLabel));
+
+        Assert.assertNull("leaf 1 meta data should not be modified by flatten", leaf1.getMetaData());
+        Assert.assertNull("leaf 2 meta data should not be modified by flatten", leaf2.getMetaData());
+        Assert.assertFalse("leaf 3 should not get parent label", leaf3.hasLabel(roughLabel));
+    }
+
     @Test
     public void testGetNewInstance() throws Exception {
 
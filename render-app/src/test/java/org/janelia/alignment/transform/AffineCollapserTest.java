@@ -0,0 +1,225 @@
+package org.janelia.alignment.transform;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.List;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.models.RigidModel2D;
+import mpicbg.models.TranslationModel2D;
+import mpicbg.trakem2.transform.TransformMesh;
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.janelia.alignment.TransformableCanvas;
+import org.janelia.alignment.mipmap.MipmapSource;
+import org.janelia.alignment.mipmap.RenderedCanvasMipmapSource;
+import org.janelia.alignment.mipmap.UrlMipmapSource;
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.ListTransformSpec;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.TransformSpecMetaData;
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AffineCollapser} class.
+ */
+public class AffineCollapserTest {
+
+    @Test
+    public void testCollapse() throws Exception {
+
+        final TranslationModel2D translation = new TranslationModel2D();
+        translation.set(12.0, -7.0);
+
+        final RigidModel2D rigid = new RigidModel2D();
+        rigid.set(0.3, 5.0, 11.0);
+
+        final AffineModel2D affine = new AffineModel2D();
+        affine.set(1.1, 0.02, -0.03, 0.95, 100.0, 200.0);
+
+        final CoordinateTransform nonLinear = new CoordinateTransform() {
+            @Override
+            public double[] apply(final double[] location) {
+                final double[] out = location.clone();
+                applyInPlace(out);
+                return out;
+            }
+
+            @Override
+            public void applyInPlace(final double[] location) {
+                location[0] = location[0] + (0.0001 * location[0] * location[1]);
+                location[1] = location[1] - (0.0002 * location[0] * location[0]);
+            }
+        };
+
+        final CoordinateTransformList<CoordinateTransform> nestedList = new CoordinateTransformList<>();
+        nestedList.add(rigid);
+        nestedList.add(affine);
+
+        final CoordinateTransformList<CoordinateTransform> list = new CoordinateTransformList<>();
+        list.add(nonLinear);
+        list.add(translation);
+        list.add(nestedList);
+        list.add(affine);
+
+        final CoordinateTransformList<CoordinateTransform> collapsedList = AffineCollapser.collapse(list);
+
+        final List<CoordinateTransform> collapsedTransforms = collapsedList.getList(null);
+        Assert.assertEquals("invalid number of collapsed transforms", 2, collapsedTransforms.size());
+        Assert.assertSame("non-affine transform should be retained", nonLinear, collapsedTransforms.get(0));
+        Assert.assertTrue("affines should be collapsed", collapsedTransforms.get(1) instanceof AffineModel2D);
+
+        for (double x = -500; x <= 3000; x += 350) {
+            for (double y = -200; y <= 2500; y += 270) {
+                final double[] expected = list.apply(new double[] { x, y });
+                final double[] actual = collapsedList.apply(new double[] { x, y });
+                Assert.assertEquals("invalid x for (" + x + ", " + y + ")", expected[0], actual[0], 0.000001);
+                Assert.assertEquals("invalid y for (" + x + ", " + y + ")", expected[1], actual[1], 0.000001);
+            }
+        }
+    }
+
+    @Test
+    public void testCollapseSpecs() throws Exception {
+
+        final TransformSpecMetaData lensMetaData = new TransformSpecMetaData();
+        lensMetaData.addLabel(TransformSpecMetaData.LENS_CORRECTION_LABEL);
+        final LeafTransformSpec lensSpec =
+                new LeafTransformSpec("lens", lensMetaData, POLYNOMIAL_CLASS_NAME, POLYNOMIAL_DATA_STRING);
+
+        final TransformSpecMetaData montageMetaData = new TransformSpecMetaData();
+        montageMetaData.addLabel("montage");
+
+        final ListTransformSpec nestedListSpec = new ListTransformSpec();
+        nestedListSpec.addSpec(new LeafTransformSpec("montage", montageMetaData, AFFINE_CLASS_NAME, AFFINE_DATA_A));
+        nestedListSpec.addSpec(new LeafTransformSpec(TRANSLATION_CLASS_NAME, "10 -20"));
+
+        final ListTransformSpec listSpec = new ListTransformSpec();
+        listSpec.addSpec(lensSpec);
+        listSpec.addSpec(nestedListSpec);
+        listSpec.addSpec(new LeafTransformSpec(AFFINE_CLASS_NAME, AFFINE_DATA_B));
+
+        final ListTransformSpec collapsedListSpec = AffineCollapser.collapse(listSpec);
+
+        Assert.assertEquals("invalid number of collapsed specs", 2, collapsedListSpec.size());
+        Assert.assertSame("non-affine spec should be retained", lensSpec, collapsedListSpec.getSpec(0));
+        Assert.assertTrue("labels should be kept for collapsed spec",
+                          collapsedListSpec.getSpec(1).hasLabel("montage"));
+
+        final CoordinateTransformList<CoordinateTransform> list = listSpec.getNewInstanceAsList();
+        final CoordinateTransformList<CoordinateTransform> collapsedList = collapsedListSpec.getNewInstanceAsList();
+
+        for (double x = 0; x <= 2000; x += 250) {
+            for (double y = 0; y <= 1500; y += 250) {
+                final double[] expected = list.apply(new double[] { x, y });
+                final double[] actual = collapsedList.apply(new double[] { x, y });
+                Assert.assertEquals("invalid x for (" + x + ", " + y + ")", expected[0], actual[0], 0.000001);
+                Assert.assertEquals("invalid y for (" + x + ", " + y + ")", expected[1], actual[1], 0.000001);
+            }
+        }
+    }
+
+    @Test
+    public void testCollapsedMeshAndRender() throws Exception {
+
+        final TileSpec tileSpec = TileSpec.fromJson(TILE_SPEC_JSON);
+
+        final CoordinateTransformList<CoordinateTransform> exactList = tileSpec.getTransformList();
+        final CoordinateTransformList<CoordinateTransform> collapsedList = tileSpec.getCollapsedTransformList();
+
+        Assert.assertEquals("exact list should not be collapsed", 3, exactList.getList(null).size());
+        Assert.assertEquals("invalid collapsed list size", 1, collapsedList.getList(null).size());
+
+        final double meshCellSize = 64.0;
+        final TransformMesh exactMesh = new TransformMesh(exactList,
+                                                          tileSpec.getNumberOfTrianglesCoveringWidth(meshCellSize),
+                                                          tileSpec.getWidth(),
+                                                          tileSpec.getHeight());
+        final TransformMesh collapsedMesh = tileSpec.getTransformMesh(meshCellSize);
+
+        for (double x = 0; x <= tileSpec.getWidth(); x += 100) {
+            for (double y = 0; y <= tileSpec.getHeight(); y += 100) {
+                final double[] expected = exactMesh.apply(new double[] { x, y });
+                final double[] actual = collapsedMesh.apply(new double[] { x, y });
+                Assert.assertEquals("invalid mesh x for (" + x + ", " + y + ")", expected[0], actual[0], 0.000001);
+                Assert.assertEquals("invalid mesh y for (" + x + ", " + y + ")", expected[1], actual[1], 0.000001);
+            }
+        }
+
+        final Rectangle box = exactMesh.getBoundingBox();
+        final ImageProcessorWithMasks exactImage = render(tileSpec, exactList, box, meshCellSize);
+        final ImageProcessorWithMasks collapsedImage = render(tileSpec, collapsedList, box, meshCellSize);
+
+        Assert.assertEquals("invalid rendered pixel count",
+                            exactImage.ip.getPixelCount(), collapsedImage.ip.getPixelCount());
+
+        for (int i = 0; i < exactImage.ip.getPixelCount(); i++) {
+            Assert.assertEquals("invalid intensity for rendered pixel " + i,
+                                exactImage.ip.getf(i), collapsedImage.ip.getf(i), 1.0);
+        }
+    }
+
+    private static ImageProcessorWithMasks render(final TileSpec tileSpec,
+                                                  final CoordinateTransformList<CoordinateTransform> transformList,
+                                                  final Rectangle box,
+                                                  final double meshCellSize) {
+
+        final MipmapSource source = new UrlMipmapSource(tileSpec.getTileId(),
+                                                        tileSpec.getWidth(),
+                                                        tileSpec.getHeight(),
+                                                        tileSpec.getChannels(Collections.singleton(null)),
+                                                        null,
+                                                        null,
+                                                        true,
+                                                        ImageProcessorCache.DISABLED_CACHE);
+
+        final RenderedCanvasMipmapSource canvas =
+                new RenderedCanvasMipmapSource("test",
+                                               Collections.singleton(null),
+                                               Collections.singletonList(new TransformableCanvas(source,
+                                                                                                 transformList)),
+                                               box.getX(),
+                                               box.getY(),
+                                               (int) box.getWidth(),
+                                               (int) box.getHeight(),
+                                               meshCellSize,
+                                               0.5,
+                                               1,
+                                               false,
+                                               false,
+                                               false);
+
+        return canvas.getChannels(0).get(null);
+    }
+
+    private static final String AFFINE_CLASS_NAME = mpicbg.trakem2.transform.AffineModel2D.class.getName();
+    private static final String TRANSLATION_CLASS_NAME =
+            mpicbg.trakem2.transform.TranslationModel2D.class.getName();
+    private static final String POLYNOMIAL_CLASS_NAME =
+            mpicbg.trakem2.transform.PolynomialTransform2D.class.getName();
+
+    private static final String AFFINE_DATA_A = "0.99414426 -0.057523947 0.05564594 1.0000075 1108.6772 2104.6455";
+    private static final String AFFINE_DATA_B = "1.002662 0.057676636 -0.055793643 0.9967831 -994.2026 -2161.8198";
+    private static final String POLYNOMIAL_DATA_STRING = "2 0.0 1.0 0.0 0.00001 0.0 0.0 0.0 0.0 1.0 0.0 0.0 0.00002";
+
+    private static final String TILE_SPEC_JSON =
+            "{\n" +
+            "  \"tileId\": \"affine-chain\", \"z\": 1.0, \"width\": 1325, \"height\": 1130,\n" +
+            "  \"mipmapLevels\": {\n" +
+            "    \"0\": { \"imageUrl\": \"src/test/resources/stitch-test/col0075_row0021_cam1.png_level_1_mipmap.png\" }\n" +
+            "  },\n" +
+            "  \"transforms\": {\n" +
+            "    \"type\": \"list\",\n" +
+            "    \"specList\": [\n" +
+            "      { \"className\": \"" + AFFINE_CLASS_NAME + "\", \"dataString\": \"" + AFFINE_DATA_A + "\" },\n" +
+            "      { \"className\": \"" + TRANSLATION_CLASS_NAME + "\", \"dataString\": \"10 -20\" },\n" +
+            "      { \"className\": \"" + AFFINE_CLASS_NAME + "\", \"dataString\": \"" + AFFINE_DATA_B + "\" }\n" +
+            "    ]\n" +
+            "  }\n" +
+            "}";
+
+}
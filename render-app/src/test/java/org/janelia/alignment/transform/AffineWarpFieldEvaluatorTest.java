@@ -0,0 +1,83 @@
+package org.janelia.alignment.transform;
+
+import java.util.Random;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.composite.RealComposite;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AffineWarpFieldEvaluator} class.
+ */
+public class AffineWarpFieldEvaluatorTest {
+
+    @Test
+    public void testNLinearMatchesAccessor() throws Exception {
+        compareWithAccessor(new NLinearInterpolatorFactory<>());
+    }
+
+    @Test
+    public void testNearestNeighborMatchesAccessor() throws Exception {
+        compareWithAccessor(new NearestNeighborInterpolatorFactory<>());
+    }
+
+    private void compareWithAccessor(final InterpolatorFactory<RealComposite<DoubleType>, RandomAccessible<RealComposite<DoubleType>>> factory) {
+
+        final Random random = new Random(31);
+
+        final double width = 1000.0;
+        final double height = 700.0;
+        final int rowCount = 3;
+        final int columnCount = 4;
+
+        final AffineWarpField affineWarpField = new AffineWarpField(width, height, rowCount, columnCount, factory);
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                affineWarpField.set(row, column, new double[] {
+                        0.9 + (0.2 * random.nextDouble()),
+                        0.1 * random.nextDouble(),
+                        0.1 * random.nextDouble(),
+                        0.9 + (0.2 * random.nextDouble()),
+                        100 * random.nextDouble(),
+                        100 * random.nextDouble()
+                });
+            }
+        }
+
+        final AffineWarpFieldEvaluator evaluator = new AffineWarpFieldEvaluator(affineWarpField);
+        final RealRandomAccess<RealComposite<DoubleType>> accessor = affineWarpField.getAccessor();
+
+        // include locations outside of the field to verify border extension
+        for (int i = 0; i < 1000; i++) {
+
+            final double[] location = {
+                    (random.nextDouble() * 1.4 * width) - (0.2 * width),
+                    (random.nextDouble() * 1.4 * height) - (0.2 * height)
+            };
+
+            accessor.setPosition(location);
+            final RealComposite<DoubleType> coefficients = accessor.get();
+            final double expectedX = location[0] * coefficients.get(0).getRealDouble() +
+                                     location[1] * coefficients.get(2).getRealDouble() +
+                                     coefficients.get(4).getRealDouble();
+            final double expectedY = location[0] * coefficients.get(1).getRealDouble() +
+                                     location[1] * coefficients.get(3).getRealDouble() +
+                                     coefficients.get(5).getRealDouble();
+
+            final String context = "for (" + location[0] + ", " + location[1] + ")";
+
+            evaluator.applyInPlace(location);
+
+            Assert.assertEquals("invalid x " + context, expectedX, location[0], 0.000001);
+            Assert.assertEquals("invalid y " + context, expectedY, location[1], 0.000001);
+        }
+    }
+
+}
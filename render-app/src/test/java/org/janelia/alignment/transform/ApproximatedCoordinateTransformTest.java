@@ -0,0 +1,206 @@
+package org.janelia.alignment.transform;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.trakem2.transform.ThinPlateSplineTransform;
+
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.ReferenceTransformSpec;
+import org.janelia.alignment.spec.ResolvedTileSpecCollection;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.warp.ThinPlateSplineBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ApproximatedCoordinateTransform} class.
+ */
+public class ApproximatedCoordinateTransformTest {
+
+    @Test
+    public void testThinPlateSplineApproximation() throws Exception {
+
+        final List<TileSpec> montageTiles = getTiles("small_montage.json");
+        final List<TileSpec> alignTiles = getTiles("small_align.json");
+
+        final ThinPlateSplineTransform tps = new ThinPlateSplineBuilder(montageTiles, alignTiles).call();
+
+        final TileSpec tileSpec = montageTiles.get(0);
+        tileSpec.addTransformSpecs(Collections.singletonList(
+                new LeafTransformSpec(tps.getClass().getName(), tps.toDataString())));
+
+        final double maxError = 0.1;
+        final double meshCellSize = tileSpec.getMeshCellSize();
+        final CoordinateTransformList<CoordinateTransform> exactList = tileSpec.getTransformList();
+        final CoordinateTransformList<CoordinateTransform> approximatedList =
+                ApproximatedCoordinateTransform.approximateThinPlateSplines(tileSpec.getTransformList(),
+                                                                            tileSpec.getWidth(),
+                                                                            tileSpec.getHeight(),
+                                                                            meshCellSize,
+                                                                            maxError);
+
+        final List<CoordinateTransform> approximatedTransforms = approximatedList.getList(null);
+        final CoordinateTransform lastTransform = approximatedTransforms.get(approximatedTransforms.size() - 1);
+        Assert.assertTrue("thin plate spline was not replaced",
+                          lastTransform instanceof ApproximatedCoordinateTransform);
+
+        int comparisonCount = 0;
+        for (double x = 0; x <= tileSpec.getWidth(); x += 37) {
+            for (double y = 0; y <= tileSpec.getHeight(); y += 41) {
+                final double[] expected = exactList.apply(new double[] { x, y });
+                final double[] actual = approximatedList.apply(new double[] { x, y });
+                final double distance = Math.hypot(expected[0] - actual[0], expected[1] - actual[1]);
+                Assert.assertTrue("approximation error " + distance + " for (" + x + ", " + y + ") is too large",
+                                  distance <= maxError);
+                comparisonCount++;
+            }
+        }
+
+        Assert.assertTrue("no points were compared", comparisonCount > 0);
+    }
+
+    @Test
+    public void testNestedThinPlateSplineApproximation() throws Exception {
+
+        final List<TileSpec> montageTiles = getTiles("small_montage.json");
+        final List<TileSpec> alignTiles = getTiles("small_align.json");
+
+        final ThinPlateSplineTransform tps = new ThinPlateSplineBuilder(montageTiles, alignTiles).call();
+
+        final TileSpec tileSpec = montageTiles.get(0);
+        final CoordinateTransformList<CoordinateTransform> nestedList = new CoordinateTransformList<>();
+        nestedList.add(tps);
+        final CoordinateTransformList<CoordinateTransform> list = tileSpec.getTransformList();
+        list.add(nestedList);
+
+        final CoordinateTransformList<CoordinateTransform> approximatedList =
+                ApproximatedCoordinateTransform.approximateThinPlateSplines(list,
+                                                                            tileSpec.getWidth(),
+                                                                            tileSpec.getHeight(),
+                                                                            tileSpec.getMeshCellSize(),
+                                                                            0.1);
+
+        final List<CoordinateTransform> approximatedTransforms = approximatedList.getList(null);
+        final CoordinateTransform lastTransform = approximatedTransforms.get(approximatedTransforms.size() - 1);
+        Assert.assertTrue("nested thin plate spline was not replaced",
+                          lastTransform instanceof ApproximatedCoordinateTransform);
+    }
+
+    @Test
+    public void testSharedThinPlateSplineApproximation() throws Exception {
+
+        final List<TileSpec> montageTiles = getTiles("small_montage.json");
+        final List<TileSpec> alignTiles = getTiles("small_align.json");
+
+        final ThinPlateSplineTransform tps = new ThinPlateSplineBuilder(montageTiles, alignTiles).call();
+        final LeafTransformSpec tpsSpec = new LeafTransformSpec(tps.getClass().getName(), tps.toDataString());
+
+        final double maxError = 0.1;
+        final double meshCellSize = montageTiles.get(0).getMeshCellSize();
+        final ThinPlateSplineApproximationCache cache = new ThinPlateSplineApproximationCache(meshCellSize, maxError);
+
+        final List<CoordinateTransformList<CoordinateTransform>> registeredLists = new ArrayList<>();
+        for (final TileSpec tileSpec : montageTiles) {
+            tileSpec.addTransformSpecs(Collections.singletonList(tpsSpec));
+            registeredLists.add(cache.register(tileSpec.getTransformList(),
+                                               tileSpec.getWidth(),
+                                               tileSpec.getHeight()));
+        }
+
+        Assert.assertEquals("all tiles should share one spline", 1, cache.size());
+
+        CoordinateTransform sharedApproximation = null;
+        for (int i = 0; i < montageTiles.size(); i++) {
+
+            final TileSpec tileSpec = montageTiles.get(i);
+            final CoordinateTransformList<CoordinateTransform> exactList = tileSpec.getTransformList();
+            final CoordinateTransformList<CoordinateTransform> approximatedList =
+                    cache.approximate(registeredLists.get(i));
+
+            final List<CoordinateTransform> approximatedTransforms = approximatedList.getList(null);
+            final CoordinateTransform lastTransform = approximatedTransforms.get(approximatedTransforms.size() - 1);
+            Assert.assertTrue("thin plate spline was not replaced for tile " + i,
+                              lastTransform instanceof ApproximatedCoordinateTransform);
+            if (sharedApproximation == null) {
+                sharedApproximation = lastTransform;
+            } else {
+                Assert.assertSame("approximation should be shared by tile " + i, sharedApproximation, lastTransform);
+            }
+
+            for (double x = 0; x <= tileSpec.getWidth(); x += 97) {
+                for (double y = 0; y <= tileSpec.getHeight(); y += 89) {
+                    final double[] expected = exactList.apply(new double[] { x, y });
+                    final double[] actual = approximatedList.apply(new double[] { x, y });
+                    final double distance = Math.hypot(expected[0] - actual[0], expected[1] - actual[1]);
+                    Assert.assertTrue("approximation error " + distance + " for (" + x + ", " + y +
+                                      ") in tile " + i + " is too large",
+                                      distance <= maxError);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testApproximatedBoundingBoxes() throws Exception {
+
+        final ThinPlateSplineTransform tps =
+                new ThinPlateSplineBuilder(getTiles("small_montage.json"), getTiles("small_align.json")).call();
+        final LeafTransformSpec tpsSpec = new LeafTransformSpec("tps", null, tps.getClass().getName(), tps.toDataString());
+
+        final List<TileSpec> exactTiles = getTiles("small_montage.json");
+        for (final TileSpec tileSpec : exactTiles) {
+            tileSpec.addTransformSpecs(Collections.singletonList(tpsSpec));
+            tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(), true);
+        }
+
+        final List<TileSpec> approximatedTiles = getTiles("small_montage.json");
+        for (final TileSpec tileSpec : approximatedTiles) {
+            tileSpec.addTransformSpecs(Collections.singletonList(new ReferenceTransformSpec("tps")));
+        }
+
+        final ResolvedTileSpecCollection collection =
+                new ResolvedTileSpecCollection(Collections.singletonList(tpsSpec), approximatedTiles);
+        collection.setNumberOfThreads(2);
+        collection.recalculateBoundingBoxes();
+
+        for (final TileSpec exactTile : exactTiles) {
+            final TileSpec approximatedTile = collection.getTileSpec(exactTile.getTileId());
+            final String context = " for tile " + exactTile.getTileId();
+            Assert.assertEquals("invalid minX" + context, exactTile.getMinX(), approximatedTile.getMinX(), 1.0);
+            Assert.assertEquals("invalid minY" + context, exactTile.getMinY(), approximatedTile.getMinY(), 1.0);
+            Assert.assertEquals("invalid maxX" + context, exactTile.getMaxX(), approximatedTile.getMaxX(), 1.0);
+            Assert.assertEquals("invalid maxY" + context, exactTile.getMaxY(), approximatedTile.getMaxY(), 1.0);
+        }
+    }
+
+    @Test
+    public void testListWithoutThinPlateSpline() throws Exception {
+
+        final TileSpec tileSpec = getTiles("small_montage.json").get(0);
+        final CoordinateTransformList<CoordinateTransform> list = tileSpec.getTransformList();
+
+        Assert.assertSame("list without thin plate spline should not be copied",
+                          list,
+                          ApproximatedCoordinateTransform.approximateThinPlateSplines(list,
+                                                                                      tileSpec.getWidth(),
+                                                                                      tileSpec.getHeight(),
+                                                                                      tileSpec.getMeshCellSize(),
+                                                                                      0.1));
+    }
+
+    private List<TileSpec> getTiles(final String jsonFileName) throws IOException {
+        final File jsonFile = new File("src/test/resources/warp-test/" + jsonFileName);
+        try (Reader reader = new FileReader(jsonFile)) {
+            return TileSpec.fromJsonArray(reader);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.janelia.alignment.transform;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
+
+import mpicbg.models.CoordinateTransformMesh;
+import mpicbg.models.NoninvertibleModelException;
+
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.TileSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link InverseTransformMeshIndex} class.
+ */
+public class InverseTransformMeshIndexTest {
+
+    @Test
+    public void testIndexMatchesMesh() throws Exception {
+
+        final File jsonFile = new File("src/test/resources/warp-test/small_montage.json");
+        final List<TileSpec> tileSpecs;
+        try (Reader reader = new FileReader(jsonFile)) {
+            tileSpecs = TileSpec.fromJsonArray(reader);
+        }
+
+        final TileSpec tileSpec = tileSpecs.get(0);
+        final double meshCellSize = tileSpec.getMeshCellSize();
+
+        final CoordinateTransformMesh mesh = tileSpec.getCoordinateTransformMesh(meshCellSize);
+        final InverseTransformMeshIndex index = tileSpec.getInverseTransformIndex(meshCellSize);
+
+        Assert.assertTrue("index should contain triangles", index.getNumberOfTriangles() > 0);
+        Assert.assertSame("index should be cached", index, tileSpec.getInverseTransformIndex(meshCellSize));
+
+        int comparisonCount = 0;
+        for (double localX = 5; localX < tileSpec.getWidth(); localX += 97) {
+            for (double localY = 5; localY < tileSpec.getHeight(); localY += 89) {
+
+                final double[] world = tileSpec.getWorldCoordinates(localX, localY);
+                final double[] point = new double[] { world[0], world[1] };
+
+                double[] expected;
+                try {
+                    expected = mesh.applyInverse(point);
+                } catch (final NoninvertibleModelException e) {
+                    expected = null;
+                }
+
+                if (expected != null) {
+                    final double[] actual = index.applyInverse(point);
+                    Assert.assertEquals("invalid x for " + localX + ", " + localY, expected[0], actual[0], 0.001);
+                    Assert.assertEquals("invalid y for " + localX + ", " + localY, expected[1], actual[1], 0.001);
+                    comparisonCount++;
+                }
+            }
+        }
+
+        Assert.assertTrue("no points were compared", comparisonCount > 0);
+    }
+
+    @Test
+    public void testIndexIsRebuiltWhenTransformsChange() throws Exception {
+
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setWidth(100.0);
+        tileSpec.setHeight(100.0);
+        tileSpec.addTransformSpecs(Collections.singletonList(
+                new LeafTransformSpec(AFFINE_CLASS_NAME, "1 0 0 1 0 0")));
+
+        final double meshCellSize = tileSpec.getMeshCellSize();
+        final InverseTransformMeshIndex originalIndex = tileSpec.getInverseTransformIndex(meshCellSize);
+
+        // change the list directly (bypassing the tile spec's setters)
+        tileSpec.getTransforms().addSpec(new LeafTransformSpec(AFFINE_CLASS_NAME, "1 0 0 1 1000 0"));
+
+        final InverseTransformMeshIndex changedIndex = tileSpec.getInverseTransformIndex(meshCellSize);
+        Assert.assertNotSame("index should have been rebuilt after list change", originalIndex, changedIndex);
+
+        final double[] local = changedIndex.applyInverse(new double[] { 1050.0, 50.0 });
+        Assert.assertEquals("invalid x for changed transforms", 50.0, local[0], 0.001);
+
+        tileSpec.flattenTransforms();
+        Assert.assertNotSame("index should have been rebuilt after flatten",
+                             changedIndex, tileSpec.getInverseTransformIndex(meshCellSize));
+    }
+
+    @Test(expected = NoninvertibleModelException.class)
+    public void testPointOutsideMesh() throws Exception {
+
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setWidth(100.0);
+        tileSpec.setHeight(100.0);
+
+        final InverseTransformMeshIndex index = tileSpec.getInverseTransformIndex(tileSpec.getMeshCellSize());
+        index.applyInverse(new double[] { 500.0, 500.0 });
+    }
+
+    private static final String AFFINE_CLASS_NAME = "mpicbg.trakem2.transform.AffineModel2D";
+}
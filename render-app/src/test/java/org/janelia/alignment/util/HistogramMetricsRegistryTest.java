@@ -0,0 +1,55 @@
+package org.janelia.alignment.util;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link HistogramMetricsRegistry} class.
+ */
+public class HistogramMetricsRegistryTest {
+
+    @Test
+    public void testRecording() throws Exception {
+
+        final HistogramMetricsRegistry registry = new HistogramMetricsRegistry();
+
+        registry.recordTime("a", 0);
+        registry.recordTime("a", 5);
+        registry.recordTime("a", 6);
+        registry.recordTime("a", 20000);
+        registry.recordTime("b", 100);
+
+        registry.incrementCounter("c", 1);
+        registry.incrementCounter("c", 2);
+
+        final Map<String, HistogramMetricsRegistry.TimerSnapshot> snapshots = registry.getTimerSnapshots();
+        Assert.assertEquals("invalid number of timers", 2, snapshots.size());
+
+        final HistogramMetricsRegistry.TimerSnapshot a = snapshots.get("a");
+        Assert.assertEquals("invalid count for a", 4, a.getCount());
+        Assert.assertEquals("invalid sum for a", 20011, a.getSumMilliseconds());
+
+        final long[] bucketCounts = a.getBucketCounts();
+        final int numberOfBuckets = HistogramMetricsRegistry.BUCKET_UPPER_BOUNDS_MILLISECONDS.length + 1;
+        Assert.assertEquals("invalid number of buckets", numberOfBuckets, bucketCounts.length);
+        Assert.assertEquals("invalid <= 1ms bucket count", 1, bucketCounts[0]);
+        Assert.assertEquals("invalid <= 5ms bucket count", 1, bucketCounts[1]);
+        Assert.assertEquals("invalid <= 10ms bucket count", 1, bucketCounts[2]);
+        Assert.assertEquals("invalid overflow bucket count", 1, bucketCounts[numberOfBuckets - 1]);
+
+        final long[] cumulativeCounts = a.getCumulativeBucketCounts();
+        Assert.assertEquals("invalid cumulative <= 10ms count", 3, cumulativeCounts[2]);
+        Assert.assertEquals("invalid cumulative <= 10000ms count", 3, cumulativeCounts[numberOfBuckets - 2]);
+        Assert.assertEquals("invalid cumulative total", 4, cumulativeCounts[numberOfBuckets - 1]);
+
+        Assert.assertEquals("invalid counter value", Long.valueOf(3), registry.getCounterValues().get("c"));
+
+        registry.clear();
+
+        Assert.assertEquals("timers not cleared", 0, registry.getTimerSnapshots().size());
+        Assert.assertEquals("counters not cleared", 0, registry.getCounterValues().size());
+    }
+
+}
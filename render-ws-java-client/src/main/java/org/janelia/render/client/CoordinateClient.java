@@ -2,6 +2,10 @@ package org.janelia.render.client;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParametersDelegate;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -10,6 +14,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.Writer;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -22,9 +27,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.TileCoordinates;
 import org.janelia.alignment.spec.TileSpec;
@@ -119,6 +129,20 @@ public class CoordinateClient {
                 required = false)
         public int numberOfThreads = 1;
 
+        @Parameter(
+                names = "--streamingChunkSize",
+                description = "Stream --fromJson coordinates through the mapping process in chunks of this size " +
+                              "instead of loading them all into memory (only supported for JSON input and output)",
+                required = false)
+        public Integer streamingChunkSize;
+
+        @Parameter(
+                names = "--maxCachedTiles",
+                description = "Maximum number of resolved tile specs (with their transform meshes) to cache " +
+                              "for reuse across coordinate batches",
+                required = false)
+        public int maxCachedTiles = DEFAULT_MAX_CACHED_TILES;
+
         public String getToOwner() {
             if (toOwner == null) {
                 toOwner = renderWeb.owner;
@@ -167,10 +191,18 @@ public class CoordinateClient {
                     throw new IllegalArgumentException("--toStack must be specified for SWC mapping");
                 }
 
+                if (streamingChunkSize != null) {
+                    throw new IllegalArgumentException("--streamingChunkSize is only supported for --fromJson input");
+                }
+
             } else if (toJson == null) {
 
                 throw new IllegalArgumentException("must specify output location with --toJson");
 
+            } else if ((streamingChunkSize != null) && (streamingChunkSize < 1)) {
+
+                throw new IllegalArgumentException("--streamingChunkSize must be greater than zero");
+
             } else {
 
                 file = new File(fromJson).getAbsoluteFile();
@@ -209,11 +241,36 @@ public class CoordinateClient {
                 final CoordinateClient client = new CoordinateClient(parameters.stack,
                                                                      parameters.z,
                                                                      renderDataClient,
-                                                                     parameters.numberOfThreads);
+                                                                     parameters.numberOfThreads,
+                                                                     parameters.maxCachedTiles);
                 SWCHelper swcHelper = null;
                 Object coordinatesToSave = null;
 
-                if (parameters.localToWorld) {
+                if ((parameters.streamingChunkSize != null) && (parameters.fromJson != null)) {
+
+                    CoordinateClient targetClient = null;
+                    if (parameters.toStack != null) {
+                        final RenderDataClient targetRenderDataClient =
+                                new RenderDataClient(parameters.renderWeb.baseDataUrl,
+                                                     parameters.getToOwner(),
+                                                     parameters.getToProject());
+                        targetClient = new CoordinateClient(parameters.toStack,
+                                                            null,
+                                                            targetRenderDataClient,
+                                                            parameters.numberOfThreads,
+                                                            parameters.maxCachedTiles);
+                    }
+
+                    client.mapJsonStream(parameters.fromJson,
+                                         parameters.toJson,
+                                         parameters.localToWorld,
+                                         targetClient,
+                                         parameters.streamingChunkSize);
+
+                    // results have already been written
+                    return;
+
+                } else if (parameters.localToWorld) {
 
                     final List<List<TileCoordinates>> loadedLocalCoordinates =
                             loadJsonArrayOfArraysOfCoordinates(parameters.fromJson);
@@ -235,7 +292,8 @@ public class CoordinateClient {
                     final CoordinateClient targetClient = new CoordinateClient(parameters.toStack,
                                                                                null,
                                                                                targetRenderDataClient,
-                                                                               parameters.numberOfThreads);
+                                                                               parameters.numberOfThreads,
+                                                                               parameters.maxCachedTiles);
 
                     final List<TileCoordinates> worldCoordinates;
 
@@ -280,15 +338,42 @@ public class CoordinateClient {
     private final Double z;
     private final RenderDataClient renderDataClient;
     private final int numberOfThreads;
+    private final Map<String, TileSpec> tileCache;
+    private ExecutorService executorService;
 
     public CoordinateClient(final String stack,
                             final Double z,
                             final RenderDataClient renderDataClient,
                             final int numberOfThreads) {
+        this(stack, z, renderDataClient, numberOfThreads, DEFAULT_MAX_CACHED_TILES);
+    }
+
+    /**
+     * @param  stack             name of stack.
+     * @param  z                 z value for all source coordinates (or null if coordinates include z).
+     * @param  renderDataClient  client for retrieving tile data.
+     * @param  numberOfThreads   number of threads to use for mapping.
+     * @param  maxCachedTiles    maximum number of resolved tile specs to retain for reuse across batches.
+     *                           Cached tiles keep their inverse transform index, so this bound also
+     *                           limits the memory used for transform meshes.
+     */
+    public CoordinateClient(final String stack,
+                            final Double z,
+                            final RenderDataClient renderDataClient,
+                            final int numberOfThreads,
+                            final int maxCachedTiles) {
         this.stack = stack;
         this.z = z;
         this.renderDataClient = renderDataClient;
         this.numberOfThreads = numberOfThreads;
+        // access ordered maps are modified by get calls, so all access must be synchronized
+        this.tileCache = Collections.synchronizedMap(new LinkedHashMap<String, TileSpec>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, TileSpec> eldest) {
+                return size() > maxCachedTiles;
+            }
+        });
+        this.executorService = null;
     }
 
     @Override
@@ -371,12 +456,11 @@ public class CoordinateClient {
                                                                          batchIndexes.get(i-1),
                                                                          batchIndexes.get(i));
                 mapperList.add(mapper);
-                mapper.start();
             }
 
+            runMappers("worldToLocal", mapperList);
+
             for (final WorldToLocalMapper mapper : mapperList) {
-                LOG.info("worldToLocal: waiting for {} to finish ...", mapper);
-                mapper.join();
                 localListOfLists.addAll(mapper.getLocalListOfLists());
             }
 
@@ -446,12 +530,11 @@ public class CoordinateClient {
                                                                          batchIndexes.get(i-1),
                                                                          batchIndexes.get(i));
                 mapperList.add(mapper);
-                mapper.start();
             }
 
+            runMappers("localToWorld", mapperList);
+
             for (final LocalToWorldMapper mapper : mapperList) {
-                LOG.info("localToWorld: waiting for {} to finish ...", mapper);
-                mapper.join();
                 worldList.addAll(mapper.getWorldList());
             }
 
@@ -475,41 +558,203 @@ public class CoordinateClient {
         return worldList;
     }
 
+    /**
+     * Streams coordinates from the specified JSON file through the mapping process in chunks,
+     * writing mapped results to the target JSON file incrementally (in input order)
+     * so that memory use stays flat regardless of the number of coordinates.
+     *
+     * @param  fromJson      path of JSON array of coordinates to map
+     *                       (world coordinates or, for local to world mapping, arrays of local coordinates).
+     * @param  toJson        path for mapped results.
+     * @param  localToWorld  indicates whether source coordinates should be mapped from local to world
+     *                       (instead of from world to local).
+     * @param  targetClient  client for target stack when round trip mapping (or null for one way mapping).
+     * @param  chunkSize     number of coordinates to read and map at a time.
+     *
+     * @throws IOException
+     *   if coordinates cannot be read, mapped, or written.
+     */
+    public void mapJsonStream(final String fromJson,
+                              final String toJson,
+                              final boolean localToWorld,
+                              final CoordinateClient targetClient,
+                              final int chunkSize)
+            throws IOException {
+
+        final JavaType coordinatesType = JsonUtils.MAPPER.getTypeFactory().constructType(TileCoordinates.class);
+        final JavaType listOfCoordinatesType =
+                JsonUtils.MAPPER.getTypeFactory().constructCollectionType(List.class, TileCoordinates.class);
+
+        if (localToWorld) {
+            streamJsonArray(fromJson, toJson, listOfCoordinatesType, chunkSize, this::localToWorldInBatches);
+        } else if (targetClient == null) {
+            streamJsonArray(fromJson, toJson, coordinatesType, chunkSize, this::worldToLocalInBatches);
+        } else {
+            final ChunkMapper<TileCoordinates, TileCoordinates> roundTripMapper =
+                    chunk -> targetClient.localToWorldInBatches(worldToLocalInBatches(chunk));
+            streamJsonArray(fromJson, toJson, coordinatesType, chunkSize, roundTripMapper);
+        }
+    }
+
+    /**
+     * Maps one chunk of streamed coordinates.
+     */
+    interface ChunkMapper<I, O> {
+        List<O> map(final List<I> chunk) throws IOException, InterruptedException;
+    }
+
+    static <I, O> void streamJsonArray(final String fromJson,
+                                       final String toJson,
+                                       final JavaType elementType,
+                                       final int chunkSize,
+                                       final ChunkMapper<I, O> chunkMapper)
+            throws IOException {
+
+        final Path fromPath = Paths.get(fromJson).toAbsolutePath();
+        final Path toPath = Paths.get(toJson).toAbsolutePath();
+
+        LOG.info("streamJsonArray: entry, mapping {} to {} in chunks of {} coordinates", fromPath, toPath, chunkSize);
+
+        final ProcessTimer timer = new ProcessTimer();
+        long elementCount = 0;
+
+        try (final Reader reader = FileUtil.DEFAULT_INSTANCE.getExtensionBasedReader(fromPath.toString());
+             final JsonParser parser = JsonUtils.MAPPER.getFactory().createParser(reader);
+             final Writer writer = FileUtil.DEFAULT_INSTANCE.getExtensionBasedWriter(toPath.toString());
+             final JsonGenerator generator = JsonUtils.MAPPER.getFactory().createGenerator(writer)) {
+
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException(fromPath + " does not contain a JSON array");
+            }
+
+            generator.writeStartArray();
+
+            final List<I> chunk = new ArrayList<>(chunkSize);
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+
+                chunk.add(JsonUtils.MAPPER.readValue(parser, elementType));
+
+                if (chunk.size() == chunkSize) {
+                    writeMappedChunk(chunk, chunkMapper, generator);
+                    elementCount += chunk.size();
+                    chunk.clear();
+                    LOG.info("streamJsonArray: mapped {} coordinates in {} seconds",
+                             elementCount, timer.getElapsedSeconds());
+                }
+            }
+
+            if (chunk.size() > 0) {
+                writeMappedChunk(chunk, chunkMapper, generator);
+                elementCount += chunk.size();
+            }
+
+            generator.writeEndArray();
+
+        } catch (final InterruptedException e) {
+            throw new IOException("interrupted while mapping " + fromPath, e);
+        }
+
+        LOG.info("streamJsonArray: exit, mapped {} coordinates to {} in {} seconds",
+                 elementCount, toPath, timer.getElapsedSeconds());
+    }
+
+    private static <I, O> void writeMappedChunk(final List<I> chunk,
+                                                final ChunkMapper<I, O> chunkMapper,
+                                                final JsonGenerator generator)
+            throws IOException, InterruptedException {
+        for (final O mappedElement : chunkMapper.map(chunk)) {
+            JsonUtils.MAPPER.writeValue(generator, mappedElement);
+        }
+        generator.flush();
+    }
+
+    /**
+     * Runs the specified mappers in this client's thread pool and waits for all of them to finish.
+     */
+    private void runMappers(final String context,
+                            final List<? extends Runnable> mapperList)
+            throws IOException, InterruptedException {
+
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+                final Thread thread = new Thread(runnable, "coordinate-mapper-" + stack);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        final List<Future<?>> futures = new ArrayList<>(mapperList.size());
+        for (final Runnable mapper : mapperList) {
+            futures.add(executorService.submit(mapper));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            LOG.info("{}: waiting for {} to finish ...", context, mapperList.get(i));
+            try {
+                futures.get(i).get();
+            } catch (final ExecutionException e) {
+                throw new IOException(mapperList.get(i) + " failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return collection of tiles referenced by the specified coordinates.
+     *         Previously retrieved tiles are reused from this client's tile cache
+     *         (so that their transforms and meshes don't need to be rebuilt),
+     *         and only missing tiles are retrieved from the server.
+     */
     private ResolvedTileSpecCollection getTiles(final List<List<TileCoordinates>> listOfCoordinateLists) {
 
         final Set<String> tileIdSet = new HashSet<>(listOfCoordinateLists.size());
         for (final List<TileCoordinates> coordinatesList : listOfCoordinateLists) {
             for (final TileCoordinates coordinates : coordinatesList) {
-                tileIdSet.add(coordinates.getTileId());
+                if (coordinates.getTileId() != null) {
+                    tileIdSet.add(coordinates.getTileId());
+                }
             }
         }
 
+        final List<TileSpec> tileSpecList = new ArrayList<>(tileIdSet.size());
         final List<String> tileIdList = new ArrayList<>(tileIdSet.size());
-        List<TileSpec> tileSpecList = new ArrayList<>(listOfCoordinateLists.size());
         try {
 
             final int maxTileIdsPerRequest = 50000;
 
+            TileSpec cachedTileSpec;
             for (final String tileId : tileIdSet) {
-                if (tileIdList.size() == maxTileIdsPerRequest) {
-                    tileSpecList.addAll(renderDataClient.getTileSpecsWithIds(tileIdList, stack));
-                    tileIdList.clear();
+                cachedTileSpec = tileCache.get(tileId);
+                if (cachedTileSpec == null) {
+                    if (tileIdList.size() == maxTileIdsPerRequest) {
+                        addRetrievedTiles(tileIdList, tileSpecList);
+                        tileIdList.clear();
+                    }
+                    tileIdList.add(tileId);
+                } else {
+                    tileSpecList.add(cachedTileSpec);
                 }
-                tileIdList.add(tileId);
             }
 
             if (tileIdList.size() > 0) {
-                tileSpecList.addAll(renderDataClient.getTileSpecsWithIds(tileIdList, stack));
+                addRetrievedTiles(tileIdList, tileSpecList);
             }
 
         } catch (final Throwable t) {
             LOG.warn("failed to retrieve tile specs", t);
-            tileSpecList = new ArrayList<>();
         }
 
         return new ResolvedTileSpecCollection(new ArrayList<>(), tileSpecList);
     }
 
+    private void addRetrievedTiles(final List<String> tileIdList,
+                                   final List<TileSpec> tileSpecList)
+            throws IOException {
+        for (final TileSpec tileSpec : renderDataClient.getTileSpecsWithIds(tileIdList, stack)) {
+            tileCache.put(tileSpec.getTileId(), tileSpec);
+            tileSpecList.add(tileSpec);
+        }
+    }
+
     public static List<TileCoordinates> loadJsonArrayOfCoordinates(final String path)
             throws IOException {
 
@@ -571,7 +816,7 @@ public class CoordinateClient {
     /**
      * Maps sub-list of world coordinates to local coordinates.
      */
-    private static class WorldToLocalMapper extends Thread {
+    private static class WorldToLocalMapper implements Runnable {
 
         private final String stack;
         private final Double z;
@@ -701,7 +946,7 @@ public class CoordinateClient {
     /**
      * Maps sub-list of local coordinates to world coordinates.
      */
-    private static class LocalToWorldMapper extends Thread {
+    private static class LocalToWorldMapper implements Runnable {
 
         private final String stack;
         private final Double z;
@@ -747,64 +992,38 @@ public class CoordinateClient {
 
             final ProcessTimer timer = new ProcessTimer();
 
-            TileSpec tileSpec;
-            TileCoordinates coordinates;
-            String tileId;
-            double[] local;
+            final List<TileCoordinates> visibleList = new ArrayList<>(numberOfPoints());
             for (int i = startIndex; (i < stopIndex) && (i < localListOfLists.size()); i++) {
+                visibleList.add(getVisibleCoordinates(localListOfLists.get(i)));
+            }
 
-                coordinates = getVisibleCoordinates(localListOfLists.get(i));
-
-                try {
-
-                    if (coordinates == null) {
-                        throw new IllegalArgumentException("coordinates are missing");
-                    }
-
-                    tileId = coordinates.getTileId();
-                    if (tileId == null) {
-                        throw new IllegalArgumentException("tileId is missing");
-                    }
-
-                    local = coordinates.getLocal();
-                    if (local == null) {
-                        throw new IllegalArgumentException("local values are missing");
-                    } else if (local.length < 2) {
-                        throw new IllegalArgumentException("local values must include both x and y");
-                    }
-
-                    tileSpec = tiles.getTileSpec(tileId);
-
-                    if (tileSpec == null) {
-                        throw new IllegalArgumentException("tileId " + tileId + " cannot be found in layer " + z +
-                                                           " of stack " + stack);
-                    }
-
-                    worldList.add(TileCoordinates.getWorldCoordinates(tileSpec, local[0], local[1]));
-
-                } catch (final Throwable t) {
-
-                    LOG.warn("{}: caught exception for list item {}, " +
-                             "adding original coordinates with error message to list", this, (i + startIndex), t);
-
+            // all points for each tile are transformed together in one batch
+            worldList.addAll(
+                    TileCoordinates.getWorldCoordinates(
+                            visibleList,
+                            tileId -> {
+                                final TileSpec tileSpec = tiles.getTileSpec(tileId);
+                                if (tileSpec == null) {
+                                    throw new IllegalArgumentException(
+                                            "tileId " + tileId + " cannot be found in layer " + z +
+                                            " of stack " + stack);
+                                }
+                                return tileSpec;
+                            },
+                            processedCount -> {
+                                if (timer.hasIntervalPassed()) {
+                                    LOG.info("{}: transformed {} out of {} points",
+                                             this, processedCount, numberOfPoints());
+                                }
+                            }));
+
+            for (final TileCoordinates worldCoordinates : worldList) {
+                if (worldCoordinates.hasError()) {
                     errorCount++;
-
-                    if (coordinates == null) {
-                        coordinates = TileCoordinates.buildLocalInstance(null, null);
-                    }
-                    coordinates.setError(t.getMessage());
-
-                    worldList.add(coordinates);
                 }
-
-                if (timer.hasIntervalPassed()) {
-                    LOG.info("{}: transformed {} out of {} points",
-                             this, (i - startIndex + 1), numberOfPoints());
-                }
-
             }
 
-            LOG.info("{}: exit, transformed {} points with {} errors in {} seconds",
+            LOG.info("{}: exit, transformed {} points with {} errors in {} seconds",
                      this, numberOfPoints(), errorCount, timer.getElapsedSeconds());
         }
 
@@ -1022,4 +1241,7 @@ public class CoordinateClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(CoordinateClient.class);
 
+    /** Default number of resolved tile specs to retain for reuse across coordinate batches. */
+    private static final int DEFAULT_MAX_CACHED_TILES = 1000;
+
 }
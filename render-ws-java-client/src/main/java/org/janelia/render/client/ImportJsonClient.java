@@ -2,6 +2,8 @@ package org.janelia.render.client;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParametersDelegate;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -9,8 +11,23 @@ import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.http.client.ClientProtocolException;
+import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.spec.ListTransformSpec;
+import org.janelia.alignment.spec.ReferenceTransformSpec;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.spec.TransformSpec;
@@ -20,6 +37,7 @@ import org.janelia.alignment.util.ProcessTimer;
 import org.janelia.render.client.parameter.CommandLineParameters;
 import org.janelia.render.client.parameter.RenderWebServiceParameters;
 import org.janelia.render.client.parameter.TileSpecValidatorParameters;
+import org.janelia.render.client.response.HttpStatusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +68,24 @@ public class ImportJsonClient {
                 required = false)
         public String transformFile;
 
+        @Parameter(
+                names = "--chunkSize",
+                description = "Number of tile specs to derive, validate, and save in each request",
+                required = false)
+        public int chunkSize = 5000;
+
+        @Parameter(
+                names = "--numberOfThreads",
+                description = "Number of chunks to process and save concurrently",
+                required = false)
+        public int numberOfThreads = 4;
+
+        @Parameter(
+                names = "--maxChunkRetries",
+                description = "Number of times to retry saving a chunk that fails",
+                required = false)
+        public int maxChunkRetries = 3;
+
         @Parameter(
                 description = "list of tile spec files (.json, .gz, or .zip)",
                 required = true)
@@ -80,65 +116,258 @@ public class ImportJsonClient {
     private final TileSpecValidator tileSpecValidator;
 
     private final RenderDataClient renderDataClient;
-    private final List<TransformSpec> transformSpecs;
+    private final Map<String, TransformSpec> transformIdToSpecMap;
+    private final long retryWaitMilliseconds;
 
     public ImportJsonClient(final Parameters parameters)
             throws IOException {
-        this.parameters = parameters;
-        this.tileSpecValidator = parameters.tileSpecValidator.getValidatorInstance();
-
-        this.renderDataClient = parameters.renderWeb.getDataClient();
+        this(parameters,
+             parameters.renderWeb.getDataClient(),
+             loadTransformData(parameters.transformFile),
+             RETRY_WAIT_MILLISECONDS);
 
         this.renderDataClient.ensureStackIsInLoadingState(parameters.stack, null);
+    }
 
-        this.transformSpecs = loadTransformData(parameters.transformFile);
+    ImportJsonClient(final Parameters parameters,
+                     final RenderDataClient renderDataClient,
+                     final List<TransformSpec> transformSpecs,
+                     final long retryWaitMilliseconds) {
+        this.parameters = parameters;
+        this.tileSpecValidator = parameters.tileSpecValidator.getValidatorInstance();
+        this.renderDataClient = renderDataClient;
+        this.transformIdToSpecMap = resolveSharedTransformSpecs(transformSpecs);
+        this.retryWaitMilliseconds = retryWaitMilliseconds;
     }
 
+    /**
+     * Streams tile specs from the specified file and saves them in chunks.
+     * Chunks are processed concurrently: bounding boxes are derived, invalid tiles are removed,
+     * and the remaining tiles are saved (with retries for transient failures) using compressed requests.
+     * Processing stops (and any remaining chunks are cancelled) as soon as one chunk fails.
+     *
+     * @param  tileFile  file containing JSON array of tile specs.
+     *
+     * @throws Exception
+     *   if the file cannot be parsed or any chunk cannot be saved.
+     */
     public void importStackData(final String tileFile) throws Exception {
 
-        LOG.info("importStackData: entry, tileFile={}", tileFile);
-
-        final List<TileSpec> tileSpecs = loadTileData(tileFile);
+        final Path path = FileSystems.getDefault().getPath(tileFile).toAbsolutePath();
 
-        if (tileSpecs.size() > 0) {
+        LOG.info("importStackData: entry, path={}", path);
 
-            final ProcessTimer timer = new ProcessTimer();
-            int tileSpecCount = 0;
+        final int numberOfThreads = Math.max(1, parameters.numberOfThreads);
+        final int chunkSize = Math.max(1, parameters.chunkSize);
 
-            final ResolvedTileSpecCollection resolvedTiles =
-                    new ResolvedTileSpecCollection(transformSpecs,
-                                                   tileSpecs);
+        final ImportProgress progress = new ImportProgress();
+        final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        final CompletionService<Integer> completionService = new ExecutorCompletionService<>(executorService);
 
-            for (final TileSpec tileSpec : resolvedTiles.getTileSpecs()) {
+        // limit the number of parsed chunks waiting to be processed so that memory use stays bounded
+        final Semaphore pendingChunks = new Semaphore(numberOfThreads * 2);
+        int submittedCount = 0;
+        int completedCount = 0;
 
-                tileSpecCount++;
+        try (final Reader reader = FileUtil.DEFAULT_INSTANCE.getExtensionBasedReader(path.toString());
+             final JsonParser parser = JsonUtils.FAST_MAPPER.getFactory().createParser(reader)) {
 
-                tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(), true);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("tile spec array missing from " + path);
+            }
 
-                if (timer.hasIntervalPassed()) {
-                    LOG.info("importStackData: derived bounding box for {} out of {} tiles",
-                             tileSpecCount, tileSpecs.size());
+            List<TileSpec> chunk = new ArrayList<>(chunkSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(parser.readValueAs(TileSpec.class));
+                if (chunk.size() == chunkSize) {
+                    submitChunk(completionService, pendingChunks, chunk, submittedCount, progress);
+                    submittedCount++;
+                    chunk = new ArrayList<>(chunkSize);
+
+                    // fail fast: check chunks that have already finished before parsing more
+                    for (Future<Integer> future = completionService.poll();
+                         future != null;
+                         future = completionService.poll()) {
+                        future.get();
+                        completedCount++;
+                    }
                 }
+            }
+
+            if (chunk.size() > 0) {
+                submitChunk(completionService, pendingChunks, chunk, submittedCount, progress);
+                submittedCount++;
+            }
+
+            while (completedCount < submittedCount) {
+                completionService.take().get();
+                completedCount++;
+            }
+
+        } catch (final ExecutionException e) {
+            throw new IOException("failed to import tiles from " + path, e.getCause());
+        } finally {
+            // cancels any remaining chunks if a chunk failed
+            executorService.shutdownNow();
+        }
+
+        LOG.info("importStackData: exit, saved {} tiles in {} chunks from {}, elapsedSeconds={}",
+                 progress.savedTileCount, submittedCount, path, progress.timer.getElapsedSeconds());
+    }
+
+    private void submitChunk(final CompletionService<Integer> completionService,
+                             final Semaphore pendingChunks,
+                             final List<TileSpec> tileSpecs,
+                             final int chunkIndex,
+                             final ImportProgress progress)
+            throws InterruptedException {
+
+        pendingChunks.acquire();
+
+        completionService.submit(() -> {
+            try {
+                final int savedCount = importChunk(tileSpecs, chunkIndex);
+                progress.chunkSaved(tileSpecs.size(), savedCount);
+                return savedCount;
+            } finally {
+                pendingChunks.release();
+            }
+        });
+    }
+
+    private int importChunk(final List<TileSpec> tileSpecs,
+                            final int chunkIndex)
+            throws Exception {
+
+        final ResolvedTileSpecCollection resolvedTiles =
+                new ResolvedTileSpecCollection(getReferencedTransformSpecs(tileSpecs), tileSpecs);
+
+        for (final TileSpec tileSpec : resolvedTiles.getTileSpecs()) {
+            tileSpec.deriveBoundingBox(tileSpec.getMeshCellSize(), true);
+            // TODO: generate mipmaps?
+        }
 
-                // TODO: generate mipmaps?
+        if (tileSpecValidator != null) {
+            // filter out invalid specs based upon bounding box
+            resolvedTiles.setTileSpecValidator(tileSpecValidator);
+            resolvedTiles.removeInvalidTileSpecs();
+        }
 
+        final int tileCount = resolvedTiles.getTileCount();
+
+        if (tileCount > 0) {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    renderDataClient.saveCompressedResolvedTiles(resolvedTiles, parameters.stack, null);
+                    break;
+                } catch (final IOException e) {
+                    if ((attempt >= parameters.maxChunkRetries) || (! isTransientFailure(e))) {
+                        throw e;
+                    }
+                    final long waitMilliseconds = retryWaitMilliseconds * (attempt + 1);
+                    LOG.warn("importChunk: failed to save chunk " + chunkIndex + ", retrying in " +
+                             waitMilliseconds + "ms", e);
+                    Thread.sleep(waitMilliseconds);
+                }
             }
+        }
+
+        return tileCount;
+    }
 
-            if ((tileSpecValidator != null) && (tileSpecCount > 0)) {
+    /**
+     * @return the shared transform specs (including specs referenced by other shared specs)
+     *         that are referenced by the specified tile specs.
+     */
+    private List<TransformSpec> getReferencedTransformSpecs(final List<TileSpec> tileSpecs) {
+
+        final Set<String> referencedTransformIds = new HashSet<>();
+        for (final TileSpec tileSpec : tileSpecs) {
+            addReferencedTransformIds(tileSpec.getTransforms(), referencedTransformIds);
+        }
+
+        final List<TransformSpec> referencedTransformSpecs = new ArrayList<>(referencedTransformIds.size());
+        for (final String transformId : referencedTransformIds) {
+            final TransformSpec transformSpec = transformIdToSpecMap.get(transformId);
+            if (transformSpec != null) {
+                referencedTransformSpecs.add(transformSpec);
+            }
+        }
 
-                // filter out invalid specs based upon bounding box
-                resolvedTiles.setTileSpecValidator(tileSpecValidator);
-                resolvedTiles.removeInvalidTileSpecs();
+        return referencedTransformSpecs;
+    }
 
+    private void addReferencedTransformIds(final TransformSpec transformSpec,
+                                           final Set<String> referencedTransformIds) {
+        if (transformSpec instanceof ReferenceTransformSpec) {
+            final String refId = ((ReferenceTransformSpec) transformSpec).getRefId();
+            final TransformSpec referencedSpec = transformIdToSpecMap.get(refId);
+            if (referencedTransformIds.add(refId) && (referencedSpec != null)) {
+                addReferencedTransformIds(referencedSpec, referencedTransformIds);
+            }
+        } else if (transformSpec instanceof ListTransformSpec) {
+            final ListTransformSpec listTransformSpec = (ListTransformSpec) transformSpec;
+            for (int i = 0; i < listTransformSpec.size(); i++) {
+                addReferencedTransformIds(listTransformSpec.getSpec(i), referencedTransformIds);
             }
+        }
+    }
 
-            LOG.info("importStackData: derived bounding box for {} tiles, elapsedSeconds={}",
-                      tileSpecCount, timer.getElapsedSeconds());
+    /**
+     * Resolves references between the specified shared transform specs once (before any chunks are processed)
+     * so that concurrently processed chunks only read the shared specs.
+     *
+     * @return map of transform ids to resolved shared transform specs.
+     */
+    private static Map<String, TransformSpec> resolveSharedTransformSpecs(final List<TransformSpec> transformSpecs) {
+
+        final Map<String, TransformSpec> idToSpecMap = new LinkedHashMap<>(transformSpecs.size() * 2);
+        for (final TransformSpec transformSpec : transformSpecs) {
+            idToSpecMap.put(transformSpec.getId(), transformSpec);
+        }
 
-            renderDataClient.saveResolvedTiles(resolvedTiles, parameters.stack, null);
+        for (final TransformSpec transformSpec : idToSpecMap.values()) {
+            transformSpec.resolveReferences(idToSpecMap);
         }
 
-        LOG.info("importStackData: exit, saved tiles and transforms from {}", tileFile);
+        return idToSpecMap;
+    }
+
+    /**
+     * @return true if the specified save failure may succeed when retried
+     *         (connection failures and server errors); false for client (4xx) and other protocol errors.
+     */
+    static boolean isTransientFailure(final IOException failure) {
+        final boolean isTransient;
+        if (failure instanceof HttpStatusException) {
+            isTransient = ((HttpStatusException) failure).isServerError();
+        } else {
+            isTransient = ! (failure instanceof ClientProtocolException);
+        }
+        return isTransient;
+    }
+
+    /**
+     * Tracks (and periodically logs) progress across concurrently processed chunks.
+     */
+    private static class ImportProgress {
+
+        private final ProcessTimer timer = new ProcessTimer();
+        private int chunkCount = 0;
+        private long processedTileCount = 0;
+        private long savedTileCount = 0;
+
+        private synchronized void chunkSaved(final int chunkTileCount,
+                                             final int chunkSavedCount) {
+            chunkCount++;
+            processedTileCount += chunkTileCount;
+            savedTileCount += chunkSavedCount;
+            if (timer.hasIntervalPassed()) {
+                final long elapsedSeconds = Math.max(1, timer.getElapsedSeconds());
+                LOG.info("chunkSaved: saved {} out of {} processed tiles in {} chunks ({} tiles per second)",
+                         savedTileCount, processedTileCount, chunkCount, (savedTileCount / elapsedSeconds));
+            }
+        }
     }
 
     public static List<TransformSpec> loadTransformData(final String transformFile)
@@ -166,23 +395,7 @@ public class ImportJsonClient {
         return list;
     }
 
-    private List<TileSpec> loadTileData(final String tileFile)
-            throws IOException, IllegalArgumentException {
-
-        final List<TileSpec> list;
-
-        final Path path = FileSystems.getDefault().getPath(tileFile).toAbsolutePath();
-
-        LOG.info("loadTileData: entry, path={}", path);
-
-        try (final Reader reader = FileUtil.DEFAULT_INSTANCE.getExtensionBasedReader(path.toString())) {
-            list = TileSpec.fromJsonArray(reader);
-        }
-
-        LOG.info("loadTileData: exit, loaded {} tile specs", list.size());
-
-        return list;
-    }
-
     private static final Logger LOG = LoggerFactory.getLogger(ImportJsonClient.class);
+
+    private static final long RETRY_WAIT_MILLISECONDS = 5000;
 }
@@ -78,6 +78,12 @@ public class ImportTransformChangesClient {
                 required = false)
         public ChangeMode changeMode = ChangeMode.REPLACE_LAST;
 
+        @Parameter(
+                names = "--numberOfThreads",
+                description = "Number of threads to use for deriving tile bounding boxes",
+                required = false)
+        public int numberOfThreads = 1;
+
         public String getTargetOwner() {
             if (targetOwner == null) {
                 targetOwner = renderWeb.owner;
@@ -292,7 +298,8 @@ public class ImportTransformChangesClient {
                     tileSpec.setTransforms(new ListTransformSpec());
                 }
 
-                tileSpecs.addTransformSpecToTile(tileId, tileTransform.getTransform(), replaceLastTransform);
+                // defer bounding box derivation so that all boxes can be derived in parallel below
+                tileSpecs.addTransformSpecToTile(tileId, tileTransform.getTransform(), replaceLastTransform, false);
                 tileSpecCount++;
 
                 if (timer.hasIntervalPassed()) {
@@ -301,6 +308,9 @@ public class ImportTransformChangesClient {
                 }
             }
 
+            tileSpecs.setNumberOfThreads(parameters.numberOfThreads);
+            tileSpecs.recalculateBoundingBoxes();
+
             tileSpecs.removeInvalidTileSpecs();
 
             final int removedTiles = tileSpecCount - tileSpecs.getTileCount();
@@ -2,20 +2,26 @@ package org.janelia.render.client;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -39,6 +45,7 @@ import org.janelia.alignment.util.ZFilter;
 import org.janelia.render.client.request.WaitingRetryHandler;
 import org.janelia.render.client.response.EmptyResponseHandler;
 import org.janelia.render.client.response.JsonResponseHandler;
+import org.janelia.render.client.response.ResolvedTilesStreamResponseHandler;
 import org.janelia.render.client.response.ResourceCreatedResponseHandler;
 import org.janelia.render.client.response.TextResponseHandler;
 import org.slf4j.Logger;
@@ -69,7 +76,14 @@ public class RenderDataClient {
                             final String project) {
         this.project = project;
         this.urls = new RenderWebServiceUrls(baseDataUrl, owner, project);
-        this.httpClient = HttpClientBuilder.create().setRetryHandler(new WaitingRetryHandler()).build();
+        // allow enough pooled connections for clients that submit concurrent requests (e.g. parallel imports)
+        // note: content compression is left enabled so that requests advertise gzip/deflate support and
+        //       compressed responses (e.g. large match and resolved tile data) are transparently decompressed
+        this.httpClient = HttpClientBuilder.create()
+                .setRetryHandler(new WaitingRetryHandler())
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                .setMaxConnTotal(MAX_CONNECTIONS_PER_ROUTE)
+                .build();
     }
 
     @Override
@@ -311,6 +325,7 @@ public class RenderDataClient {
         }
 
         final HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
         final String requestContext = "GET " + uri;
         final TypeReference<List<SectionData>> typeReference = new TypeReference<List<SectionData>>() {};
         final JsonUtils.GenericHelper<List<SectionData>> helper = new JsonUtils.GenericHelper<>(typeReference);
@@ -627,6 +642,35 @@ public class RenderDataClient {
         httpClient.execute(httpPut, responseHandler);
     }
 
+    /**
+     * Adds spatial cell keys to any tiles in the specified stack that were saved before keys were introduced.
+     *
+     * @param  stack  stack to update.
+     *
+     * @return number of updated tiles.
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public long updateSpatialKeys(final String stack)
+            throws IOException {
+
+        final URI uri = getUri(urls.getStackUrlString(stack) + "/spatialKeys");
+        final String requestContext = "PUT " + uri;
+        final TextResponseHandler responseHandler = new TextResponseHandler(requestContext);
+
+        final HttpPut httpPut = new HttpPut(uri);
+
+        LOG.info("updateSpatialKeys: submitting {}", requestContext);
+
+        final String updatedCount = httpClient.execute(httpPut, responseHandler);
+        if (updatedCount == null) {
+            throw new IOException("updated tile count missing from response for " + requestContext);
+        }
+
+        return Long.parseLong(updatedCount.trim());
+    }
+
     /**
      * Updates the mipmapPathBuilder for the specified stack.
      *
@@ -835,6 +879,7 @@ public class RenderDataClient {
 
         final URI uri = getUri(urls.getTileBoundsUrlString(stack, z));
         final HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
         final String requestContext = "GET " + uri;
         final TypeReference<List<TileBounds>> typeReference = new TypeReference<List<TileBounds>>() {};
         final JsonUtils.GenericHelper<List<TileBounds>> helper = new JsonUtils.GenericHelper<>(typeReference);
@@ -890,6 +935,7 @@ public class RenderDataClient {
 
         final URI uri = getResolvedTilesUri(stack, z);
         final HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
         final String requestContext = "GET " + uri;
         final JsonUtils.Helper<ResolvedTileSpecCollection> helper =
                 new JsonUtils.Helper<>(ResolvedTileSpecCollection.class);
@@ -926,17 +972,9 @@ public class RenderDataClient {
                                                        final Double maxY)
             throws IOException {
 
-        final URIBuilder uriBuilder = new URIBuilder(getResolvedTilesUri(stack, null));
-        addParameterIfDefined("minZ", minZ, uriBuilder);
-        addParameterIfDefined("maxZ", maxZ, uriBuilder);
-        addParameterIfDefined("groupId", groupId, uriBuilder);
-        addParameterIfDefined("minX", minX, uriBuilder);
-        addParameterIfDefined("maxX", maxX, uriBuilder);
-        addParameterIfDefined("minY", minY, uriBuilder);
-        addParameterIfDefined("maxY", maxY, uriBuilder);
-
-        final URI uri = getUri(uriBuilder);
+        final URI uri = getResolvedTilesUri(stack, minZ, maxZ, groupId, minX, maxX, minY, maxY);
         final HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
         final String requestContext = "GET " + uri;
         final JsonUtils.Helper<ResolvedTileSpecCollection> helper =
                 new JsonUtils.Helper<>(ResolvedTileSpecCollection.class);
@@ -948,6 +986,60 @@ public class RenderDataClient {
         return httpClient.execute(httpGet, responseHandler);
     }
 
+    /**
+     * Streams the resolved tiles for the specified layer, handing each tile spec (with fully resolved transforms)
+     * to the specified consumer as it is read instead of loading the entire collection into memory.
+     *
+     * @param  stack             name of stack.
+     * @param  z                 z value for layer.
+     * @param  tileSpecConsumer  consumer for each resolved tile spec.
+     *
+     * @return number of tile specs passed to the consumer.
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public int processResolvedTiles(final String stack,
+                                    final Double z,
+                                    final Consumer<TileSpec> tileSpecConsumer)
+            throws IOException {
+        return processResolvedTiles(getResolvedTilesUri(stack, z), tileSpecConsumer);
+    }
+
+    /**
+     * Streams the resolved tiles that match the specified criteria, handing each tile spec
+     * (with fully resolved transforms) to the specified consumer as it is read instead of
+     * loading the entire collection into memory.
+     *
+     * @param  stack             name of stack.
+     * @param  minZ              minimum z value for all tiles (or null for no minimum).
+     * @param  maxZ              maximum z value for all tiles (or null for no maximum).
+     * @param  groupId           group id for all tiles (or null).
+     * @param  minX              minimum x value for all tiles (or null for no minimum).
+     * @param  maxX              maximum x value for all tiles (or null for no maximum).
+     * @param  minY              minimum y value for all tiles (or null for no minimum).
+     * @param  maxY              maximum y value for all tiles (or null for no maximum).
+     * @param  tileSpecConsumer  consumer for each resolved tile spec.
+     *
+     * @return number of tile specs passed to the consumer.
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public int processResolvedTiles(final String stack,
+                                    final Double minZ,
+                                    final Double maxZ,
+                                    final String groupId,
+                                    final Double minX,
+                                    final Double maxX,
+                                    final Double minY,
+                                    final Double maxY,
+                                    final Consumer<TileSpec> tileSpecConsumer)
+            throws IOException {
+        return processResolvedTiles(getResolvedTilesUri(stack, minZ, maxZ, groupId, minX, maxX, minY, maxY),
+                                    tileSpecConsumer);
+    }
+
     /**
      * Saves the specified collection.
      *
@@ -978,6 +1070,45 @@ public class RenderDataClient {
         httpClient.execute(httpPut, responseHandler);
     }
 
+    /**
+     * Saves the specified collection using a gzip compressed request body.
+     * Compressing large collections significantly reduces upload time for bulk imports.
+     *
+     * @param  resolvedTiles  collection of tile and transform specs to save.
+     * @param  stack          name of stack.
+     * @param  z              optional z value for all tiles; specify null if tiles have differing z values.
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public void saveCompressedResolvedTiles(final ResolvedTileSpecCollection resolvedTiles,
+                                            final String stack,
+                                            final Double z)
+            throws IOException {
+
+        final ByteArrayOutputStream compressedJson = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressedJson)) {
+            gzipOutputStream.write(resolvedTiles.toJson().getBytes(StandardCharsets.UTF_8));
+        }
+
+        final ByteArrayEntity entity = new ByteArrayEntity(compressedJson.toByteArray(),
+                                                           ContentType.APPLICATION_JSON);
+        entity.setContentEncoding("gzip");
+
+        final URI uri = getResolvedTilesUri(stack, z);
+        final String requestContext = "PUT " + uri;
+        final ResourceCreatedResponseHandler responseHandler = new ResourceCreatedResponseHandler(requestContext);
+
+        final HttpPut httpPut = new HttpPut(uri);
+        httpPut.setEntity(entity);
+
+        LOG.info("saveCompressedResolvedTiles: submitting {} for {} transforms and {} tiles ({} compressed bytes)",
+                 requestContext, resolvedTiles.getTransformCount(), resolvedTiles.getTileCount(),
+                 compressedJson.size());
+
+        httpClient.execute(httpPut, responseHandler);
+    }
+
     /**
      * Updates the z value for the specified stack section.
      *
@@ -1062,6 +1193,7 @@ public class RenderDataClient {
 
         final URI uri = getUri(urls.getMatchesWithPGroupIdUrlString(pGroupId));
         final HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
         final String requestContext = "GET " + uri;
         final TypeReference<List<CanvasMatches>> typeReference = new TypeReference<List<CanvasMatches>>() {};
         final JsonUtils.GenericHelper<List<CanvasMatches>> helper = new JsonUtils.GenericHelper<>(typeReference);
@@ -1086,6 +1218,7 @@ public class RenderDataClient {
 
         final URI uri = getUri(urls.getMatchesOutsideGroupUrlString(groupId));
         final HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
         final String requestContext = "GET " + uri;
         final TypeReference<List<CanvasMatches>> typeReference = new TypeReference<List<CanvasMatches>>() {};
         final JsonUtils.GenericHelper<List<CanvasMatches>> helper = new JsonUtils.GenericHelper<>(typeReference);
@@ -1167,6 +1300,7 @@ public class RenderDataClient {
 
         final HttpPut httpPut = new HttpPut(uri);
         httpPut.setEntity(stringEntity);
+        httpPut.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
 
         final TypeReference<List<TileSpec>> typeReference =
                 new TypeReference<List<TileSpec>>() {};
@@ -1281,6 +1415,47 @@ public class RenderDataClient {
         return getUri(baseUrlString + "/resolvedTiles");
     }
 
+    private URI getResolvedTilesUri(final String stack,
+                                    final Double minZ,
+                                    final Double maxZ,
+                                    final String groupId,
+                                    final Double minX,
+                                    final Double maxX,
+                                    final Double minY,
+                                    final Double maxY)
+            throws IOException {
+
+        final URIBuilder uriBuilder = new URIBuilder(getResolvedTilesUri(stack, null));
+        addParameterIfDefined("minZ", minZ, uriBuilder);
+        addParameterIfDefined("maxZ", maxZ, uriBuilder);
+        addParameterIfDefined("groupId", groupId, uriBuilder);
+        addParameterIfDefined("minX", minX, uriBuilder);
+        addParameterIfDefined("maxX", maxX, uriBuilder);
+        addParameterIfDefined("minY", minY, uriBuilder);
+        addParameterIfDefined("maxY", maxY, uriBuilder);
+
+        return getUri(uriBuilder);
+    }
+
+    private int processResolvedTiles(final URI uri,
+                                     final Consumer<TileSpec> tileSpecConsumer)
+            throws IOException {
+
+        final HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeader(HttpHeaders.ACCEPT, BULK_DATA_ACCEPT);
+        final String requestContext = "GET " + uri;
+        final ResolvedTilesStreamResponseHandler responseHandler =
+                new ResolvedTilesStreamResponseHandler(requestContext, tileSpecConsumer);
+
+        LOG.info("processResolvedTiles: submitting {}", requestContext);
+
+        final int tileCount = httpClient.execute(httpGet, responseHandler);
+
+        LOG.info("processResolvedTiles: processed {} tiles", tileCount);
+
+        return tileCount;
+    }
+
     private URI getUri(final String forString)
             throws IOException {
         final URI uri;
@@ -1312,4 +1487,10 @@ public class RenderDataClient {
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(RenderDataClient.class);
+
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 32;
+
+    /** Requests Smile (binary JSON) encoded bulk data, falling back to JSON for servers that do not support it. */
+    private static final String BULK_DATA_ACCEPT =
+            JsonUtils.SMILE_MEDIA_TYPE + ", " + ContentType.APPLICATION_JSON.getMimeType() + ";q=0.9";
 }
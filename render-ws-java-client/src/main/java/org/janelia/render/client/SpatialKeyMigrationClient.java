@@ -0,0 +1,99 @@
+package org.janelia.render.client;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParametersDelegate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.janelia.alignment.spec.stack.StackId;
+import org.janelia.render.client.parameter.CommandLineParameters;
+import org.janelia.render.client.parameter.RenderWebServiceParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Java client for adding spatial cell keys to tiles in stacks that were loaded before keys were introduced.
+ */
+public class SpatialKeyMigrationClient {
+
+    public static class Parameters extends CommandLineParameters {
+
+        @ParametersDelegate
+        public RenderWebServiceParameters renderWeb = new RenderWebServiceParameters();
+
+        @Parameter(
+                names = "--stack",
+                description = "Names of stacks to update (omit to update all stacks in the project)",
+                variableArity = true)
+        public List<String> stackNames;
+    }
+
+    /**
+     * @param  args  see {@link Parameters} for command line argument details.
+     */
+    public static void main(final String[] args) {
+        final ClientRunner clientRunner = new ClientRunner(args) {
+            @Override
+            public void runClient(final String[] args) throws Exception {
+
+                final Parameters parameters = new Parameters();
+                parameters.parse(args);
+
+                LOG.info("runClient: entry, parameters={}", parameters);
+
+                final SpatialKeyMigrationClient client = new SpatialKeyMigrationClient(parameters);
+                client.updateStacks();
+            }
+        };
+        clientRunner.run();
+    }
+
+    private final Parameters parameters;
+    private final RenderDataClient renderDataClient;
+
+    public SpatialKeyMigrationClient(final Parameters parameters) {
+        this(parameters, parameters.renderWeb.getDataClient());
+    }
+
+    SpatialKeyMigrationClient(final Parameters parameters,
+                              final RenderDataClient renderDataClient) {
+        this.parameters = parameters;
+        this.renderDataClient = renderDataClient;
+    }
+
+    /**
+     * Updates the specified stacks (or all stacks in the project if none were specified).
+     *
+     * @return total number of updated tiles.
+     *
+     * @throws Exception
+     *   if any stack cannot be updated.
+     */
+    public long updateStacks()
+            throws Exception {
+
+        final List<String> stackNames;
+        if ((parameters.stackNames == null) || (parameters.stackNames.size() == 0)) {
+            stackNames = new ArrayList<>();
+            for (final StackId stackId : renderDataClient.getProjectStacks()) {
+                stackNames.add(stackId.getStack());
+            }
+        } else {
+            stackNames = parameters.stackNames;
+        }
+
+        long totalUpdatedCount = 0;
+        for (final String stack : stackNames) {
+            final long updatedCount = renderDataClient.updateSpatialKeys(stack);
+            LOG.info("updateStacks: updated {} tiles in {}", updatedCount, stack);
+            totalUpdatedCount += updatedCount;
+        }
+
+        LOG.info("updateStacks: updated {} tiles in {} stacks", totalUpdatedCount, stackNames.size());
+
+        return totalUpdatedCount;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpatialKeyMigrationClient.class);
+}
@@ -55,6 +55,12 @@ public class WarpTransformClient {
                 arity = 0)
         public boolean deriveMLS;
 
+        @Parameter(
+                names = "--numberOfThreads",
+                description = "Number of threads to use for deriving tile bounding boxes",
+                required = false)
+        public int numberOfThreads = 1;
+
         @Parameter(
                 description = "Z values",
                 required = true)
@@ -123,6 +129,7 @@ public class WarpTransformClient {
         LOG.info("generateStackDataForZ: derived warp transform for {}", z);
 
         montageTiles.addTransformSpecToCollection(warpTransformSpec);
+        montageTiles.setNumberOfThreads(parameters.numberOfThreads);
         montageTiles.addReferenceTransformToAllTiles(warpTransformSpec.getId(), false);
 
         final int totalNumberOfTiles = montageTiles.getTileCount();
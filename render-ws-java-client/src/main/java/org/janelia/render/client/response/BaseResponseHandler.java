@@ -11,8 +11,8 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
-import org.apache.http.client.ClientProtocolException;
 import org.apache.http.entity.ContentType;
+import org.janelia.alignment.json.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +25,7 @@ class BaseResponseHandler {
 
     private static final String TEXT_PLAIN_MIME_TYPE = ContentType.TEXT_PLAIN.getMimeType();
     static final String JSON_MIME_TYPE = ContentType.APPLICATION_JSON.getMimeType();
+    static final String SMILE_MIME_TYPE = JsonUtils.SMILE_MEDIA_TYPE;
 
     static final Set<Integer> OK = new HashSet<>(Collections.singletonList(HttpStatus.SC_OK));
     static final Set<Integer> CREATED = new HashSet<>(Collections.singletonList(HttpStatus.SC_CREATED));
@@ -42,6 +43,18 @@ class BaseResponseHandler {
         return requestContext;
     }
 
+    /**
+     * @param  entity  response entity.
+     *
+     * @return true if the entity has a Smile (binary JSON) mime type; otherwise false.
+     */
+    boolean isSmileEntity(final HttpEntity entity) {
+        final Header contentTypeHeader = entity.getContentType();
+        return (contentTypeHeader != null) &&
+               (contentTypeHeader.getValue() != null) &&
+               contentTypeHeader.getValue().startsWith(SMILE_MIME_TYPE);
+    }
+
     /**
      * @param  entity  response entity.
      *
@@ -91,8 +104,9 @@ class BaseResponseHandler {
             } catch (final Throwable t) {
                 LOG.warn("failed to parse entity content for error response, ignoring parse failure", t);
             }
-            throw new ClientProtocolException("HTTP status " + statusCode + " with body\n\n  " + responseBodyText +
-                                              "\n\nreturned for\n\n  " + requestContext + "\n");
+            throw new HttpStatusException(statusCode,
+                                          "HTTP status " + statusCode + " with body\n\n  " + responseBodyText +
+                                          "\n\nreturned for\n\n  " + requestContext + "\n");
         }
 
         return entity;
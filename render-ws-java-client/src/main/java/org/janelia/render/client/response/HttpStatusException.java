@@ -0,0 +1,34 @@
+package org.janelia.render.client.response;
+
+import org.apache.http.client.ClientProtocolException;
+
+/**
+ * Thrown when a request completes with an unexpected HTTP status code
+ * (allows callers to distinguish server failures from client errors).
+ */
+public class HttpStatusException
+        extends ClientProtocolException {
+
+    private final int statusCode;
+
+    /**
+     * @param  statusCode  status code returned for the request.
+     * @param  message     description of the failure.
+     */
+    public HttpStatusException(final int statusCode,
+                               final String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true if the status indicates a server side (5xx) failure that may succeed if retried.
+     */
+    public boolean isServerError() {
+        return (statusCode >= 500) && (statusCode < 600);
+    }
+}
@@ -1,6 +1,7 @@
 package org.janelia.render.client.response;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 
@@ -12,7 +13,7 @@ import org.apache.http.client.ResponseHandler;
 import org.janelia.alignment.json.JsonUtils;
 
 /**
- * Translates JSON response content stream into an object of the specified class.
+ * Translates JSON (or Smile encoded binary JSON) response content stream into an object of the specified class.
  *
  * @author Eric Trautman
  */
@@ -56,9 +57,18 @@ public class JsonResponseHandler<T>
 
         if (contentTypeHeader == null) {
             throw new ClientProtocolException("content type header missing for\n\n  " + getRequestContext() + "\n");
+        } else if (isSmileEntity(entity)) {
+            try (final InputStream inputStream = entity.getContent()) {
+                if (helper != null) {
+                    return helper.fromSmile(inputStream);
+                } else {
+                    return genericHelper.fromSmile(inputStream);
+                }
+            }
         } else if (! JSON_MIME_TYPE.equals(contentTypeHeader.getValue())) {
             throw new ClientProtocolException("invalid mime type '" + contentTypeHeader.getValue() + "' for\n\n  " +
-                                              getRequestContext() + "\n\n(expected '" + JSON_MIME_TYPE + "')");
+                                              getRequestContext() + "\n\n(expected '" + JSON_MIME_TYPE + "' or '" +
+                                              SMILE_MIME_TYPE + "')");
         }
 
         final Reader reader = new InputStreamReader(entity.getContent());
@@ -0,0 +1,145 @@
+package org.janelia.render.client.response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.spec.ListTransformSpec;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.TransformSpec;
+
+/**
+ * Incrementally parses a resolved tiles JSON (or Smile) response stream, handing each (fully resolved) tile spec
+ * to a consumer as soon as it is read so that large collections never need to be held in memory.
+ *
+ * The response is expected to contain the transformIdToSpecMap before the tileIdToSpecMap
+ * (the order written by the render web service).
+ */
+public class ResolvedTilesStreamResponseHandler
+        extends BaseResponseHandler
+        implements ResponseHandler<Integer> {
+
+    private final Consumer<TileSpec> tileSpecConsumer;
+
+    /**
+     * @param  requestContext    context (e.g. "GET http://janelia.org") for use in error messages.
+     * @param  tileSpecConsumer  consumer for each resolved tile spec.
+     */
+    public ResolvedTilesStreamResponseHandler(final String requestContext,
+                                              final Consumer<TileSpec> tileSpecConsumer) {
+        super(requestContext);
+        this.tileSpecConsumer = tileSpecConsumer;
+    }
+
+    /**
+     * @return number of tile specs passed to the consumer.
+     */
+    @Override
+    public Integer handleResponse(final HttpResponse response)
+            throws IOException {
+
+        final HttpEntity entity = getValidatedResponseEntity(response, OK);
+
+        final ObjectMapper mapper = isSmileEntity(entity) ? JsonUtils.SMILE_MAPPER : JsonUtils.FAST_MAPPER;
+
+        try (final InputStream inputStream = entity.getContent()) {
+            return parse(inputStream, mapper);
+        }
+    }
+
+    /**
+     * @param  inputStream  resolved tiles JSON stream.
+     *
+     * @return number of tile specs passed to the consumer.
+     *
+     * @throws IOException
+     *   if the stream cannot be parsed or contains tiles with unresolved transform references.
+     */
+    public int parse(final InputStream inputStream)
+            throws IOException {
+        return parse(inputStream, JsonUtils.FAST_MAPPER);
+    }
+
+    /**
+     * @param  inputStream  resolved tiles stream.
+     * @param  mapper       mapper for the stream's encoding (e.g. {@link JsonUtils#SMILE_MAPPER}).
+     *
+     * @return number of tile specs passed to the consumer.
+     *
+     * @throws IOException
+     *   if the stream cannot be parsed or contains tiles with unresolved transform references.
+     */
+    public int parse(final InputStream inputStream,
+                     final ObjectMapper mapper)
+            throws IOException {
+
+        final Map<String, TransformSpec> transformIdToSpecMap = new HashMap<>();
+        int tileCount = 0;
+
+        try (final JsonParser parser = mapper.getFactory().createParser(inputStream)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ClientProtocolException("resolved tiles object missing from response for\n\n  " +
+                                                  getRequestContext() + "\n");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+                final String fieldName = parser.getCurrentName();
+                final JsonToken valueToken = parser.nextToken();
+
+                if (valueToken != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                } else if ("transformIdToSpecMap".equals(fieldName)) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        parser.nextToken();
+                        final TransformSpec transformSpec = parser.readValueAs(TransformSpec.class);
+                        transformIdToSpecMap.put(transformSpec.getId(), transformSpec);
+                    }
+                    for (final TransformSpec transformSpec : transformIdToSpecMap.values()) {
+                        transformSpec.resolveReferences(transformIdToSpecMap);
+                    }
+                } else if ("tileIdToSpecMap".equals(fieldName)) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        parser.nextToken();
+                        final TileSpec tileSpec = parser.readValueAs(TileSpec.class);
+                        resolveTransformReferences(tileSpec, transformIdToSpecMap);
+                        tileSpecConsumer.accept(tileSpec);
+                        tileCount++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return tileCount;
+    }
+
+    private void resolveTransformReferences(final TileSpec tileSpec,
+                                            final Map<String, TransformSpec> transformIdToSpecMap)
+            throws ClientProtocolException {
+        final ListTransformSpec transforms = tileSpec.getTransforms();
+        if ((transforms != null) && (! transforms.isFullyResolved())) {
+            transforms.resolveReferences(transformIdToSpecMap);
+            if (! transforms.isFullyResolved()) {
+                throw new ClientProtocolException("tile " + tileSpec.getTileId() +
+                                                  " requires the following unavailable transform ids " +
+                                                  transforms.getUnresolvedIds() + " for\n\n  " +
+                                                  getRequestContext() + "\n");
+            }
+        }
+    }
+
+}
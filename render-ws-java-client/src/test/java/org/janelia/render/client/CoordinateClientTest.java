@@ -5,10 +5,12 @@ import com.google.common.io.Files;
 import java.io.File;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.TileCoordinates;
 import org.janelia.alignment.spec.TileSpec;
@@ -29,12 +31,16 @@ import org.junit.Test;
 public class CoordinateClientTest {
 
     private File targetSwcDirectory;
+    private File streamingDirectory;
 
     @After
     public void tearDown() throws Exception {
         if (targetSwcDirectory != null) {
             FileUtil.deleteRecursive(targetSwcDirectory);
         }
+        if (streamingDirectory != null) {
+            FileUtil.deleteRecursive(streamingDirectory);
+        }
     }
 
     @Test
@@ -52,6 +58,73 @@ public class CoordinateClientTest {
         testRoundTripMapping(3);
     }
 
+    @Test
+    public void testStreamingRoundTripMapping() throws Exception {
+
+        final String stackName = "test-stack";
+        final Double z = 9.9;
+        final CoordinateClient client = new CoordinateClient(stackName, z, null, 1);
+
+        final TileSpec tile = getTileSpec("tile-1", z);
+        final ResolvedTileSpecCollection tiles =
+                new ResolvedTileSpecCollection(new ArrayList<>(), Collections.singletonList(tile));
+
+        final List<TileCoordinates> worldList = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            worldList.add(TileCoordinates.buildWorldInstance(tile.getTileId(), new double[]{i, (i + 1), z}));
+        }
+
+        streamingDirectory = MipmapClientTest.createTestDirectory("streaming");
+        final File fromFile = new File(streamingDirectory, "world.json");
+        final File toFile = new File(streamingDirectory, "mapped.json");
+        Files.write(JsonUtils.MAPPER.writeValueAsString(worldList), fromFile, Charset.defaultCharset());
+
+        final List<Integer> chunkSizes = new ArrayList<>();
+        final CoordinateClient.ChunkMapper<TileCoordinates, TileCoordinates> roundTripMapper = chunk -> {
+            chunkSizes.add(chunk.size());
+            final List<List<TileCoordinates>> worldListOfLists = new ArrayList<>(chunk.size());
+            for (final TileCoordinates worldCoordinates : chunk) {
+                worldListOfLists.add(Collections.singletonList(worldCoordinates));
+            }
+            return client.localToWorld(client.worldToLocal(worldListOfLists, tiles), tiles);
+        };
+
+        CoordinateClient.streamJsonArray(fromFile.getAbsolutePath(),
+                                         toFile.getAbsolutePath(),
+                                         JsonUtils.MAPPER.getTypeFactory().constructType(TileCoordinates.class),
+                                         3,
+                                         roundTripMapper);
+
+        Assert.assertEquals("invalid chunk sizes", Arrays.asList(3, 3, 1), chunkSizes);
+
+        final List<TileCoordinates> mappedList =
+                CoordinateClient.loadJsonArrayOfCoordinates(toFile.getAbsolutePath());
+
+        Assert.assertEquals("invalid number of mapped coordinates", worldList.size(), mappedList.size());
+
+        for (int i = 0; i < worldList.size(); i++) {
+            final TileCoordinates mappedCoordinates = mappedList.get(i);
+            Assert.assertFalse("mapped coordinates " + i + " have error: " + mappedCoordinates.toJson(),
+                               mappedCoordinates.hasError());
+            Assert.assertArrayEquals("invalid world values for mapped coordinates " + i,
+                                     worldList.get(i).getWorld(), mappedCoordinates.getWorld(), 0.01);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStreamingChunkSizeRejectedForSwc() throws Exception {
+
+        streamingDirectory = MipmapClientTest.createTestDirectory("streaming_swc");
+
+        final CoordinateClient.Parameters parameters = new CoordinateClient.Parameters();
+        parameters.fromSwcDirectory = "src/test/resources/swc";
+        parameters.toSwcDirectory = streamingDirectory.getAbsolutePath();
+        parameters.toStack = "test-to-stack";
+        parameters.streamingChunkSize = 10;
+
+        parameters.validateInputAndOutput();
+    }
+
     @Test
     public void testMissingCoordinatesErrors() throws Exception {
         final String stackName = "test-stack";
@@ -1,6 +1,31 @@
 package org.janelia.render.client;
 
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.ClientProtocolException;
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.ListTransformSpec;
+import org.janelia.alignment.spec.ReferenceTransformSpec;
+import org.janelia.alignment.spec.ResolvedTileSpecCollection;
+import org.janelia.alignment.spec.TransformSpec;
+import org.janelia.alignment.util.FileUtil;
 import org.janelia.render.client.parameter.CommandLineParameters;
+import org.janelia.render.client.response.HttpStatusException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
 /**
@@ -10,9 +35,207 @@ import org.junit.Test;
  */
 public class ImportJsonClientTest {
 
+    private File testDirectory;
+    private File tileFile;
+
+    @Before
+    public void setUp() throws Exception {
+        testDirectory = MipmapClientTest.createTestDirectory("test_import_json_client");
+        tileFile = new File(testDirectory, "tiles.json");
+
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < NUMBER_OF_TILES; i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("{\"tileId\": \"tile-").append(i).append("\", \"z\": 1.0, ")
+                .append("\"width\": 100, \"height\": 100, ")
+                .append("\"transforms\": {\"type\": \"list\", \"specList\": [")
+                .append("{\"type\": \"leaf\", \"className\": \"mpicbg.trakem2.transform.AffineModel2D\", ")
+                .append("\"dataString\": \"1 0 0 1 ").append(i * 100).append(" 0\"}]}}");
+        }
+        json.append("]");
+
+        Files.write(json.toString(), tileFile, StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testDirectory != null) {
+            FileUtil.deleteRecursive(testDirectory);
+        }
+    }
+
     @Test
     public void testParameterParsing() throws Exception {
         CommandLineParameters.parseHelp(new ImportJsonClient.Parameters());
     }
 
+    @Test
+    public void testChunking() throws Exception {
+
+        final SavingDataClient dataClient = new SavingDataClient(Collections.emptyList());
+        final ImportJsonClient client = buildClient(dataClient, 3);
+
+        client.importStackData(tileFile.getAbsolutePath());
+
+        final List<Integer> savedChunkSizes = dataClient.getSavedChunkSizes();
+        Collections.sort(savedChunkSizes);
+        Assert.assertEquals("invalid saved chunk sizes", Arrays.asList(1, 3, 3), savedChunkSizes);
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() throws Exception {
+
+        final SavingDataClient dataClient =
+                new SavingDataClient(Arrays.asList(new ConnectException("test connection refused"),
+                                                   new HttpStatusException(503, "test unavailable")));
+        final ImportJsonClient client = buildClient(dataClient, NUMBER_OF_TILES);
+
+        client.importStackData(tileFile.getAbsolutePath());
+
+        Assert.assertEquals("invalid number of save attempts", 3, dataClient.getAttemptCount());
+        Assert.assertEquals("invalid saved chunk sizes",
+                            Collections.singletonList(NUMBER_OF_TILES), dataClient.getSavedChunkSizes());
+    }
+
+    @Test
+    public void testClientErrorsAreNotRetried() throws Exception {
+
+        final SavingDataClient dataClient =
+                new SavingDataClient(Collections.singletonList(new HttpStatusException(400, "test bad request")));
+        final ImportJsonClient client = buildClient(dataClient, NUMBER_OF_TILES);
+
+        try {
+            client.importStackData(tileFile.getAbsolutePath());
+            Assert.fail("import should have failed");
+        } catch (final IOException e) {
+            Assert.assertTrue("invalid cause " + e.getCause(), e.getCause() instanceof HttpStatusException);
+        }
+
+        Assert.assertEquals("client error should not be retried", 1, dataClient.getAttemptCount());
+        Assert.assertEquals("no chunks should have been saved", 0, dataClient.getSavedChunkSizes().size());
+    }
+
+    @Test
+    public void testChunksOnlyIncludeReferencedTransforms() throws Exception {
+
+        final File referencingTileFile = new File(testDirectory, "referencing-tiles.json");
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 4; i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("{\"tileId\": \"tile-").append(i).append("\", \"z\": 1.0, ")
+                .append("\"width\": 100, \"height\": 100, ")
+                .append("\"transforms\": {\"type\": \"list\", \"specList\": [")
+                .append("{\"type\": \"ref\", \"refId\": \"").append(i < 2 ? "a" : "b").append("\"}]}}");
+        }
+        json.append("]");
+        Files.write(json.toString(), referencingTileFile, StandardCharsets.UTF_8);
+
+        // shared list b references shared leaf c, nothing references d
+        final ListTransformSpec b = new ListTransformSpec("b", null);
+        b.addSpec(new ReferenceTransformSpec("c"));
+        final List<TransformSpec> transformSpecs = Arrays.asList(buildAffineSpec("a", 10),
+                                                                 b,
+                                                                 buildAffineSpec("c", 20),
+                                                                 buildAffineSpec("d", 30));
+
+        final SavingDataClient dataClient = new SavingDataClient(Collections.emptyList());
+        final ImportJsonClient.Parameters parameters = new ImportJsonClient.Parameters();
+        parameters.stack = "test-stack";
+        parameters.chunkSize = 2;
+        parameters.numberOfThreads = 2;
+        final ImportJsonClient client = new ImportJsonClient(parameters, dataClient, transformSpecs, 1);
+
+        client.importStackData(referencingTileFile.getAbsolutePath());
+
+        final List<String> savedTransformIds = dataClient.getSavedTransformIds();
+        Collections.sort(savedTransformIds);
+        Assert.assertEquals("chunks should only include (transitively) referenced transforms",
+                            Arrays.asList("[a]", "[b, c]"), savedTransformIds);
+    }
+
+    @Test
+    public void testIsTransientFailure() throws Exception {
+        Assert.assertTrue("connection failure should be transient",
+                          ImportJsonClient.isTransientFailure(new ConnectException("test")));
+        Assert.assertTrue("server error should be transient",
+                          ImportJsonClient.isTransientFailure(new HttpStatusException(500, "test")));
+        Assert.assertFalse("not found should not be transient",
+                           ImportJsonClient.isTransientFailure(new HttpStatusException(404, "test")));
+        Assert.assertFalse("protocol error should not be transient",
+                           ImportJsonClient.isTransientFailure(new ClientProtocolException("test")));
+    }
+
+    private ImportJsonClient buildClient(final RenderDataClient dataClient,
+                                         final int chunkSize) {
+        final ImportJsonClient.Parameters parameters = new ImportJsonClient.Parameters();
+        parameters.stack = "test-stack";
+        parameters.chunkSize = chunkSize;
+        parameters.numberOfThreads = 2;
+        return new ImportJsonClient(parameters, dataClient, new ArrayList<>(), 1);
+    }
+
+    private static LeafTransformSpec buildAffineSpec(final String id,
+                                                     final int translateX) {
+        return new LeafTransformSpec(id, null, "mpicbg.trakem2.transform.AffineModel2D",
+                                     "1 0 0 1 " + translateX + " 0");
+    }
+
+    /**
+     * Records saved chunks instead of submitting them, failing with the specified exceptions first.
+     */
+    private static class SavingDataClient
+            extends RenderDataClient {
+
+        private final List<IOException> failures;
+        private final AtomicInteger attemptCount;
+        private final List<Integer> savedChunkSizes;
+        private final List<String> savedTransformIds;
+
+        SavingDataClient(final List<IOException> failures) {
+            super("http://localhost:8080/render-ws/v1", "test-owner", "test-project");
+            this.failures = failures;
+            this.attemptCount = new AtomicInteger(0);
+            this.savedChunkSizes = new ArrayList<>();
+            this.savedTransformIds = new ArrayList<>();
+        }
+
+        @Override
+        public void saveCompressedResolvedTiles(final ResolvedTileSpecCollection resolvedTiles,
+                                                final String stack,
+                                                final Double z)
+                throws IOException {
+            final int attempt = attemptCount.getAndIncrement();
+            if (attempt < failures.size()) {
+                throw failures.get(attempt);
+            }
+            synchronized (savedChunkSizes) {
+                savedChunkSizes.add(resolvedTiles.getTileCount());
+                final Set<String> transformIds = new TreeSet<>();
+                resolvedTiles.getTransformSpecs().forEach(spec -> transformIds.add(spec.getId()));
+                savedTransformIds.add(transformIds.toString());
+            }
+        }
+
+        int getAttemptCount() {
+            return attemptCount.get();
+        }
+
+        List<Integer> getSavedChunkSizes() {
+            synchronized (savedChunkSizes) {
+                return new ArrayList<>(savedChunkSizes);
+            }
+        }
+
+        List<String> getSavedTransformIds() {
+            synchronized (savedChunkSizes) {
+                return new ArrayList<>(savedTransformIds);
+            }
+        }
+    }
+
+    private static final int NUMBER_OF_TILES = 7;
 }
@@ -0,0 +1,80 @@
+package org.janelia.render.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.janelia.alignment.spec.stack.StackId;
+import org.janelia.render.client.parameter.CommandLineParameters;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link SpatialKeyMigrationClient} class.
+ */
+public class SpatialKeyMigrationClientTest {
+
+    @Test
+    public void testParameterParsing() throws Exception {
+        CommandLineParameters.parseHelp(new SpatialKeyMigrationClient.Parameters());
+    }
+
+    @Test
+    public void testUpdateAllProjectStacks() throws Exception {
+
+        final UpdatingDataClient dataClient = new UpdatingDataClient();
+        final SpatialKeyMigrationClient client =
+                new SpatialKeyMigrationClient(new SpatialKeyMigrationClient.Parameters(), dataClient);
+
+        final long updatedCount = client.updateStacks();
+
+        Assert.assertEquals("all project stacks should have been updated",
+                            Arrays.asList("a", "bb", "ccc"), dataClient.updatedStacks);
+        Assert.assertEquals("invalid total updated count", 1 + 2 + 3, updatedCount);
+    }
+
+    @Test
+    public void testUpdateSpecifiedStacks() throws Exception {
+
+        final SpatialKeyMigrationClient.Parameters parameters = new SpatialKeyMigrationClient.Parameters();
+        parameters.stackNames = Collections.singletonList("bb");
+
+        final UpdatingDataClient dataClient = new UpdatingDataClient();
+        final SpatialKeyMigrationClient client = new SpatialKeyMigrationClient(parameters, dataClient);
+
+        final long updatedCount = client.updateStacks();
+
+        Assert.assertEquals("only specified stack should have been updated",
+                            Collections.singletonList("bb"), dataClient.updatedStacks);
+        Assert.assertEquals("invalid total updated count", 2, updatedCount);
+    }
+
+    /**
+     * Records stack updates instead of submitting them (each stack's updated count is its name length).
+     */
+    private static class UpdatingDataClient
+            extends RenderDataClient {
+
+        private final List<String> updatedStacks;
+
+        UpdatingDataClient() {
+            super("http://localhost:8080/render-ws/v1", "testOwner", "testProject");
+            this.updatedStacks = new ArrayList<>();
+        }
+
+        @Override
+        public List<StackId> getProjectStacks() {
+            return Arrays.asList(new StackId("testOwner", "testProject", "a"),
+                                 new StackId("testOwner", "testProject", "bb"),
+                                 new StackId("testOwner", "testProject", "ccc"));
+        }
+
+        @Override
+        public long updateSpatialKeys(final String stack) {
+            updatedStacks.add(stack);
+            return stack.length();
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.janelia.render.client.response;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.ReferenceTransformSpec;
+import org.janelia.alignment.spec.ResolvedTileSpecCollection;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.TransformSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ResolvedTilesStreamResponseHandler} class.
+ */
+public class ResolvedTilesStreamResponseHandlerTest {
+
+    @Test
+    public void testParse() throws Exception {
+
+        final ResolvedTileSpecCollection resolvedTiles = buildResolvedTiles();
+
+        final List<TileSpec> parsedTileSpecs = new ArrayList<>();
+        final int tileCount = parse(resolvedTiles.toJson(), parsedTileSpecs);
+
+        validateParsedTiles(tileCount, parsedTileSpecs);
+    }
+
+    @Test
+    public void testParseSmile() throws Exception {
+
+        final ResolvedTileSpecCollection resolvedTiles = buildResolvedTiles();
+        final byte[] smileBytes = JsonUtils.SMILE_MAPPER.writeValueAsBytes(resolvedTiles);
+
+        final List<TileSpec> parsedTileSpecs = new ArrayList<>();
+        final ResolvedTilesStreamResponseHandler handler =
+                new ResolvedTilesStreamResponseHandler("test", parsedTileSpecs::add);
+        final int tileCount = handler.parse(new ByteArrayInputStream(smileBytes), JsonUtils.SMILE_MAPPER);
+
+        validateParsedTiles(tileCount, parsedTileSpecs);
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseWithMissingTransform() throws Exception {
+        final String json =
+                "{ \"transformIdToSpecMap\": {}, \"tileIdToSpecMap\": { \"tile-a\": " +
+                "{ \"tileId\": \"tile-a\", \"z\": 1.0, " +
+                "\"transforms\": { \"type\": \"list\", \"specList\": [ { \"type\": \"ref\", \"refId\": \"missing\" } ] } " +
+                "} } }";
+        parse(json, new ArrayList<>());
+    }
+
+    private ResolvedTileSpecCollection buildResolvedTiles() {
+
+        final TransformSpec sharedTransform = new LeafTransformSpec("shared-1",
+                                                                    null,
+                                                                    "mpicbg.trakem2.transform.AffineModel2D",
+                                                                    "1 0 0 1 10 20");
+        final List<TileSpec> tileSpecs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final TileSpec tileSpec = new TileSpec();
+            tileSpec.setTileId("tile-" + i);
+            tileSpec.setZ(1.0);
+            tileSpec.addTransformSpecs(Collections.singletonList(new ReferenceTransformSpec("shared-1")));
+            tileSpecs.add(tileSpec);
+        }
+
+        return new ResolvedTileSpecCollection(Collections.singletonList(sharedTransform), tileSpecs);
+    }
+
+    private void validateParsedTiles(final int tileCount,
+                                     final List<TileSpec> parsedTileSpecs) {
+        Assert.assertEquals("invalid tile count returned", 3, tileCount);
+        Assert.assertEquals("invalid number of tiles consumed", 3, parsedTileSpecs.size());
+        for (final TileSpec tileSpec : parsedTileSpecs) {
+            Assert.assertTrue("transforms not resolved for " + tileSpec.getTileId(),
+                              tileSpec.getTransforms().isFullyResolved());
+        }
+    }
+
+    private int parse(final String json,
+                      final List<TileSpec> parsedTileSpecs)
+            throws IOException {
+        final ResolvedTilesStreamResponseHandler handler =
+                new ResolvedTilesStreamResponseHandler("test", parsedTileSpecs::add);
+        return handler.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -72,6 +72,12 @@ public class TransformSectionClient implements Serializable {
         @Parameter(names = "--transformData", description = "Data with which transformation implementation should be initialized (expects values to be separated by ',' instead of ' ')", required = true)
         public String transformData;
 
+        @Parameter(
+                names = "--numberOfThreads",
+                description = "Number of threads each executor should use for deriving tile bounding boxes",
+                required = false)
+        public int numberOfThreads = 1;
+
         public String getTargetOwner() {
             if (targetOwner == null) {
                 targetOwner = renderWeb.owner;
@@ -169,6 +175,7 @@ public class TransformSectionClient implements Serializable {
                     sourceDataClient1.getResolvedTiles(parameters.stack, z);
 
             sourceCollection.addTransformSpecToCollection(stackTransform);
+            sourceCollection.setNumberOfThreads(parameters.numberOfThreads);
             sourceCollection.addReferenceTransformToAllTiles(stackTransform.getId(), false);
 
             //vs tile spec validation?
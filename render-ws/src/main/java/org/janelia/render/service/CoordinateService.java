@@ -3,7 +3,9 @@ package org.janelia.render.service;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -195,58 +197,29 @@ public class CoordinateService {
                  owner, project, stack, localCoordinatesList.size());
 
         final long startTime = System.currentTimeMillis();
-        long lastStatusTime = startTime;
-        final List<TileCoordinates> worldCoordinatesList = new ArrayList<>(localCoordinatesList.size());
         final StackId stackId = new StackId(owner, project, stack);
-        TileSpec tileSpec;
-        TileCoordinates coordinates;
-        String tileId;
-        double[] local;
-        int errorCount = 0;
-        for (int i = 0; i < localCoordinatesList.size(); i++) {
-
-            coordinates = localCoordinatesList.get(i);
-            try {
-
-                if (coordinates == null) {
-                    throw new IllegalArgumentException("coordinates are missing");
-                }
-
-                tileId = coordinates.getTileId();
-                if (tileId == null) {
-                    throw new IllegalArgumentException("tileId is missing");
-                }
-
-                local = coordinates.getLocal();
-                if (local == null) {
-                    throw new IllegalArgumentException("local values are missing");
-                } else if (local.length < 2) {
-                    throw new IllegalArgumentException("local values must include both x and y");
-                }
-
-                tileSpec = renderDao.getTileSpec(stackId, tileId, true);
-                worldCoordinatesList.add(TileCoordinates.getWorldCoordinates(tileSpec, local[0], local[1]));
-
-            } catch (final Throwable t) {
 
-                LOG.warn("getWorldCoordinates: caught exception for list item {}, adding original coordinates with error message to list", i, t);
+        final int numberOfPoints = localCoordinatesList.size();
+        final long[] lastStatusTime = { startTime };
+
+        // each distinct tile is loaded once and all of its points are transformed in one batch
+        final List<TileCoordinates> worldCoordinatesList =
+                TileCoordinates.getWorldCoordinates(
+                        localCoordinatesList,
+                        tileId -> renderDao.getTileSpec(stackId, tileId, true),
+                        processedCount -> {
+                            if ((System.currentTimeMillis() - lastStatusTime[0]) > COORDINATE_PROCESSING_LOG_INTERVAL) {
+                                lastStatusTime[0] = System.currentTimeMillis();
+                                LOG.info("getWorldCoordinates: transformed {} out of {} points",
+                                         processedCount, numberOfPoints);
+                            }
+                        });
 
+        int errorCount = 0;
+        for (final TileCoordinates worldCoordinates : worldCoordinatesList) {
+            if (worldCoordinates.hasError()) {
                 errorCount++;
-
-                if (coordinates == null) {
-                    coordinates = TileCoordinates.buildLocalInstance(null, null);
-                }
-                coordinates.setError(t.getMessage());
-
-                worldCoordinatesList.add(coordinates);
             }
-
-            if ((System.currentTimeMillis() - lastStatusTime) > COORDINATE_PROCESSING_LOG_INTERVAL) {
-                lastStatusTime = System.currentTimeMillis();
-                LOG.info("getWorldCoordinates: transformed {} out of {} points",
-                         worldCoordinatesList.size(), localCoordinatesList.size());
-            }
-
         }
 
         LOG.info("getWorldCoordinates: exit, transformed {} points with {} errors in {} ms",
@@ -362,6 +335,7 @@ public class CoordinateService {
 
         final List<List<TileCoordinates>> localCoordinatesList = new ArrayList<>(worldCoordinatesList.size());
         final StackId stackId = new StackId(owner, project, stack);
+        final Map<String, TileSpec> loadedTileSpecs = new HashMap<>();
         List<TileSpec> tileSpecList;
         TileCoordinates coordinates;
         double[] world;
@@ -391,7 +365,8 @@ public class CoordinateService {
                     throw new IllegalArgumentException("world values must include both x and y");
                 }
 
-                tileSpecList = renderDao.getTileSpecs(stackId, world[0], world[1], currentZ);
+                tileSpecList = getLoadedInstances(renderDao.getTileSpecs(stackId, world[0], world[1], currentZ),
+                                                  loadedTileSpecs);
                 localCoordinatesList.add(TileCoordinates.getLocalCoordinates(tileSpecList,
                                                                              world[0],
                                                                              world[1]));
@@ -424,6 +399,24 @@ public class CoordinateService {
         return localCoordinatesList;
     }
 
+    /**
+     * Swaps in previously loaded instances for any tile specs that have already been seen during a request
+     * so that each tile's (cached) inverse transform index only needs to be built once per request.
+     *
+     * @param  tileSpecList     tile specs just retrieved from the database.
+     * @param  loadedTileSpecs  previously loaded tile specs mapped by tile id.
+     *
+     * @return list of tile specs in the same order as the retrieved list.
+     */
+    private List<TileSpec> getLoadedInstances(final List<TileSpec> tileSpecList,
+                                              final Map<String, TileSpec> loadedTileSpecs) {
+        final List<TileSpec> loadedList = new ArrayList<>(tileSpecList.size());
+        for (final TileSpec tileSpec : tileSpecList) {
+            loadedList.add(loadedTileSpecs.computeIfAbsent(tileSpec.getTileId(), tileId -> tileSpec));
+        }
+        return loadedList;
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(CoordinateService.class);
 
     private static final long COORDINATE_PROCESSING_LOG_INTERVAL = 5000;
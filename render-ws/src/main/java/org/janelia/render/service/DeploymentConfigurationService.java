@@ -14,7 +14,13 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.janelia.alignment.filter.FilterFactory;
+import org.janelia.alignment.util.HistogramMetricsRegistry;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.MetricsRegistry;
+import org.janelia.alignment.util.RenderMetrics;
+import org.janelia.render.service.util.EncodedImageCache;
+import org.janelia.render.service.util.PrometheusMetricsFormatter;
+import org.janelia.render.service.util.RenderRequestExecutor;
 import org.janelia.render.service.util.RenderServerProperties;
 import org.janelia.render.service.util.RenderServiceUtil;
 import org.janelia.render.service.util.SharedImageProcessorCache;
@@ -122,6 +128,37 @@ public class DeploymentConfigurationService {
         return response;
     }
 
+    @Path("v1/metrics")
+    @GET
+    @Produces(PrometheusMetricsFormatter.CONTENT_TYPE)
+    @ApiOperation(
+            tags = "Service Configuration APIs",
+            value = "Render timing histograms, cache counters, and queue gauges in Prometheus text format",
+            produces = PrometheusMetricsFormatter.CONTENT_TYPE)
+    public Response getMetrics() {
+        Response response = null;
+        try {
+            final MetricsRegistry registry = RenderMetrics.getRegistry();
+            if (! (registry instanceof HistogramMetricsRegistry)) {
+                throw new IllegalStateException("metrics are not being recorded in memory for this server, " +
+                                                "current registry is " + registry);
+            }
+            final Map<String, Long> gaugeValues = RenderRequestExecutor.getInstance().getGaugeValues();
+            final EncodedImageCache encodedImageCache = EncodedImageCache.getInstance();
+            gaugeValues.put("encoded_image_cache_entries", encodedImageCache.size());
+            gaugeValues.put("encoded_image_cache_memory_bytes", encodedImageCache.getMemoryBytes());
+            final String metrics =
+                    PrometheusMetricsFormatter.format((HistogramMetricsRegistry) registry,
+                                                      SharedImageProcessorCache.getInstance(),
+                                                      gaugeValues);
+            response = Response.ok(metrics, PrometheusMetricsFormatter.CONTENT_TYPE).build();
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        return response;
+    }
+
     private FilterFactory getFilterFactory() {
         if (this.filterFactory == null) {
             // lazy-load factory configuration from JSON file
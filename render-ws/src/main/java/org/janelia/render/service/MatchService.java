@@ -1,5 +1,7 @@
 package org.janelia.render.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
@@ -15,11 +17,13 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.match.CanvasMatches;
 import org.janelia.alignment.match.MatchCollectionId;
 import org.janelia.alignment.match.MatchCollectionMetaData;
@@ -193,7 +197,7 @@ public class MatchService {
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/pGroup/{pGroupId}/matches")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Find matches with the specified pGroup",
             notes = "Find all matches where the first tile is in the specified layer.",
@@ -205,22 +209,25 @@ public class MatchService {
     public Response getMatchesWithPGroup(@PathParam("owner") final String owner,
                                          @PathParam("matchCollection") final String matchCollection,
                                          @PathParam("pGroupId") final String pGroupId,
-                                         @QueryParam("mergeCollection") final List<String> mergeCollectionList) {
+                                         @QueryParam("mergeCollection") final List<String> mergeCollectionList,
+                                         @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getMatchesWithPGroup: entry, owner={}, matchCollection={}, pGroupId={}, mergeCollectionList={}",
                  owner, matchCollection, pGroupId, mergeCollectionList);
 
         final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
         final List<MatchCollectionId> mergeCollectionIdList = getCollectionIdList(owner, mergeCollectionList);
+        final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+        final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
         final StreamingOutput responseOutput =
-                output -> matchDao.writeMatchesWithPGroup(collectionId, mergeCollectionIdList, pGroupId, output);
+                output -> matchDao.writeMatchesWithPGroup(collectionId, mergeCollectionIdList, pGroupId, responseMapper, output);
 
-        return streamResponse(responseOutput);
+        return streamResponse(responseOutput, mediaType);
     }
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/group/{groupId}/matchesWithinGroup")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Find matches within the specified group",
             notes = "Find all matches where both tiles are in the specified layer.",
@@ -232,22 +239,25 @@ public class MatchService {
     public Response getMatchesWithinGroup(@PathParam("owner") final String owner,
                                           @PathParam("matchCollection") final String matchCollection,
                                           @PathParam("groupId") final String groupId,
-                                          @QueryParam("mergeCollection") final List<String> mergeCollectionList) {
+                                          @QueryParam("mergeCollection") final List<String> mergeCollectionList,
+                                          @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getMatchesWithinGroup: entry, owner={}, matchCollection={}, groupId={}, mergeCollectionList={}",
                  owner, matchCollection, groupId, mergeCollectionList);
 
         final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
         final List<MatchCollectionId> mergeCollectionIdList = getCollectionIdList(owner, mergeCollectionList);
+        final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+        final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
         final StreamingOutput responseOutput =
-                output -> matchDao.writeMatchesWithinGroup(collectionId, mergeCollectionIdList, groupId, output);
+                output -> matchDao.writeMatchesWithinGroup(collectionId, mergeCollectionIdList, groupId, responseMapper, output);
 
-        return streamResponse(responseOutput);
+        return streamResponse(responseOutput, mediaType);
     }
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/group/{groupId}/matchesOutsideGroup")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Find matches outside the specified group",
             notes = "Find all matches with one tile in the specified layer and another tile outside that layer.",
@@ -259,22 +269,25 @@ public class MatchService {
     public Response getMatchesOutsideGroup(@PathParam("owner") final String owner,
                                            @PathParam("matchCollection") final String matchCollection,
                                            @PathParam("groupId") final String groupId,
-                                           @QueryParam("mergeCollection") final List<String> mergeCollectionList) {
+                                           @QueryParam("mergeCollection") final List<String> mergeCollectionList,
+                                           @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getMatchesOutsideGroup: entry, owner={}, matchCollection={}, groupId={}, mergeCollectionList={}",
                  owner, matchCollection, groupId, mergeCollectionList);
 
         final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
         final List<MatchCollectionId> mergeCollectionIdList = getCollectionIdList(owner, mergeCollectionList);
+        final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+        final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
         final StreamingOutput responseOutput =
-                output -> matchDao.writeMatchesOutsideGroup(collectionId, mergeCollectionIdList, groupId, output);
+                output -> matchDao.writeMatchesOutsideGroup(collectionId, mergeCollectionIdList, groupId, responseMapper, output);
 
-        return streamResponse(responseOutput);
+        return streamResponse(responseOutput, mediaType);
     }
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/group/{pGroupId}/matchesWith/{qGroupId}")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Find matches between the specified groups",
             notes = "Find all matches with one tile in the specified p layer and another tile in the specified q layer.",
@@ -287,22 +300,25 @@ public class MatchService {
                                             @PathParam("matchCollection") final String matchCollection,
                                             @PathParam("pGroupId") final String pGroupId,
                                             @PathParam("qGroupId") final String qGroupId,
-                                            @QueryParam("mergeCollection") final List<String> mergeCollectionList) {
+                                            @QueryParam("mergeCollection") final List<String> mergeCollectionList,
+                                            @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getMatchesBetweenGroups: entry, owner={}, matchCollection={}, pGroupId={}, qGroupId={}, mergeCollectionList={}",
                  owner, matchCollection, pGroupId, qGroupId, mergeCollectionList);
 
         final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
         final List<MatchCollectionId> mergeCollectionIdList = getCollectionIdList(owner, mergeCollectionList);
+        final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+        final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
         final StreamingOutput responseOutput =
-                output -> matchDao.writeMatchesBetweenGroups(collectionId, mergeCollectionIdList, pGroupId, qGroupId, output);
+                output -> matchDao.writeMatchesBetweenGroups(collectionId, mergeCollectionIdList, pGroupId, qGroupId, responseMapper, output);
 
-        return streamResponse(responseOutput);
+        return streamResponse(responseOutput, mediaType);
     }
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/group/{pGroupId}/id/{pId}/matchesWith/{qGroupId}/id/{qId}")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Find matches between the specified objects",
             notes = "Find all matches between two specific tiles.",
@@ -317,21 +333,24 @@ public class MatchService {
                                              @PathParam("pId") final String pId,
                                              @PathParam("qGroupId") final String qGroupId,
                                              @PathParam("qId") final String qId,
-                                             @QueryParam("mergeCollection") final List<String> mergeCollectionList) {
+                                             @QueryParam("mergeCollection") final List<String> mergeCollectionList,
+                                             @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getMatchesBetweenObjects: entry, owner={}, matchCollection={}, pGroupId={}, pId={}, qGroupId={}, qId={}, mergeCollectionList={}",
                  owner, matchCollection, pGroupId, pId, qGroupId, qId, mergeCollectionList);
 
         final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
         final List<MatchCollectionId> mergeCollectionIdList = getCollectionIdList(owner, mergeCollectionList);
+        final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+        final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
         final StreamingOutput responseOutput =
-                output -> matchDao.writeMatchesBetweenObjects(collectionId, mergeCollectionIdList, pGroupId, pId, qGroupId, qId, output);
+                output -> matchDao.writeMatchesBetweenObjects(collectionId, mergeCollectionIdList, pGroupId, pId, qGroupId, qId, responseMapper, output);
 
-        return streamResponse(responseOutput);
+        return streamResponse(responseOutput, mediaType);
     }
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/group/{pGroupId}/id/{pId}/matchesWith/{qGroupId}")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Find matches from a specified object to a specified group",
             notes = "Find all matches between a specific tile and a specific section.",
@@ -345,22 +364,25 @@ public class MatchService {
                                                 @PathParam("pGroupId") final String pGroupId,
                                                 @PathParam("pId") final String pId,
                                                 @PathParam("qGroupId") final String qGroupId,
-                                                @QueryParam("mergeCollection") final List<String> mergeCollectionList) {
+                                                @QueryParam("mergeCollection") final List<String> mergeCollectionList,
+                                                @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getMatchesFromObjectToGroup: entry, owner={}, matchCollection={}, pGroupId={}, pId={}, qGroupId={}, mergeCollectionList={}",
                  owner, matchCollection, pGroupId, pId, qGroupId, mergeCollectionList);
 
         final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
         final List<MatchCollectionId> mergeCollectionIdList = getCollectionIdList(owner, mergeCollectionList);
+        final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+        final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
         final StreamingOutput responseOutput =
-                output -> matchDao.writeMatchesBetweenObjectAndGroup(collectionId, mergeCollectionIdList, pGroupId, pId, qGroupId, output);
+                output -> matchDao.writeMatchesBetweenObjectAndGroup(collectionId, mergeCollectionIdList, pGroupId, pId, qGroupId, responseMapper, output);
 
-        return streamResponse(responseOutput);
+        return streamResponse(responseOutput, mediaType);
     }
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/group/{groupId}/id/{id}")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Find matches from or to a specific object",
             notes = "Find all matches that either come from or to a specific tile.",
@@ -373,17 +395,20 @@ public class MatchService {
                                              @PathParam("matchCollection") final String matchCollection,
                                              @PathParam("groupId") final String groupId,
                                              @PathParam("id") final String id,
-                                             @QueryParam("mergeCollection") final List<String> mergeCollectionList) {
+                                             @QueryParam("mergeCollection") final List<String> mergeCollectionList,
+                                             @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getMatchesInvolvingObject: entry, owner={}, matchCollection={}, groupId={}, id={}, mergeCollectionList={}",
                  owner, matchCollection, groupId, id, mergeCollectionList);
 
         final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
         final List<MatchCollectionId> mergeCollectionIdList = getCollectionIdList(owner, mergeCollectionList);
+        final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+        final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
         final StreamingOutput responseOutput =
-                output -> matchDao.writeMatchesInvolvingObject(collectionId, mergeCollectionIdList, groupId, id, output);
+                output -> matchDao.writeMatchesInvolvingObject(collectionId, mergeCollectionIdList, groupId, id, responseMapper, output);
 
-        return streamResponse(responseOutput);
+        return streamResponse(responseOutput, mediaType);
     }
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/group/{groupId}/id/{id}")
@@ -505,7 +530,7 @@ public class MatchService {
 
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}/matches")
     @PUT
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Save a set of matches",
             notes = "Inserts or updates matches for the specified collection.")
@@ -618,11 +643,12 @@ public class MatchService {
         return collectionIdList;
     }
 
-    private Response streamResponse(final StreamingOutput responseOutput) {
+    private Response streamResponse(final StreamingOutput responseOutput,
+                                    final MediaType mediaType) {
 
         Response response = null;
         try {
-            response = Response.ok(responseOutput).build();
+            response = Response.ok(responseOutput, mediaType).build();
         } catch (final Throwable t) {
             RenderServiceUtil.throwServiceException(t);
         }
@@ -1,5 +1,7 @@
 package org.janelia.render.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -20,6 +22,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
@@ -27,6 +30,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.filter.FilterFactory;
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.Bounds;
 import org.janelia.alignment.spec.LastTileTransform;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
@@ -182,7 +186,7 @@ public class RenderDataService {
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/sectionData")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Stack Data APIs",
             value = "List z and sectionId for all sections in specified stack",
@@ -396,7 +400,7 @@ public class RenderDataService {
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/sectionData")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Section Data APIs",
             value = "List section data for all sections with specified z",
@@ -424,7 +428,7 @@ public class RenderDataService {
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/tileBounds")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Section Data APIs",
             value = "Get bounds for each tile with specified z")
@@ -493,69 +497,83 @@ public class RenderDataService {
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/resolvedTiles")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Section Data APIs",
-            value = "Get raw tile and transform specs for section with specified z")
+            value = "Get raw tile and transform specs for section with specified z",
+            notes = "Specs are streamed from the database (transform specs first, then tile specs).  " +
+                    "Requests that accept '" + JsonUtils.SMILE_MEDIA_TYPE + "' receive binary (Smile) encoded data.",
+            response = ResolvedTileSpecCollection.class)
     @ApiResponses(value = {
-            @ApiResponse(code = 400, message = "too many (> 50,000) tiles in section"),
             @ApiResponse(code = 404, message = "no tile specs found"),
     })
-    public ResolvedTileSpecCollection getResolvedTiles(@PathParam("owner") final String owner,
-                                                       @PathParam("project") final String project,
-                                                       @PathParam("stack") final String stack,
-                                                       @PathParam("z") final Double z) {
+    public Response getResolvedTiles(@PathParam("owner") final String owner,
+                                     @PathParam("project") final String project,
+                                     @PathParam("stack") final String stack,
+                                     @PathParam("z") final Double z,
+                                     @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getResolvedTiles: entry, owner={}, project={}, stack={}, z={}",
                  owner, project, stack, z);
 
-        ResolvedTileSpecCollection resolvedTiles = null;
+        Response response = null;
         try {
             final StackId stackId = new StackId(owner, project, stack);
-            resolvedTiles = renderDao.getResolvedTiles(stackId, z);
+            final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+            final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
+            final StreamingOutput responseOutput =
+                    output -> renderDao.writeResolvedTiles(stackId, z, responseMapper, output);
+            response = Response.ok(responseOutput, mediaType).build();
         } catch (final Throwable t) {
             RenderServiceUtil.throwServiceException(t);
         }
-        return resolvedTiles;
+        return response;
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/resolvedTiles")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Stack Data APIs",
-            value = "Get raw tile and transform specs for specified group or bounding box")
+            value = "Get raw tile and transform specs for specified group or bounding box",
+            notes = "Specs are streamed from the database (transform specs first, then tile specs).  " +
+                    "Requests that accept '" + JsonUtils.SMILE_MEDIA_TYPE + "' receive binary (Smile) encoded data.",
+            response = ResolvedTileSpecCollection.class)
     @ApiResponses(value = {
-            @ApiResponse(code = 400, message = "too many (> 50,000) matching tiles found"),
             @ApiResponse(code = 404, message = "no tile specs found"),
     })
-    public ResolvedTileSpecCollection getResolvedTiles(@PathParam("owner") final String owner,
-                                                       @PathParam("project") final String project,
-                                                       @PathParam("stack") final String stack,
-                                                       @QueryParam("minZ") final Double minZ,
-                                                       @QueryParam("maxZ") final Double maxZ,
-                                                       @QueryParam("groupId") final String groupId,
-                                                       @QueryParam("minX") final Double minX,
-                                                       @QueryParam("maxX") final Double maxX,
-                                                       @QueryParam("minY") final Double minY,
-                                                       @QueryParam("maxY") final Double maxY) {
+    public Response getResolvedTiles(@PathParam("owner") final String owner,
+                                     @PathParam("project") final String project,
+                                     @PathParam("stack") final String stack,
+                                     @QueryParam("minZ") final Double minZ,
+                                     @QueryParam("maxZ") final Double maxZ,
+                                     @QueryParam("groupId") final String groupId,
+                                     @QueryParam("minX") final Double minX,
+                                     @QueryParam("maxX") final Double maxX,
+                                     @QueryParam("minY") final Double minY,
+                                     @QueryParam("maxY") final Double maxY,
+                                     @Context final HttpHeaders httpHeaders) {
 
         LOG.info("getResolvedTiles: entry, owner={}, project={}, stack={}, minZ={}, maxZ={}, groupId={}, minX={}, maxX={}, minY={}, maxY={}",
                  owner, project, stack, minZ, maxZ, groupId, minX, maxX, minY, maxY);
 
-        ResolvedTileSpecCollection resolvedTiles = null;
+        Response response = null;
         try {
             final StackId stackId = new StackId(owner, project, stack);
-            resolvedTiles = renderDao.getResolvedTiles(stackId, minZ, maxZ, groupId, minX, maxX, minY, maxY);
+            final MediaType mediaType = RenderServiceUtil.getStreamedDataMediaType(httpHeaders);
+            final ObjectMapper responseMapper = RenderServiceUtil.getStreamedDataMapper(mediaType);
+            final StreamingOutput responseOutput =
+                    output -> renderDao.writeResolvedTiles(stackId, minZ, maxZ, groupId, minX, maxX, minY, maxY, responseMapper, output);
+            response = Response.ok(responseOutput, mediaType).build();
         } catch (final Throwable t) {
             RenderServiceUtil.throwServiceException(t);
         }
-        return resolvedTiles;
+        return response;
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/resolvedTiles")
     @PUT
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Stack Data APIs",
             value = "Save specified raw tile and transform specs")
@@ -574,7 +592,7 @@ public class RenderDataService {
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/resolvedTiles")
     @PUT
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Section Data APIs",
             value = "Save specified raw tile and transform specs for section")
@@ -712,7 +730,7 @@ public class RenderDataService {
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/section/{sectionId}/tileBounds")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Section Data APIs",
             value = "Get bounds for each tile with specified sectionId")
@@ -829,7 +847,7 @@ public class RenderDataService {
      */
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/tile-specs")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             tags = "Section Data APIs",
             value = "Get flattened tile specs with the specified z",
@@ -1077,7 +1095,7 @@ public class RenderDataService {
             throws ObjectNotFoundException {
 
         final RenderParameters parameters = renderDao.getParameters(stackId, groupId, x, y, z, width, height, scale);
-        final StackMetaData stackMetaData = getStackMetaData(stackId);
+        final StackMetaData stackMetaData = getCachedStackMetaData(stackId);
         renderQueryParameters.applyQueryAndDefaultParameters(parameters, stackMetaData, this);
         return parameters;
     }
@@ -1087,6 +1105,15 @@ public class RenderDataService {
         return StackMetaDataService.getStackMetaData(stackId, renderDao);
     }
 
+    /**
+     * @return recently loaded (read-only) metadata for the specified stack
+     *         that can be used to check ETags and look up stack bounds without a database read.
+     */
+    public StackMetaData getCachedStackMetaData(final StackId stackId)
+            throws ObjectNotFoundException {
+        return StackMetaDataService.getCachedStackMetaData(stackId, renderDao);
+    }
+
     public void setFilterSpecs(final String filterListName,
                                final RenderParameters renderParameters) {
         if (filterListName != null) {
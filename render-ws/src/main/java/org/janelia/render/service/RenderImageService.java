@@ -1,8 +1,13 @@
 package org.janelia.render.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 import java.io.File;
 import java.net.UnknownHostException;
 import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
 
 import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
@@ -12,10 +17,13 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.Utils;
@@ -24,6 +32,9 @@ import org.janelia.alignment.spec.stack.StackId;
 import org.janelia.alignment.spec.stack.StackMetaData;
 import org.janelia.alignment.spec.stack.StackStats;
 import org.janelia.render.service.model.RenderQueryParameters;
+import org.janelia.render.service.util.LargeDataTileWriter;
+import org.janelia.render.service.util.RenderRequestCoalescer;
+import org.janelia.render.service.util.RenderRequestExecutor;
 import org.janelia.render.service.util.RenderServiceUtil;
 import org.janelia.render.service.util.ResponseHelper;
 import org.slf4j.Logger;
@@ -43,6 +54,9 @@ public class RenderImageService {
 
     private final RenderDataService renderDataService;
 
+    @Context
+    private UriInfo uriInfo;
+
     @SuppressWarnings("UnusedDeclaration")
     public RenderImageService()
             throws UnknownHostException {
@@ -61,13 +75,17 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Spec Image APIs",
             value = "Render JPEG image from a provided spec")
-    public Response renderJpegImageFromProvidedParameters(@PathParam("owner") final String owner,
-                                                          final RenderParameters renderParameters) {
-        return RenderServiceUtil.renderImageStream(renderParameters,
-                                                   Utils.JPEG_FORMAT,
-                                                   RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
-                                                   null,
-                                                   ResponseHelper.NO_CACHE_HELPER);
+    public void renderJpegImageFromProvidedParameters(@PathParam("owner") final String owner,
+                                                      final RenderParameters renderParameters,
+                                                      @Suspended final AsyncResponse asyncResponse) {
+        renderAsync(asyncResponse, renderParameters,
+                    parametersDigest -> RenderServiceUtil.renderImageStream(renderParameters,
+                                                                            Utils.JPEG_FORMAT,
+                                                                            RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
+                                                                            null,
+                                                                            ResponseHelper.NO_CACHE_HELPER,
+                                                                            false,
+                                                                            parametersDigest));
     }
 
     @SuppressWarnings("PathAnnotation")
@@ -78,13 +96,17 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Spec Image APIs",
             value = "Render PNG image from a provided spec")
-    public Response renderPngImageFromProvidedParameters(@PathParam("owner") final String owner,
-                                                         final RenderParameters renderParameters) {
-        return RenderServiceUtil.renderImageStream(renderParameters,
-                                                   Utils.PNG_FORMAT,
-                                                   RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
-                                                   null,
-                                                   ResponseHelper.NO_CACHE_HELPER);
+    public void renderPngImageFromProvidedParameters(@PathParam("owner") final String owner,
+                                                     final RenderParameters renderParameters,
+                                                     @Suspended final AsyncResponse asyncResponse) {
+        renderAsync(asyncResponse, renderParameters,
+                    parametersDigest -> RenderServiceUtil.renderImageStream(renderParameters,
+                                                                            Utils.PNG_FORMAT,
+                                                                            RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
+                                                                            null,
+                                                                            ResponseHelper.NO_CACHE_HELPER,
+                                                                            false,
+                                                                            parametersDigest));
     }
 
     @SuppressWarnings("PathAnnotation")
@@ -95,13 +117,17 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Spec Image APIs",
             value = "Render TIFF image from a provided spec")
-    public Response renderTiffImageFromProvidedParameters(@PathParam("owner") final String owner,
-                                                          final RenderParameters renderParameters) {
-        return RenderServiceUtil.renderImageStream(renderParameters,
-                                                   Utils.TIFF_FORMAT,
-                                                   RenderServiceUtil.IMAGE_TIFF_MIME_TYPE,
-                                                   null,
-                                                   ResponseHelper.NO_CACHE_HELPER);
+    public void renderTiffImageFromProvidedParameters(@PathParam("owner") final String owner,
+                                                      final RenderParameters renderParameters,
+                                                      @Suspended final AsyncResponse asyncResponse) {
+        renderAsync(asyncResponse, renderParameters,
+                    parametersDigest -> RenderServiceUtil.renderImageStream(renderParameters,
+                                                                            Utils.TIFF_FORMAT,
+                                                                            RenderServiceUtil.IMAGE_TIFF_MIME_TYPE,
+                                                                            null,
+                                                                            ResponseHelper.NO_CACHE_HELPER,
+                                                                            false,
+                                                                            parametersDigest));
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/jpeg-image")
@@ -110,26 +136,30 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Section Image APIs",
             value = "Render JPEG image for a section")
-    public Response renderJpegImageForZ(@PathParam("owner") final String owner,
-                                        @PathParam("project") final String project,
-                                        @PathParam("stack") final String stack,
-                                        @PathParam("z") final Double z,
-                                        @BeanParam final RenderQueryParameters renderQueryParameters,
-                                        @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                        @Context final Request request) {
+    public void renderJpegImageForZ(@PathParam("owner") final String owner,
+                                    @PathParam("project") final String project,
+                                    @PathParam("stack") final String stack,
+                                    @PathParam("z") final Double z,
+                                    @BeanParam final RenderQueryParameters renderQueryParameters,
+                                    @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                    @Context final Request request,
+                                    @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderJpegImageForZ: entry, owner={}, project={}, stack={}, z={}",
                  owner, project, stack, z);
 
         renderQueryParameters.setDefaultScale(0.01);
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     renderDataService.getRenderParametersForZ(owner, project, stack, z, renderQueryParameters);
-            return RenderServiceUtil.renderJpegImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderJpegImage(renderParameters,
+                                                                              maxTileSpecsToRender,
+                                                                              responseHelper,
+                                                                              parametersDigest));
         }
     }
 
@@ -139,26 +169,30 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Section Image APIs",
             value = "Render PNG image for a section")
-    public Response renderPngImageForZ(@PathParam("owner") final String owner,
-                                       @PathParam("project") final String project,
-                                       @PathParam("stack") final String stack,
-                                       @PathParam("z") final Double z,
-                                       @BeanParam final RenderQueryParameters renderQueryParameters,
-                                       @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                       @Context final Request request) {
+    public void renderPngImageForZ(@PathParam("owner") final String owner,
+                                   @PathParam("project") final String project,
+                                   @PathParam("stack") final String stack,
+                                   @PathParam("z") final Double z,
+                                   @BeanParam final RenderQueryParameters renderQueryParameters,
+                                   @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                   @Context final Request request,
+                                   @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderPngImageForZ: entry, owner={}, project={}, stack={}, z={}",
                  owner, project, stack, z);
 
         renderQueryParameters.setDefaultScale(0.01);
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_PNG_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     renderDataService.getRenderParametersForZ(owner, project, stack, z, renderQueryParameters);
-            return RenderServiceUtil.renderPngImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderPngImage(renderParameters,
+                                                                             maxTileSpecsToRender,
+                                                                             responseHelper,
+                                                                             parametersDigest));
         }
     }
 
@@ -168,26 +202,31 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Section Image APIs",
             value = "Render TIFF image for a section")
-    public Response renderTiffImageForZ(@PathParam("owner") final String owner,
-                                        @PathParam("project") final String project,
-                                        @PathParam("stack") final String stack,
-                                        @PathParam("z") final Double z,
-                                        @BeanParam final RenderQueryParameters renderQueryParameters,
-                                        @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                        @Context final Request request) {
+    public void renderTiffImageForZ(@PathParam("owner") final String owner,
+                                    @PathParam("project") final String project,
+                                    @PathParam("stack") final String stack,
+                                    @PathParam("z") final Double z,
+                                    @BeanParam final RenderQueryParameters renderQueryParameters,
+                                    @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                    @Context final Request request,
+                                    @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderTiffImageForZ: entry, owner={}, project={}, stack={}, z={}",
                  owner, project, stack, z);
 
         renderQueryParameters.setDefaultScale(0.01);
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     renderDataService.getRenderParametersForZ(owner, project, stack, z, renderQueryParameters);
-            return RenderServiceUtil.renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderTiffImage(renderParameters,
+                                                                              maxTileSpecsToRender,
+                                                                              responseHelper,
+                                                                              false,
+                                                                              parametersDigest));
         }
     }
 
@@ -197,30 +236,34 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render JPEG image for the specified bounding box")
-    public Response renderJpegImageForBox(@PathParam("owner") final String owner,
-                                          @PathParam("project") final String project,
-                                          @PathParam("stack") final String stack,
-                                          @PathParam("x") final Double x,
-                                          @PathParam("y") final Double y,
-                                          @PathParam("z") final Double z,
-                                          @PathParam("width") final Integer width,
-                                          @PathParam("height") final Integer height,
-                                          @PathParam("scale") final Double scale,
-                                          @BeanParam final RenderQueryParameters renderQueryParameters,
-                                          @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                          @Context final Request request) {
+    public void renderJpegImageForBox(@PathParam("owner") final String owner,
+                                      @PathParam("project") final String project,
+                                      @PathParam("stack") final String stack,
+                                      @PathParam("x") final Double x,
+                                      @PathParam("y") final Double y,
+                                      @PathParam("z") final Double z,
+                                      @PathParam("width") final Integer width,
+                                      @PathParam("height") final Integer height,
+                                      @PathParam("scale") final Double scale,
+                                      @BeanParam final RenderQueryParameters renderQueryParameters,
+                                      @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                      @Context final Request request,
+                                      @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderJpegImageForBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     getRenderParametersForGroupBox(owner, project, stack, null,
                                                    x, y, z, width, height, scale,
                                                    renderQueryParameters);
-            return RenderServiceUtil.renderJpegImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderJpegImage(renderParameters,
+                                                                              maxTileSpecsToRender,
+                                                                              responseHelper,
+                                                                              parametersDigest));
         }
     }
 
@@ -230,19 +273,20 @@ public class RenderImageService {
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
             value = "DVID style API to render JPEG image for the specified bounding box")
-    public Response renderJpegImageForDvidBox(@PathParam("owner") final String owner,
-                                              @PathParam("project") final String project,
-                                              @PathParam("stack") final String stack,
-                                              @PathParam("x") final Double x,
-                                              @PathParam("y") final Double y,
-                                              @PathParam("z") final Double z,
-                                              @PathParam("width") final Integer width,
-                                              @PathParam("height") final Integer height,
-                                              @BeanParam final RenderQueryParameters renderQueryParameters,
-                                              @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                              @Context final Request request) {
-        return renderJpegImageForBox(owner, project, stack, x, y, z, width, height, null,
-                                     renderQueryParameters, maxTileSpecsToRender, request);
+    public void renderJpegImageForDvidBox(@PathParam("owner") final String owner,
+                                          @PathParam("project") final String project,
+                                          @PathParam("stack") final String stack,
+                                          @PathParam("x") final Double x,
+                                          @PathParam("y") final Double y,
+                                          @PathParam("z") final Double z,
+                                          @PathParam("width") final Integer width,
+                                          @PathParam("height") final Integer height,
+                                          @BeanParam final RenderQueryParameters renderQueryParameters,
+                                          @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                          @Context final Request request,
+                                          @Suspended final AsyncResponse asyncResponse) {
+        renderJpegImageForBox(owner, project, stack, x, y, z, width, height, null,
+                              renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/box/{x},{y},{width},{height},{scale}/png-image")
@@ -251,30 +295,34 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render PNG image for the specified bounding box")
-    public Response renderPngImageForBox(@PathParam("owner") final String owner,
-                                         @PathParam("project") final String project,
-                                         @PathParam("stack") final String stack,
-                                         @PathParam("x") final Double x,
-                                         @PathParam("y") final Double y,
-                                         @PathParam("z") final Double z,
-                                         @PathParam("width") final Integer width,
-                                         @PathParam("height") final Integer height,
-                                         @PathParam("scale") final Double scale,
-                                         @BeanParam final RenderQueryParameters renderQueryParameters,
-                                         @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                         @Context final Request request) {
+    public void renderPngImageForBox(@PathParam("owner") final String owner,
+                                     @PathParam("project") final String project,
+                                     @PathParam("stack") final String stack,
+                                     @PathParam("x") final Double x,
+                                     @PathParam("y") final Double y,
+                                     @PathParam("z") final Double z,
+                                     @PathParam("width") final Integer width,
+                                     @PathParam("height") final Integer height,
+                                     @PathParam("scale") final Double scale,
+                                     @BeanParam final RenderQueryParameters renderQueryParameters,
+                                     @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                     @Context final Request request,
+                                     @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderPngImageForBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_PNG_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     getRenderParametersForGroupBox(owner, project, stack, null,
                                                    x, y, z, width, height, scale,
                                                    renderQueryParameters);
-            return RenderServiceUtil.renderPngImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderPngImage(renderParameters,
+                                                                             maxTileSpecsToRender,
+                                                                             responseHelper,
+                                                                             parametersDigest));
         }
     }
 
@@ -284,19 +332,20 @@ public class RenderImageService {
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
             value = "DVID style API to render PNG image for the specified bounding box")
-    public Response renderPngImageForDvidBox(@PathParam("owner") final String owner,
-                                             @PathParam("project") final String project,
-                                             @PathParam("stack") final String stack,
-                                             @PathParam("x") final Double x,
-                                             @PathParam("y") final Double y,
-                                             @PathParam("z") final Double z,
-                                             @PathParam("width") final Integer width,
-                                             @PathParam("height") final Integer height,
-                                             @BeanParam final RenderQueryParameters renderQueryParameters,
-                                             @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                             @Context final Request request) {
-        return renderPngImageForBox(owner, project, stack, x, y, z, width, height, null,
-                                    renderQueryParameters, maxTileSpecsToRender, request);
+    public void renderPngImageForDvidBox(@PathParam("owner") final String owner,
+                                         @PathParam("project") final String project,
+                                         @PathParam("stack") final String stack,
+                                         @PathParam("x") final Double x,
+                                         @PathParam("y") final Double y,
+                                         @PathParam("z") final Double z,
+                                         @PathParam("width") final Integer width,
+                                         @PathParam("height") final Integer height,
+                                         @BeanParam final RenderQueryParameters renderQueryParameters,
+                                         @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                         @Context final Request request,
+                                         @Suspended final AsyncResponse asyncResponse) {
+        renderPngImageForBox(owner, project, stack, x, y, z, width, height, null,
+                             renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/box/{x},{y},{width},{height},{scale}/tiff-image")
@@ -305,30 +354,35 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render TIFF image for the specified bounding box")
-    public Response renderTiffImageForBox(@PathParam("owner") final String owner,
-                                          @PathParam("project") final String project,
-                                          @PathParam("stack") final String stack,
-                                          @PathParam("x") final Double x,
-                                          @PathParam("y") final Double y,
-                                          @PathParam("z") final Double z,
-                                          @PathParam("width") final Integer width,
-                                          @PathParam("height") final Integer height,
-                                          @PathParam("scale") final Double scale,
-                                          @BeanParam final RenderQueryParameters renderQueryParameters,
-                                          @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                          @Context final Request request) {
+    public void renderTiffImageForBox(@PathParam("owner") final String owner,
+                                      @PathParam("project") final String project,
+                                      @PathParam("stack") final String stack,
+                                      @PathParam("x") final Double x,
+                                      @PathParam("y") final Double y,
+                                      @PathParam("z") final Double z,
+                                      @PathParam("width") final Integer width,
+                                      @PathParam("height") final Integer height,
+                                      @PathParam("scale") final Double scale,
+                                      @BeanParam final RenderQueryParameters renderQueryParameters,
+                                      @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                      @Context final Request request,
+                                      @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderTiffImageForBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     getRenderParametersForGroupBox(owner, project, stack, null,
                                                    x, y, z, width, height, scale,
                                                    renderQueryParameters);
-            return RenderServiceUtil.renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderTiffImage(renderParameters,
+                                                                              maxTileSpecsToRender,
+                                                                              responseHelper,
+                                                                              false,
+                                                                              parametersDigest));
         }
     }
 
@@ -338,30 +392,35 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render TIFF image for the specified bounding box")
-    public Response renderTiff16ImageForBox(@PathParam("owner") final String owner,
-                                            @PathParam("project") final String project,
-                                            @PathParam("stack") final String stack,
-                                            @PathParam("x") final Double x,
-                                            @PathParam("y") final Double y,
-                                            @PathParam("z") final Double z,
-                                            @PathParam("width") final Integer width,
-                                            @PathParam("height") final Integer height,
-                                            @PathParam("scale") final Double scale,
-                                            @BeanParam final RenderQueryParameters renderQueryParameters,
-                                            @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                            @Context final Request request) {
+    public void renderTiff16ImageForBox(@PathParam("owner") final String owner,
+                                        @PathParam("project") final String project,
+                                        @PathParam("stack") final String stack,
+                                        @PathParam("x") final Double x,
+                                        @PathParam("y") final Double y,
+                                        @PathParam("z") final Double z,
+                                        @PathParam("width") final Integer width,
+                                        @PathParam("height") final Integer height,
+                                        @PathParam("scale") final Double scale,
+                                        @BeanParam final RenderQueryParameters renderQueryParameters,
+                                        @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                        @Context final Request request,
+                                        @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderTiffImageForBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     getRenderParametersForGroupBox(owner, project, stack, null,
                                                    x, y, z, width, height, scale,
                                                    renderQueryParameters);
-            return RenderServiceUtil.renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, true);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderTiffImage(renderParameters,
+                                                                              maxTileSpecsToRender,
+                                                                              responseHelper,
+                                                                              true,
+                                                                              parametersDigest));
         }
     }
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/dvid/imagetile/raw/xy/{width}_{height}/{x}_{y}_{z}/tif")
@@ -370,19 +429,20 @@ public class RenderImageService {
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
             value = "DVID style API to render TIFF image for the specified bounding box")
-    public Response renderTiffImageForDvidBox(@PathParam("owner") final String owner,
-                                              @PathParam("project") final String project,
-                                              @PathParam("stack") final String stack,
-                                              @PathParam("x") final Double x,
-                                              @PathParam("y") final Double y,
-                                              @PathParam("z") final Double z,
-                                              @PathParam("width") final Integer width,
-                                              @PathParam("height") final Integer height,
-                                              @BeanParam final RenderQueryParameters renderQueryParameters,
-                                              @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                              @Context final Request request) {
-        return renderTiffImageForBox(owner, project, stack, x, y, z, width, height, null,
-                                     renderQueryParameters, maxTileSpecsToRender, request);
+    public void renderTiffImageForDvidBox(@PathParam("owner") final String owner,
+                                          @PathParam("project") final String project,
+                                          @PathParam("stack") final String stack,
+                                          @PathParam("x") final Double x,
+                                          @PathParam("y") final Double y,
+                                          @PathParam("z") final Double z,
+                                          @PathParam("width") final Integer width,
+                                          @PathParam("height") final Integer height,
+                                          @BeanParam final RenderQueryParameters renderQueryParameters,
+                                          @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                          @Context final Request request,
+                                          @Suspended final AsyncResponse asyncResponse) {
+        renderTiffImageForBox(owner, project, stack, x, y, z, width, height, null,
+                              renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/group/{groupId}/z/{z}/box/{x},{y},{width},{height},{scale}/jpeg-image")
@@ -391,31 +451,35 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render JPEG image for the specified bounding box and groupId")
-    public Response renderJpegImageForGroupBox(@PathParam("owner") final String owner,
-                                               @PathParam("project") final String project,
-                                               @PathParam("stack") final String stack,
-                                               @PathParam("groupId") final String groupId,
-                                               @PathParam("x") final Double x,
-                                               @PathParam("y") final Double y,
-                                               @PathParam("z") final Double z,
-                                               @PathParam("width") final Integer width,
-                                               @PathParam("height") final Integer height,
-                                               @PathParam("scale") final Double scale,
-                                               @BeanParam final RenderQueryParameters renderQueryParameters,
-                                               @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                               @Context final Request request) {
+    public void renderJpegImageForGroupBox(@PathParam("owner") final String owner,
+                                           @PathParam("project") final String project,
+                                           @PathParam("stack") final String stack,
+                                           @PathParam("groupId") final String groupId,
+                                           @PathParam("x") final Double x,
+                                           @PathParam("y") final Double y,
+                                           @PathParam("z") final Double z,
+                                           @PathParam("width") final Integer width,
+                                           @PathParam("height") final Integer height,
+                                           @PathParam("scale") final Double scale,
+                                           @BeanParam final RenderQueryParameters renderQueryParameters,
+                                           @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                           @Context final Request request,
+                                           @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderJpegImageForGroupBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     getRenderParametersForGroupBox(owner, project, stack, groupId,
                                                    x, y, z, width, height, scale,
                                                    renderQueryParameters);
-            return RenderServiceUtil.renderJpegImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderJpegImage(renderParameters,
+                                                                              maxTileSpecsToRender,
+                                                                              responseHelper,
+                                                                              parametersDigest));
         }
     }
 
@@ -425,20 +489,21 @@ public class RenderImageService {
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
             value = "DVID style API to render JPEG image for the specified bounding box and groupId")
-    public Response renderJpegImageForDvidGroupBox(@PathParam("owner") final String owner,
-                                                   @PathParam("project") final String project,
-                                                   @PathParam("stack") final String stack,
-                                                   @PathParam("groupId") final String groupId,
-                                                   @PathParam("x") final Double x,
-                                                   @PathParam("y") final Double y,
-                                                   @PathParam("z") final Double z,
-                                                   @PathParam("width") final Integer width,
-                                                   @PathParam("height") final Integer height,
-                                                   @BeanParam final RenderQueryParameters renderQueryParameters,
-                                                   @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                                   @Context final Request request) {
-        return renderJpegImageForGroupBox(owner, project, stack, groupId, x, y, z, width, height, null,
-                                          renderQueryParameters, maxTileSpecsToRender, request);
+    public void renderJpegImageForDvidGroupBox(@PathParam("owner") final String owner,
+                                               @PathParam("project") final String project,
+                                               @PathParam("stack") final String stack,
+                                               @PathParam("groupId") final String groupId,
+                                               @PathParam("x") final Double x,
+                                               @PathParam("y") final Double y,
+                                               @PathParam("z") final Double z,
+                                               @PathParam("width") final Integer width,
+                                               @PathParam("height") final Integer height,
+                                               @BeanParam final RenderQueryParameters renderQueryParameters,
+                                               @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                               @Context final Request request,
+                                               @Suspended final AsyncResponse asyncResponse) {
+        renderJpegImageForGroupBox(owner, project, stack, groupId, x, y, z, width, height, null,
+                                   renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/group/{groupId}/z/{z}/box/{x},{y},{width},{height},{scale}/png-image")
@@ -447,31 +512,35 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render PNG image for the specified bounding box and groupId")
-    public Response renderPngImageForGroupBox(@PathParam("owner") final String owner,
-                                              @PathParam("project") final String project,
-                                              @PathParam("stack") final String stack,
-                                              @PathParam("groupId") final String groupId,
-                                              @PathParam("x") final Double x,
-                                              @PathParam("y") final Double y,
-                                              @PathParam("z") final Double z,
-                                              @PathParam("width") final Integer width,
-                                              @PathParam("height") final Integer height,
-                                              @PathParam("scale") final Double scale,
-                                              @BeanParam final RenderQueryParameters renderQueryParameters,
-                                              @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                              @Context final Request request) {
+    public void renderPngImageForGroupBox(@PathParam("owner") final String owner,
+                                          @PathParam("project") final String project,
+                                          @PathParam("stack") final String stack,
+                                          @PathParam("groupId") final String groupId,
+                                          @PathParam("x") final Double x,
+                                          @PathParam("y") final Double y,
+                                          @PathParam("z") final Double z,
+                                          @PathParam("width") final Integer width,
+                                          @PathParam("height") final Integer height,
+                                          @PathParam("scale") final Double scale,
+                                          @BeanParam final RenderQueryParameters renderQueryParameters,
+                                          @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                          @Context final Request request,
+                                          @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderPngImageForGroupBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_PNG_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     getRenderParametersForGroupBox(owner, project, stack, groupId,
                                                    x, y, z, width, height, scale,
                                                    renderQueryParameters);
-            return RenderServiceUtil.renderPngImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderPngImage(renderParameters,
+                                                                             maxTileSpecsToRender,
+                                                                             responseHelper,
+                                                                             parametersDigest));
         }
     }
 
@@ -481,20 +550,21 @@ public class RenderImageService {
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
             value = "DVID style API to render PNG image for the specified bounding box and groupId")
-    public Response renderPngImageForDvidGroupBox(@PathParam("owner") final String owner,
-                                                  @PathParam("project") final String project,
-                                                  @PathParam("stack") final String stack,
-                                                  @PathParam("groupId") final String groupId,
-                                                  @PathParam("x") final Double x,
-                                                  @PathParam("y") final Double y,
-                                                  @PathParam("z") final Double z,
-                                                  @PathParam("width") final Integer width,
-                                                  @PathParam("height") final Integer height,
-                                                  @BeanParam final RenderQueryParameters renderQueryParameters,
-                                                  @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                                  @Context final Request request) {
-        return renderPngImageForGroupBox(owner, project, stack, groupId, x, y, z, width, height, null,
-                                         renderQueryParameters, maxTileSpecsToRender, request);
+    public void renderPngImageForDvidGroupBox(@PathParam("owner") final String owner,
+                                              @PathParam("project") final String project,
+                                              @PathParam("stack") final String stack,
+                                              @PathParam("groupId") final String groupId,
+                                              @PathParam("x") final Double x,
+                                              @PathParam("y") final Double y,
+                                              @PathParam("z") final Double z,
+                                              @PathParam("width") final Integer width,
+                                              @PathParam("height") final Integer height,
+                                              @BeanParam final RenderQueryParameters renderQueryParameters,
+                                              @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                              @Context final Request request,
+                                              @Suspended final AsyncResponse asyncResponse) {
+        renderPngImageForGroupBox(owner, project, stack, groupId, x, y, z, width, height, null,
+                                  renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/group/{groupId}/z/{z}/box/{x},{y},{width},{height},{scale}/tiff-image")
@@ -503,31 +573,36 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render TIFF image for the specified bounding box and groupId")
-    public Response renderTiffImageForGroupBox(@PathParam("owner") final String owner,
-                                               @PathParam("project") final String project,
-                                               @PathParam("stack") final String stack,
-                                               @PathParam("groupId") final String groupId,
-                                               @PathParam("x") final Double x,
-                                               @PathParam("y") final Double y,
-                                               @PathParam("z") final Double z,
-                                               @PathParam("width") final Integer width,
-                                               @PathParam("height") final Integer height,
-                                               @PathParam("scale") final Double scale,
-                                               @BeanParam final RenderQueryParameters renderQueryParameters,
-                                               @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                               @Context final Request request) {
+    public void renderTiffImageForGroupBox(@PathParam("owner") final String owner,
+                                           @PathParam("project") final String project,
+                                           @PathParam("stack") final String stack,
+                                           @PathParam("groupId") final String groupId,
+                                           @PathParam("x") final Double x,
+                                           @PathParam("y") final Double y,
+                                           @PathParam("z") final Double z,
+                                           @PathParam("width") final Integer width,
+                                           @PathParam("height") final Integer height,
+                                           @PathParam("scale") final Double scale,
+                                           @BeanParam final RenderQueryParameters renderQueryParameters,
+                                           @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                           @Context final Request request,
+                                           @Suspended final AsyncResponse asyncResponse) {
 
         LOG.info("renderTiffImageForGroupBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper =
+                new ResponseHelper(request, getStackMetaData(owner, project, stack), uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)) {
             final RenderParameters renderParameters =
                     getRenderParametersForGroupBox(owner, project, stack, groupId,
                                                    x, y, z, width, height, scale,
                                                    renderQueryParameters);
-            return RenderServiceUtil.renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
+            renderAsync(asyncResponse, renderParameters,
+                        parametersDigest -> RenderServiceUtil.renderTiffImage(renderParameters,
+                                                                              maxTileSpecsToRender,
+                                                                              responseHelper,
+                                                                              false,
+                                                                              parametersDigest));
         }
     }
 
@@ -537,20 +612,21 @@ public class RenderImageService {
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
             value = "DVID style API to render TIFF image for the specified bounding box and groupId")
-    public Response renderTiffImageForDvidGroupBox(@PathParam("owner") final String owner,
-                                                   @PathParam("project") final String project,
-                                                   @PathParam("stack") final String stack,
-                                                   @PathParam("groupId") final String groupId,
-                                                   @PathParam("x") final Double x,
-                                                   @PathParam("y") final Double y,
-                                                   @PathParam("z") final Double z,
-                                                   @PathParam("width") final Integer width,
-                                                   @PathParam("height") final Integer height,
-                                                   @BeanParam final RenderQueryParameters renderQueryParameters,
-                                                   @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                                   @Context final Request request) {
-        return renderTiffImageForGroupBox(owner, project, stack, groupId, x, y, z, width, height, null,
-                                          renderQueryParameters, maxTileSpecsToRender, request);
+    public void renderTiffImageForDvidGroupBox(@PathParam("owner") final String owner,
+                                               @PathParam("project") final String project,
+                                               @PathParam("stack") final String stack,
+                                               @PathParam("groupId") final String groupId,
+                                               @PathParam("x") final Double x,
+                                               @PathParam("y") final Double y,
+                                               @PathParam("z") final Double z,
+                                               @PathParam("width") final Integer width,
+                                               @PathParam("height") final Integer height,
+                                               @BeanParam final RenderQueryParameters renderQueryParameters,
+                                               @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                               @Context final Request request,
+                                               @Suspended final AsyncResponse asyncResponse) {
+        renderTiffImageForGroupBox(owner, project, stack, groupId, x, y, z, width, height, null,
+                                   renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/largeDataTileSource/{width}/{height}/{level}/{z}/{row}/{column}.jpg")
@@ -559,22 +635,23 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render JPEG image for the specified large data (type 5) tile")
-    public Response renderLargeDataTileSourceJpeg(@PathParam("owner") final String owner,
-                                                  @PathParam("project") final String project,
-                                                  @PathParam("stack") final String stack,
-                                                  @PathParam("width") final Integer width,
-                                                  @PathParam("height") final Integer height,
-                                                  @PathParam("level") final Integer level,
-                                                  @PathParam("z") final Double z,
-                                                  @PathParam("row") final Integer row,
-                                                  @PathParam("column") final Integer column,
-                                                  @BeanParam final RenderQueryParameters renderQueryParameters,
-                                                  @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                                  @Context final Request request) {
+    public void renderLargeDataTileSourceJpeg(@PathParam("owner") final String owner,
+                                              @PathParam("project") final String project,
+                                              @PathParam("stack") final String stack,
+                                              @PathParam("width") final Integer width,
+                                              @PathParam("height") final Integer height,
+                                              @PathParam("level") final Integer level,
+                                              @PathParam("z") final Double z,
+                                              @PathParam("row") final Integer row,
+                                              @PathParam("column") final Integer column,
+                                              @BeanParam final RenderQueryParameters renderQueryParameters,
+                                              @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                              @Context final Request request,
+                                              @Suspended final AsyncResponse asyncResponse) {
 
-        return renderLargeDataTileSource(owner, project, stack, width, height, level, z, row, column,
-                                         Utils.JPEG_FORMAT, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
-                                         renderQueryParameters, maxTileSpecsToRender, request);
+        renderLargeDataTileSource(owner, project, stack, width, height, level, z, row, column,
+                                  Utils.JPEG_FORMAT, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
+                                  renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
 
@@ -584,22 +661,23 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render JPEG image for the specified large data (type 5) section overview")
-    public Response renderLargeDataOverviewJpeg(@PathParam("owner") final String owner,
-                                                @PathParam("project") final String project,
-                                                @PathParam("stack") final String stack,
-                                                @PathParam("width") final Integer width,
-                                                @PathParam("height") final Integer height,
-                                                @PathParam("z") final Double z,
-                                                @QueryParam("maxOverviewWidthAndHeight") final Integer maxOverviewWidthAndHeight,
-                                                @BeanParam final RenderQueryParameters renderQueryParameters,
-                                                @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                                @QueryParam("translateOrigin") final Boolean translateOrigin,
-                                                @Context final Request request) {
-
-        return renderLargeDataOverview(owner, project, stack, width, height, z,
-                                       Utils.JPEG_FORMAT, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
-                                       maxOverviewWidthAndHeight, renderQueryParameters,
-                                       maxTileSpecsToRender, translateOrigin, request);
+    public void renderLargeDataOverviewJpeg(@PathParam("owner") final String owner,
+                                            @PathParam("project") final String project,
+                                            @PathParam("stack") final String stack,
+                                            @PathParam("width") final Integer width,
+                                            @PathParam("height") final Integer height,
+                                            @PathParam("z") final Double z,
+                                            @QueryParam("maxOverviewWidthAndHeight") final Integer maxOverviewWidthAndHeight,
+                                            @BeanParam final RenderQueryParameters renderQueryParameters,
+                                            @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                            @QueryParam("translateOrigin") final Boolean translateOrigin,
+                                            @Context final Request request,
+                                            @Suspended final AsyncResponse asyncResponse) {
+
+        renderLargeDataOverview(owner, project, stack, width, height, z,
+                                Utils.JPEG_FORMAT, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
+                                maxOverviewWidthAndHeight, renderQueryParameters,
+                                maxTileSpecsToRender, translateOrigin, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/largeDataTileSource/{width}/{height}/{level}/{z}/{row}/{column}.png")
@@ -608,22 +686,23 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render PNG image for the specified large data (type 5) tile")
-    public Response renderLargeDataTileSourcePng(@PathParam("owner") final String owner,
-                                                 @PathParam("project") final String project,
-                                                 @PathParam("stack") final String stack,
-                                                 @PathParam("width") final Integer width,
-                                                 @PathParam("height") final Integer height,
-                                                 @PathParam("level") final Integer level,
-                                                 @PathParam("z") final Double z,
-                                                 @PathParam("row") final Integer row,
-                                                 @PathParam("column") final Integer column,
-                                                 @BeanParam final RenderQueryParameters renderQueryParameters,
-                                                 @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                                 @Context final Request request) {
-
-        return renderLargeDataTileSource(owner, project, stack, width, height, level, z, row, column,
-                                         Utils.PNG_FORMAT, RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
-                                         renderQueryParameters, maxTileSpecsToRender, request);
+    public void renderLargeDataTileSourcePng(@PathParam("owner") final String owner,
+                                             @PathParam("project") final String project,
+                                             @PathParam("stack") final String stack,
+                                             @PathParam("width") final Integer width,
+                                             @PathParam("height") final Integer height,
+                                             @PathParam("level") final Integer level,
+                                             @PathParam("z") final Double z,
+                                             @PathParam("row") final Integer row,
+                                             @PathParam("column") final Integer column,
+                                             @BeanParam final RenderQueryParameters renderQueryParameters,
+                                             @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                             @Context final Request request,
+                                             @Suspended final AsyncResponse asyncResponse) {
+
+        renderLargeDataTileSource(owner, project, stack, width, height, level, z, row, column,
+                                  Utils.PNG_FORMAT, RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
+                                  renderQueryParameters, maxTileSpecsToRender, request, asyncResponse);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/largeDataTileSource/{width}/{height}/small/{z}.png")
@@ -632,45 +711,47 @@ public class RenderImageService {
     @ApiOperation(
             tags = "Bounding Box Image APIs",
             value = "Render PNG image for the specified large data (type 5) section overview")
-    public Response renderLargeDataOverviewPng(@PathParam("owner") final String owner,
-                                               @PathParam("project") final String project,
-                                               @PathParam("stack") final String stack,
-                                               @PathParam("width") final Integer width,
-                                               @PathParam("height") final Integer height,
-                                               @PathParam("z") final Double z,
-                                               @QueryParam("maxOverviewWidthAndHeight") final Integer maxOverviewWidthAndHeight,
-                                               @BeanParam final RenderQueryParameters renderQueryParameters,
-                                               @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
-                                               @QueryParam("translateOrigin") final Boolean translateOrigin,
-                                               @Context final Request request) {
-
-        return renderLargeDataOverview(owner, project, stack, width, height, z,
-                                       Utils.PNG_FORMAT, RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
-                                       maxOverviewWidthAndHeight, renderQueryParameters,
-                                       maxTileSpecsToRender, translateOrigin, request);
-    }
-
-    private Response renderLargeDataTileSource(final String owner,
-                                               final String project,
-                                               final String stack,
-                                               final Integer width,
-                                               final Integer height,
-                                               final Integer level,
-                                               final Double z,
-                                               final Integer row,
-                                               final Integer column,
-                                               final String format,
-                                               final String mimeType,
-                                               final RenderQueryParameters renderQueryParameters,
-                                               Integer maxTileSpecsToRender,
-                                               final Request request) {
+    public void renderLargeDataOverviewPng(@PathParam("owner") final String owner,
+                                           @PathParam("project") final String project,
+                                           @PathParam("stack") final String stack,
+                                           @PathParam("width") final Integer width,
+                                           @PathParam("height") final Integer height,
+                                           @PathParam("z") final Double z,
+                                           @QueryParam("maxOverviewWidthAndHeight") final Integer maxOverviewWidthAndHeight,
+                                           @BeanParam final RenderQueryParameters renderQueryParameters,
+                                           @QueryParam("maxTileSpecsToRender") final Integer maxTileSpecsToRender,
+                                           @QueryParam("translateOrigin") final Boolean translateOrigin,
+                                           @Context final Request request,
+                                           @Suspended final AsyncResponse asyncResponse) {
+
+        renderLargeDataOverview(owner, project, stack, width, height, z,
+                                Utils.PNG_FORMAT, RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
+                                maxOverviewWidthAndHeight, renderQueryParameters,
+                                maxTileSpecsToRender, translateOrigin, request, asyncResponse);
+    }
+
+    private void renderLargeDataTileSource(final String owner,
+                                           final String project,
+                                           final String stack,
+                                           final Integer width,
+                                           final Integer height,
+                                           final Integer level,
+                                           final Double z,
+                                           final Integer row,
+                                           final Integer column,
+                                           final String format,
+                                           final String mimeType,
+                                           final RenderQueryParameters renderQueryParameters,
+                                           final Integer maxTileSpecsToRender,
+                                           final Request request,
+                                           final AsyncResponse asyncResponse) {
 
         LOG.info("renderLargeDataTileSource: entry, stack={}, width={}, height={}, z={}, row={}, column={}",
                  stack, width, height, z, row, column);
 
         final StackMetaData stackMetaData = getStackMetaData(owner, project, stack);
-        final ResponseHelper responseHelper = new ResponseHelper(request, stackMetaData);
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper = new ResponseHelper(request, stackMetaData, uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, mimeType)) {
 
             final File sourceFile = getLargeDataFile(stackMetaData,
                                                      width + "x" + height,
@@ -679,7 +760,12 @@ public class RenderImageService {
                                                      row.toString(),
                                                      column + "." + format);
 
-            if (sourceFile == null) {
+            // force dynamic rendering if materialized box does not exist
+            if ((sourceFile == null) || (! sourceFile.exists())) {
+
+                if ((sourceFile != null) && isWriteThroughRequest()) {
+                    responseHelper.setWriteThroughFile(sourceFile);
+                }
 
                 final double factor = 1 << level;
                 final double scaledWidth = width * factor;
@@ -693,56 +779,56 @@ public class RenderImageService {
                                                        x, y, z, (int) scaledWidth, (int) scaledHeight, scale,
                                                        renderQueryParameters);
 
-                if (maxTileSpecsToRender == null) {
-                    maxTileSpecsToRender = DEFAULT_MAX_TILE_SPECS_FOR_LARGE_DATA;
-                }
+                final Integer maxTileSpecsForRender =
+                        maxTileSpecsToRender == null ? DEFAULT_MAX_TILE_SPECS_FOR_LARGE_DATA : maxTileSpecsToRender;
 
-                return RenderServiceUtil.renderImageStream(renderParameters,
-                                                           format,
-                                                           mimeType,
-                                                           maxTileSpecsToRender,
-                                                           responseHelper);
+                renderAsync(asyncResponse, renderParameters,
+                            parametersDigest -> RenderServiceUtil.renderImageStream(renderParameters,
+                                                                                    format,
+                                                                                    mimeType,
+                                                                                    maxTileSpecsForRender,
+                                                                                    responseHelper,
+                                                                                    false,
+                                                                                    parametersDigest));
 
             }  else {
 
-                return RenderServiceUtil.streamImageFile(sourceFile, mimeType, responseHelper);
+                asyncResponse.resume(RenderServiceUtil.streamImageFile(sourceFile, mimeType, responseHelper));
 
             }
 
-        } else {
-
-            return responseHelper.getNotModifiedResponse();
-
         }
     }
 
-    private Response renderLargeDataOverview(final String owner,
-                                             final String project,
-                                             final String stack,
-                                             final Integer width,
-                                             final Integer height,
-                                             final Double z,
-                                             final String format,
-                                             final String mimeType,
-                                             Integer maxOverviewWidthAndHeight,
-                                             final RenderQueryParameters renderQueryParameters,
-                                             Integer maxTileSpecsToRender,
-                                             final Boolean translateOrigin,
-                                             final Request request) {
+    private void renderLargeDataOverview(final String owner,
+                                         final String project,
+                                         final String stack,
+                                         final Integer width,
+                                         final Integer height,
+                                         final Double z,
+                                         final String format,
+                                         final String mimeType,
+                                         Integer maxOverviewWidthAndHeight,
+                                         final RenderQueryParameters renderQueryParameters,
+                                         final Integer maxTileSpecsToRender,
+                                         final Boolean translateOrigin,
+                                         final Request request,
+                                         final AsyncResponse asyncResponse) {
 
         LOG.info("renderLargeDataOverview: entry, stack={}, width={}, height={}, z={}",
                  stack, width, height, z);
 
         final StackMetaData stackMetaData = getStackMetaData(owner, project, stack);
-        final ResponseHelper responseHelper = new ResponseHelper(request, stackMetaData);
-        if (responseHelper.isModified()) {
+        final ResponseHelper responseHelper = new ResponseHelper(request, stackMetaData, uriInfo);
+        if (! resumeWithoutRendering(asyncResponse, responseHelper, mimeType)) {
 
             final File overviewSourceFile = getLargeDataFile(stackMetaData,
                                                              width + "x" + height,
                                                              "small",
                                                              String.valueOf(z.intValue()) + "." + format);
 
-            if (overviewSourceFile == null) {
+            // force dynamic rendering if materialized overview does not exist
+            if ((overviewSourceFile == null) || (! overviewSourceFile.exists())) {
 
                 Double stackMinX = 0.0;
                 Double stackMinY = 0.0;
@@ -792,29 +878,94 @@ public class RenderImageService {
                                                        stackMinX, stackMinY, z, stackWidth, stackHeight, scale,
                                                        renderQueryParameters);
 
-                if (maxTileSpecsToRender == null) {
-                    maxTileSpecsToRender = DEFAULT_MAX_TILE_SPECS_FOR_LARGE_DATA;
-                }
+                final Integer maxTileSpecsForRender =
+                        maxTileSpecsToRender == null ? DEFAULT_MAX_TILE_SPECS_FOR_LARGE_DATA : maxTileSpecsToRender;
 
-                return RenderServiceUtil.renderImageStream(renderParameters,
-                                                           format,
-                                                           mimeType,
-                                                           maxTileSpecsToRender,
-                                                           responseHelper);
+                renderAsync(asyncResponse, renderParameters,
+                            parametersDigest -> RenderServiceUtil.renderImageStream(renderParameters,
+                                                                                    format,
+                                                                                    mimeType,
+                                                                                    maxTileSpecsForRender,
+                                                                                    responseHelper,
+                                                                                    false,
+                                                                                    parametersDigest));
 
             }  else {
 
-                return RenderServiceUtil.streamImageFile(overviewSourceFile, mimeType, responseHelper);
+                asyncResponse.resume(RenderServiceUtil.streamImageFile(overviewSourceFile, mimeType, responseHelper));
 
             }
 
+        }
+    }
+
+    /**
+     * Resumes the specified response without rendering anything if the requested image has not been modified
+     * or if it has already been rendered and cached.
+     *
+     * @return true if the response was resumed; otherwise false (indicating that the image needs to be rendered).
+     */
+    private boolean resumeWithoutRendering(final AsyncResponse asyncResponse,
+                                           final ResponseHelper responseHelper,
+                                           final String mimeType) {
+        boolean isResumed = true;
+        if (responseHelper.isModified()) {
+            final Response cachedResponse = responseHelper.getCachedImageResponse(mimeType);
+            if (cachedResponse == null) {
+                isResumed = false;
+            } else {
+                asyncResponse.resume(cachedResponse);
+            }
         } else {
+            asyncResponse.resume(responseHelper.getNotModifiedResponse());
+        }
+        return isResumed;
+    }
 
-            return responseHelper.getNotModifiedResponse();
+    /**
+     * Hands the specified render task off to the shared {@link RenderRequestExecutor} so that
+     * the container request thread is released while the render waits for (and runs on) a render thread.
+     *
+     * Requests that duplicate a render already in progress are submitted with no cost since they will
+     * (most likely) just wait for the in progress render's result, so they should not cause other requests
+     * to be rejected.
+     *
+     * @param  renderTask  task that renders the response given the parameters digest computed here
+     *                     (so that the digest is only computed once per request).
+     */
+    private void renderAsync(final AsyncResponse asyncResponse,
+                             final RenderParameters renderParameters,
+                             final Function<String, Response> renderTask) {
+        final String parametersDigest = getParametersDigest(renderParameters);
+        final long cost;
+        if ((parametersDigest != null) && RenderRequestCoalescer.getInstance().isInProgress(parametersDigest)) {
+            cost = 0;
+        } else {
+            cost = RenderRequestExecutor.estimateCost(renderParameters);
+        }
+        RenderRequestExecutor.getInstance().submit(asyncResponse, cost, () -> renderTask.apply(parametersDigest));
+    }
 
+    /**
+     * @return digest of the specified parameters or null if it cannot be derived
+     *         (the render task will then derive it or fail on its own).
+     */
+    private String getParametersDigest(final RenderParameters renderParameters) {
+        String parametersDigest = null;
+        if (renderParameters != null) {
+            try {
+                parametersDigest = RenderServiceUtil.getParametersDigest(renderParameters);
+            } catch (final JsonProcessingException e) {
+                LOG.warn("getParametersDigest: failed to digest parameters, assuming render is not in progress", e);
+            }
         }
+        return parametersDigest;
     }
 
+    /**
+     * @return the materialized location for the specified path elements
+     *         (which may not exist) or null if the stack has no materialized data.
+     */
     private File getLargeDataFile(final StackMetaData stackMetaData,
                                   final String... additionalPathElements) {
 
@@ -823,24 +974,28 @@ public class RenderImageService {
         final String rootPath = stackMetaData.getCurrentMaterializedBoxRootPath();
         if (rootPath != null) {
 
-            file = Paths.get(rootPath, additionalPathElements).toFile();
-
-            queueLargeDataFileRequest(file);
-
-            if (! file.exists()) {
-                // force dynamic rendering if materialized box does not exist
-                file = null;
-            }
+            // make sure tiles written for a previous version of the stack are not served
+            LargeDataTileWriter.getInstance().removeStaleTiles(rootPath,
+                                                               stackMetaData.getLastModifiedTimestamp().getTime());
 
+            file = Paths.get(rootPath, additionalPathElements).toFile();
         }
 
         return file;
     }
 
-    private void queueLargeDataFileRequest(final File file) {
-        // TODO: queue (POST) request for materialize service (will either generate file or just mark usage)
-        LOG.info("need to queue materialize service request for {}",
-                 file);
+    /**
+     * @return true if tiles rendered for the current request can be persisted as materialized boxes
+     *         (writing is enabled and the request does not include parameters that change the rendered result).
+     */
+    private boolean isWriteThroughRequest() {
+        boolean isWriteThrough = false;
+        if (LargeDataTileWriter.getInstance().isEnabled()) {
+            final Set<String> queryParameterNames = new HashSet<>(uriInfo.getQueryParameters().keySet());
+            queryParameterNames.remove("maxTileSpecsToRender");
+            isWriteThrough = queryParameterNames.isEmpty();
+        }
+        return isWriteThrough;
     }
 
     private RenderParameters getRenderParametersForGroupBox(final String owner,
@@ -871,7 +1026,7 @@ public class RenderImageService {
                                            final String project,
                                            final String stack) {
         final StackId stackId = new StackId(owner, project, stack);
-        return renderDataService.getStackMetaData(stackId);
+        return renderDataService.getCachedStackMetaData(stackId);
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(RenderImageService.class);
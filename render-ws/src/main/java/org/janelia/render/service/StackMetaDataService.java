@@ -21,6 +21,7 @@ import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.bson.types.ObjectId;
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.Bounds;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
@@ -219,7 +220,7 @@ public class StackMetaDataService {
     @ApiOperation(
             tags = {"Stack Data APIs"},
             value = "Clones one stack to another",
-            notes = "This operation copies all fromStack tiles and transformations to a new stack with the specified metadata.  This is a potentially long running operation (depending upon the size of the fromStack).")
+            notes = "This operation copies all fromStack tiles and transformations to a new stack with the specified metadata.  This is a potentially long running operation (depending upon the size of the fromStack).  Progress is reported in the toStack metadata cloneProgress field.")
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "stack successfully cloned"),
             @ApiResponse(code = 400, message = "toStack is not in LOADING state"),
@@ -250,18 +251,24 @@ public class StackMetaDataService {
             final StackMetaData fromStackMetaData = getStackMetaData(owner, fromProject, fromStack);
             final StackId toStackId = new StackId(owner, toProject, toStack);
 
-            StackMetaData toStackMetaData = renderDao.getStackMetaData(toStackId);
+            final StackMetaData existingToStackMetaData = renderDao.getStackMetaData(toStackId);
 
-            if ((toStackMetaData != null) && (! toStackMetaData.isLoading())) {
+            if ((existingToStackMetaData != null) && (! existingToStackMetaData.isLoading())) {
                 throw new IllegalStateException("Tiles cannot be cloned to stack " + toStack +
-                                                " because it is " + toStackMetaData.getState() + ".");
+                                                " because it is " + existingToStackMetaData.getState() + ".");
             }
 
-            renderDao.cloneStack(fromStackMetaData.getStackId(), toStackId, zValues, skipTransforms);
-
-            toStackMetaData = new StackMetaData(toStackId, stackVersion);
+            // save meta data before cloning so that clone progress can be tracked
+            final StackMetaData toStackMetaData = new StackMetaData(toStackId, stackVersion);
             renderDao.saveStackMetaData(toStackMetaData);
 
+            try {
+                renderDao.cloneStack(fromStackMetaData.getStackId(), toStackId, zValues, skipTransforms);
+            } catch (final Throwable t) {
+                restoreStackAfterFailedClone(toStackId, existingToStackMetaData);
+                throw t;
+            }
+
             LOG.info("cloneStackVersion: created {} from {}", toStackId, fromStackMetaData.getStackId());
 
         } catch (final Throwable t) {
@@ -808,6 +815,8 @@ public class StackMetaDataService {
             notes = "Normal progression is LOADING to COMPLETE to READ_ONLY to OFFLINE.  " +
                     "Transitioning to COMPLETE is a potentially long running operation " +
                     "since it creates indexes and aggregates meta data.  " +
+                    "By default, only layers that changed since stats were last derived are re-aggregated " +
+                    "(specify deriveAllStats=true to re-aggregate every layer).  " +
                     "Transitioning to OFFLINE assumes that the stack data has been persisted elsewhere " +
                     "(e.g. a database dump file) and will remove the stack tile and transform collections, " +
                     "so BE CAREFUL when transitioning to OFFLINE!")
@@ -820,10 +829,11 @@ public class StackMetaDataService {
                                   @PathParam("project") final String project,
                                   @PathParam("stack") final String stack,
                                   @PathParam("state") final StackState state,
+                                  @QueryParam("deriveAllStats") final Boolean deriveAllStats,
                                   @Context final UriInfo uriInfo) {
 
-        LOG.info("setStackState: entry, owner={}, project={}, stack={}, state={}",
-                 owner, project, stack, state);
+        LOG.info("setStackState: entry, owner={}, project={}, stack={}, state={}, deriveAllStats={}",
+                 owner, project, stack, state, deriveAllStats);
 
         try {
             final StackMetaData stackMetaData = getStackMetaData(owner, project, stack);
@@ -837,7 +847,8 @@ public class StackMetaDataService {
                     stackMetaData.setState(state);
                     renderDao.saveStackMetaData(stackMetaData);
                 } else {
-                    renderDao.ensureIndexesAndDeriveStats(stackMetaData); // also sets state to COMPLETE
+                    // also sets state to COMPLETE
+                    renderDao.ensureIndexesAndDeriveStats(stackMetaData, (! Boolean.TRUE.equals(deriveAllStats)));
                 }
 
             } else if (OFFLINE.equals(state)) {
@@ -880,7 +891,7 @@ public class StackMetaDataService {
 
         Bounds bounds = null;
         try {
-            final StackMetaData stackMetaData = getStackMetaData(owner, project, stack);
+            final StackMetaData stackMetaData = getCachedStackMetaData(new StackId(owner, project, stack), renderDao);
             final StackStats stats = stackMetaData.getStats();
 
             String errorCondition = null;
@@ -945,7 +956,7 @@ public class StackMetaDataService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile-specs-with-ids")
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, JsonUtils.SMILE_MEDIA_TYPE})
     @ApiOperation(
             value = "Get flattened tile specs with the specified ids",
             notes = "For each tile spec, nested transform lists are flattened and reference transforms are resolved.  This should make the specs suitable for external use.")
@@ -969,6 +980,38 @@ public class StackMetaDataService {
         return tileSpecList;
     }
 
+    @Path("v1/owner/{owner}/project/{project}/stack/{stack}/spatialKeys")
+    @PUT
+    @Produces(MediaType.TEXT_PLAIN)
+    @ApiOperation(
+            tags = {"Stack Data APIs"},
+            value = "Adds spatial cell keys to tiles that were saved before keys were introduced",
+            notes = "Spatial cell keys are derived from tile bounds and allow box intersection queries to use " +
+                    "a more selective index.  Tile data is not otherwise changed, so keys can also be added to " +
+                    "READ_ONLY stacks.  Returns the number of updated tiles.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "spatial keys successfully added"),
+            @ApiResponse(code = 404, message = "stack not found")
+    })
+    public Response updateSpatialKeys(@PathParam("owner") final String owner,
+                                      @PathParam("project") final String project,
+                                      @PathParam("stack") final String stack) {
+
+        LOG.info("updateSpatialKeys: entry, owner={}, project={}, stack={}",
+                 owner, project, stack);
+
+        Response response = null;
+        try {
+            final StackMetaData stackMetaData = getStackMetaData(owner, project, stack);
+            final long updatedCount = renderDao.updateSpatialKeys(stackMetaData.getStackId());
+            response = Response.ok(String.valueOf(updatedCount)).build();
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        return response;
+    }
+
     public static StackMetaData getStackMetaData(final StackId stackId,
                                                  final RenderDao renderDao)
             throws ObjectNotFoundException {
@@ -982,6 +1025,26 @@ public class StackMetaDataService {
         return stackMetaData;
     }
 
+    /**
+     * @return recently loaded (read-only) metadata for the specified stack
+     *         (see {@link RenderDao#getCachedStackMetaData}).
+     *
+     * @throws ObjectNotFoundException
+     *   if the stack does not exist.
+     */
+    public static StackMetaData getCachedStackMetaData(final StackId stackId,
+                                                       final RenderDao renderDao)
+            throws ObjectNotFoundException {
+
+        final StackMetaData stackMetaData = renderDao.getCachedStackMetaData(stackId);
+        if (stackMetaData == null) {
+            throw getStackNotFoundException(stackId.getOwner(),
+                                            stackId.getProject(),
+                                            stackId.getStack());
+        }
+        return stackMetaData;
+    }
+
     static ObjectNotFoundException getStackNotFoundException(final String owner,
                                                              final String project,
                                                              final String stack) {
@@ -989,6 +1052,24 @@ public class StackMetaDataService {
                                             "', and name '" + stack + "' does not exist");
     }
 
+    /**
+     * Removes the meta data (and any partially cloned data) saved for a new clone target stack
+     * or restores the original meta data for an existing (loading) target stack.
+     * Failures are logged but otherwise ignored so that the original clone failure is reported.
+     */
+    private void restoreStackAfterFailedClone(final StackId toStackId,
+                                              final StackMetaData existingToStackMetaData) {
+        try {
+            if (existingToStackMetaData == null) {
+                renderDao.removeStack(toStackId, true);
+            } else {
+                renderDao.saveStackMetaData(existingToStackMetaData);
+            }
+        } catch (final Throwable t) {
+            LOG.warn("restoreStackAfterFailedClone: failed to restore meta data for " + toStackId, t);
+        }
+    }
+
     private static void validateStackIsModifiable(final StackMetaData stackMetaData) {
         if (stackMetaData.isReadOnly()) {
             throw new IllegalStateException("Data for stack " + stackMetaData.getStackId().getStack() +
@@ -404,7 +404,7 @@ public class TileImageService {
                                            final String project,
                                            final String stack) {
         final StackId stackId = new StackId(owner, project, stack);
-        return renderDataService.getStackMetaData(stackId);
+        return renderDataService.getCachedStackMetaData(stackId);
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(TileImageService.class);
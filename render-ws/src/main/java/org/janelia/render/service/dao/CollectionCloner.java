@@ -0,0 +1,454 @@
+package org.janelia.render.service.dao;
+
+import com.mongodb.QueryOperators;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.client.model.WriteModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.Document;
+import org.janelia.alignment.util.ProcessTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies (filtered) documents from one collection to another.
+ *
+ * When the target collection is empty, the copy is done entirely within the database
+ * using an aggregation $out stage that writes to a temporary collection.  The target's indexes are
+ * rebuilt on the temporary collection which is then renamed to replace the target (if the target is still empty).
+ * Otherwise, source documents are split into partitions (by z value or by _id range) that are copied
+ * concurrently with each partition thread writing at most one bulk insert batch at a time.
+ */
+public class CollectionCloner {
+
+    /** Listener for clone progress updates. */
+    public interface ProgressListener {
+        /**
+         * @param  partitionCount           total number of partitions being copied.
+         * @param  completedPartitionCount  number of partitions that have been fully copied.
+         * @param  expectedDocumentCount    total number of documents to copy.
+         * @param  copiedDocumentCount      number of documents copied so far.
+         */
+        void progressUpdated(final int partitionCount,
+                             final int completedPartitionCount,
+                             final long expectedDocumentCount,
+                             final long copiedDocumentCount);
+    }
+
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private final MongoDatabase database;
+    private final MongoCollection<Document> fromCollection;
+    private final MongoCollection<Document> toCollection;
+    private final Document filterQuery;
+    private final int parallelism;
+    private final ProgressListener progressListener;
+
+    /**
+     * @param  database          database containing both collections.
+     * @param  fromCollection    source collection.
+     * @param  toCollection      target collection.
+     * @param  filterQuery       query identifying source documents to copy (empty to copy everything).
+     * @param  parallelism       maximum number of partitions to copy concurrently.
+     * @param  progressListener  listener for progress updates (or null if progress should only be logged).
+     */
+    public CollectionCloner(final MongoDatabase database,
+                            final MongoCollection<Document> fromCollection,
+                            final MongoCollection<Document> toCollection,
+                            final Document filterQuery,
+                            final int parallelism,
+                            final ProgressListener progressListener) {
+        this.database = database;
+        this.fromCollection = fromCollection;
+        this.toCollection = toCollection;
+        this.filterQuery = filterQuery;
+        this.parallelism = Math.max(1, parallelism);
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Copies the source documents to the target collection.
+     *
+     * @param  partitionByZ  indicates whether source documents have a z value that should be used for partitioning.
+     *                       If false, documents are partitioned by _id range.
+     *
+     * @return number of documents copied.
+     *
+     * @throws IllegalStateException
+     *   if any documents fail to be copied.
+     */
+    public long copy(final boolean partitionByZ)
+            throws IllegalStateException {
+
+        final String fromFullName = MongoUtil.fullName(fromCollection);
+        final String toFullName = MongoUtil.fullName(toCollection);
+
+        final long expectedCount = fromCollection.count(filterQuery);
+        final long toCountBeforeCopy = toCollection.count();
+
+        LOG.debug("copy: entry, copying {} documents from {} to {} (which has {} documents)",
+                  expectedCount, fromFullName, toFullName, toCountBeforeCopy);
+
+        final ProcessTimer timer = new ProcessTimer();
+
+        final long copiedCount;
+        if (expectedCount == 0) {
+            copiedCount = 0;
+        } else if (toCountBeforeCopy == 0) {
+            copiedCount = copyOnServer(partitionByZ, expectedCount);
+        } else {
+            copiedCount = copyPartitions(partitionByZ, expectedCount);
+        }
+
+        if (copiedCount != expectedCount) {
+            throw new IllegalStateException("only copied " + copiedCount + " out of " + expectedCount +
+                                            " documents from " + fromFullName + " to " + toFullName);
+        }
+
+        LOG.debug("copy: copied {} documents from {} to {} in {} seconds",
+                  copiedCount, fromFullName, toFullName, timer.getElapsedSeconds());
+
+        return copiedCount;
+    }
+
+    private long copyOnServer(final boolean partitionByZ,
+                              final long expectedCount) {
+
+        // $out replaces its target, so write to a temporary collection in case
+        // other writers add documents to the target while the aggregation is running
+        final String tempCollectionName =
+                toCollection.getNamespace().getCollectionName() + "__clone_" + System.currentTimeMillis();
+
+        final List<Document> pipeline = new ArrayList<>();
+        if (filterQuery.keySet().size() > 0) {
+            pipeline.add(new Document("$match", filterQuery));
+        }
+        pipeline.add(new Document("$out", tempCollectionName));
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("copyOnServer: running {}.aggregate({})",
+                      MongoUtil.fullName(fromCollection), MongoUtil.toJson(pipeline));
+        }
+
+        updateProgress(1, 0, expectedCount, 0);
+
+        // see deriveSectionData in RenderDao for notes about forcing aggregate operation to run
+        fromCollection.aggregate(pipeline).allowDiskUse(true).batchSize(0).first();
+
+        final MongoCollection<Document> tempCollection = database.getCollection(tempCollectionName);
+        final long copiedCount;
+        try {
+            copyIndexes(toCollection, tempCollection);
+
+            // the target may have been changed while the aggregation and index builds were running
+            if (toCollection.count() == 0) {
+
+                tempCollection.renameCollection(toCollection.getNamespace(),
+                                                new RenameCollectionOptions().dropTarget(true));
+                copiedCount = toCollection.count();
+                updateProgress(1, 1, expectedCount, copiedCount);
+
+            } else {
+
+                LOG.debug("copyOnServer: {} is no longer empty, copying partitions from {} instead of renaming",
+                          MongoUtil.fullName(toCollection), MongoUtil.fullName(tempCollection));
+
+                final CollectionCloner tempCloner = new CollectionCloner(database,
+                                                                         tempCollection,
+                                                                         toCollection,
+                                                                         new Document(),
+                                                                         parallelism,
+                                                                         progressListener);
+                copiedCount = tempCloner.copyPartitions(partitionByZ, expectedCount);
+            }
+        } finally {
+            // no-op if the temporary collection was renamed
+            tempCollection.drop();
+        }
+
+        return copiedCount;
+    }
+
+    /**
+     * Creates each (non _id) index in the specified source collection on the specified target collection.
+     */
+    private static void copyIndexes(final MongoCollection<Document> indexSource,
+                                    final MongoCollection<Document> indexTarget) {
+
+        for (final Document index : indexSource.listIndexes()) {
+
+            final String name = index.getString("name");
+            if (! ID_INDEX_NAME.equals(name)) {
+
+                final IndexOptions options = new IndexOptions().name(name);
+                if (index.getBoolean("unique", false)) {
+                    options.unique(true);
+                }
+                if (index.getBoolean("sparse", false)) {
+                    options.sparse(true);
+                }
+                if (index.getBoolean("background", false)) {
+                    options.background(true);
+                }
+                final Document partialFilterExpression = index.get("partialFilterExpression", Document.class);
+                if (partialFilterExpression != null) {
+                    options.partialFilterExpression(partialFilterExpression);
+                }
+
+                MongoUtil.createIndex(indexTarget, index.get("key", Document.class), options);
+            }
+        }
+    }
+
+    private long copyPartitions(final boolean partitionByZ,
+                                final long expectedCount)
+            throws IllegalStateException {
+
+        final List<Document> partitionQueries = partitionByZ ? getZPartitionQueries() : getIdPartitionQueries();
+        final int partitionCount = partitionQueries.size();
+
+        LOG.debug("copyPartitions: copying {} partitions with parallelism {}", partitionCount, parallelism);
+
+        final AtomicLong copiedCount = new AtomicLong(0);
+        final AtomicInteger completedPartitionCount = new AtomicInteger(0);
+        final ProcessTimer timer = new ProcessTimer(PROGRESS_UPDATE_INTERVAL);
+
+        updateProgress(partitionCount, 0, expectedCount, 0);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(parallelism, partitionCount));
+        try {
+            final List<Future<Long>> futures = new ArrayList<>(partitionCount);
+            for (final Document partitionQuery : partitionQueries) {
+                futures.add(executorService.submit(() -> {
+                    final long partitionCopiedCount = copyPartition(partitionQuery, copiedCount);
+                    final int completedCount = completedPartitionCount.incrementAndGet();
+                    synchronized (timer) {
+                        if (timer.hasIntervalPassed()) {
+                            updateProgress(partitionCount, completedCount, expectedCount, copiedCount.get());
+                        }
+                    }
+                    return partitionCopiedCount;
+                }));
+            }
+
+            for (final Future<Long> future : futures) {
+                future.get();
+            }
+
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("failed to copy " + MongoUtil.fullName(fromCollection) + " to " +
+                                            MongoUtil.fullName(toCollection), e.getCause());
+        } catch (final InterruptedException e) {
+            throw new IllegalStateException("interrupted while copying " + MongoUtil.fullName(fromCollection) +
+                                            " to " + MongoUtil.fullName(toCollection), e);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        updateProgress(partitionCount, completedPartitionCount.get(), expectedCount, copiedCount.get());
+
+        return copiedCount.get();
+    }
+
+    private long copyPartition(final Document partitionQuery,
+                               final AtomicLong totalCopiedCount)
+            throws IllegalStateException {
+
+        long count = 0;
+
+        final List<WriteModel<Document>> modelList = new ArrayList<>(MAX_DOCUMENTS_PER_BULK_INSERT);
+
+        try (final MongoCursor<Document> cursor = fromCollection.find(partitionQuery).iterator()) {
+            while (cursor.hasNext()) {
+                modelList.add(new InsertOneModel<>(cursor.next()));
+                count++;
+                if (modelList.size() == MAX_DOCUMENTS_PER_BULK_INSERT) {
+                    insertBatch(modelList, count, totalCopiedCount);
+                }
+            }
+        }
+
+        if (modelList.size() > 0) {
+            insertBatch(modelList, count, totalCopiedCount);
+        }
+
+        return count;
+    }
+
+    private void insertBatch(final List<WriteModel<Document>> modelList,
+                             final long partitionCount,
+                             final AtomicLong totalCopiedCount)
+            throws IllegalStateException {
+
+        final BulkWriteResult result = toCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+        final int insertedCount = result.getInsertedCount();
+        if (insertedCount != modelList.size()) {
+            throw new IllegalStateException("only inserted " + insertedCount + " out of " + modelList.size() +
+                                            " documents for partition batch ending with document " +
+                                            partitionCount);
+        }
+        totalCopiedCount.addAndGet(insertedCount);
+        modelList.clear();
+    }
+
+    /**
+     * @return queries that split the source documents into groups of consecutive z values.
+     */
+    private List<Document> getZPartitionQueries() {
+
+        final List<Double> zValues = new ArrayList<>();
+        for (final Double z : fromCollection.distinct("z", filterQuery, Double.class)) {
+            if (z != null) {
+                zValues.add(z);
+            }
+        }
+        zValues.sort(null);
+
+        final List<Document> partitionQueries = new ArrayList<>();
+
+        final int maxPartitions = parallelism * PARTITIONS_PER_THREAD;
+        final int zValuesPerPartition = Math.max(1, (int) Math.ceil(zValues.size() / (double) maxPartitions));
+        for (int i = 0; i < zValues.size(); i += zValuesPerPartition) {
+            final List<Double> partitionZValues =
+                    new ArrayList<>(zValues.subList(i, Math.min(zValues.size(), i + zValuesPerPartition)));
+            final Document partitionQuery = new Document(filterQuery);
+            partitionQuery.put("z", new Document(QueryOperators.IN, partitionZValues));
+            partitionQueries.add(partitionQuery);
+        }
+
+        // documents without a z value only need to be copied when they are not filtered out by z
+        if (! filterQuery.containsKey("z")) {
+            final Document partitionQuery = new Document(filterQuery);
+            partitionQuery.put("z", null);
+            partitionQueries.add(partitionQuery);
+        }
+
+        return partitionQueries;
+    }
+
+    /**
+     * @return queries that split the source documents into (roughly) equal sized _id ranges.
+     */
+    private List<Document> getIdPartitionQueries() {
+
+        if (! MongoUtil.isServerVersionAtLeast(database, 3, 4)) {
+            return getSkippedIdPartitionQueries();
+        }
+
+        // { "$bucketAuto": { "groupBy": "$_id", "buckets": n } } returns buckets with { "_id": { "min": x, "max": y } }
+        // where each bucket's max is the (exclusive) min of the next bucket and the last bucket's max is inclusive
+
+        final List<Document> pipeline = new ArrayList<>();
+        if (filterQuery.keySet().size() > 0) {
+            pipeline.add(new Document("$match", filterQuery));
+        }
+        pipeline.add(new Document("$bucketAuto",
+                                  new Document("groupBy", "$_id").append("buckets",
+                                                                         parallelism * PARTITIONS_PER_THREAD)));
+
+        final List<Document> buckets = new ArrayList<>();
+        fromCollection.aggregate(pipeline).allowDiskUse(true).into(buckets);
+
+        final List<Document> partitionQueries = new ArrayList<>(buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            final Document bucketRange = buckets.get(i).get("_id", Document.class);
+            final String maxOperator = (i == buckets.size() - 1) ? QueryOperators.LTE : QueryOperators.LT;
+            final Document partitionQuery = new Document(filterQuery);
+            partitionQuery.append("_id", new Document(QueryOperators.GTE, bucketRange.get("min")).append(
+                    maxOperator, bucketRange.get("max")));
+            partitionQueries.add(partitionQuery);
+        }
+
+        return partitionQueries;
+    }
+
+    /**
+     * Version of {@link #getIdPartitionQueries} for servers that do not support $bucketAuto (added in 3.4).
+     * Partition boundaries are found by skipping through the source documents in _id order.
+     *
+     * @return queries that split the source documents into (roughly) equal sized _id ranges.
+     */
+    private List<Document> getSkippedIdPartitionQueries() {
+
+        final long count = fromCollection.count(filterQuery);
+        final int maxPartitions = parallelism * PARTITIONS_PER_THREAD;
+        final long documentsPerPartition = Math.max(1, (long) Math.ceil(count / (double) maxPartitions));
+
+        final Document idOnly = new Document("_id", 1);
+        final List<Object> boundaryIds = new ArrayList<>();
+        for (long skip = documentsPerPartition; skip < count; skip += documentsPerPartition) {
+            final Document boundary = fromCollection.find(filterQuery)
+                    .projection(idOnly)
+                    .sort(idOnly)
+                    .skip((int) skip)
+                    .limit(1)
+                    .first();
+            if (boundary != null) {
+                boundaryIds.add(boundary.get("_id"));
+            }
+        }
+
+        final List<Document> partitionQueries = new ArrayList<>(boundaryIds.size() + 1);
+        Object minId = null;
+        for (int i = 0; i <= boundaryIds.size(); i++) {
+            final Document idRange = new Document();
+            if (minId != null) {
+                idRange.append(QueryOperators.GTE, minId);
+            }
+            if (i < boundaryIds.size()) {
+                minId = boundaryIds.get(i);
+                idRange.append(QueryOperators.LT, minId);
+            }
+            final Document partitionQuery = new Document(filterQuery);
+            if (idRange.size() > 0) {
+                partitionQuery.append("_id", idRange);
+            }
+            partitionQueries.add(partitionQuery);
+        }
+
+        return partitionQueries;
+    }
+
+    private void updateProgress(final int partitionCount,
+                                final int completedPartitionCount,
+                                final long expectedDocumentCount,
+                                final long copiedDocumentCount) {
+
+        LOG.debug("updateProgress: copied {} out of {} documents ({} out of {} partitions) to {}",
+                  copiedDocumentCount, expectedDocumentCount, completedPartitionCount, partitionCount,
+                  MongoUtil.fullName(toCollection));
+
+        if (progressListener != null) {
+            progressListener.progressUpdated(partitionCount,
+                                             completedPartitionCount,
+                                             expectedDocumentCount,
+                                             copiedDocumentCount);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(CollectionCloner.class);
+
+    private static final String ID_INDEX_NAME = "_id_";
+
+    // This 10,000 document chunk size is arbitrary but seems to be sufficient to avoid memory issues.
+    private static final int MAX_DOCUMENTS_PER_BULK_INSERT = 10000;
+
+    // Use more partitions than threads so that uneven partition sizes are balanced across threads.
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private static final long PROGRESS_UPDATE_INTERVAL = 15000;
+}
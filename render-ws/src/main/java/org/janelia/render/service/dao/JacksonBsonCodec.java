@@ -0,0 +1,258 @@
+package org.janelia.render.service.dao;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.mongodb.MongoClient;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import org.bson.BsonBinary;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.match.CanvasMatches;
+import org.janelia.alignment.spec.TransformSpec;
+
+/**
+ * BSON codec that maps documents directly to and from Jackson token streams so that
+ * objects with Jackson JSON bindings can be stored and retrieved without an intermediate JSON string.
+ *
+ * Encoded documents match those produced by {@link org.bson.Document#parse} for the object's JSON representation:
+ * integral values that fit in 32 bits are stored as int32, other integral values as int64,
+ * and all floating point values as doubles.
+ */
+public class JacksonBsonCodec<T>
+        implements Codec<T> {
+
+    /** Registry with codecs for core render objects (and default codecs for everything else). */
+    public static final CodecRegistry RENDER_CODEC_REGISTRY =
+            CodecRegistries.fromRegistries(
+                    CodecRegistries.fromCodecs(new TileSpecBsonCodec(),
+                                               new JacksonBsonCodec<>(TransformSpec.class),
+                                               new JacksonBsonCodec<>(CanvasMatches.class)),
+                    MongoClient.getDefaultCodecRegistry());
+
+    private final Class<T> encoderClass;
+    private final ObjectMapper mapper;
+
+    public JacksonBsonCodec(final Class<T> encoderClass) {
+        this.encoderClass = encoderClass;
+        this.mapper = JsonUtils.FAST_MAPPER;
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return encoderClass;
+    }
+
+    @Override
+    public T decode(final BsonReader reader,
+                    final DecoderContext decoderContext) {
+        final TokenBuffer buffer = new TokenBuffer(mapper, false);
+        try {
+            copyDocument(reader, buffer);
+            return mapper.readValue(buffer.asParser(), encoderClass);
+        } catch (final IOException e) {
+            throw new CodecConfigurationException("failed to decode " + encoderClass.getName(), e);
+        }
+    }
+
+    @Override
+    public void encode(final BsonWriter writer,
+                       final T value,
+                       final EncoderContext encoderContext) {
+        final TokenBuffer buffer = new TokenBuffer(mapper, false);
+        try {
+            mapper.writeValue(buffer, value);
+            try (final JsonParser parser = buffer.asParser()) {
+                copyTokens(parser, writer, value);
+            }
+        } catch (final IOException e) {
+            throw new CodecConfigurationException("failed to encode " + encoderClass.getName(), e);
+        }
+    }
+
+    /**
+     * Hook for subclasses to add derived (database only) fields to the top level document of an encoded value.
+     * Fields written here are ignored when documents are decoded.
+     *
+     * @param  writer  writer positioned just before the end of the top level document.
+     * @param  value   value being encoded.
+     */
+    protected void encodeAdditionalFields(final BsonWriter writer,
+                                          final T value) {
+    }
+
+    private static void copyDocument(final BsonReader reader,
+                                     final TokenBuffer buffer)
+            throws IOException {
+        reader.readStartDocument();
+        buffer.writeStartObject();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            buffer.writeFieldName(reader.readName());
+            copyValue(reader, buffer);
+        }
+        reader.readEndDocument();
+        buffer.writeEndObject();
+    }
+
+    private static void copyArray(final BsonReader reader,
+                                  final TokenBuffer buffer)
+            throws IOException {
+        reader.readStartArray();
+        buffer.writeStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            copyValue(reader, buffer);
+        }
+        reader.readEndArray();
+        buffer.writeEndArray();
+    }
+
+    private static void copyValue(final BsonReader reader,
+                                  final TokenBuffer buffer)
+            throws IOException {
+
+        final BsonType bsonType = reader.getCurrentBsonType();
+
+        switch (bsonType) {
+            case DOCUMENT:
+                copyDocument(reader, buffer);
+                break;
+            case ARRAY:
+                copyArray(reader, buffer);
+                break;
+            case DOUBLE:
+                buffer.writeNumber(reader.readDouble());
+                break;
+            case INT32:
+                buffer.writeNumber(reader.readInt32());
+                break;
+            case INT64:
+                buffer.writeNumber(reader.readInt64());
+                break;
+            case STRING:
+                buffer.writeString(reader.readString());
+                break;
+            case BOOLEAN:
+                buffer.writeBoolean(reader.readBoolean());
+                break;
+            case NULL:
+                reader.readNull();
+                buffer.writeNull();
+                break;
+            case OBJECT_ID:
+                // only expected for the _id field which is not mapped
+                buffer.writeString(reader.readObjectId().toHexString());
+                break;
+            case DATE_TIME:
+                buffer.writeNumber(reader.readDateTime());
+                break;
+            case BINARY_DATA:
+                buffer.writeBinary(reader.readBinaryData().getData());
+                break;
+            default:
+                throw new CodecConfigurationException("unsupported BSON type " + bsonType + " found for " +
+                                                      reader.getCurrentName());
+        }
+    }
+
+    private void copyTokens(final JsonParser parser,
+                            final BsonWriter writer,
+                            final T value)
+            throws IOException {
+
+        int documentDepth = 0;
+        JsonToken token = parser.nextToken();
+        while (token != null) {
+
+            switch (token) {
+                case START_OBJECT:
+                    writer.writeStartDocument();
+                    documentDepth++;
+                    break;
+                case END_OBJECT:
+                    documentDepth--;
+                    if (documentDepth == 0) {
+                        encodeAdditionalFields(writer, value);
+                    }
+                    writer.writeEndDocument();
+                    break;
+                case START_ARRAY:
+                    writer.writeStartArray();
+                    break;
+                case END_ARRAY:
+                    writer.writeEndArray();
+                    break;
+                case FIELD_NAME:
+                    writer.writeName(parser.getCurrentName());
+                    break;
+                case VALUE_STRING:
+                    writer.writeString(parser.getText());
+                    break;
+                case VALUE_NUMBER_INT:
+                    writeInteger(parser, writer);
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    writer.writeDouble(parser.getDoubleValue());
+                    break;
+                case VALUE_TRUE:
+                    writer.writeBoolean(true);
+                    break;
+                case VALUE_FALSE:
+                    writer.writeBoolean(false);
+                    break;
+                case VALUE_NULL:
+                    writer.writeNull();
+                    break;
+                case VALUE_EMBEDDED_OBJECT:
+                    final Object embeddedObject = parser.getEmbeddedObject();
+                    if (embeddedObject instanceof byte[]) {
+                        writer.writeBinaryData(new BsonBinary((byte[]) embeddedObject));
+                    } else {
+                        writer.writeString(String.valueOf(embeddedObject));
+                    }
+                    break;
+                default:
+                    throw new CodecConfigurationException("unsupported JSON token " + token);
+            }
+
+            token = parser.nextToken();
+        }
+    }
+
+    private static void writeInteger(final JsonParser parser,
+                                     final BsonWriter writer)
+            throws IOException {
+        switch (parser.getNumberType()) {
+            case INT:
+                writer.writeInt32(parser.getIntValue());
+                break;
+            case LONG:
+                final long longValue = parser.getLongValue();
+                if ((longValue >= Integer.MIN_VALUE) && (longValue <= Integer.MAX_VALUE)) {
+                    writer.writeInt32((int) longValue);
+                } else {
+                    writer.writeInt64(longValue);
+                }
+                break;
+            default:
+                final BigInteger bigValue = parser.getBigIntegerValue();
+                if (bigValue.bitLength() < 64) {
+                    writer.writeInt64(bigValue.longValue());
+                } else {
+                    writer.writeDouble(bigValue.doubleValue());
+                }
+        }
+    }
+
+}
@@ -1,5 +1,9 @@
 package org.janelia.render.service.dao;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.mongodb.MongoClient;
 import com.mongodb.QueryOperators;
 import com.mongodb.bulk.BulkWriteResult;
@@ -49,7 +53,7 @@ public class MatchDao {
     private final MongoDatabase matchDatabase;
 
     public MatchDao(final MongoClient client) {
-        matchDatabase = client.getDatabase(MATCH_DB_NAME);
+        matchDatabase = client.getDatabase(MATCH_DB_NAME).withCodecRegistry(JacksonBsonCodec.RENDER_CODEC_REGISTRY);
     }
 
     /**
@@ -198,6 +202,7 @@ public class MatchDao {
     public void writeMatchesWithPGroup(final MatchCollectionId collectionId,
                                        final List<MatchCollectionId> mergeCollectionIdList,
                                        final String pGroupId,
+                                       final ObjectMapper responseMapper,
                                        final OutputStream outputStream)
             throws IllegalArgumentException, IOException, ObjectNotFoundException {
 
@@ -210,12 +215,13 @@ public class MatchDao {
 
         final Document query = new Document("pGroupId", pGroupId);
 
-        writeMatches(collectionList, query, outputStream);
+        writeMatches(collectionList, query, responseMapper, outputStream);
     }
 
     public void writeMatchesWithinGroup(final MatchCollectionId collectionId,
                                         final List<MatchCollectionId> mergeCollectionIdList,
                                         final String groupId,
+                                        final ObjectMapper responseMapper,
                                         final OutputStream outputStream)
             throws IllegalArgumentException, IOException, ObjectNotFoundException {
 
@@ -228,12 +234,13 @@ public class MatchDao {
 
         final Document query = new Document("pGroupId", groupId).append("qGroupId", groupId);
 
-        writeMatches(collectionList, query, outputStream);
+        writeMatches(collectionList, query, responseMapper, outputStream);
     }
 
     public void writeMatchesOutsideGroup(final MatchCollectionId collectionId,
                                          final List<MatchCollectionId> mergeCollectionIdList,
                                          final String groupId,
+                                         final ObjectMapper responseMapper,
                                          final OutputStream outputStream)
             throws IllegalArgumentException, IOException, ObjectNotFoundException {
 
@@ -246,7 +253,7 @@ public class MatchDao {
 
         final Document query = getOutsideGroupQuery(groupId);
 
-        writeMatches(collectionList, query, outputStream);
+        writeMatches(collectionList, query, responseMapper, outputStream);
     }
 
     public List<CanvasMatches> getMatchesOutsideGroup(final MatchCollectionId collectionId,
@@ -269,6 +276,7 @@ public class MatchDao {
                                           final List<MatchCollectionId> mergeCollectionIdList,
                                           final String pGroupId,
                                           final String qGroupId,
+                                          final ObjectMapper responseMapper,
                                           final OutputStream outputStream)
             throws IllegalArgumentException, IOException, ObjectNotFoundException {
 
@@ -286,7 +294,7 @@ public class MatchDao {
                 "pGroupId", normalizedCriteria.getpGroupId()).append(
                 "qGroupId", normalizedCriteria.getqGroupId());
 
-        writeMatches(collectionList, query, outputStream);
+        writeMatches(collectionList, query, responseMapper, outputStream);
     }
 
     public void writeMatchesBetweenObjectAndGroup(final MatchCollectionId collectionId,
@@ -294,6 +302,7 @@ public class MatchDao {
                                                   final String pGroupId,
                                                   final String pId,
                                                   final String qGroupId,
+                                                  final ObjectMapper responseMapper,
                                                   final OutputStream outputStream)
             throws IllegalArgumentException, IOException, ObjectNotFoundException {
 
@@ -308,7 +317,7 @@ public class MatchDao {
 
         final Document query = getInvolvingObjectAndGroupQuery(pGroupId, pId, qGroupId);
 
-        writeMatches(collectionList, query, outputStream);
+        writeMatches(collectionList, query, responseMapper, outputStream);
     }
 
     public CanvasMatches getMatchesBetweenObjects(final MatchCollectionId collectionId,
@@ -334,9 +343,10 @@ public class MatchDao {
 
         int matchCount = 0;
         CanvasMatches canvasMatches = null;
-        try (MongoCursor<Document> cursor = collection.find(query).iterator()) {
+        try (MongoCursor<CanvasMatches> cursor =
+                     collection.withDocumentClass(CanvasMatches.class).find(query).iterator()) {
             if (cursor.hasNext()) {
-                canvasMatches = CanvasMatches.fromJson(cursor.next().toJson());
+                canvasMatches = cursor.next();
                 matchCount = canvasMatches.size();
             }
         }
@@ -358,6 +368,7 @@ public class MatchDao {
                                            final String pId,
                                            final String qGroupId,
                                            final String qId,
+                                           final ObjectMapper responseMapper,
                                            final OutputStream outputStream)
             throws IllegalArgumentException, IOException, ObjectNotFoundException {
 
@@ -378,13 +389,14 @@ public class MatchDao {
                 "qGroupId", normalizedCriteria.getqGroupId()).append(
                 "qId", normalizedCriteria.getqId());
 
-        writeMatches(collectionList, query, outputStream);
+        writeMatches(collectionList, query, responseMapper, outputStream);
     }
 
     public void writeMatchesInvolvingObject(final MatchCollectionId collectionId,
                                             final List<MatchCollectionId> mergeCollectionIdList,
                                             final String groupId,
                                             final String id,
+                                            final ObjectMapper responseMapper,
                                             final OutputStream outputStream)
             throws IllegalArgumentException, IOException, ObjectNotFoundException {
 
@@ -398,7 +410,7 @@ public class MatchDao {
 
         final Document query = getInvolvingObjectQuery(groupId, id);
 
-        writeMatches(collectionList, query, outputStream);
+        writeMatches(collectionList, query, responseMapper, outputStream);
     }
 
     public void removeMatchesInvolvingObject(final MatchCollectionId collectionId,
@@ -510,11 +522,10 @@ public class MatchDao {
 
             ensureMatchIndexes(collection);
 
-            final List<WriteModel<Document>> modelList = new ArrayList<>(matchesList.size());
+            final List<WriteModel<CanvasMatches>> modelList = new ArrayList<>(matchesList.size());
 
             final UpdateOptions upsertOption = new UpdateOptions().upsert(true);
             Document filter;
-            Document matchesObject;
             for (final CanvasMatches canvasMatches : matchesList) {
                 canvasMatches.normalize();
                 filter = new Document(
@@ -522,11 +533,11 @@ public class MatchDao {
                         "pId", canvasMatches.getpId()).append(
                         "qGroupId", canvasMatches.getqGroupId()).append(
                         "qId", canvasMatches.getqId());
-                matchesObject = Document.parse(canvasMatches.toJson());
-                modelList.add(new ReplaceOneModel<>(filter, matchesObject, upsertOption));
+                modelList.add(new ReplaceOneModel<>(filter, canvasMatches, upsertOption));
             }
 
-            final BulkWriteResult result = collection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+            final BulkWriteResult result = collection.withDocumentClass(CanvasMatches.class).bulkWrite(
+                    modelList, MongoUtil.UNORDERED_OPTION);
 
             if (LOG.isDebugEnabled()) {
                 final String bulkResultMessage = MongoUtil.toMessage("matches", result, matchesList.size());
@@ -635,9 +646,10 @@ public class MatchDao {
 
         final List<CanvasMatches> canvasMatchesList = new ArrayList<>();
 
-        try (MongoCursor<Document> cursor = collection.find(query).projection(EXCLUDE_MONGO_ID_KEY).iterator()) {
+        try (MongoCursor<CanvasMatches> cursor =
+                     collection.withDocumentClass(CanvasMatches.class).find(query).projection(EXCLUDE_MONGO_ID_KEY).iterator()) {
             while (cursor.hasNext()) {
-                canvasMatchesList.add(CanvasMatches.fromJson(cursor.next().toJson()));
+                canvasMatchesList.add(cursor.next());
             }
         }
 
@@ -651,12 +663,13 @@ public class MatchDao {
 
     private void writeMatches(final List<MongoCollection<Document>> collectionList,
                               final Document query,
+                              final ObjectMapper responseMapper,
                               final OutputStream outputStream)
             throws IOException {
 
         if (collectionList.size() > 1) {
 
-            writeMergedMatches(collectionList, query, outputStream);
+            writeMergedMatches(collectionList, query, responseMapper, outputStream);
 
         } else {
 
@@ -664,29 +677,28 @@ public class MatchDao {
 
             final ProcessTimer timer = new ProcessTimer();
 
-            outputStream.write(OPEN_BRACKET);
+            final ObjectWriter writer = responseMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 
             int count = 0;
-            try (MongoCursor<Document> cursor = collection.find(query).projection(EXCLUDE_MONGO_ID_KEY).sort(MATCH_ORDER_BY).iterator()) {
+            try (final JsonGenerator generator = responseMapper.getFactory().createGenerator(outputStream);
+                 final MongoCursor<CanvasMatches> cursor = collection.withDocumentClass(CanvasMatches.class)
+                         .find(query).projection(EXCLUDE_MONGO_ID_KEY).sort(MATCH_ORDER_BY).iterator()) {
 
-                Document document;
-                while (cursor.hasNext()) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
 
-                    if (count > 0) {
-                        outputStream.write(COMMA_WITH_NEW_LINE);
-                    }
+                while (cursor.hasNext()) {
 
-                    document = cursor.next();
-                    outputStream.write(document.toJson().getBytes());
+                    writer.writeValue(generator, cursor.next());
                     count++;
 
                     if (timer.hasIntervalPassed()) {
                         LOG.debug("writeMatches: data written for {} matches", count);
                     }
                 }
-            }
 
-            outputStream.write(CLOSE_BRACKET);
+                generator.writeEndArray();
+            }
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("writeMatches: wrote data for {} matches returned by {}.find({},{}), elapsedSeconds={}",
@@ -697,27 +709,32 @@ public class MatchDao {
 
     private void writeMergedMatches(final List<MongoCollection<Document>> collectionList,
                                     final Document query,
+                                    final ObjectMapper responseMapper,
                                     final OutputStream outputStream)
             throws IOException {
 
         // exclude mongo id from results
         final ProcessTimer timer = new ProcessTimer();
 
-        outputStream.write(OPEN_BRACKET);
+        final ObjectWriter writer = responseMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 
         int count = 0;
 
         final int numberOfCollections = collectionList.size();
-        final List<MongoCursor<Document>> cursorList = new ArrayList<>(numberOfCollections);
+        final List<MongoCursor<CanvasMatches>> cursorList = new ArrayList<>(numberOfCollections);
         final List<CanvasMatches> matchesList = new ArrayList<>(numberOfCollections);
 
-        try {
+        try (final JsonGenerator generator = responseMapper.getFactory().createGenerator(outputStream)) {
+
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
 
             int numberOfCompletedCursors = 0;
             MongoCollection<Document> collection;
             for (int i = 0; i < numberOfCollections; i++) {
                 collection = collectionList.get(i);
-                cursorList.add(collection.find(query).projection(EXCLUDE_MONGO_ID_KEY).sort(MATCH_ORDER_BY).iterator());
+                cursorList.add(collection.withDocumentClass(CanvasMatches.class)
+                                       .find(query).projection(EXCLUDE_MONGO_ID_KEY).sort(MATCH_ORDER_BY).iterator());
                 matchesList.add(null);
                 numberOfCompletedCursors += updateMatches(cursorList, matchesList, i);
             }
@@ -728,13 +745,10 @@ public class MatchDao {
 
             CanvasMatches mergedMatches;
             while (matchesList.size() > 0) {
-                if (count > 0) {
-                    outputStream.write(COMMA_WITH_NEW_LINE);
-                }
 
                 mergedMatches = getNextMergedMatches(cursorList, matchesList);
 
-                outputStream.write(mergedMatches.toJson().getBytes());
+                writer.writeValue(generator, mergedMatches);
                 count++;
 
                 if (timer.hasIntervalPassed()) {
@@ -742,9 +756,11 @@ public class MatchDao {
                 }
             }
 
+            generator.writeEndArray();
+
         } finally {
 
-            for (final MongoCursor<Document> cursor : cursorList) {
+            for (final MongoCursor<CanvasMatches> cursor : cursorList) {
                 if (cursor != null) {
                     try {
                         cursor.close();
@@ -756,8 +772,6 @@ public class MatchDao {
 
         }
 
-        outputStream.write(CLOSE_BRACKET);
-
         if (LOG.isDebugEnabled()) {
             final StringBuilder collectionNames = new StringBuilder(512);
             for (int i = 0; i < collectionList.size(); i++) {
@@ -771,7 +785,7 @@ public class MatchDao {
         }
     }
 
-    private CanvasMatches getNextMergedMatches(final List<MongoCursor<Document>> cursorList,
+    private CanvasMatches getNextMergedMatches(final List<MongoCursor<CanvasMatches>> cursorList,
                                                final List<CanvasMatches> matchesList) {
 
         int numberOfCompletedCursors = 0;
@@ -800,9 +814,9 @@ public class MatchDao {
         return nextMatches;
     }
 
-    private void removeCompletedCursors(final List<MongoCursor<Document>> cursorList,
+    private void removeCompletedCursors(final List<MongoCursor<CanvasMatches>> cursorList,
                                         final List<CanvasMatches> matchesList) {
-        MongoCursor<Document> cursor;
+        MongoCursor<CanvasMatches> cursor;
         for (int i = matchesList.size() - 1; i >=0; i--) {
             if (matchesList.get(i) == null) {
                 matchesList.remove(i);
@@ -812,13 +826,13 @@ public class MatchDao {
         }
     }
 
-    private int updateMatches(final List<MongoCursor<Document>> cursorList,
+    private int updateMatches(final List<MongoCursor<CanvasMatches>> cursorList,
                               final List<CanvasMatches> matchesList,
                               final int index) {
         CanvasMatches canvasMatches = null;
-        final MongoCursor<Document> cursor = cursorList.get(index);
+        final MongoCursor<CanvasMatches> cursor = cursorList.get(index);
         if (cursor.hasNext()) {
-            canvasMatches = CanvasMatches.fromJson(cursor.next().toJson());
+            canvasMatches = cursor.next();
         }
         matchesList.set(index, canvasMatches);
         return (canvasMatches == null ? 1 : 0);
@@ -871,9 +885,6 @@ public class MatchDao {
     private static final String MATCH_ORDER_BY_JSON = MATCH_ORDER_BY.toJson();
     private static final Document EXCLUDE_MONGO_ID_KEY = new Document("_id", 0);
     private static final String EXCLUDE_MONGO_ID_KEY_JSON = EXCLUDE_MONGO_ID_KEY.toJson();
-    private static final byte[] OPEN_BRACKET = "[".getBytes();
-    private static final byte[] COMMA_WITH_NEW_LINE = ",\n".getBytes();
-    private static final byte[] CLOSE_BRACKET = "]".getBytes();
 
     private static final IndexOptions MATCH_A_OPTIONS = new IndexOptions().unique(true).background(true).name("A");
     private static final IndexOptions MATCH_B_OPTIONS = new IndexOptions().background(true).name("B");
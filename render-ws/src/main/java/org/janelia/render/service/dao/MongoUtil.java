@@ -140,6 +140,28 @@ public class MongoUtil {
         }
     }
 
+    /**
+     * @return true if the server hosting the specified database has at least the specified version;
+     *         otherwise false (including when the server version cannot be determined).
+     */
+    public static boolean isServerVersionAtLeast(final MongoDatabase database,
+                                                 final int major,
+                                                 final int minor) {
+        boolean isAtLeast = false;
+        try {
+            final Document buildInfo = database.runCommand(new Document("buildInfo", 1));
+            final List<?> versionArray = buildInfo.get("versionArray", List.class);
+            if ((versionArray != null) && (versionArray.size() > 1)) {
+                final int serverMajor = ((Number) versionArray.get(0)).intValue();
+                final int serverMinor = ((Number) versionArray.get(1)).intValue();
+                isAtLeast = (serverMajor > major) || ((serverMajor == major) && (serverMinor >= minor));
+            }
+        } catch (final Exception e) {
+            LOG.warn("isServerVersionAtLeast: failed to retrieve build info for " + database.getName(), e);
+        }
+        return isAtLeast;
+    }
+
     public static void renameCollection(final MongoDatabase database,
                                         final String fromName,
                                         final String toName) {
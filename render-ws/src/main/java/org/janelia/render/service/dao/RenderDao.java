@@ -1,16 +1,23 @@
 package org.janelia.render.service.dao;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.mongodb.BasicDBList;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoException;
 import com.mongodb.QueryOperators;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.IndexOptions;
-import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
@@ -22,8 +29,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -32,15 +42,19 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.spec.Bounds;
 import org.janelia.alignment.spec.ListTransformSpec;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.SectionData;
 import org.janelia.alignment.spec.TileBounds;
+import org.janelia.alignment.spec.TileBoundsRTree;
 import org.janelia.alignment.spec.TileCoordinates;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.spec.TransformSpec;
+import org.janelia.alignment.spec.stack.StackCloneProgress;
 import org.janelia.alignment.spec.stack.StackId;
 import org.janelia.alignment.spec.stack.StackMetaData;
 import org.janelia.alignment.spec.stack.StackStats;
@@ -62,13 +76,33 @@ public class RenderDao {
     public static RenderDao build()
             throws UnknownHostException {
         final MongoClient mongoClient = SharedMongoClient.getInstance();
-        return new RenderDao(mongoClient);
+        return new RenderDao(mongoClient,
+                             TileBoundsTreeCache.getSharedInstance(),
+                             ResolvedTileSpecCache.getSharedInstance(),
+                             StackMetaDataCache.getSharedInstance());
     }
 
     private final MongoDatabase renderDatabase;
+    private final TileBoundsTreeCache tileBoundsTreeCache;
+    private final ResolvedTileSpecCache resolvedTileSpecCache;
+    private final StackMetaDataCache stackMetaDataCache;
 
     public RenderDao(final MongoClient client) {
-        renderDatabase = client.getDatabase(RENDER_DB_NAME);
+        this(client,
+             new TileBoundsTreeCache(TileBoundsTreeCache.DEFAULT_MAX_NUMBER_OF_TILES),
+             new ResolvedTileSpecCache(ResolvedTileSpecCache.DEFAULT_MAX_BYTES),
+             new StackMetaDataCache(StackMetaDataCache.DEFAULT_MAX_NUMBER_OF_STACKS,
+                                    StackMetaDataCache.DEFAULT_EXPIRE_SECONDS));
+    }
+
+    public RenderDao(final MongoClient client,
+                     final TileBoundsTreeCache tileBoundsTreeCache,
+                     final ResolvedTileSpecCache resolvedTileSpecCache,
+                     final StackMetaDataCache stackMetaDataCache) {
+        this.renderDatabase = client.getDatabase(RENDER_DB_NAME).withCodecRegistry(JacksonBsonCodec.RENDER_CODEC_REGISTRY);
+        this.tileBoundsTreeCache = tileBoundsTreeCache;
+        this.resolvedTileSpecCache = resolvedTileSpecCache;
+        this.stackMetaDataCache = stackMetaDataCache;
     }
 
     /**
@@ -96,13 +130,23 @@ public class RenderDao {
 
         final double lowerRightX = x + width;
         final double lowerRightY = y + height;
-        final Document tileQuery = getIntersectsBoxQuery(z, x, y, lowerRightX, lowerRightY);
-        if (groupId != null) {
-            tileQuery.append("groupId", groupId);
-        }
 
         final RenderParameters renderParameters = new RenderParameters(null, x, y, width, height, scale);
-        addResolvedTileSpecs(stackId, tileQuery, renderParameters);
+
+        final StackMetaData cacheableStackMetaData = getCacheableStackMetaData(stackId);
+        final TileBoundsRTree tree = groupId == null ? getCachedTileBoundsTree(stackId, cacheableStackMetaData, z) : null;
+        if (tree == null) {
+            final Document tileQuery = getIntersectsBoxQuery(z, x, y, lowerRightX, lowerRightY);
+            if (groupId != null) {
+                tileQuery.append("groupId", groupId);
+            }
+            addResolvedTileSpecs(stackId, cacheableStackMetaData, tileQuery, renderParameters);
+        } else {
+            addCachedResolvedTileSpecs(stackId,
+                                       cacheableStackMetaData.getLastModifiedTimestamp(),
+                                       getSortedTileIds(tree.findTilesIntersectingBox(x, y, lowerRightX, lowerRightY)),
+                                       renderParameters);
+        }
 
         return renderParameters;
     }
@@ -134,7 +178,7 @@ public class RenderDao {
 
         final RenderParameters renderParameters =
                 new RenderParameters(null, x, y, width.intValue(), height.intValue(), scale);
-        addResolvedTileSpecs(stackId, tileQuery, renderParameters);
+        addResolvedTileSpecs(stackId, getCacheableStackMetaData(stackId), tileQuery, renderParameters);
 
         return renderParameters;
     }
@@ -163,10 +207,16 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("width", width);
         MongoUtil.validateRequiredParameter("height", height);
 
-        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
-
         final double lowerRightX = x + width;
         final double lowerRightY = y + height;
+
+        final TileBoundsRTree tree = getCachedTileBoundsTree(stackId, getCacheableStackMetaData(stackId), z);
+        if (tree != null) {
+            return tree.findTilesIntersectingBox(x, y, lowerRightX, lowerRightY).size();
+        }
+
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+
         final Document tileQuery = getIntersectsBoxQuery(z, x, y, lowerRightX, lowerRightY);
 
         final long count = tileCollection.count(tileQuery);
@@ -199,6 +249,15 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("stackId", stackId);
         MongoUtil.validateRequiredParameter("tileId", tileId);
 
+        // cached specs are fully resolved, so only use the cache when references should be resolved
+        final Date lastModifiedTimestamp = resolveTransformReferences ? getCacheTimestamp(stackId) : null;
+        if (lastModifiedTimestamp != null) {
+            final TileSpec cachedTileSpec = resolvedTileSpecCache.getTileSpec(stackId, lastModifiedTimestamp, tileId);
+            if (cachedTileSpec != null) {
+                return cachedTileSpec;
+            }
+        }
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
 
         final Document query = new Document();
@@ -208,23 +267,43 @@ public class RenderDao {
 
         // EXAMPLE:   find({ "tileId" : "140723171842050101.3299.0"})
         // INDEX:     tileId_1
-        final Document document = tileCollection.find(query).first();
+        final RawBsonDocument document = tileCollection.withDocumentClass(RawBsonDocument.class).find(query).first();
 
         if (document == null) {
             throw new ObjectNotFoundException("tile spec with id '" + tileId + "' does not exist in the " +
                                               MongoUtil.fullName(tileCollection) + " collection");
         }
 
-        final TileSpec tileSpec = TileSpec.fromJson(document.toJson());
+        final TileSpec tileSpec = document.decode(TILE_SPEC_CODEC);
 
         if (resolveTransformReferences) {
-            resolveTransformReferencesForTiles(stackId, Collections.singletonList(tileSpec));
+            resolveTransformReferencesForTiles(stackId, lastModifiedTimestamp, Collections.singletonList(tileSpec));
+            if (lastModifiedTimestamp != null) {
+                resolvedTileSpecCache.putTileSpec(stackId,
+                                                  lastModifiedTimestamp,
+                                                  tileSpec,
+                                                  getApproximateBytes(document));
+            }
         }
 
         return tileSpec;
     }
 
+    /**
+     * Resolves all transform references for the specified tiles.
+     *
+     * @param  stackId                stack containing the tiles.
+     * @param  lastModifiedTimestamp  current last modified timestamp for the stack if cached transform specs
+     *                                should be used (and newly loaded specs should be cached), otherwise null.
+     * @param  tileSpecs              tiles to resolve.
+     *
+     * @return map of loaded transform specs keyed by id.
+     *
+     * @throws IllegalStateException
+     *   if any tile cannot be fully resolved.
+     */
     private Map<String, TransformSpec> resolveTransformReferencesForTiles(final StackId stackId,
+                                                                          final Date lastModifiedTimestamp,
                                                                           final List<TileSpec> tileSpecs)
             throws IllegalStateException {
 
@@ -242,12 +321,38 @@ public class RenderDao {
         final int unresolvedCount = unresolvedIds.size();
         if (unresolvedCount > 0) {
 
+            final Set<String> cachedIds = new HashSet<>();
+            if (lastModifiedTimestamp != null) {
+                for (final String unresolvedId : unresolvedIds) {
+                    final TransformSpec cachedSpec =
+                            resolvedTileSpecCache.getTransformSpec(stackId, lastModifiedTimestamp, unresolvedId);
+                    if (cachedSpec != null) {
+                        resolvedIdToSpecMap.put(unresolvedId, cachedSpec);
+                        cachedIds.add(unresolvedId);
+                    }
+                }
+                unresolvedIds.removeAll(cachedIds);
+            }
+
             final MongoCollection<Document> transformCollection = getTransformCollection(stackId);
             getDataForTransformSpecReferences(transformCollection, unresolvedIds, resolvedIdToSpecMap, 1);
 
-            // resolve any references within the retrieved transform specs
+            // resolve any references within the retrieved transform specs (cached specs are already resolved)
             for (final TransformSpec transformSpec : resolvedIdToSpecMap.values()) {
-                transformSpec.resolveReferences(resolvedIdToSpecMap);
+                if (! cachedIds.contains(transformSpec.getId())) {
+                    transformSpec.resolveReferences(resolvedIdToSpecMap);
+                }
+            }
+
+            if (lastModifiedTimestamp != null) {
+                for (final TransformSpec transformSpec : resolvedIdToSpecMap.values()) {
+                    if ((! cachedIds.contains(transformSpec.getId())) && transformSpec.isFullyResolved()) {
+                        resolvedTileSpecCache.putTransformSpec(stackId,
+                                                               lastModifiedTimestamp,
+                                                               transformSpec,
+                                                               getApproximateBytes(transformSpec));
+                    }
+                }
             }
 
             // apply fully resolved transform specs to tiles
@@ -285,9 +390,21 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("y", y);
         MongoUtil.validateRequiredParameter("z", z);
 
-        final Document tileQuery = getIntersectsBoxQuery(z, x, y, x, y);
         final RenderParameters renderParameters = new RenderParameters();
-        addResolvedTileSpecs(stackId, tileQuery, renderParameters);
+
+        final StackMetaData cacheableStackMetaData = getCacheableStackMetaData(stackId);
+        final TileBoundsRTree tree = getCachedTileBoundsTree(stackId, cacheableStackMetaData, z);
+        if (tree == null) {
+            addResolvedTileSpecs(stackId,
+                                 cacheableStackMetaData,
+                                 getIntersectsBoxQuery(z, x, y, x, y),
+                                 renderParameters);
+        } else {
+            addCachedResolvedTileSpecs(stackId,
+                                       cacheableStackMetaData.getLastModifiedTimestamp(),
+                                       getSortedTileIds(tree.findTilesContainingPoint(x, y)),
+                                       renderParameters);
+        }
 
         if (! renderParameters.hasTileSpecs()) {
             throw new IllegalArgumentException("no tile specifications found in " + stackId +
@@ -309,10 +426,18 @@ public class RenderDao {
 
         MongoUtil.validateRequiredParameter("stackId", stackId);
 
-        final Document tileQuery = new Document("tileId", new Document("$in", tileIds));
-
         final RenderParameters renderParameters = new RenderParameters();
-        addResolvedTileSpecs(stackId, tileQuery, renderParameters);
+
+        final Date lastModifiedTimestamp = getCacheTimestamp(stackId);
+        if (lastModifiedTimestamp == null) {
+            final Document tileQuery = new Document("tileId", new Document("$in", tileIds));
+            addResolvedTileSpecs(stackId, tileQuery, renderParameters);
+        } else {
+            addCachedResolvedTileSpecs(stackId,
+                                       lastModifiedTimestamp,
+                                       new ArrayList<>(new TreeSet<>(tileIds)),
+                                       renderParameters);
+        }
 
         final List<TileSpec> tileSpecs;
         if (renderParameters.hasTileSpecs()) {
@@ -325,6 +450,23 @@ public class RenderDao {
         return tileSpecs;
     }
 
+    /**
+     * Writes the specified world coordinates (as a JSON array of arrays) to the specified stream
+     * with one coordinate instance for each tile that contains the coordinate.
+     *
+     * Rather than querying the database for each coordinate, the bounds for all tiles in each
+     * referenced layer are loaded once and the coordinates are located using an in-memory
+     * {@link TileBoundsRTree}.  Coordinates are grouped by layer so that only one layer's tree
+     * is held in memory at a time.  Matching tiles are written in tileId order (consistent with
+     * earlier database sorted versions of this method) and coordinates that are not contained by
+     * any tile are written without a tileId.
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters or coordinate values are missing.
+     *
+     * @throws IOException
+     *   if the data cannot be written.
+     */
     public void writeCoordinatesWithTileIds(final StackId stackId,
                                             final Double z,
                                             final List<TileCoordinates> worldCoordinatesList,
@@ -336,111 +478,183 @@ public class RenderDao {
 
         MongoUtil.validateRequiredParameter("stackId", stackId);
 
-        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
-        final Document tileKeys = new Document("tileId", 1).append("_id", 0);
-
-        // order tile specs by tileId to ensure consistent coordinate mapping
-        final Document orderBy = new Document("tileId", 1);
-
         final ProcessTimer timer = new ProcessTimer();
         final byte[] openBracket = "[".getBytes();
         final byte[] comma = ",".getBytes();
         final byte[] closeBracket = "]".getBytes();
 
-        int coordinateCount = 0;
+        // validate all coordinates and group them by layer before anything is written
+        final Map<Double, List<Integer>> zToIndexes = new LinkedHashMap<>();
 
         double[] world;
         double coordinateZ = z == null ? -1 : z;
-        Document tileQuery = new Document();
-        MongoCursor<Document> cursor = null;
-        Document document;
-        Object tileId;
-        String coordinatesJson;
-        try {
+        for (int i = 0; i < worldCoordinatesList.size(); i++) {
 
-            outputStream.write(openBracket);
+            world = worldCoordinatesList.get(i).getWorld();
 
-            TileCoordinates worldCoordinates;
-            for (int i = 0; i < worldCoordinatesList.size(); i++) {
+            if (world == null) {
+                throw new IllegalArgumentException("world values are missing for element " + i);
+            } else if (z == null) {
+                if (world.length < 3) {
+                    throw new IllegalArgumentException("world values must include x, y, and z for element " + i);
+                }
+                coordinateZ = world[2];
+            } else {
+                if (world.length < 2) {
+                    throw new IllegalArgumentException("world values must include both x and y for element " + i);
+                }
+            }
 
-                worldCoordinates = worldCoordinatesList.get(i);
-                world = worldCoordinates.getWorld();
+            zToIndexes.computeIfAbsent(coordinateZ, k -> new ArrayList<>()).add(i);
+        }
 
-                if (world == null) {
-                    throw new IllegalArgumentException("world values are missing for element " + i);
-                } else if (z == null) {
-                    if (world.length < 3) {
-                        throw new IllegalArgumentException("world values must include x, y, and z for element " + i);
-                    }
-                    coordinateZ = world[2];
-                } else {
-                    if (world.length < 2) {
-                        throw new IllegalArgumentException("world values must include both x and y for element " + i);
-                    }
-                }
+        // find matching tiles one layer at a time so that each layer's tree can be released once it is done
+        final List<List<String>> matchingTileIdsList = new ArrayList<>(worldCoordinatesList.size());
+        for (int i = 0; i < worldCoordinatesList.size(); i++) {
+            matchingTileIdsList.add(null);
+        }
 
-                tileQuery = getIntersectsBoxQuery(coordinateZ, world[0], world[1], world[0], world[1]);
+        TileBoundsRTree tree;
+        List<TileBounds> matchingTiles;
+        List<String> matchingTileIds;
+        for (final Map.Entry<Double, List<Integer>> entry : zToIndexes.entrySet()) {
 
-                // EXAMPLE:   find({"z": 3299.0 , "minX": {"$lte": 95000.0}, "minY": {"$lte": 200000.0}, "maxX": {"$gte": 95000.0}, "maxY": {"$gte": 200000.0}}, {"tileId":1, "_id": 0}).sort({"tileId" : 1})
-                // INDEXES:   z_1_minY_1_minX_1_maxY_1_maxX_1_tileId_1 (z1_minX_1, z1_maxX_1, ... used for edge cases)
-                cursor = tileCollection.find(tileQuery).projection(tileKeys).sort(orderBy).iterator();
+            tree = buildTileBoundsTree(stackId, entry.getKey());
 
-                if (i > 0) {
-                    outputStream.write(comma);
+            for (final Integer i : entry.getValue()) {
+                world = worldCoordinatesList.get(i).getWorld();
+                matchingTiles = tree.findTilesContainingPoint(world[0], world[1]);
+                matchingTileIds = new ArrayList<>(matchingTiles.size());
+                for (final TileBounds tileBounds : matchingTiles) {
+                    matchingTileIds.add(tileBounds.getTileId());
                 }
-                outputStream.write(openBracket);
+                // order tiles by tileId to ensure consistent coordinate mapping
+                Collections.sort(matchingTileIds);
+                matchingTileIdsList.set(i, matchingTileIds);
+            }
 
-                if (cursor.hasNext()) {
+            if (timer.hasIntervalPassed()) {
+                LOG.debug("writeCoordinatesWithTileIds: located tiles for coordinates in layer {}", entry.getKey());
+            }
+        }
 
-                    document = cursor.next();
-                    tileId = document.get("tileId");
-                    if (tileId != null) {
-                        worldCoordinates.setTileId(tileId.toString());
-                    }
-                    coordinatesJson = worldCoordinates.toJson();
-                    outputStream.write(coordinatesJson.getBytes());
+        int coordinateCount = 0;
+        TileCoordinates worldCoordinates;
+        String coordinatesJson;
 
-                    while (cursor.hasNext()) {
-                        document = cursor.next();
-                        tileId = document.get("tileId");
-                        if (tileId != null) {
-                            worldCoordinates.setTileId(tileId.toString());
-                        }
-                        coordinatesJson = worldCoordinates.toJson();
+        outputStream.write(openBracket);
 
-                        outputStream.write(comma);
-                        outputStream.write(coordinatesJson.getBytes());
-                    }
+        for (int i = 0; i < worldCoordinatesList.size(); i++) {
 
-                } else {
+            worldCoordinates = worldCoordinatesList.get(i);
+            matchingTileIds = matchingTileIdsList.get(i);
+
+            if (i > 0) {
+                outputStream.write(comma);
+            }
+            outputStream.write(openBracket);
+
+            if (matchingTileIds.size() > 0) {
 
+                for (int j = 0; j < matchingTileIds.size(); j++) {
+                    worldCoordinates.setTileId(matchingTileIds.get(j));
                     coordinatesJson = worldCoordinates.toJson();
+                    if (j > 0) {
+                        outputStream.write(comma);
+                    }
                     outputStream.write(coordinatesJson.getBytes());
-
                 }
 
-                cursor.close();
-
-                outputStream.write(closeBracket);
+            } else {
 
-                coordinateCount++;
+                coordinatesJson = worldCoordinates.toJson();
+                outputStream.write(coordinatesJson.getBytes());
 
-                if (timer.hasIntervalPassed()) {
-                    LOG.debug("writeCoordinatesWithTileIds: data written for {} coordinates", coordinateCount);
-                }
             }
 
             outputStream.write(closeBracket);
 
-        } finally {
-            if (cursor != null) {
-                cursor.close();
+            coordinateCount++;
+
+            if (timer.hasIntervalPassed()) {
+                LOG.debug("writeCoordinatesWithTileIds: data written for {} coordinates", coordinateCount);
             }
         }
 
-        LOG.debug("writeCoordinatesWithTileIds: wrote data for {} coordinates returned by queries like {}.find({},{}).sort({}), elapsedSeconds={}",
-                  coordinateCount, MongoUtil.fullName(tileCollection),
-                  tileQuery.toJson(), tileKeys.toJson(), orderBy.toJson(), timer.getElapsedSeconds());
+        outputStream.write(closeBracket);
+
+        LOG.debug("writeCoordinatesWithTileIds: wrote data for {} coordinates in {} layers, elapsedSeconds={}",
+                  coordinateCount, zToIndexes.size(), timer.getElapsedSeconds());
+    }
+
+    /**
+     * @return meta data for the specified stack if data from the stack can be cached or
+     *         null if the stack is missing or still loading (since loading stacks can change without
+     *         their last modified timestamp changing).
+     */
+    private StackMetaData getCacheableStackMetaData(final StackId stackId) {
+        StackMetaData cacheableStackMetaData = null;
+        final StackMetaData stackMetaData = getCachedStackMetaData(stackId);
+        if ((stackMetaData != null) &&
+            (! stackMetaData.isLoading()) &&
+            (stackMetaData.getLastModifiedTimestamp() != null)) {
+            cacheableStackMetaData = stackMetaData;
+        }
+        return cacheableStackMetaData;
+    }
+
+    /**
+     * @return last modified timestamp for the specified stack if data from the stack can be cached, otherwise null.
+     */
+    private Date getCacheTimestamp(final StackId stackId) {
+        final StackMetaData cacheableStackMetaData = getCacheableStackMetaData(stackId);
+        return cacheableStackMetaData == null ? null : cacheableStackMetaData.getLastModifiedTimestamp();
+    }
+
+    /**
+     * @return cached tree containing the bounds of all tiles in the specified layer or
+     *         null if the stack cannot be cached.
+     */
+    private TileBoundsRTree getCachedTileBoundsTree(final StackId stackId,
+                                                    final StackMetaData cacheableStackMetaData,
+                                                    final Double z) {
+        TileBoundsRTree tree = null;
+        if (cacheableStackMetaData != null) {
+            tree = tileBoundsTreeCache.get(stackId,
+                                           z,
+                                           cacheableStackMetaData.getLastModifiedTimestamp(),
+                                           () -> buildTileBoundsTree(stackId, z));
+        }
+        return tree;
+    }
+
+    /**
+     * Removes all cached data for the specified stack.
+     * This should be called whenever tile or transform data for the stack is changed.
+     */
+    private void invalidateCachedData(final StackId stackId) {
+        tileBoundsTreeCache.invalidate(stackId);
+        resolvedTileSpecCache.invalidate(stackId);
+    }
+
+    /**
+     * @return tree containing the bounds of all tiles in the specified layer.
+     *         Tiles without defined bounds are excluded.
+     */
+    private TileBoundsRTree buildTileBoundsTree(final StackId stackId,
+                                                final Double z) {
+
+        final List<TileBounds> tileBoundsList = getTileBoundsForZ(stackId, z);
+        final List<TileBounds> treeTileBoundsList = new ArrayList<>(tileBoundsList.size());
+        for (final TileBounds tileBounds : tileBoundsList) {
+            if ((tileBounds.getTileId() != null) &&
+                (tileBounds.getMinX() != null) && (tileBounds.getMinY() != null) &&
+                (tileBounds.getMaxX() != null) && (tileBounds.getMaxY() != null)) {
+                treeTileBoundsList.add(tileBounds);
+            }
+        }
+
+        return new TileBoundsRTree(z, treeTileBoundsList);
     }
 
     /**
@@ -459,7 +673,7 @@ public class RenderDao {
 
         final Document tileQuery = new Document("z", z);
         final RenderParameters renderParameters = new RenderParameters();
-        addResolvedTileSpecs(stackId, tileQuery, renderParameters);
+        addResolvedTileSpecs(stackId, getCacheableStackMetaData(stackId), tileQuery, renderParameters);
 
         if (! renderParameters.hasTileSpecs()) {
             throw new IllegalArgumentException("no tile specifications found in " + stackId +" for z=" + z);
@@ -534,8 +748,140 @@ public class RenderDao {
                                               renderParameters.getTileSpecs());
     }
 
+    /**
+     * Writes a resolved tile spec collection for all tiles that have the specified z.
+     *
+     * @see #writeResolvedTiles(StackId, Document, ObjectMapper, OutputStream)
+     */
+    public void writeResolvedTiles(final StackId stackId,
+                                   final Double z,
+                                   final ObjectMapper responseMapper,
+                                   final OutputStream outputStream)
+            throws IllegalArgumentException, ObjectNotFoundException, IOException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+        MongoUtil.validateRequiredParameter("z", z);
+
+        writeResolvedTiles(stackId, new Document("z", z), responseMapper, outputStream);
+    }
+
+    /**
+     * Writes a resolved tile spec collection for all tiles that match the specified criteria.
+     *
+     * @see #writeResolvedTiles(StackId, Document, ObjectMapper, OutputStream)
+     */
+    public void writeResolvedTiles(final StackId stackId,
+                                   final Double minZ,
+                                   final Double maxZ,
+                                   final String groupId,
+                                   final Double minX,
+                                   final Double maxX,
+                                   final Double minY,
+                                   final Double maxY,
+                                   final ObjectMapper responseMapper,
+                                   final OutputStream outputStream)
+            throws IllegalArgumentException, ObjectNotFoundException, IOException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+
+        writeResolvedTiles(stackId, getGroupQuery(minZ, maxZ, groupId, minX, maxX, minY, maxY), responseMapper, outputStream);
+    }
+
+    /**
+     * Writes a resolved tile spec collection (as JSON) for all tiles that match the specified query
+     * directly from database cursors.  Referenced transform specs are written first followed by the tile specs,
+     * so that readers can resolve each tile as it is parsed.  Only the referenced transform ids and
+     * transform specs are held in memory, so arbitrarily large collections can be written.
+     *
+     * The data format is the same as the format for serialized {@link ResolvedTileSpecCollection} instances
+     * and is encoded by the specified mapper (e.g. JSON or Smile).
+     *
+     * @throws ObjectNotFoundException
+     *   if no tiles match the query (checked before anything is written).
+     *
+     * @throws IOException
+     *   if the data cannot be written.
+     */
+    private void writeResolvedTiles(final StackId stackId,
+                                    final Document tileQuery,
+                                    final ObjectMapper responseMapper,
+                                    final OutputStream outputStream)
+            throws ObjectNotFoundException, IOException {
+
+        final ProcessTimer timer = new ProcessTimer();
+
+        final MongoCollection<TileSpec> tileSpecCollection =
+                getTileCollection(stackId).withDocumentClass(TileSpec.class);
+
+        // first pass: collect referenced transform ids without holding tile specs
+        final Document transformKeys = new Document("transforms", 1).append("_id", 0);
+        final Set<String> unresolvedIds = new HashSet<>();
+        int tileCount = 0;
+        try (final MongoCursor<TileSpec> cursor =
+                     tileSpecCollection.find(tileQuery).projection(transformKeys).iterator()) {
+            ListTransformSpec transforms;
+            while (cursor.hasNext()) {
+                transforms = cursor.next().getTransforms();
+                if (transforms != null) {
+                    transforms.addUnresolvedIds(unresolvedIds);
+                }
+                tileCount++;
+            }
+        }
+
+        if (tileCount == 0) {
+            throwExceptionIfStackIsMissing(stackId);
+            throw new ObjectNotFoundException("no tile specifications found in " + stackId + " for " + tileQuery);
+        }
+
+        final Map<String, TransformSpec> resolvedIdToSpecMap = new HashMap<>();
+        getDataForTransformSpecReferences(getTransformCollection(stackId), unresolvedIds, resolvedIdToSpecMap, 1);
+
+        final ObjectWriter writer = responseMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        int writtenTileCount = 0;
+        try (final JsonGenerator generator = responseMapper.getFactory().createGenerator(outputStream)) {
+
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            generator.writeStartObject();
+
+            generator.writeObjectFieldStart("transformIdToSpecMap");
+            for (final TransformSpec transformSpec : resolvedIdToSpecMap.values()) {
+                generator.writeFieldName(transformSpec.getId());
+                writer.writeValue(generator, transformSpec);
+            }
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("tileIdToSpecMap");
+            try (final MongoCursor<TileSpec> cursor = tileSpecCollection.find(tileQuery).iterator()) {
+                TileSpec tileSpec;
+                while (cursor.hasNext()) {
+                    tileSpec = cursor.next();
+                    generator.writeFieldName(tileSpec.getTileId());
+                    writer.writeValue(generator, tileSpec);
+                    writtenTileCount++;
+
+                    if (timer.hasIntervalPassed()) {
+                        LOG.debug("writeResolvedTiles: data written for {} tiles", writtenTileCount);
+                    }
+                }
+            }
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        }
+
+        LOG.debug("writeResolvedTiles: wrote {} transform specs and {} tile specs for {}.find({}), elapsedSeconds={}",
+                  resolvedIdToSpecMap.size(), writtenTileCount, MongoUtil.fullName(getTileCollection(stackId)),
+                  tileQuery.toJson(), timer.getElapsedSeconds());
+    }
+
     /**
      * Saves the specified tile spec to the database.
+     * The layers for the saved tiles (both the layers they are saved to and the layers
+     * of any tiles they replace) are flagged as changed.
      *
      * @param  stackId            stack identifier.
      * @param  resolvedTileSpecs  collection of resolved tile specs (with referenced transforms).
@@ -550,6 +896,8 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("stackId", stackId);
         MongoUtil.validateRequiredParameter("resolvedTileSpecs", resolvedTileSpecs);
 
+        invalidateCachedData(stackId);
+
         final Collection<TransformSpec> transformSpecs = resolvedTileSpecs.getTransformSpecs();
         final Collection<TileSpec> tileSpecs = resolvedTileSpecs.getTileSpecs();
 
@@ -561,16 +909,28 @@ public class RenderDao {
 
             final MongoCollection<Document> tileCollection = getTileCollection(stackId);
 
-            final List<WriteModel<Document>> modelList = new ArrayList<>(tileSpecs.size());
+            final List<WriteModel<TileSpec>> modelList = new ArrayList<>(tileSpecs.size());
+            final List<String> tileIds = new ArrayList<>(tileSpecs.size());
+            final Set<Double> changedZValues = new HashSet<>();
             Document query = new Document();
-            Document tileSpecObject;
             for (final TileSpec tileSpec : tileSpecs) {
                 query = new Document("tileId", tileSpec.getTileId());
-                tileSpecObject = Document.parse(tileSpec.toJson());
-                modelList.add(new ReplaceOneModel<>(query, tileSpecObject, MongoUtil.UPSERT_OPTION));
+                modelList.add(new ReplaceOneModel<>(query, tileSpec, MongoUtil.UPSERT_OPTION));
+                tileIds.add(tileSpec.getTileId());
+                if (tileSpec.getZ() != null) {
+                    changedZValues.add(tileSpec.getZ());
+                }
             }
 
-            final BulkWriteResult result = tileCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+            // replaced tiles may be moving to a different layer, so flag the layers they are leaving as well
+            changedZValues.addAll(getDistinctZValues(tileCollection,
+                                                     new Document("tileId", new Document(QueryOperators.IN,
+                                                                                         tileIds))));
+
+            markLayersChanged(stackId, changedZValues);
+
+            final BulkWriteResult result = tileCollection.withDocumentClass(TileSpec.class).bulkWrite(
+                    modelList, MongoUtil.UNORDERED_OPTION);
 
             if (LOG.isDebugEnabled()) {
                 final String bulkResultMessage = MongoUtil.toMessage("tile specs", result, tileSpecs.size());
@@ -581,8 +941,87 @@ public class RenderDao {
 
     }
 
+    /**
+     * Adds spatial cell keys (see {@link TileSpatialKey}) to all tile documents in the specified stack
+     * that were saved before keys were introduced and ensures the index used by key queries exists.
+     * Tiles saved after keys were introduced are skipped, so the update can safely be repeated.
+     *
+     * @param  stackId  stack identifier.
+     *
+     * @return number of updated tile documents.
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters are missing.
+     *
+     * @throws ObjectNotFoundException
+     *   if the stack cannot be found.
+     */
+    public long updateSpatialKeys(final StackId stackId)
+            throws IllegalArgumentException, ObjectNotFoundException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+
+        throwExceptionIfStackIsMissing(stackId);
+
+        final ProcessTimer timer = new ProcessTimer();
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+
+        // EXAMPLE:   find({"spatialCells": {"$exists": false}, "minX": {"$exists": true}},
+        //                 {"minX": 1, "minY": 1, "maxX": 1, "maxY": 1})
+        final Document query =
+                new Document(TileSpatialKey.CELLS_KEY, new Document(QueryOperators.EXISTS, false)).append(
+                        "minX", new Document(QueryOperators.EXISTS, true));
+        final Document keys =
+                new Document("minX", 1).append("minY", 1).append("maxX", 1).append("maxY", 1);
+
+        final List<WriteModel<Document>> modelList = new ArrayList<>(SPATIAL_KEY_UPDATE_BATCH_SIZE);
+        long updatedCount = 0;
+        long skippedCount = 0;
+
+        try (final MongoCursor<Document> cursor = tileCollection.find(query).projection(keys).iterator()) {
+            Document document;
+            List<Long> cells;
+            while (cursor.hasNext()) {
+                document = cursor.next();
+                cells = TileSpatialKey.getCoveringCells(document.getDouble("minX"),
+                                                        document.getDouble("minY"),
+                                                        document.getDouble("maxX"),
+                                                        document.getDouble("maxY"),
+                                                        TileSpatialKey.MAX_TILE_CELLS);
+                if (cells == null) {
+                    skippedCount++;
+                } else {
+                    modelList.add(new UpdateOneModel<>(new Document("_id", document.get("_id")),
+                                                       new Document("$set",
+                                                                    new Document(TileSpatialKey.CELLS_KEY, cells))));
+                }
+
+                if (modelList.size() == SPATIAL_KEY_UPDATE_BATCH_SIZE) {
+                    updatedCount += tileCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION).getMatchedCount();
+                    modelList.clear();
+                }
+
+                if (timer.hasIntervalPassed()) {
+                    LOG.debug("updateSpatialKeys: updated {} tile specs in {}", updatedCount, stackId);
+                }
+            }
+        }
+
+        if (modelList.size() > 0) {
+            updatedCount += tileCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION).getMatchedCount();
+        }
+
+        ensureSpatialKeyTileIndex(tileCollection);
+
+        LOG.debug("updateSpatialKeys: updated {} and skipped {} (oversized) tile specs in {}, elapsedSeconds={}",
+                  updatedCount, skippedCount, MongoUtil.fullName(tileCollection), timer.getElapsedSeconds());
+
+        return updatedCount;
+    }
+
     /**
      * Saves the specified tile spec to the database.
+     * As with {@link #saveResolvedTiles}, the layers for the saved spec and any replaced spec are flagged as changed.
      *
      * @param  stackId    stack identifier.
      * @param  tileSpec   specification to be saved.
@@ -606,9 +1045,14 @@ public class RenderDao {
         final Document query = new Document();
         query.put("tileId", tileSpec.getTileId());
 
-        final Document tileSpecObject = Document.parse(tileSpec.toJson());
+        final Set<Double> changedZValues = getDistinctZValues(tileCollection, query);
+        if (tileSpec.getZ() != null) {
+            changedZValues.add(tileSpec.getZ());
+        }
+        markLayersChanged(stackId, changedZValues);
 
-        final UpdateResult result = tileCollection.replaceOne(query, tileSpecObject, MongoUtil.UPSERT_OPTION);
+        final UpdateResult result = tileCollection.withDocumentClass(TileSpec.class).replaceOne(
+                query, tileSpec, MongoUtil.UPSERT_OPTION);
 
         LOG.debug("saveTileSpec: {}.{},({}), upsertedId is {}",
                   MongoUtil.fullName(tileCollection),
@@ -641,15 +1085,16 @@ public class RenderDao {
 
         LOG.debug("getTransformSpec: {}.find({})", MongoUtil.fullName(transformCollection), query.toJson());
 
-        final Document document = transformCollection.find(query).first();
+        final TransformSpec transformSpec =
+                transformCollection.withDocumentClass(TransformSpec.class).find(query).first();
 
-        if (document == null) {
+        if (transformSpec == null) {
             throwExceptionIfStackIsMissing(stackId);
             throw new ObjectNotFoundException("transform spec with id '" + transformId + "' does not exist in the " +
                                               stackId);
         }
 
-        return TransformSpec.fromJson(document.toJson());
+        return transformSpec;
     }
 
     /**
@@ -677,11 +1122,8 @@ public class RenderDao {
         final Document query = new Document();
         query.put("id", transformSpec.getId());
 
-        final Document transformSpecObject = Document.parse(transformSpec.toJson());
-
-        final UpdateResult result = transformCollection.replaceOne(query,
-                                                                   transformSpecObject,
-                                                                   MongoUtil.UPSERT_OPTION);
+        final UpdateResult result = transformCollection.withDocumentClass(TransformSpec.class).replaceOne(
+                query, transformSpec, MongoUtil.UPSERT_OPTION);
 
         LOG.debug("saveTransformSpec: {}.{},({}), upsertedId is {}",
                   MongoUtil.fullName(transformCollection),
@@ -753,15 +1195,13 @@ public class RenderDao {
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document query = new Document("layout.sectionId", sectionId);
 
-        final Document document = tileCollection.find(query).first();
+        final TileSpec tileSpec = tileCollection.withDocumentClass(TileSpec.class).find(query).first();
 
-        if (document == null) {
+        if (tileSpec == null) {
             throwExceptionIfStackIsMissing(stackId);
             throw new ObjectNotFoundException("sectionId '" + sectionId + "' does not exist in the " + stackId);
         }
 
-        final TileSpec tileSpec = TileSpec.fromJson(document.toJson());
-
         return tileSpec.getZ();
     }
 
@@ -774,10 +1214,16 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("sectionId", sectionId);
         MongoUtil.validateRequiredParameter("z", z);
 
+        invalidateCachedData(stackId);
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document query = new Document("layout.sectionId", sectionId);
         final Document update = new Document("$set", new Document("z", z));
 
+        final Set<Double> changedZValues = getDistinctZValues(tileCollection, query);
+        changedZValues.add(z);
+        markLayersChanged(stackId, changedZValues);
+
         final UpdateResult result = tileCollection.updateMany(query, update);
 
         LOG.debug("updateZForSection: updated {} tile specs with {}.update({},{})",
@@ -793,10 +1239,16 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("z", z);
         MongoUtil.validateRequiredParameter("tileIds", tileIds);
 
+        invalidateCachedData(stackId);
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document query = new Document("tileId", new Document("$in", tileIds));
         final Document update = new Document("$set", new Document("z", z));
 
+        final Set<Double> changedZValues = getDistinctZValues(tileCollection, query);
+        changedZValues.add(z);
+        markLayersChanged(stackId, changedZValues);
+
         final UpdateResult result = tileCollection.updateMany(query, update);
 
         final String shortQueryForLog = "{ 'tileId': { '$in': [ " + tileIds.size() + " tile ids ... ] } }";
@@ -841,7 +1293,10 @@ public class RenderDao {
             query.append("_id.z", new Document(QueryOperators.LTE, maxZ));
         }
 
-        try (final MongoCursor<Document> cursor = sectionCollection.find(query).iterator()) {
+        // incrementally derived section data is not stored in sorted order
+        final Document sortCriteria = new Document("_id.sectionId", 1);
+
+        try (final MongoCursor<Document> cursor = sectionCollection.find(query).sort(sortCriteria).iterator()) {
             Document document;
             Document resultId;
             String sectionId;
@@ -992,6 +1447,22 @@ public class RenderDao {
         return stackMetaData;
     }
 
+    /**
+     * @return recently loaded meta data for the specified stack or null if the stack cannot be found.
+     *         The returned instance is shared (see {@link StackMetaDataCache}) and must not be modified,
+     *         so callers that intend to save changes should use {@link #getStackMetaData} instead.
+     *
+     * @throws IllegalArgumentException
+     *   if required parameters are not specified.
+     */
+    public StackMetaData getCachedStackMetaData(final StackId stackId)
+            throws IllegalArgumentException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+
+        return stackMetaDataCache.get(stackId, () -> getStackMetaData(stackId));
+    }
+
     public void saveStackMetaData(final StackMetaData stackMetaData) {
 
         LOG.debug("saveStackMetaData: entry, stackMetaData={}", stackMetaData);
@@ -1016,17 +1487,47 @@ public class RenderDao {
             ensureCoreTileIndexes(getTileCollection(stackId));
         }
 
+        stackMetaDataCache.invalidate(stackId);
+
         LOG.debug("saveStackMetaData: {}.{}({})",
                   stackMetaDataCollection.getNamespace().getFullName(), action, query.toJson());
     }
 
+    /**
+     * Ensures all stack indexes exist, rebuilds all section data and layer summaries
+     * by scanning every tile in the stack, derives stack stats from the summaries, and marks the stack COMPLETE.
+     * This full derivation can be used to verify incrementally derived stats.
+     *
+     * @param  stackMetaData  meta data for the stack.
+     *
+     * @return the updated meta data.
+     */
     public StackMetaData ensureIndexesAndDeriveStats(final StackMetaData stackMetaData) {
+        return ensureIndexesAndDeriveStats(stackMetaData, false);
+    }
+
+    /**
+     * Ensures all stack indexes exist, derives section data, layer summaries, and stack stats,
+     * and marks the stack COMPLETE.
+     *
+     * When deriving incrementally, only the section data and summaries for layers that have changed
+     * since stats were last derived are rebuilt (by scanning the tiles in those layers).
+     * Stack stats are then merged from the per-layer summaries without rescanning other layers.
+     * Stacks that have never been derived (or were derived before layer summaries existed) are fully derived.
+     *
+     * @param  stackMetaData  meta data for the stack.
+     * @param  incremental    indicates whether only changed layers should be rebuilt.
+     *
+     * @return the updated meta data.
+     */
+    public StackMetaData ensureIndexesAndDeriveStats(final StackMetaData stackMetaData,
+                                                     final boolean incremental) {
 
         MongoUtil.validateRequiredParameter("stackMetaData", stackMetaData);
 
         final StackId stackId = stackMetaData.getStackId();
 
-        LOG.debug("ensureIndexesAndDeriveStats: entry, {}", stackId);
+        LOG.debug("ensureIndexesAndDeriveStats: entry, {}, incremental={}", stackId, incremental);
 
         final MongoCollection<Document> transformCollection = getTransformCollection(stackId);
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
@@ -1037,9 +1538,24 @@ public class RenderDao {
 
         ensureSupplementaryTileIndexes(tileCollection);
 
-        deriveSectionData(stackId);
-
         final List<Double> zValues = getZValues(stackId);
+
+        final boolean hasDerivedData = MongoUtil.exists(renderDatabase, stackId.getSectionCollectionName()) &&
+                                       MongoUtil.exists(renderDatabase, stackId.getLayerCollectionName());
+
+        if (incremental && hasDerivedData) {
+            final Set<Double> changedZValues = getChangedLayerZValues(stackId, zValues);
+            LOG.debug("ensureIndexesAndDeriveStats: {} out of {} layers changed in {}",
+                      changedZValues.size(), zValues.size(), stackId);
+            if (changedZValues.size() > 0) {
+                deriveSectionData(stackId, changedZValues);
+                deriveLayerSummaries(stackId, changedZValues);
+            }
+        } else {
+            deriveSectionData(stackId);
+            deriveLayerSummaries(stackId, null);
+        }
+
         final long sectionCount = zValues.size();
 
         long nonIntegralSectionCount = 0;
@@ -1051,136 +1567,367 @@ public class RenderDao {
             }
         }
 
-        final long tileCount = tileCollection.count();
-        LOG.debug("ensureIndexesAndDeriveStats: tileCount for {} is {}", stackId, tileCount);
+        final long tileCount = tileCollection.count();
+        LOG.debug("ensureIndexesAndDeriveStats: tileCount for {} is {}", stackId, tileCount);
+
+        final long transformCount = transformCollection.count();
+        LOG.debug("ensureIndexesAndDeriveStats: transformCount for {} is {}, merging layer summaries ...",
+                  stackId, transformCount);
+
+        final StackStats stats = mergeLayerSummaries(stackId,
+                                                     sectionCount,
+                                                     nonIntegralSectionCount,
+                                                     tileCount,
+                                                     transformCount);
+        stackMetaData.setStats(stats);
+
+        LOG.debug("ensureIndexesAndDeriveStats: completed stat derivation for {}, stats={}", stackId, stats);
+
+        stackMetaData.setState(StackMetaData.StackState.COMPLETE);
+
+        final MongoCollection<Document> stackMetaDataCollection = getStackMetaDataCollection();
+        final Document query = getStackIdQuery(stackId);
+        final Document stackMetaDataObject = Document.parse(stackMetaData.toJson());
+        final UpdateResult result = stackMetaDataCollection.replaceOne(query,
+                                                                       stackMetaDataObject,
+                                                                       MongoUtil.UPSERT_OPTION);
+
+        stackMetaDataCache.invalidate(stackId);
+
+        LOG.debug("ensureIndexesAndDeriveStats: {}.{}({})",
+                  MongoUtil.fullName(stackMetaDataCollection), MongoUtil.action(result), query.toJson());
+
+        return stackMetaData;
+    }
+
+    /**
+     * @return z values for all layers that have been flagged as changed, that have tiles but no summary,
+     *         or that have a summary but no longer have tiles.
+     */
+    private Set<Double> getChangedLayerZValues(final StackId stackId,
+                                               final List<Double> zValues) {
+
+        final MongoCollection<Document> layerCollection = getLayerCollection(stackId);
+
+        final Set<Double> changedZValues = new HashSet<>();
+        final Set<Double> unsummarizedZValues = new HashSet<>(zValues);
+
+        try (final MongoCursor<Document> cursor =
+                     layerCollection.find().projection(new Document("z", 1).append(LAYER_CHANGED_KEY, 1)).iterator()) {
+            Document document;
+            Double z;
+            while (cursor.hasNext()) {
+                document = cursor.next();
+                z = document.getDouble("z");
+                if (document.containsKey(LAYER_CHANGED_KEY) || (! unsummarizedZValues.remove(z))) {
+                    changedZValues.add(z);
+                }
+            }
+        }
+
+        changedZValues.addAll(unsummarizedZValues);
+
+        return changedZValues;
+    }
+
+    /**
+     * Flags the summaries for the specified layers as changed so that they are rebuilt
+     * the next time stack stats are incrementally derived.
+     * The flag is a counter (rather than a boolean) so that {@link #deriveLayerSummaries} can detect
+     * layers that are changed again while their summaries are being rebuilt.
+     */
+    private void markLayersChanged(final StackId stackId,
+                                   final Collection<Double> zValues) {
+
+        if (zValues.size() > 0) {
+
+            final MongoCollection<Document> layerCollection = getLayerCollection(stackId);
+
+            final Document update = new Document("$inc", new Document(LAYER_CHANGED_KEY, 1));
+            final List<WriteModel<Document>> modelList = new ArrayList<>(zValues.size());
+            for (final Double z : zValues) {
+                modelList.add(new UpdateOneModel<>(new Document("z", z), update, MongoUtil.UPSERT_OPTION));
+            }
+
+            final BulkWriteResult result = layerCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("markLayersChanged: {} using {}.initializeUnorderedBulkOp()",
+                          MongoUtil.toMessage("layer summaries", result, zValues.size()),
+                          MongoUtil.fullName(layerCollection));
+            }
+        }
+    }
+
+    private Set<Double> getDistinctZValues(final MongoCollection<Document> tileCollection,
+                                           final Document tileQuery) {
+        final Set<Double> zValues = new HashSet<>();
+        for (final Double z : tileCollection.distinct("z", tileQuery, Double.class)) {
+            if (z != null) {
+                zValues.add(z);
+            }
+        }
+        return zValues;
+    }
+
+    /**
+     * Rebuilds the summaries (tile count, bounds, tile size ranges, and channel names) for the specified layers.
+     *
+     * Each layer's summary is upserted (or removed if the layer no longer has tiles) only if the layer
+     * has not been flagged as changed since the rebuild started.  Layers that are changed concurrently
+     * keep their flag and are rebuilt the next time stack stats are incrementally derived.
+     *
+     * @param  stackId   stack identifier.
+     * @param  zValues   layers to rebuild or null to rebuild all layers.
+     */
+    private void deriveLayerSummaries(final StackId stackId,
+                                      final Set<Double> zValues) {
 
-        final long transformCount = transformCollection.count();
-        LOG.debug("ensureIndexesAndDeriveStats: transformCount for {} is {}, deriving aggregate stats ...",
-                  stackId, transformCount);
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+        final MongoCollection<Document> layerCollection = getLayerCollection(stackId);
 
         // db.<stack_prefix>__tile.aggregate(
         //     [
+        //         { "$match": { "z": { "$in": [ ... ] } } },
         //         {
         //             "$project":  {
         //                 "z": "$z",
-        //                 "minX": "$minX",
-        //                 "minY": "$minY",
-        //                 "maxX": "$maxX",
-        //                 "maxY": "$maxY",
+        //                 "minX": "$minX", "minY": "$minY", "maxX": "$maxX", "maxY": "$maxY",
         //                 "width":  { "$subtract": [ "$maxX", "$minX" ] },
-        //                 "height": { "$subtract": [ "$maxY", "$minY" ] }
+        //                 "height": { "$subtract": [ "$maxY", "$minY" ] },
+        //                 "channelNames": "$channels.name"
         //             }
         //         },
         //         {
         //             "$group": {
-        //                 "_id": "minAndMaxValues",
-        //                 "stackMinX": { "$min": "$minX" },
-        //                 "stackMinY": { "$min": "$minY" },
-        //                 "stackMinZ": { "$min": "$z" },
-        //                 "stackMaxX": { "$max": "$maxX" },
-        //                 "stackMaxY": { "$max": "$maxY" },
-        //                 "stackMaxZ": { "$max": "$z" } } } )
-        //                 "stackMinTileWidth":  { "$min": "$width" },
-        //                 "stackMaxTileWidth":  { "$max": "$width" },
-        //                 "stackMinTileHeight": { "$min": "$height" },
-        //                 "stackMaxTileHeight": { "$max": "$height" }
+        //                 "_id": "$z",
+        //                 "tileCount": { "$sum": 1 },
+        //                 "minX": { "$min": "$minX" }, "minY": { "$min": "$minY" },
+        //                 "maxX": { "$max": "$maxX" }, "maxY": { "$max": "$maxY" },
+        //                 "minTileWidth":  { "$min": "$width" },  "maxTileWidth":  { "$max": "$width" },
+        //                 "minTileHeight": { "$min": "$height" }, "maxTileHeight": { "$max": "$height" },
+        //                 "channelNames": { "$addToSet": "$channelNames" }
         //             }
         //         }
         //     ]
         // )
 
+        final List<Document> pipeline = new ArrayList<>();
+
+        final Document layerQuery;
+        if (zValues == null) {
+            layerQuery = new Document();
+        } else {
+            layerQuery = new Document("z", new Document(QueryOperators.IN, new ArrayList<>(zValues)));
+            pipeline.add(new Document("$match", layerQuery));
+        }
+
         final Document tileWidth = new Document("$subtract", buildBasicDBList(new String[] {"$maxX","$minX" }));
         final Document tileHeight = new Document("$subtract", buildBasicDBList(new String[] {"$maxY","$minY" }));
         final Document tileValues = new Document("z", "$z").append(
                 "minX", "$minX").append("minY", "$minY").append("maxX", "$maxX").append("maxY", "$maxY").append(
-                "width", tileWidth).append("height", tileHeight);
-
-        final Document projectStage = new Document("$project", tileValues);
-
-        final String minXKey = "stackMinX";
-        final String minYKey = "stackMinY";
-        final String minZKey = "stackMinZ";
-        final String maxXKey = "stackMaxX";
-        final String maxYKey = "stackMaxY";
-        final String maxZKey = "stackMaxZ";
-        final String minWidthKey = "stackMinTileWidth";
-        final String maxWidthKey = "stackMaxTileWidth";
-        final String minHeightKey = "stackMinTileHeight";
-        final String maxHeightKey = "stackMaxTileHeight";
-
-        final Document minAndMaxValues = new Document("_id", "minAndMaxValues");
-        minAndMaxValues.append(minXKey, new Document(QueryOperators.MIN, "$minX"));
-        minAndMaxValues.append(minYKey, new Document(QueryOperators.MIN, "$minY"));
-        minAndMaxValues.append(minZKey, new Document(QueryOperators.MIN, "$z"));
-        minAndMaxValues.append(maxXKey, new Document(QueryOperators.MAX, "$maxX"));
-        minAndMaxValues.append(maxYKey, new Document(QueryOperators.MAX, "$maxY"));
-        minAndMaxValues.append(maxZKey, new Document(QueryOperators.MAX, "$z"));
-        minAndMaxValues.append(minWidthKey, new Document(QueryOperators.MIN, "$width"));
-        minAndMaxValues.append(maxWidthKey, new Document(QueryOperators.MAX, "$width"));
-        minAndMaxValues.append(minHeightKey, new Document(QueryOperators.MIN, "$height"));
-        minAndMaxValues.append(maxHeightKey, new Document(QueryOperators.MAX, "$height"));
-        final Document groupStage = new Document("$group", minAndMaxValues);
+                "width", tileWidth).append("height", tileHeight).append(
+                "channelNames", "$channels.name");
+        pipeline.add(new Document("$project", tileValues));
+
+        final Document layerValues = new Document("_id", "$z").append(
+                "tileCount", new Document("$sum", 1)).append(
+                "minX", new Document(QueryOperators.MIN, "$minX")).append(
+                "minY", new Document(QueryOperators.MIN, "$minY")).append(
+                "maxX", new Document(QueryOperators.MAX, "$maxX")).append(
+                "maxY", new Document(QueryOperators.MAX, "$maxY")).append(
+                "minTileWidth", new Document(QueryOperators.MIN, "$width")).append(
+                "maxTileWidth", new Document(QueryOperators.MAX, "$width")).append(
+                "minTileHeight", new Document(QueryOperators.MIN, "$height")).append(
+                "maxTileHeight", new Document(QueryOperators.MAX, "$height")).append(
+                "channelNames", new Document("$addToSet", "$channelNames"));
+        pipeline.add(new Document("$group", layerValues));
+
+        MongoUtil.createIndex(layerCollection, new Document("z", 1), LAYER_A_OPTIONS);
+
+        // capture change counts before aggregating so that concurrent changes can be detected
+        final Map<Double, Object> zToChangeCount = new HashMap<>();
+        try (final MongoCursor<Document> cursor =
+                     layerCollection.find(layerQuery).projection(
+                             new Document("z", 1).append(LAYER_CHANGED_KEY, 1)).iterator()) {
+            Document document;
+            while (cursor.hasNext()) {
+                document = cursor.next();
+                zToChangeCount.put(document.getDouble("z"), document.get(LAYER_CHANGED_KEY));
+            }
+        }
 
-        final List<Document> pipeline = new ArrayList<>();
-        pipeline.add(projectStage);
-        pipeline.add(groupStage);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("deriveLayerSummaries: running {}.aggregate({})",
+                      MongoUtil.fullName(tileCollection),
+                      zValues == null ? MongoUtil.toJson(pipeline) : "[ { $match: " + zValues.size() + " z values } ... ]");
+        }
+
+        final List<Document> layerSummaries = new ArrayList<>();
+        try (final MongoCursor<Document> cursor = tileCollection.aggregate(pipeline).batchSize(1000).iterator()) {
+            Document result;
+            while (cursor.hasNext()) {
+                result = cursor.next();
+                final Document layerSummary = new Document(result);
+                layerSummary.remove("_id");
+                layerSummary.put("z", result.get("_id"));
+                layerSummary.put("channelNames", getSortedChannelNames(result.get("channelNames")));
+                layerSummaries.add(layerSummary);
+            }
+        }
 
+        final List<WriteModel<Document>> modelList = new ArrayList<>(zToChangeCount.size() + layerSummaries.size());
+        for (final Document layerSummary : layerSummaries) {
+            final Double z = layerSummary.getDouble("z");
+            modelList.add(new ReplaceOneModel<>(getUnchangedLayerQuery(z, zToChangeCount.remove(z)),
+                                                layerSummary,
+                                                MongoUtil.UPSERT_OPTION));
+        }
 
-        // mongodb java 3.0 driver notes:
-        // -- need to set cursor batchSize to prevent NPE from cursor creation
-        final Document aggregateResult = tileCollection.aggregate(pipeline).batchSize(1).first();
-        if (aggregateResult == null) {
+        // any remaining layers no longer have tiles
+        for (final Map.Entry<Double, Object> entry : zToChangeCount.entrySet()) {
+            modelList.add(new DeleteOneModel<>(getUnchangedLayerQuery(entry.getKey(), entry.getValue())));
+        }
+
+        if (modelList.size() > 0) {
+
+            String resultMessage;
+            try {
+                final BulkWriteResult result = layerCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+                resultMessage = MongoUtil.toMessage("layer summaries", result, modelList.size());
+            } catch (final MongoBulkWriteException e) {
+                // upserts for layers that were flagged as changed concurrently fail with duplicate key errors
+                for (final BulkWriteError error : e.getWriteErrors()) {
+                    if (error.getCode() != DUPLICATE_KEY_ERROR_CODE) {
+                        throw e;
+                    }
+                }
+                resultMessage = MongoUtil.toMessage("layer summaries", e.getWriteResult(), modelList.size()) +
+                                " (skipped " + e.getWriteErrors().size() + " concurrently changed layers)";
+            }
+
+            LOG.debug("deriveLayerSummaries: {} using {}.initializeUnorderedBulkOp()",
+                      resultMessage, MongoUtil.fullName(layerCollection));
+        }
+    }
+
+    /**
+     * @return query that only matches the specified layer if its change count is the same as the specified count.
+     */
+    private Document getUnchangedLayerQuery(final Double z,
+                                            final Object changeCount) {
+        final Object changeCountCriteria;
+        if (changeCount == null) {
+            changeCountCriteria = new Document(QueryOperators.EXISTS, false);
+        } else {
+            changeCountCriteria = changeCount;
+        }
+        return new Document("z", z).append(LAYER_CHANGED_KEY, changeCountCriteria);
+    }
+
+    /**
+     * @return sorted distinct channel names from the aggregated (nested) list of per tile channel name lists.
+     */
+    private List<String> getSortedChannelNames(final Object aggregatedChannelNames) {
+        final Set<String> channelNames = new TreeSet<>();
+        if (aggregatedChannelNames instanceof List) {
+            for (final Object tileChannelNames : (List<?>) aggregatedChannelNames) {
+                if (tileChannelNames instanceof List) {
+                    for (final Object channelName : (List<?>) tileChannelNames) {
+                        if (channelName != null) {
+                            channelNames.add(channelName.toString());
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(channelNames);
+    }
+
+    /**
+     * @return stack stats merged from all layer summaries.
+     *
+     * @throws IllegalStateException
+     *   if the stack has no layer summaries.
+     */
+    private StackStats mergeLayerSummaries(final StackId stackId,
+                                           final long sectionCount,
+                                           final long nonIntegralSectionCount,
+                                           final long tileCount,
+                                           final long transformCount)
+            throws IllegalStateException {
+
+        final MongoCollection<Document> layerCollection = getLayerCollection(stackId);
+
+        Double minX = null;
+        Double minY = null;
+        Double minZ = null;
+        Double maxX = null;
+        Double maxY = null;
+        Double maxZ = null;
+        Double minTileWidth = null;
+        Double maxTileWidth = null;
+        Double minTileHeight = null;
+        Double maxTileHeight = null;
+        final Set<String> channelNames = new TreeSet<>();
+        long layerCount = 0;
+
+        try (final MongoCursor<Document> cursor = layerCollection.find().iterator()) {
+            Document layerSummary;
+            while (cursor.hasNext()) {
+                layerSummary = cursor.next();
+                minX = min(minX, layerSummary.getDouble("minX"));
+                minY = min(minY, layerSummary.getDouble("minY"));
+                minZ = min(minZ, layerSummary.getDouble("z"));
+                maxX = max(maxX, layerSummary.getDouble("maxX"));
+                maxY = max(maxY, layerSummary.getDouble("maxY"));
+                maxZ = max(maxZ, layerSummary.getDouble("z"));
+                minTileWidth = min(minTileWidth, layerSummary.getDouble("minTileWidth"));
+                maxTileWidth = max(maxTileWidth, layerSummary.getDouble("maxTileWidth"));
+                minTileHeight = min(minTileHeight, layerSummary.getDouble("minTileHeight"));
+                maxTileHeight = max(maxTileHeight, layerSummary.getDouble("maxTileHeight"));
+                final Object layerChannelNames = layerSummary.get("channelNames");
+                if (layerChannelNames instanceof List) {
+                    for (final Object channelName : (List<?>) layerChannelNames) {
+                        channelNames.add(channelName.toString());
+                    }
+                }
+                layerCount++;
+            }
+        }
+
+        if (layerCount == 0) {
             String cause = "";
-            if (tileCollection.count() == 0) {
+            if (tileCount == 0) {
                 cause = " because the stack has no tiles";
             }
             throw new IllegalStateException("Stack data aggregation returned no results" + cause + ".  " +
-                                            "The aggregation query was " + MongoUtil.fullName(tileCollection) +
-                                            ".aggregate(" + pipeline + ") .");
-        }
-
-        final List<String> channelNames = tileCollection.distinct("channels.name", String.class).into(new ArrayList<>());
-        Collections.sort(channelNames);
-
-        final Bounds stackBounds = new Bounds(aggregateResult.get(minXKey, Double.class),
-                                              aggregateResult.get(minYKey, Double.class),
-                                              aggregateResult.get(minZKey, Double.class),
-                                              aggregateResult.get(maxXKey, Double.class),
-                                              aggregateResult.get(maxYKey, Double.class),
-                                              aggregateResult.get(maxZKey, Double.class));
-
-        final Integer minTileWidth = MongoUtil.toInteger(aggregateResult.get(minWidthKey, Double.class));
-        final Integer maxTileWidth = MongoUtil.toInteger(aggregateResult.get(maxWidthKey, Double.class));
-        final Integer minTileHeight = MongoUtil.toInteger(aggregateResult.get(minHeightKey, Double.class));
-        final Integer maxTileHeight = MongoUtil.toInteger(aggregateResult.get(maxHeightKey, Double.class));
-
-        final StackStats stats = new StackStats(stackBounds,
-                                                sectionCount,
-                                                nonIntegralSectionCount,
-                                                tileCount,
-                                                transformCount,
-                                                minTileWidth,
-                                                maxTileWidth,
-                                                minTileHeight,
-                                                maxTileHeight,
-                                                new LinkedHashSet<>(channelNames));
-        stackMetaData.setStats(stats);
-
-        LOG.debug("ensureIndexesAndDeriveStats: completed stat derivation for {}, stats={}", stackId, stats);
+                                            "No layer summaries were found in " +
+                                            MongoUtil.fullName(layerCollection) + ".");
+        }
 
-        stackMetaData.setState(StackMetaData.StackState.COMPLETE);
+        final Bounds stackBounds = new Bounds(minX, minY, minZ, maxX, maxY, maxZ);
 
-        final MongoCollection<Document> stackMetaDataCollection = getStackMetaDataCollection();
-        final Document query = getStackIdQuery(stackId);
-        final Document stackMetaDataObject = Document.parse(stackMetaData.toJson());
-        final UpdateResult result = stackMetaDataCollection.replaceOne(query,
-                                                                       stackMetaDataObject,
-                                                                       MongoUtil.UPSERT_OPTION);
+        return new StackStats(stackBounds,
+                              sectionCount,
+                              nonIntegralSectionCount,
+                              tileCount,
+                              transformCount,
+                              MongoUtil.toInteger(minTileWidth),
+                              MongoUtil.toInteger(maxTileWidth),
+                              MongoUtil.toInteger(minTileHeight),
+                              MongoUtil.toInteger(maxTileHeight),
+                              new LinkedHashSet<>(channelNames));
+    }
 
-        LOG.debug("ensureIndexesAndDeriveStats: {}.{}({})",
-                  MongoUtil.fullName(stackMetaDataCollection), MongoUtil.action(result), query.toJson());
+    private static Double min(final Double a,
+                              final Double b) {
+        return (a == null) ? b : (b == null) ? a : Math.min(a, b);
+    }
 
-        return stackMetaData;
+    private static Double max(final Double a,
+                              final Double b) {
+        return (a == null) ? b : (b == null) ? a : Math.max(a, b);
     }
 
     private void deriveSectionData(final StackId stackId)
@@ -1242,12 +1989,51 @@ public class RenderDao {
                   sectionCount, MongoUtil.fullName(sectionCollection));
     }
 
+    /**
+     * Rebuilds the section data for the specified layers without touching data for other layers.
+     */
+    private void deriveSectionData(final StackId stackId,
+                                   final Set<Double> zValues)
+            throws IllegalArgumentException {
+
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+        final MongoCollection<Document> sectionCollection = getSectionCollection(stackId);
+
+        final List<Double> zList = new ArrayList<>(zValues);
+
+        final Document group = new Document(
+                "_id", new Document("sectionId", "$layout.sectionId").append("z", "$z")).append(
+                "tileCount", new Document("$sum", 1)).append(
+                "minX", new Document("$min", "$minX")).append(
+                "maxX", new Document("$max", "$maxX")).append(
+                "minY", new Document("$min", "$minY")).append(
+                "maxY", new Document("$max", "$maxY"));
+
+        final List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", new Document("z", new Document(QueryOperators.IN, zList))));
+        pipeline.add(new Document("$group", group));
+
+        final List<Document> sectionDataList = new ArrayList<>();
+        tileCollection.aggregate(pipeline).batchSize(1000).into(sectionDataList);
+
+        final DeleteResult deleteResult =
+                sectionCollection.deleteMany(new Document("_id.z", new Document(QueryOperators.IN, zList)));
+        if (sectionDataList.size() > 0) {
+            sectionCollection.insertMany(sectionDataList);
+        }
+
+        LOG.debug("deriveSectionData: replaced data for {} sections with data for {} sections in {}",
+                  deleteResult.getDeletedCount(), sectionDataList.size(), MongoUtil.fullName(sectionCollection));
+    }
+
     public void removeStack(final StackId stackId,
                             final boolean includeMetaData)
             throws IllegalArgumentException {
 
         MongoUtil.validateRequiredParameter("stackId", stackId);
 
+        invalidateCachedData(stackId);
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final long tileCount = tileCollection.count();
         tileCollection.drop();
@@ -1268,11 +2054,20 @@ public class RenderDao {
         LOG.debug("removeStack: {}.drop() deleted {} document(s)",
                   MongoUtil.fullName(sectionCollection), sectionCount);
 
+        final MongoCollection<Document> layerCollection = getLayerCollection(stackId);
+        final long layerCount = layerCollection.count();
+        layerCollection.drop();
+
+        LOG.debug("removeStack: {}.drop() deleted {} document(s)",
+                  MongoUtil.fullName(layerCollection), layerCount);
+
         if (includeMetaData) {
             final MongoCollection<Document> stackMetaDataCollection = getStackMetaDataCollection();
             final Document stackIdQuery = getStackIdQuery(stackId);
             final DeleteResult stackMetaDataRemoveResult = stackMetaDataCollection.deleteOne(stackIdQuery);
 
+            stackMetaDataCache.invalidate(stackId);
+
             LOG.debug("removeStack: {}.remove({}) deleted {} document(s)",
                       MongoUtil.fullName(stackMetaDataCollection),
                       stackIdQuery.toJson(),
@@ -1287,8 +2082,13 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("stackId", stackId);
         MongoUtil.validateRequiredParameter("sectionId", sectionId);
 
+        invalidateCachedData(stackId);
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document tileQuery = new Document("layout.sectionId", sectionId);
+
+        markLayersChanged(stackId, getDistinctZValues(tileCollection, tileQuery));
+
         final DeleteResult removeResult = tileCollection.deleteMany(tileQuery);
 
         LOG.debug("removeTilesWithSectionId: {}.remove({}) deleted {} document(s)",
@@ -1302,8 +2102,13 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("stackId", stackId);
         MongoUtil.validateRequiredParameter("z", z);
 
+        invalidateCachedData(stackId);
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document tileQuery = new Document("z", z);
+
+        markLayersChanged(stackId, Collections.singletonList(z));
+
         final DeleteResult removeResult = tileCollection.deleteMany(tileQuery);
 
         LOG.debug("removeTilesWithZ: {}.remove({}) deleted {} document(s)",
@@ -1317,6 +2122,8 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("stackId", stackId);
         MongoUtil.validateRequiredParameter("tileIds", tileIds);
 
+        invalidateCachedData(stackId);
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document tileQuery = new Document("tileId",
                                                 new Document(QueryOperators.IN,
@@ -1325,6 +2132,9 @@ public class RenderDao {
                                                       new Document(QueryOperators.IN,
                                                                    Arrays.asList("list of",
                                                                                  tileIds.size() + " tileIds")));
+
+        markLayersChanged(stackId, getDistinctZValues(tileCollection, tileQuery));
+
         final DeleteResult removeResult = tileCollection.deleteMany(tileQuery);
 
         LOG.debug("removeTilesWithIds: {}.remove({}) deleted {} document(s)",
@@ -1338,8 +2148,13 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("stackId", stackId);
         MongoUtil.validateRequiredParameter("tileId", tileId);
 
+        invalidateCachedData(stackId);
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document tileQuery = new Document("tileId", tileId);
+
+        markLayersChanged(stackId, getDistinctZValues(tileCollection, tileQuery));
+
         final DeleteResult removeResult = tileCollection.deleteOne(tileQuery);
 
         LOG.debug("removeTile: {}.remove({}) deleted {} document(s)",
@@ -1454,6 +2269,23 @@ public class RenderDao {
         return getTileBounds(stackId, tileQuery);
     }
 
+    /**
+     * Clones the tiles (and optionally transforms) of one stack to another.
+     * Collections are copied within the database when the target collection is empty and are otherwise
+     * copied in concurrent partitions.  Progress is recorded in the target stack's meta data
+     * (when that meta data exists).
+     *
+     * @param  fromStackId     source stack.
+     * @param  toStackId       target stack.
+     * @param  zValues         if specified, only clone tiles with these z values.
+     * @param  skipTransforms  if true, do not clone shared transforms.
+     *
+     * @throws IllegalArgumentException
+     *   if required parameters are not specified.
+     *
+     * @throws IllegalStateException
+     *   if any documents fail to be copied.
+     */
     public void cloneStack(final StackId fromStackId,
                            final StackId toStackId,
                            final List<Double> zValues,
@@ -1463,10 +2295,24 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("fromStackId", fromStackId);
         MongoUtil.validateRequiredParameter("toStackId", toStackId);
 
+        invalidateCachedData(toStackId);
+
+        final Date startTimestamp = new Date();
+
         if ((skipTransforms == null) || (! skipTransforms)) {
             final MongoCollection<Document> fromTransformCollection = getTransformCollection(fromStackId);
             final MongoCollection<Document> toTransformCollection = getTransformCollection(toStackId);
-            cloneCollection(fromTransformCollection, toTransformCollection, new Document());
+            final CollectionCloner transformCloner =
+                    new CollectionCloner(renderDatabase,
+                                         fromTransformCollection,
+                                         toTransformCollection,
+                                         new Document(),
+                                         CollectionCloner.DEFAULT_PARALLELISM,
+                                         getCloneProgressListener(fromStackId,
+                                                                  toStackId,
+                                                                  startTimestamp,
+                                                                  toTransformCollection));
+            transformCloner.copy(false);
         }
 
         final Document filterQuery = new Document();
@@ -1479,7 +2325,69 @@ public class RenderDao {
 
         final MongoCollection<Document> fromTileCollection = getTileCollection(fromStackId);
         final MongoCollection<Document> toTileCollection = getTileCollection(toStackId);
-        cloneCollection(fromTileCollection, toTileCollection, filterQuery);
+
+        markLayersChanged(toStackId, getDistinctZValues(fromTileCollection, filterQuery));
+
+        final CollectionCloner tileCloner =
+                new CollectionCloner(renderDatabase,
+                                     fromTileCollection,
+                                     toTileCollection,
+                                     filterQuery,
+                                     CollectionCloner.DEFAULT_PARALLELISM,
+                                     getCloneProgressListener(fromStackId,
+                                                              toStackId,
+                                                              startTimestamp,
+                                                              toTileCollection));
+        final long tileCount = tileCloner.copy(true);
+
+        updateCloneProgress(toStackId,
+                            new StackCloneProgress(fromStackId,
+                                                   startTimestamp,
+                                                   toTileCollection.getNamespace().getCollectionName(),
+                                                   null,
+                                                   null,
+                                                   tileCount,
+                                                   tileCount,
+                                                   true));
+    }
+
+    /**
+     * Saves the specified clone progress information in the stack's meta data
+     * (if the stack's meta data exists).
+     *
+     * @param  stackId        stack being cloned to.
+     * @param  cloneProgress  current clone progress.
+     */
+    public void updateCloneProgress(final StackId stackId,
+                                    final StackCloneProgress cloneProgress) {
+
+        final MongoCollection<Document> stackMetaDataCollection = getStackMetaDataCollection();
+        final Document query = getStackIdQuery(stackId);
+        final Document update = new Document("$set",
+                                             new Document("cloneProgress", Document.parse(cloneProgress.toJson())));
+        final UpdateResult result = stackMetaDataCollection.updateOne(query, update);
+
+        stackMetaDataCache.invalidate(stackId);
+
+        LOG.debug("updateCloneProgress: {}.updateOne({}) matched {} document(s), progress={}",
+                  MongoUtil.fullName(stackMetaDataCollection), query.toJson(), result.getMatchedCount(), cloneProgress);
+    }
+
+    private CollectionCloner.ProgressListener getCloneProgressListener(final StackId fromStackId,
+                                                                       final StackId toStackId,
+                                                                       final Date startTimestamp,
+                                                                       final MongoCollection<Document> toCollection) {
+        final String collectionName = toCollection.getNamespace().getCollectionName();
+        return (partitionCount, completedPartitionCount, expectedDocumentCount, copiedDocumentCount) ->
+                updateCloneProgress(toStackId,
+                                    new StackCloneProgress(fromStackId,
+                                                           startTimestamp,
+                                                           collectionName,
+                                                           partitionCount,
+                                                           completedPartitionCount,
+                                                           expectedDocumentCount,
+                                                           copiedDocumentCount,
+                                                           false));
     }
 
     /**
@@ -1501,6 +2409,9 @@ public class RenderDao {
         MongoUtil.validateRequiredParameter("fromStackId", fromStackId);
         MongoUtil.validateRequiredParameter("toStackId", toStackId);
 
+        invalidateCachedData(fromStackId);
+        invalidateCachedData(toStackId);
+
         final StackMetaData fromStackMetaData = getStackMetaData(fromStackId);
         if (fromStackMetaData == null) {
             throw new ObjectNotFoundException(fromStackId + " does not exist");
@@ -1518,6 +2429,8 @@ public class RenderDao {
 
         MongoUtil.renameCollection(renderDatabase,
                                    fromStackId.getSectionCollectionName(), toStackId.getSectionCollectionName());
+        MongoUtil.renameCollection(renderDatabase,
+                                   fromStackId.getLayerCollectionName(), toStackId.getLayerCollectionName());
         MongoUtil.renameCollection(renderDatabase,
                                    fromStackId.getTransformCollectionName(), toStackId.getTransformCollectionName());
         MongoUtil.renameCollection(renderDatabase,
@@ -1532,6 +2445,9 @@ public class RenderDao {
                                                                        stackMetaDataObject,
                                                                        MongoUtil.UPSERT_OPTION);
 
+        stackMetaDataCache.invalidate(fromStackId);
+        stackMetaDataCache.invalidate(toStackId);
+
         LOG.debug("renameStack: ran {}.{},({}), upsertedId is {}",
                   MongoUtil.fullName(stackMetaDataCollection),
                   MongoUtil.action(result),
@@ -1605,15 +2521,14 @@ public class RenderDao {
         final ProcessTimer timer = new ProcessTimer();
         int tileSpecCount = 0;
         final Document orderBy = format.getOrderBy();
-        try (final MongoCursor<Document> cursor =
-                     tileCollection.find(tileQuery).projection(tileKeys).sort(orderBy).iterator()) {
+        try (final MongoCursor<TileSpec> cursor =
+                     tileCollection.withDocumentClass(TileSpec.class)
+                             .find(tileQuery).projection(tileKeys).sort(orderBy).iterator()) {
 
-            Document document;
             TileSpec tileSpec;
             String layoutText;
             while (cursor.hasNext()) {
-                document = cursor.next();
-                tileSpec = TileSpec.fromJson(document.toJson());
+                tileSpec = cursor.next();
                 layoutText = format.formatTileSpec(tileSpec, stackRequestUri);
                 outputStream.write(layoutText.getBytes());
                 tileSpecCount++;
@@ -1771,13 +2686,10 @@ public class RenderDao {
             LOG.debug("getTransformSpecs: {}.find({})",
                       MongoUtil.fullName(transformCollection), transformQuery.toJson());
 
-            try (final MongoCursor<Document> cursor = transformCollection.find(transformQuery).iterator()) {
-                Document document;
-                TransformSpec transformSpec;
+            try (final MongoCursor<TransformSpec> cursor =
+                         transformCollection.withDocumentClass(TransformSpec.class).find(transformQuery).iterator()) {
                 while (cursor.hasNext()) {
-                    document = cursor.next();
-                    transformSpec = TransformSpec.fromJson(document.toJson());
-                    transformSpecList.add(transformSpec);
+                    transformSpecList.add(cursor.next());
                 }
             }
 
@@ -1837,16 +2749,15 @@ public class RenderDao {
         // order tile specs by tileId to ensure consistent coordinate mapping
         final Document orderBy = new Document("tileId", 1);
 
-        try (final MongoCursor<Document> cursor = tileCollection.find(tileQuery).sort(orderBy).iterator()) {
-            Document document;
+        try (final MongoCursor<TileSpec> cursor =
+                     tileCollection.withDocumentClass(TileSpec.class).find(tileQuery).sort(orderBy).iterator()) {
             TileSpec tileSpec;
             int count = 0;
             while (cursor.hasNext()) {
-                if (count > 50000) {
+                if (count > MAX_TILE_SPECS_PER_QUERY) {
                     throw new IllegalArgumentException("query too broad, over " + count + " tiles match " + tileQuery);
                 }
-                document = cursor.next();
-                tileSpec = TileSpec.fromJson(document.toJson());
+                tileSpec = cursor.next();
                 renderParameters.addTileSpec(tileSpec);
                 count++;
             }
@@ -1862,31 +2773,199 @@ public class RenderDao {
                       queryJson, orderBy.toJson());
         }
 
-        return resolveTransformReferencesForTiles(stackId, renderParameters.getTileSpecs());
+        return resolveTransformReferencesForTiles(stackId, null, renderParameters.getTileSpecs());
+    }
+
+    /**
+     * Adds resolved tile specs for all tiles that match the specified query to the specified parameters.
+     * If the stack can be cached, only matching tile ids are queried and
+     * tile specs are pulled from the resolved tile spec cache when possible.
+     */
+    private void addResolvedTileSpecs(final StackId stackId,
+                                      final StackMetaData cacheableStackMetaData,
+                                      final Document tileQuery,
+                                      final RenderParameters renderParameters) {
+        if (cacheableStackMetaData == null) {
+            addResolvedTileSpecs(stackId, tileQuery, renderParameters);
+        } else {
+            addCachedResolvedTileSpecs(stackId,
+                                       cacheableStackMetaData.getLastModifiedTimestamp(),
+                                       getSortedTileIds(stackId, tileQuery),
+                                       renderParameters);
+        }
+    }
+
+    private List<String> getSortedTileIds(final StackId stackId,
+                                          final Document tileQuery) {
+
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+        final Document tileKeys = new Document("tileId", 1).append("_id", 0);
+        final Document orderBy = new Document("tileId", 1);
+
+        final List<String> tileIds = new ArrayList<>();
+        try (final MongoCursor<Document> cursor =
+                     tileCollection.find(tileQuery).projection(tileKeys).sort(orderBy).iterator()) {
+            while (cursor.hasNext()) {
+                if (tileIds.size() > MAX_TILE_SPECS_PER_QUERY) {
+                    throw new IllegalArgumentException("query too broad, over " + tileIds.size() +
+                                                       " tiles match " + tileQuery);
+                }
+                tileIds.add(cursor.next().getString("tileId"));
+            }
+        }
+
+        return tileIds;
     }
 
-    private Document lte(final double value) {
-        return new Document(QueryOperators.LTE, value);
+    /**
+     * Adds resolved tile specs for the specified tiles to the specified parameters (in the specified order),
+     * loading and caching any specs that are not already cached.  Missing tiles are ignored.
+     */
+    private void addCachedResolvedTileSpecs(final StackId stackId,
+                                            final Date lastModifiedTimestamp,
+                                            final List<String> sortedTileIds,
+                                            final RenderParameters renderParameters) {
+
+        if (sortedTileIds.size() > MAX_TILE_SPECS_PER_QUERY) {
+            throw new IllegalArgumentException("query too broad, " + sortedTileIds.size() + " tiles requested");
+        }
+
+        final Map<String, TileSpec> tileIdToSpecMap = new HashMap<>(sortedTileIds.size() * 2);
+        final List<String> uncachedTileIds = new ArrayList<>();
+        for (final String tileId : sortedTileIds) {
+            final TileSpec cachedTileSpec = resolvedTileSpecCache.getTileSpec(stackId, lastModifiedTimestamp, tileId);
+            if (cachedTileSpec == null) {
+                uncachedTileIds.add(tileId);
+            } else {
+                tileIdToSpecMap.put(tileId, cachedTileSpec);
+            }
+        }
+
+        if (uncachedTileIds.size() > 0) {
+
+            final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+            final Document tileQuery = new Document("tileId", new Document(QueryOperators.IN, uncachedTileIds));
+
+            final List<TileSpec> loadedTileSpecs = new ArrayList<>(uncachedTileIds.size());
+            final Map<String, Integer> tileIdToBytesMap = new HashMap<>(uncachedTileIds.size() * 2);
+            try (final MongoCursor<RawBsonDocument> cursor =
+                         tileCollection.withDocumentClass(RawBsonDocument.class).find(tileQuery).iterator()) {
+                RawBsonDocument document;
+                TileSpec tileSpec;
+                while (cursor.hasNext()) {
+                    document = cursor.next();
+                    tileSpec = document.decode(TILE_SPEC_CODEC);
+                    loadedTileSpecs.add(tileSpec);
+                    tileIdToBytesMap.put(tileSpec.getTileId(), getApproximateBytes(document));
+                }
+            }
+
+            resolveTransformReferencesForTiles(stackId, lastModifiedTimestamp, loadedTileSpecs);
+
+            for (final TileSpec tileSpec : loadedTileSpecs) {
+                resolvedTileSpecCache.putTileSpec(stackId,
+                                                  lastModifiedTimestamp,
+                                                  tileSpec,
+                                                  tileIdToBytesMap.get(tileSpec.getTileId()));
+                tileIdToSpecMap.put(tileSpec.getTileId(), tileSpec);
+            }
+        }
+
+        for (final String tileId : sortedTileIds) {
+            final TileSpec tileSpec = tileIdToSpecMap.get(tileId);
+            if (tileSpec != null) {
+                renderParameters.addTileSpec(tileSpec);
+            }
+        }
+
+        LOG.debug("addCachedResolvedTileSpecs: added {} tile spec(s) for {} ({} requested, {} loaded from database)",
+                  renderParameters.numberOfTileSpecs(), stackId, sortedTileIds.size(), uncachedTileIds.size());
     }
 
-    private Document gte(final double value) {
-        return new Document(QueryOperators.GTE, value);
+    /**
+     * @return query for tiles in the specified layer that intersect the specified box.
+     *         When the box is small enough, the query includes a spatial cell key lookup (see {@link TileSpatialKey})
+     *         so that the (z, spatialCells) index can be used to avoid scanning open ended bounds ranges.
+     *         Tiles without spatial cell keys (e.g. those saved before keys were introduced) are always checked.
+     */
+    static Document getIntersectsBoxQuery(final double z,
+                                          final double x,
+                                          final double y,
+                                          final double lowerRightX,
+                                          final double lowerRightY) {
+
+        // EXAMPLE:   find({"$or": [{"z": 4050.0, "spatialCells": {"$in": [ ... ]}}, {"z": 4050.0, "spatialCells": null}],
+        //                  "minX": {"$lte": 239850.0}, "minY": {"$lte": 149074.0},
+        //                  "maxX": {"$gte": -109.0}, "maxY": {"$gte": 370.0}})
+        // INDEX:     z_1_spatialCells_1
+        //
+        // z is repeated in each $or clause so that each clause can be satisfied by a separate index scan
+
+        final List<Long> cells = TileSpatialKey.getCoveringCells(x, y, lowerRightX, lowerRightY,
+                                                                 TileSpatialKey.MAX_QUERY_CELLS);
+        final Document query;
+        if (cells == null) {
+            query = new Document("z", z);
+        } else {
+            final List<Document> cellClauses = new ArrayList<>();
+            cellClauses.add(new Document("z", z).append(TileSpatialKey.CELLS_KEY,
+                                                        new Document(QueryOperators.IN, cells)));
+            cellClauses.add(new Document("z", z).append(TileSpatialKey.CELLS_KEY, null));
+            query = new Document(QueryOperators.OR, cellClauses);
+        }
+
+        return appendIntersectsBoxCriteria(query, x, y, lowerRightX, lowerRightY);
     }
 
-    private Document getIntersectsBoxQuery(final double z,
-                                           final double x,
-                                           final double y,
-                                           final double lowerRightX,
-                                           final double lowerRightY) {
+    /**
+     * @return query for tiles in the specified layer that intersect the specified box
+     *         using only bounds range predicates.
+     */
+    static Document getIntersectsBoxRangeQuery(final double z,
+                                               final double x,
+                                               final double y,
+                                               final double lowerRightX,
+                                               final double lowerRightY) {
+        return appendIntersectsBoxCriteria(new Document("z", z), x, y, lowerRightX, lowerRightY);
+    }
+
+    private static Document appendIntersectsBoxCriteria(final Document query,
+                                                        final double x,
+                                                        final double y,
+                                                        final double lowerRightX,
+                                                        final double lowerRightY) {
         // intersection logic stolen from java.awt.Rectangle#intersects (without overflow checks)
         //   rx => minX, ry => minY, rw => maxX,        rh => maxY
         //   tx => x,    ty => y,    tw => lowerRightX, th => lowerRightY
-//        return Filters.eq("z", z)
-        return new Document("z", z).append(
-                "minX", lte(lowerRightX)).append(
-                "minY", lte(lowerRightY)).append(
-                "maxX", gte(x)).append(
-                "maxY", gte(y));
+        return query.append(
+                "minX", new Document(QueryOperators.LTE, lowerRightX)).append(
+                "minY", new Document(QueryOperators.LTE, lowerRightY)).append(
+                "maxX", new Document(QueryOperators.GTE, x)).append(
+                "maxY", new Document(QueryOperators.GTE, y));
+    }
+
+    private List<String> getSortedTileIds(final List<TileBounds> tileBoundsList) {
+        final Set<String> sortedTileIds = new TreeSet<>();
+        for (final TileBounds tileBounds : tileBoundsList) {
+            sortedTileIds.add(tileBounds.getTileId());
+        }
+        return new ArrayList<>(sortedTileIds);
+    }
+
+    /**
+     * Approximates the number of bytes needed to hold a spec in memory
+     * based upon the size of its BSON representation (doubled to account for object overhead).
+     */
+    private int getApproximateBytes(final RawBsonDocument document) {
+        return 2 * document.getByteBuffer().remaining();
+    }
+
+    /**
+     * Approximates the number of bytes needed to hold a transform spec in memory
+     * based upon the size of its JSON representation (two bytes per character).
+     */
+    private int getApproximateBytes(final TransformSpec transformSpec) {
+        return 2 * transformSpec.toJson().length();
     }
 
     private Document getStackIdQuery(final StackId stackId) {
@@ -2011,80 +3090,6 @@ public class RenderDao {
         return bound;
     }
 
-    private void cloneCollection(final MongoCollection<Document> fromCollection,
-                                 final MongoCollection<Document> toCollection,
-                                 final Document filterQuery)
-            throws IllegalStateException {
-
-        final long fromCount = fromCollection.count();
-        final long toCount;
-        final String fromFullName = MongoUtil.fullName(fromCollection);
-        final String toFullName = MongoUtil.fullName(toCollection);
-
-        LOG.debug("cloneCollection: entry, copying up to {} documents from {} to {}",
-                  fromCount, fromFullName, toFullName);
-
-        final ProcessTimer timer = new ProcessTimer(15000);
-
-        // We use bulk inserts to improve performance, but we still need to chunk
-        // the bulk operations to avoid memory issues with large collections.
-        // This 10,000 document chunk size is arbitrary but seems to be sufficient.
-        final int maxDocumentsPerBulkInsert = 10000;
-
-        long count = 0;
-
-        final List<WriteModel<Document>> modelList = new ArrayList<>(maxDocumentsPerBulkInsert);
-
-        try (final MongoCursor<Document> cursor = fromCollection.find(filterQuery).iterator()) {
-
-            BulkWriteResult result;
-            long insertedCount;
-            Document document;
-            while (cursor.hasNext()) {
-                document = cursor.next();
-                modelList.add(new InsertOneModel<>(document));
-                count++;
-                if (count % maxDocumentsPerBulkInsert == 0) {
-                    result = toCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
-                    insertedCount = result.getInsertedCount();
-                    if (insertedCount != maxDocumentsPerBulkInsert) {
-                        throw new IllegalStateException("only inserted " + insertedCount + " out of " +
-                                                        maxDocumentsPerBulkInsert +
-                                                        " documents for batch ending with document " + count);
-                    }
-                    modelList.clear();
-                    if (timer.hasIntervalPassed()) {
-                        LOG.debug("cloneCollection: inserted {} documents", count);
-                    }
-                }
-            }
-
-            if (count % maxDocumentsPerBulkInsert > 0) {
-                result = toCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
-                insertedCount = result.getInsertedCount();
-                final long expectedCount = count % maxDocumentsPerBulkInsert;
-                if (insertedCount != expectedCount) {
-                    throw new IllegalStateException("only inserted " + insertedCount + " out of " +
-                                                    expectedCount +
-                                                    " documents for last batch ending with document " + count);
-                }
-            }
-
-            toCount = toCollection.count();
-
-            // if nothing was filtered, verify that all documents got copied
-            if (filterQuery.keySet().size() == 0) {
-                if (toCount != fromCount) {
-                    throw new IllegalStateException("only inserted " + toCount + " out of " + fromCount + " documents");
-                }
-            }
-
-        }
-
-        LOG.debug("cloneCollection: inserted {} documents from {}.find(\\{}) to {}",
-                  toCount, fromFullName, toFullName);
-    }
-
     // Individually upserts each transform spec in the specified list, retrying if a duplicate key error occurs.
     // This should work around concurrent update issues that MongoDB does not currently handle
     // ( see https://jira.mongodb.org/browse/SERVER-14322 ).  If MongoDB ever corrects this issue,
@@ -2093,17 +3098,18 @@ public class RenderDao {
                                         final Collection<TransformSpec> transformSpecs) {
 
         final MongoCollection<Document> transformCollection = getTransformCollection(stackId);
+        final MongoCollection<TransformSpec> transformSpecCollection =
+                transformCollection.withDocumentClass(TransformSpec.class);
 
         int updateCount = 0;
         int insertCount = 0;
         UpdateResult result;
         for (final TransformSpec transformSpec : transformSpecs) {
             final Document query = new Document("id", transformSpec.getId());
-            final Document transformSpecObject = Document.parse(transformSpec.toJson());
             try {
-                result = transformCollection.replaceOne(query,
-                                                        transformSpecObject,
-                                                        MongoUtil.UPSERT_OPTION);
+                result = transformSpecCollection.replaceOne(query,
+                                                            transformSpec,
+                                                            MongoUtil.UPSERT_OPTION);
                 if (result.getMatchedCount() > 0) {
                     updateCount++;
                 } else {
@@ -2112,9 +3118,9 @@ public class RenderDao {
             } catch (final MongoException e) {
                 LOG.warn("possible duplicate key exception thrown for upsert, retrying operation ...", e);
 
-                result = transformCollection.replaceOne(query,
-                                                        transformSpecObject,
-                                                        MongoUtil.UPSERT_OPTION);
+                result = transformSpecCollection.replaceOne(query,
+                                                            transformSpec,
+                                                            MongoUtil.UPSERT_OPTION);
                 if (result.getMatchedCount() > 0) {
                     updateCount++;
                 } else {
@@ -2140,6 +3146,10 @@ public class RenderDao {
         return renderDatabase.getCollection(stackId.getTileCollectionName());
     }
 
+    private MongoCollection<Document> getLayerCollection(final StackId stackId) {
+        return renderDatabase.getCollection(stackId.getLayerCollectionName());
+    }
+
     private MongoCollection<Document> getSectionCollection(final StackId stackId) {
         return renderDatabase.getCollection(stackId.getSectionCollectionName());
     }
@@ -2189,9 +3199,19 @@ public class RenderDao {
                                       "maxY", 1).append("maxX", 1),
                               TILE_J_OPTIONS);
 
+        ensureSpatialKeyTileIndex(tileCollection);
+
         LOG.debug("ensureSupplementaryTileIndexes: exit");
     }
 
+    private void ensureSpatialKeyTileIndex(final MongoCollection<Document> tileCollection) {
+        // multikey index used for spatial cell key box intersection queries
+        MongoUtil.createIndex(tileCollection,
+                              new Document("z", 1).append(TileSpatialKey.CELLS_KEY, 1),
+                              TILE_K_OPTIONS);
+        LOG.debug("ensureSpatialKeyTileIndex: exit");
+    }
+
     private void throwExceptionIfStackIsMissing(final StackId stackId)
             throws ObjectNotFoundException {
 
@@ -2203,6 +3223,13 @@ public class RenderDao {
 
     private static final Logger LOG = LoggerFactory.getLogger(RenderDao.class);
 
+    private static final int MAX_TILE_SPECS_PER_QUERY = 50000;
+
+    private static final int SPATIAL_KEY_UPDATE_BATCH_SIZE = 10000;
+
+    private static final Codec<TileSpec> TILE_SPEC_CODEC =
+            JacksonBsonCodec.RENDER_CODEC_REGISTRY.get(TileSpec.class);
+
     /** Explicitly named index options allow a little more namespace room for stack id components. */
     private static final IndexOptions TRANSFORM_A_OPTIONS = new IndexOptions().unique(true).background(true).name("A");
     private static final IndexOptions TILE_A_OPTIONS = new IndexOptions().unique(true).background(true).name("A");
@@ -2215,4 +3242,11 @@ public class RenderDao {
     private static final IndexOptions TILE_H_OPTIONS = new IndexOptions().background(true).name("H");
     private static final IndexOptions TILE_I_OPTIONS = new IndexOptions().background(true).name("I");
     private static final IndexOptions TILE_J_OPTIONS = new IndexOptions().background(true).name("J");
+    private static final IndexOptions TILE_K_OPTIONS = new IndexOptions().background(true).name("K");
+    private static final IndexOptions LAYER_A_OPTIONS = new IndexOptions().unique(true).background(true).name("A");
+
+    /** Layer summary field that counts changes to layers whose stats need to be rebuilt. */
+    private static final String LAYER_CHANGED_KEY = "changed";
+
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
 }
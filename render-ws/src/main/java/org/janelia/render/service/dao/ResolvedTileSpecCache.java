@@ -0,0 +1,192 @@
+package org.janelia.render.service.dao;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Date;
+import java.util.Objects;
+
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.TransformSpec;
+import org.janelia.alignment.spec.stack.StackId;
+
+/**
+ * Memory bounded cache of resolved {@link TileSpec} and shared {@link TransformSpec} instances
+ * so that render parameters for frequently viewed tiles can be assembled without database round trips.
+ *
+ * Cached specs are tagged with the stack's last modified timestamp when they are loaded and are
+ * ignored (and removed) whenever a different timestamp is requested.  Entries are weighed by an approximation
+ * of their memory footprint (derived from the size of their JSON representation).
+ *
+ * Since callers commonly modify the tile specs they retrieve (e.g. to flatten or filter transforms),
+ * tile specs are copied when they are added to and retrieved from the cache.
+ * Transform specs are fully resolved before they are cached and are treated as read-only
+ * (flattening copies any specs whose meta data needs to be merged instead of modifying them).
+ *
+ * Since service resources are created for each request, a single {@link #getSharedInstance() shared instance}
+ * is used for all requests.
+ */
+public class ResolvedTileSpecCache {
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+
+    private static ResolvedTileSpecCache sharedInstance;
+
+    public static synchronized ResolvedTileSpecCache getSharedInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new ResolvedTileSpecCache(DEFAULT_MAX_BYTES);
+        }
+        return sharedInstance;
+    }
+
+    private final Cache<SpecKey, CachedSpec> cache;
+
+    /**
+     * @param  maxBytes  approximate maximum number of bytes to use for cached specs.
+     */
+    public ResolvedTileSpecCache(final long maxBytes) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((final SpecKey key, final CachedSpec value) -> value.approximateBytes)
+                .build();
+    }
+
+    /**
+     * @param  stackId                stack containing the tile.
+     * @param  lastModifiedTimestamp  current last modified timestamp for the stack.
+     * @param  tileId                 identifies the tile.
+     *
+     * @return a modifiable copy of the cached resolved tile spec or null if it is not cached (or is out of date).
+     */
+    public TileSpec getTileSpec(final StackId stackId,
+                                final Date lastModifiedTimestamp,
+                                final String tileId) {
+        final Object spec = getSpec(new SpecKey(stackId, false, tileId), lastModifiedTimestamp);
+        return spec == null ? null : ((TileSpec) spec).shallowCopy();
+    }
+
+    /**
+     * Adds a copy of the specified resolved tile spec to the cache.
+     *
+     * @param  stackId                stack containing the tile.
+     * @param  lastModifiedTimestamp  last modified timestamp for the stack when the spec was loaded.
+     * @param  resolvedTileSpec       tile spec with fully resolved transforms.
+     * @param  approximateBytes       approximate memory footprint of the spec.
+     */
+    public void putTileSpec(final StackId stackId,
+                            final Date lastModifiedTimestamp,
+                            final TileSpec resolvedTileSpec,
+                            final int approximateBytes) {
+        cache.put(new SpecKey(stackId, false, resolvedTileSpec.getTileId()),
+                  new CachedSpec(lastModifiedTimestamp, resolvedTileSpec.shallowCopy(), approximateBytes));
+    }
+
+    /**
+     * @param  stackId                stack containing the transform.
+     * @param  lastModifiedTimestamp  current last modified timestamp for the stack.
+     * @param  transformId            identifies the transform.
+     *
+     * @return the shared (read-only) resolved transform spec or null if it is not cached (or is out of date).
+     */
+    public TransformSpec getTransformSpec(final StackId stackId,
+                                          final Date lastModifiedTimestamp,
+                                          final String transformId) {
+        return (TransformSpec) getSpec(new SpecKey(stackId, true, transformId), lastModifiedTimestamp);
+    }
+
+    /**
+     * Adds the specified resolved transform spec to the cache.
+     *
+     * @param  stackId                stack containing the transform.
+     * @param  lastModifiedTimestamp  last modified timestamp for the stack when the spec was loaded.
+     * @param  resolvedTransformSpec  fully resolved transform spec (should not be modified after caching).
+     * @param  approximateBytes       approximate memory footprint of the spec.
+     */
+    public void putTransformSpec(final StackId stackId,
+                                 final Date lastModifiedTimestamp,
+                                 final TransformSpec resolvedTransformSpec,
+                                 final int approximateBytes) {
+        cache.put(new SpecKey(stackId, true, resolvedTransformSpec.getId()),
+                  new CachedSpec(lastModifiedTimestamp, resolvedTransformSpec, approximateBytes));
+    }
+
+    /**
+     * Removes all cached specs for the specified stack.
+     *
+     * @param  stackId  stack whose specs should be removed.
+     */
+    public void invalidate(final StackId stackId) {
+        cache.asMap().keySet().removeIf(key -> key.stackId.equals(stackId));
+    }
+
+    /**
+     * @return number of tile and transform specs currently cached.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private Object getSpec(final SpecKey key,
+                           final Date lastModifiedTimestamp) {
+        Object spec = null;
+        final CachedSpec cachedSpec = cache.getIfPresent(key);
+        if (cachedSpec != null) {
+            if (cachedSpec.timestamp == lastModifiedTimestamp.getTime()) {
+                spec = cachedSpec.spec;
+            } else {
+                cache.invalidate(key);
+            }
+        }
+        return spec;
+    }
+
+    private static class SpecKey {
+
+        private final StackId stackId;
+        private final boolean isTransform;
+        private final String id;
+
+        private SpecKey(final StackId stackId,
+                        final boolean isTransform,
+                        final String id) {
+            this.stackId = stackId;
+            this.isTransform = isTransform;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+            final SpecKey that = (SpecKey) o;
+            return (isTransform == that.isTransform) &&
+                   Objects.equals(stackId, that.stackId) &&
+                   Objects.equals(id, that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stackId, isTransform, id);
+        }
+    }
+
+    private static class CachedSpec {
+
+        private final long timestamp;
+        private final Object spec;
+        private final int approximateBytes;
+
+        private CachedSpec(final Date timestamp,
+                           final Object spec,
+                           final int approximateBytes) {
+            this.timestamp = timestamp.getTime();
+            this.spec = spec;
+            this.approximateBytes = approximateBytes;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.janelia.render.service.dao;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.janelia.alignment.spec.stack.StackId;
+import org.janelia.alignment.spec.stack.StackMetaData;
+
+/**
+ * Short lived cache of {@link StackMetaData} instances so that the stack lookups made for every
+ * image request (e.g. ETag evaluation, stack bounds, and cache timestamps) do not each require a database read.
+ *
+ * Entries expire shortly after they are loaded so that changes made by other servers sharing the same
+ * database are picked up quickly.  Changes made through this server's {@link RenderDao} explicitly invalidate
+ * the affected entries.  Missing stacks are not cached.
+ *
+ * Cached instances are shared by all callers and must be treated as read-only.
+ * Since service resources are created for each request, a single {@link #getSharedInstance() shared instance}
+ * is used for all requests.
+ */
+public class StackMetaDataCache {
+
+    public static final long DEFAULT_MAX_NUMBER_OF_STACKS = 1000;
+    public static final long DEFAULT_EXPIRE_SECONDS = 5;
+
+    private static StackMetaDataCache sharedInstance;
+
+    public static synchronized StackMetaDataCache getSharedInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new StackMetaDataCache(DEFAULT_MAX_NUMBER_OF_STACKS, DEFAULT_EXPIRE_SECONDS);
+        }
+        return sharedInstance;
+    }
+
+    private final Cache<StackId, StackMetaData> cache;
+
+    /** Incremented for every invalidation so that loads which overlap an invalidation are not cached. */
+    private final AtomicLong invalidationCount;
+
+    /**
+     * @param  maxNumberOfStacks  maximum number of stacks to keep in memory.
+     * @param  expireSeconds      number of seconds after loading that cached metadata expires.
+     */
+    public StackMetaDataCache(final long maxNumberOfStacks,
+                              final long expireSeconds) {
+        this(maxNumberOfStacks, expireSeconds, Ticker.systemTicker());
+    }
+
+    StackMetaDataCache(final long maxNumberOfStacks,
+                       final long expireSeconds,
+                       final Ticker ticker) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxNumberOfStacks)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .build();
+        this.invalidationCount = new AtomicLong(0);
+    }
+
+    /**
+     * @param  stackId  identifies the stack.
+     * @param  loader   loads the stack's metadata (returning null if the stack does not exist)
+     *                  when it is not cached.
+     *
+     * @return the (read-only) metadata for the specified stack or null if the stack does not exist.
+     */
+    public StackMetaData get(final StackId stackId,
+                             final Supplier<StackMetaData> loader) {
+
+        StackMetaData stackMetaData = cache.getIfPresent(stackId);
+
+        if (stackMetaData == null) {
+            final long countBeforeLoad = invalidationCount.get();
+            stackMetaData = loader.get();
+            if ((stackMetaData != null) && (countBeforeLoad == invalidationCount.get())) {
+                cache.put(stackId, stackMetaData);
+            }
+        }
+
+        return stackMetaData;
+    }
+
+    /**
+     * Removes any cached metadata for the specified stack.
+     * This should be called whenever metadata for the stack is changed.
+     *
+     * @param  stackId  stack whose metadata should be removed.
+     */
+    public void invalidate(final StackId stackId) {
+        invalidationCount.incrementAndGet();
+        cache.invalidate(stackId);
+    }
+
+    /**
+     * @return number of stacks currently cached.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+}
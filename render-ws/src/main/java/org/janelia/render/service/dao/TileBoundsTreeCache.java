@@ -0,0 +1,153 @@
+package org.janelia.render.service.dao;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.janelia.alignment.spec.TileBoundsRTree;
+import org.janelia.alignment.spec.stack.StackId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded LRU cache of per-layer {@link TileBoundsRTree} instances so that box queries for frequently
+ * viewed layers can be resolved in memory instead of with range queries against the tile collection.
+ * Since layer sizes vary widely, the cache is bounded by the total number of tiles in all cached trees
+ * rather than by the number of layers.
+ *
+ * Cached trees are tagged with the stack's last modified timestamp when they are built and are
+ * rebuilt whenever a different timestamp is requested.  Since service resources are created for each request,
+ * a single {@link #getSharedInstance() shared instance} is used for all requests.
+ */
+public class TileBoundsTreeCache {
+
+    public static final long DEFAULT_MAX_NUMBER_OF_TILES = 1_000_000;
+
+    private static TileBoundsTreeCache sharedInstance;
+
+    public static synchronized TileBoundsTreeCache getSharedInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new TileBoundsTreeCache(DEFAULT_MAX_NUMBER_OF_TILES);
+        }
+        return sharedInstance;
+    }
+
+    private final Cache<LayerKey, TimestampedTree> cache;
+
+    /**
+     * @param  maxNumberOfTiles  maximum total number of tiles (across all layer trees) to keep in memory.
+     */
+    public TileBoundsTreeCache(final long maxNumberOfTiles) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxNumberOfTiles)
+                .weigher((final LayerKey key, final TimestampedTree value) -> Math.max(1, value.tree.size()))
+                .build();
+    }
+
+    /**
+     * @param  stackId                stack containing the layer.
+     * @param  z                      z value for the layer.
+     * @param  lastModifiedTimestamp  current last modified timestamp for the stack.
+     * @param  loader                 builds the layer tree if it is not cached (or is out of date).
+     *
+     * @return the tree for the specified layer.
+     *
+     * @throws IllegalStateException
+     *   if the tree cannot be loaded.
+     */
+    public TileBoundsRTree get(final StackId stackId,
+                               final Double z,
+                               final Date lastModifiedTimestamp,
+                               final Callable<TileBoundsRTree> loader)
+            throws IllegalStateException {
+
+        final LayerKey key = new LayerKey(stackId, z);
+        final long timestamp = lastModifiedTimestamp.getTime();
+
+        TimestampedTree timestampedTree = cache.getIfPresent(key);
+        if ((timestampedTree != null) && (timestampedTree.timestamp != timestamp)) {
+            cache.invalidate(key);
+            timestampedTree = null;
+        }
+
+        if (timestampedTree == null) {
+            try {
+                timestampedTree = cache.get(key, () -> new TimestampedTree(timestamp, loader.call()));
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException("failed to load tile bounds for " + key, e.getCause());
+            }
+            LOG.debug("get: loaded tree for {}", key);
+        }
+
+        return timestampedTree.tree;
+    }
+
+    /**
+     * Removes all cached trees for the specified stack.
+     *
+     * @param  stackId  stack whose trees should be removed.
+     */
+    public void invalidate(final StackId stackId) {
+        cache.asMap().keySet().removeIf(key -> key.stackId.equals(stackId));
+    }
+
+    /**
+     * @return number of layer trees currently cached.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private static class LayerKey {
+
+        private final StackId stackId;
+        private final Double z;
+
+        private LayerKey(final StackId stackId,
+                         final Double z) {
+            this.stackId = stackId;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+            final LayerKey that = (LayerKey) o;
+            return Objects.equals(stackId, that.stackId) && Objects.equals(z, that.z);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stackId, z);
+        }
+
+        @Override
+        public String toString() {
+            return stackId + " z " + z;
+        }
+    }
+
+    private static class TimestampedTree {
+
+        private final long timestamp;
+        private final TileBoundsRTree tree;
+
+        private TimestampedTree(final long timestamp,
+                                final TileBoundsRTree tree) {
+            this.timestamp = timestamp;
+            this.tree = tree;
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(TileBoundsTreeCache.class);
+
+}
@@ -0,0 +1,99 @@
+package org.janelia.render.service.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility for deriving the spatial cell keys stored with tile documents.
+ *
+ * World coordinates are divided into a fixed grid of {@link #CELL_SIZE} pixel cells and each cell is identified
+ * by the Z-order (Morton) interleaving of its column and row indexes.  Tile documents store the keys for every cell
+ * their bounds cover so that box intersection queries can use an exact $in lookup on a
+ * (z, {@link #CELLS_KEY}) index instead of scanning the open ended bounds ranges.
+ *
+ * Cells are inclusive at both bound edges, so any box that intersects (or touches) a tile's bounds is guaranteed
+ * to share at least one cell key with the tile.
+ */
+public class TileSpatialKey {
+
+    /** Name of the tile document field that holds spatial cell keys. */
+    public static final String CELLS_KEY = "spatialCells";
+
+    /** Width and height of each grid cell in world pixels. */
+    public static final double CELL_SIZE = 4096.0;
+
+    /** Tiles that cover more than this number of cells are stored without keys. */
+    public static final int MAX_TILE_CELLS = 256;
+
+    /** Queries that cover more than this number of cells should use range predicates instead of keys. */
+    public static final int MAX_QUERY_CELLS = 1024;
+
+    /**
+     * @return the sorted keys for all cells covered by the specified bounds,
+     *         or null if the bounds are undefined or cover more than maxCells cells.
+     */
+    public static List<Long> getCoveringCells(final Double minX,
+                                              final Double minY,
+                                              final Double maxX,
+                                              final Double maxY,
+                                              final int maxCells) {
+
+        if ((minX == null) || (minY == null) || (maxX == null) || (maxY == null) ||
+            (maxX < minX) || (maxY < minY)) {
+            return null;
+        }
+
+        final long minColumn = getCellIndex(minX);
+        final long maxColumn = getCellIndex(maxX);
+        final long minRow = getCellIndex(minY);
+        final long maxRow = getCellIndex(maxY);
+
+        final long cellCount = (maxColumn - minColumn + 1) * (maxRow - minRow + 1);
+        if (cellCount > maxCells) {
+            return null;
+        }
+
+        final List<Long> cells = new ArrayList<>((int) cellCount);
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long column = minColumn; column <= maxColumn; column++) {
+                cells.add(getCellKey(column, row));
+            }
+        }
+        cells.sort(null);
+
+        return cells;
+    }
+
+    /**
+     * @return the Z-order key for the specified (non-negative) cell column and row.
+     */
+    public static long getCellKey(final long column,
+                                  final long row) {
+        return spreadBits(column) | (spreadBits(row) << 1);
+    }
+
+    /**
+     * @return the (non-negative) grid index of the cell containing the specified world coordinate.
+     */
+    static long getCellIndex(final double worldCoordinate) {
+        final long index = (long) Math.floor(worldCoordinate / CELL_SIZE) + CELL_INDEX_OFFSET;
+        return Math.max(0, Math.min(MAX_CELL_INDEX, index));
+    }
+
+    /**
+     * Spreads the low 21 bits of the specified value so that there is a zero bit between each of them.
+     */
+    private static long spreadBits(final long value) {
+        long x = value & MAX_CELL_INDEX;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8))  & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4))  & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2))  & 0x3333333333333333L;
+        x = (x | (x << 1))  & 0x5555555555555555L;
+        return x;
+    }
+
+    /** Offset applied to cell indexes so that (reasonable) negative world coordinates map to positive indexes. */
+    private static final long CELL_INDEX_OFFSET = 1L << 20;
+    private static final long MAX_CELL_INDEX = (1L << 21) - 1;
+}
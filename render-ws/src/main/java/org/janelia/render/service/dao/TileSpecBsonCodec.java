@@ -0,0 +1,37 @@
+package org.janelia.render.service.dao;
+
+import java.util.List;
+
+import org.bson.BsonWriter;
+import org.janelia.alignment.spec.TileSpec;
+
+/**
+ * {@link JacksonBsonCodec} for tile specs that also stores the spatial cell keys
+ * (see {@link TileSpatialKey}) derived from each tile's bounds.
+ */
+public class TileSpecBsonCodec
+        extends JacksonBsonCodec<TileSpec> {
+
+    public TileSpecBsonCodec() {
+        super(TileSpec.class);
+    }
+
+    @Override
+    protected void encodeAdditionalFields(final BsonWriter writer,
+                                          final TileSpec value) {
+
+        final List<Long> cells = TileSpatialKey.getCoveringCells(value.getMinX(),
+                                                                 value.getMinY(),
+                                                                 value.getMaxX(),
+                                                                 value.getMaxY(),
+                                                                 TileSpatialKey.MAX_TILE_CELLS);
+        if (cells != null) {
+            writer.writeStartArray(TileSpatialKey.CELLS_KEY);
+            for (final Long cell : cells) {
+                writer.writeInt64(cell);
+            }
+            writer.writeEndArray();
+        }
+    }
+
+}
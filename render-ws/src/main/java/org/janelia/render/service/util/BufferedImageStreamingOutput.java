@@ -12,6 +12,7 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
 
 import org.janelia.alignment.Utils;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +52,8 @@ public class BufferedImageStreamingOutput implements StreamingOutput {
 
         LOG.info("write: entry");
 
+        final long encodeStart = System.currentTimeMillis();
+
         if (Utils.PNG_FORMAT.equals(format)) {
             writePngImage(targetImage, 6, FilterType.FILTER_PAETH, outputStream);
         } else if (Utils.TIFF_FORMAT.equals(format)) {
@@ -60,6 +63,8 @@ public class BufferedImageStreamingOutput implements StreamingOutput {
             Utils.writeImage(targetImage, format, convertToGray, quality, imageOutputStream);
         }
 
+        RenderMetrics.recordTimeSince(RenderMetrics.ENCODE_TIMER, encodeStart);
+
         LOG.info("write: exit");
     }
 
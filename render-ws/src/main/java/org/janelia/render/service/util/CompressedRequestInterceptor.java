@@ -0,0 +1,72 @@
+package org.janelia.render.service.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+
+/**
+ * Decompresses request bodies that were sent with a gzip or deflate Content-Encoding
+ * (e.g. large resolved tile collections uploaded by import clients).
+ *
+ * RESTEasy's own GZIP interceptors are disabled by default (as of 3.1), so this interceptor
+ * is explicitly provided to support compressed uploads without enabling compressed responses for every request.
+ */
+@Provider
+public class CompressedRequestInterceptor
+        implements ReaderInterceptor {
+
+    @Override
+    public Object aroundReadFrom(final ReaderInterceptorContext context)
+            throws IOException, WebApplicationException {
+
+        final InputStream decodedInputStream =
+                getDecodedInputStream(context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING),
+                                      context.getInputStream());
+
+        if (decodedInputStream != null) {
+            context.setInputStream(decodedInputStream);
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        }
+
+        return context.proceed();
+    }
+
+    /**
+     * @param  contentEncoding  request Content-Encoding header value (or null if none was specified).
+     * @param  inputStream      raw request body stream.
+     *
+     * @return a stream that decompresses the specified raw stream or
+     *         null if the content encoding is not a supported compression encoding.
+     *
+     * @throws IOException
+     *   if a gzip header cannot be read from the raw stream.
+     */
+    static InputStream getDecodedInputStream(final String contentEncoding,
+                                             final InputStream inputStream)
+            throws IOException {
+
+        InputStream decodedInputStream = null;
+
+        if (contentEncoding != null) {
+            final String encoding = contentEncoding.trim().toLowerCase();
+            if (GZIP.equals(encoding) || X_GZIP.equals(encoding)) {
+                decodedInputStream = new GZIPInputStream(inputStream);
+            } else if (DEFLATE.equals(encoding)) {
+                decodedInputStream = new InflaterInputStream(inputStream);
+            }
+        }
+
+        return decodedInputStream;
+    }
+
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+}
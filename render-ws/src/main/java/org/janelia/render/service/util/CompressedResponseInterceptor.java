@@ -0,0 +1,262 @@
+package org.janelia.render.service.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Compresses JSON, Smile, and text response bodies with a gzip or deflate Content-Encoding
+ * when the request's Accept-Encoding header allows it.
+ *
+ * Since most large responses (e.g. match collection dumps, resolved tiles, layout files) are streamed,
+ * the total response size is not known up front.  Instead, response data is buffered until
+ * the configured minimum size is reached.  Responses that never reach that size are written
+ * without compression, so tiny responses are not penalized.
+ *
+ * The minimum size (in bytes) can be configured with the webService.minCompressedResponseBytes server property.
+ */
+@Provider
+public class CompressedResponseInterceptor
+        implements WriterInterceptor {
+
+    @Context
+    private HttpHeaders requestHeaders;
+
+    private final int minCompressedResponseBytes;
+
+    public CompressedResponseInterceptor() {
+        final Integer configuredMinBytes =
+                RenderServerProperties.getProperties().getInteger("webService.minCompressedResponseBytes");
+        this.minCompressedResponseBytes =
+                configuredMinBytes == null ? DEFAULT_MIN_COMPRESSED_RESPONSE_BYTES : configuredMinBytes;
+    }
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context)
+            throws IOException, WebApplicationException {
+
+        final MultivaluedMap<String, Object> responseHeaders = context.getHeaders();
+
+        ThresholdCompressingOutputStream compressingOutputStream = null;
+
+        if (isCompressible(context.getMediaType()) &&
+            (! responseHeaders.containsKey(HttpHeaders.CONTENT_ENCODING))) {
+
+            // responses differ based upon Accept-Encoding, so make sure caches know that
+            responseHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+            final String encoding = getAcceptedEncoding(getRequestAcceptEncoding());
+            if (encoding != null) {
+                compressingOutputStream = new ThresholdCompressingOutputStream(context.getOutputStream(),
+                                                                               encoding,
+                                                                               minCompressedResponseBytes,
+                                                                               responseHeaders);
+                context.setOutputStream(compressingOutputStream);
+            }
+        }
+
+        context.proceed();
+
+        if (compressingOutputStream != null) {
+            compressingOutputStream.finish();
+        }
+    }
+
+    private String getRequestAcceptEncoding() {
+        String acceptEncoding = null;
+        if (requestHeaders != null) {
+            acceptEncoding = requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        }
+        return acceptEncoding;
+    }
+
+    /**
+     * @return true if responses with the specified media type are worth compressing; otherwise false.
+     */
+    static boolean isCompressible(final MediaType mediaType) {
+        return (mediaType != null) &&
+               (MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType) ||
+                RenderServiceUtil.SMILE_MEDIA_TYPE.isCompatible(mediaType) ||
+                "text".equalsIgnoreCase(mediaType.getType())) &&
+               (! mediaType.isWildcardType());
+    }
+
+    /**
+     * @param  acceptEncoding  Accept-Encoding header value from the request (or null if none was specified).
+     *
+     * @return the preferred supported encoding for the specified header ("gzip" or "deflate")
+     *         or null if neither is acceptable.  Explicitly listed encodings (e.g. "gzip;q=0")
+     *         take precedence over the "*" wildcard.
+     */
+    static String getAcceptedEncoding(final String acceptEncoding) {
+
+        String acceptedEncoding = null;
+
+        if (acceptEncoding != null) {
+
+            // null values indicate the encoding was not explicitly listed
+            Boolean gzipAccepted = null;
+            Boolean deflateAccepted = null;
+            boolean wildcardAccepted = false;
+
+            for (final String element : acceptEncoding.split(",")) {
+                final String[] encodingAndParameters = element.trim().toLowerCase().split(";");
+                final String encoding = encodingAndParameters[0].trim();
+                final boolean isAccepted = isAccepted(encodingAndParameters);
+                if (GZIP.equals(encoding) || X_GZIP.equals(encoding)) {
+                    gzipAccepted = isAccepted || Boolean.TRUE.equals(gzipAccepted);
+                } else if (DEFLATE.equals(encoding)) {
+                    deflateAccepted = isAccepted || Boolean.TRUE.equals(deflateAccepted);
+                } else if ("*".equals(encoding)) {
+                    wildcardAccepted = isAccepted;
+                }
+            }
+
+            if ((gzipAccepted == null) ? wildcardAccepted : gzipAccepted) {
+                acceptedEncoding = GZIP;
+            } else if ((deflateAccepted == null) ? wildcardAccepted : deflateAccepted) {
+                acceptedEncoding = DEFLATE;
+            }
+        }
+
+        return acceptedEncoding;
+    }
+
+    private static boolean isAccepted(final String[] encodingAndParameters) {
+        boolean isAccepted = true;
+        for (int i = 1; i < encodingAndParameters.length; i++) {
+            final String parameter = encodingAndParameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    isAccepted = Double.parseDouble(parameter.substring(2)) > 0;
+                } catch (final NumberFormatException e) {
+                    isAccepted = false;
+                }
+            }
+        }
+        return isAccepted;
+    }
+
+    /**
+     * Buffers written data until a minimum size is reached and then switches to compressing
+     * all (buffered and subsequent) data to the target stream.  Response headers are updated
+     * when compression starts, which is always before anything is written to the target stream.
+     */
+    static class ThresholdCompressingOutputStream
+            extends OutputStream {
+
+        private final OutputStream targetOutputStream;
+        private final String encoding;
+        private final int minCompressedBytes;
+        private final MultivaluedMap<String, Object> responseHeaders;
+
+        private ByteArrayOutputStream buffer;
+        private DeflaterOutputStream compressedOutputStream;
+        private boolean finished;
+
+        ThresholdCompressingOutputStream(final OutputStream targetOutputStream,
+                                         final String encoding,
+                                         final int minCompressedBytes,
+                                         final MultivaluedMap<String, Object> responseHeaders) {
+            this.targetOutputStream = targetOutputStream;
+            this.encoding = encoding;
+            this.minCompressedBytes = minCompressedBytes;
+            this.responseHeaders = responseHeaders;
+            this.buffer = new ByteArrayOutputStream(Math.min(minCompressedBytes, 64 * 1024));
+            this.compressedOutputStream = null;
+            this.finished = false;
+        }
+
+        boolean isCompressing() {
+            return compressedOutputStream != null;
+        }
+
+        @Override
+        public void write(final int b)
+                throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes,
+                          final int offset,
+                          final int length)
+                throws IOException {
+            if (compressedOutputStream != null) {
+                compressedOutputStream.write(bytes, offset, length);
+            } else {
+                buffer.write(bytes, offset, length);
+                if (buffer.size() >= minCompressedBytes) {
+                    startCompressing();
+                }
+            }
+        }
+
+        @Override
+        public void flush()
+                throws IOException {
+            // buffered data is held until the threshold is reached or the stream is finished
+            if (compressedOutputStream != null) {
+                compressedOutputStream.flush();
+            }
+        }
+
+        @Override
+        public void close()
+                throws IOException {
+            finish();
+            targetOutputStream.close();
+        }
+
+        /**
+         * Writes any remaining buffered data and compression trailer without closing the target stream.
+         */
+        void finish()
+                throws IOException {
+            if (! finished) {
+                finished = true;
+                if (compressedOutputStream != null) {
+                    compressedOutputStream.finish();
+                } else {
+                    buffer.writeTo(targetOutputStream);
+                    buffer = null;
+                }
+                targetOutputStream.flush();
+            }
+        }
+
+        private void startCompressing()
+                throws IOException {
+
+            responseHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+
+            if (GZIP.equals(encoding)) {
+                compressedOutputStream = new GZIPOutputStream(targetOutputStream, COMPRESSION_BUFFER_SIZE);
+            } else {
+                compressedOutputStream = new DeflaterOutputStream(targetOutputStream);
+            }
+
+            buffer.writeTo(compressedOutputStream);
+            buffer = null;
+        }
+    }
+
+    private static final int DEFAULT_MIN_COMPRESSED_RESPONSE_BYTES = 8 * 1024;
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+}
@@ -0,0 +1,26 @@
+package org.janelia.render.service.util;
+
+import com.fasterxml.jackson.jaxrs.smile.JacksonJaxbSmileProvider;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ext.Provider;
+
+import org.janelia.alignment.json.JsonUtils;
+
+/**
+ * Instance of {@link JacksonJaxbSmileProvider} that uses common configured {@link JsonUtils#SMILE_MAPPER}
+ * so that bulk data requested with an {@link JsonUtils#SMILE_MEDIA_TYPE} Accept header
+ * (or sent with that Content-Type) is encoded in binary form instead of text.
+ */
+@Provider
+@Produces(JsonUtils.SMILE_MEDIA_TYPE)
+@Consumes(JsonUtils.SMILE_MEDIA_TYPE)
+public class ConfiguredSmileProvider extends JacksonJaxbSmileProvider {
+
+    public ConfiguredSmileProvider() {
+        super();
+        setMapper(JsonUtils.SMILE_MAPPER);
+    }
+
+}
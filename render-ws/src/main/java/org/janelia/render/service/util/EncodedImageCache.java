@@ -0,0 +1,359 @@
+package org.janelia.render.service.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+
+import org.janelia.alignment.util.RenderMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size bounded LRU cache of encoded (jpeg, png, tiff) image bytes for dynamically rendered images
+ * so that repeat requests can be served without resolving render parameters or re-rendering.
+ *
+ * Entries are keyed by normalized request path and query plus stack version
+ * (see {@link #buildKey}), so entries for modified stacks are simply never requested again
+ * and eventually age out.  When a disk path is configured, entries evicted from memory are
+ * written to disk and served from there until they are evicted from the (separately bounded) disk tier.
+ *
+ * The cache can be configured with the following server properties:
+ * <pre>
+ *   webService.maxEncodedImageCacheMb       (default: 256, 0 disables the cache)
+ *   webService.encodedImageCacheDiskPath    (default: none, disk tier is disabled)
+ *   webService.maxEncodedImageCacheDiskMb   (default: 4096)
+ * </pre>
+ */
+public class EncodedImageCache {
+
+    /** Cache instance that doesn't cache anything. */
+    public static final EncodedImageCache DISABLED_CACHE = new EncodedImageCache(0, null, 0);
+
+    private static volatile EncodedImageCache sharedInstance;
+
+    /**
+     * @return the shared cache for this server (built from configured server properties on first use).
+     */
+    public static EncodedImageCache getInstance() {
+        if (sharedInstance == null) {
+            setSharedInstance();
+        }
+        return sharedInstance;
+    }
+
+    private final long maxMemoryBytes;
+    private final File diskDirectory;
+    private final long maxDiskBytes;
+
+    private final Cache<String, byte[]> memoryCache;
+    private final Cache<String, File> diskCache;
+
+    /**
+     * @param  maxMemoryBytes  maximum number of encoded bytes to keep in memory (0 disables the cache).
+     * @param  diskDirectory   directory for entries evicted from memory (or null to disable the disk tier).
+     * @param  maxDiskBytes    maximum number of encoded bytes to keep on disk.
+     *
+     * @throws IllegalArgumentException
+     *   if the disk directory cannot be created.
+     */
+    public EncodedImageCache(final long maxMemoryBytes,
+                             final File diskDirectory,
+                             final long maxDiskBytes)
+            throws IllegalArgumentException {
+
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+
+        if ((maxMemoryBytes > 0) && (diskDirectory != null) && (maxDiskBytes > 0)) {
+            this.diskDirectory = diskDirectory;
+            this.diskCache = CacheBuilder.newBuilder()
+                    .concurrencyLevel(1) // single segment so that size bound and LRU order are global
+                    .maximumWeight(maxDiskBytes)
+                    .weigher((final String key, final File file) -> (int) Math.min(file.length(), Integer.MAX_VALUE))
+                    .removalListener(this::deleteEvictedFile)
+                    .build();
+            removeFilesFromPreviousRuns();
+        } else {
+            this.diskDirectory = null;
+            this.diskCache = null;
+        }
+
+        if (maxMemoryBytes > 0) {
+            this.memoryCache = CacheBuilder.newBuilder()
+                    .concurrencyLevel(1) // single segment so that size bound and LRU order are global
+                    .maximumWeight(maxMemoryBytes)
+                    .weigher((final String key, final byte[] bytes) -> bytes.length)
+                    .removalListener(this::moveEvictedBytesToDisk)
+                    .build();
+        } else {
+            this.memoryCache = null;
+        }
+    }
+
+    /**
+     * @param  uriInfo       request URI information.
+     * @param  stackVersion  version of the stack being rendered (see {@link ResponseHelper#getStackVersion}).
+     *
+     * @return normalized key for the specified request.
+     */
+    public static String buildKey(final UriInfo uriInfo,
+                                  final String stackVersion) {
+        return buildKey(uriInfo.getPath(), uriInfo.getQueryParameters(), stackVersion);
+    }
+
+    /**
+     * @param  path             request path.
+     * @param  queryParameters  request query parameters.
+     * @param  stackVersion     version of the stack being rendered.
+     *
+     * @return normalized key for the specified request (query parameters are sorted by name).
+     */
+    static String buildKey(final String path,
+                           final MultivaluedMap<String, String> queryParameters,
+                           final String stackVersion) {
+
+        final StringBuilder key = new StringBuilder(256);
+
+        key.append(stackVersion).append('|');
+
+        final String normalizedPath = path.replaceAll("/+", "/");
+        if (normalizedPath.startsWith("/")) {
+            key.append(normalizedPath.substring(1));
+        } else {
+            key.append(normalizedPath);
+        }
+
+        if ((queryParameters != null) && (queryParameters.size() > 0)) {
+            char separator = '?';
+            for (final Map.Entry<String, List<String>> entry : new TreeMap<>(queryParameters).entrySet()) {
+                for (final String value : entry.getValue()) {
+                    key.append(separator).append(entry.getKey()).append('=').append(value);
+                    separator = '&';
+                }
+            }
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * @return true if this cache retains anything; otherwise false.
+     */
+    public boolean isEnabled() {
+        return memoryCache != null;
+    }
+
+    /**
+     * @param  key  cache key (see {@link #buildKey}).
+     *
+     * @return the cached encoded image bytes for the specified key or null if they are not cached.
+     */
+    public byte[] get(final String key) {
+
+        byte[] encodedImage = null;
+
+        if (memoryCache != null) {
+
+            encodedImage = memoryCache.getIfPresent(key);
+
+            if ((encodedImage == null) && (diskCache != null)) {
+                final File file = diskCache.getIfPresent(key);
+                if (file != null) {
+                    try {
+                        encodedImage = Files.readAllBytes(file.toPath());
+                    } catch (final IOException e) {
+                        LOG.warn("get: failed to read " + file + ", removing it from cache", e);
+                        diskCache.invalidate(key);
+                    }
+                }
+            }
+
+            if (encodedImage == null) {
+                RenderMetrics.increment(RenderMetrics.ENCODED_IMAGE_CACHE_MISS_COUNTER);
+            } else {
+                RenderMetrics.increment(RenderMetrics.ENCODED_IMAGE_CACHE_HIT_COUNTER);
+            }
+        }
+
+        return encodedImage;
+    }
+
+    /**
+     * Adds the specified encoded image bytes to this cache.
+     *
+     * @param  key           cache key (see {@link #buildKey}).
+     * @param  encodedImage  encoded image bytes.
+     */
+    public void put(final String key,
+                    final byte[] encodedImage) {
+        if ((memoryCache != null) && (encodedImage.length <= maxMemoryBytes)) {
+            memoryCache.put(key, encodedImage);
+        }
+    }
+
+    /**
+     * Removes all entries from this cache.
+     */
+    public void invalidateAll() {
+        if (memoryCache != null) {
+            memoryCache.invalidateAll();
+        }
+        if (diskCache != null) {
+            diskCache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return number of encoded image bytes currently held in memory.
+     */
+    public long getMemoryBytes() {
+        long totalBytes = 0;
+        if (memoryCache != null) {
+            for (final byte[] encodedImage : memoryCache.asMap().values()) {
+                totalBytes += encodedImage.length;
+            }
+        }
+        return totalBytes;
+    }
+
+    /**
+     * @return number of entries currently held in memory or on disk.
+     */
+    public long size() {
+        long size = 0;
+        if (memoryCache != null) {
+            size += memoryCache.size();
+        }
+        if (diskCache != null) {
+            size += diskCache.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "{maxMemoryBytes: " + maxMemoryBytes +
+               ", diskDirectory: " + diskDirectory +
+               ", maxDiskBytes: " + maxDiskBytes +
+               ", size: " + size() +
+               '}';
+    }
+
+    private void moveEvictedBytesToDisk(final RemovalNotification<String, byte[]> notification) {
+
+        final String key = notification.getKey();
+        final byte[] encodedImage = notification.getValue();
+
+        if ((diskCache != null) && (notification.getCause() == RemovalCause.SIZE) &&
+            (key != null) && (encodedImage != null) && (encodedImage.length <= maxDiskBytes)) {
+
+            final File file = new File(diskDirectory, getFileName(key));
+            final Path tempPath = new File(diskDirectory, file.getName() + ".tmp").toPath();
+            try {
+                Files.write(tempPath, encodedImage);
+                Files.move(tempPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                diskCache.put(key, file);
+            } catch (final IOException e) {
+                LOG.warn("moveEvictedBytesToDisk: failed to write " + file, e);
+                deleteQuietly(tempPath.toFile());
+            }
+        }
+    }
+
+    private void deleteEvictedFile(final RemovalNotification<String, File> notification) {
+        // replaced entries use the same file which has already been overwritten
+        if (notification.getCause() != RemovalCause.REPLACED) {
+            deleteQuietly(notification.getValue());
+        }
+    }
+
+    private void removeFilesFromPreviousRuns()
+            throws IllegalArgumentException {
+
+        if (! diskDirectory.exists() && ! diskDirectory.mkdirs()) {
+            throw new IllegalArgumentException("failed to create encoded image cache directory " +
+                                               diskDirectory.getAbsolutePath());
+        }
+
+        // keys for files written by previous runs are unknown, so they can never be found
+        final File[] files = diskDirectory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX) ||
+                                                                    name.endsWith(FILE_SUFFIX + ".tmp"));
+        if (files != null) {
+            for (final File file : files) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private static String getFileName(final String key) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder(hash.length * 2 + FILE_SUFFIX.length());
+            for (final byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.append(FILE_SUFFIX).toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 digest is not available", e);
+        }
+    }
+
+    private static void deleteQuietly(final File file) {
+        if ((file != null) && file.exists() && (! file.delete())) {
+            LOG.warn("deleteQuietly: failed to delete {}", file);
+        }
+    }
+
+    private static synchronized void setSharedInstance() {
+        if (sharedInstance == null) {
+
+            final RenderServerProperties properties = RenderServerProperties.getProperties();
+
+            final Integer maxMemoryMb = properties.getInteger("webService.maxEncodedImageCacheMb");
+            final String diskPath = properties.get("webService.encodedImageCacheDiskPath");
+            final Integer maxDiskMb = properties.getInteger("webService.maxEncodedImageCacheDiskMb");
+
+            final File diskDirectory;
+            if ((diskPath == null) || (diskPath.trim().length() == 0)) {
+                diskDirectory = null;
+            } else {
+                diskDirectory = new File(diskPath.trim()).getAbsoluteFile();
+            }
+
+            try {
+                sharedInstance = new EncodedImageCache(
+                        (maxMemoryMb == null ? DEFAULT_MAX_MEMORY_MB : maxMemoryMb) * 1_000_000L,
+                        diskDirectory,
+                        (maxDiskMb == null ? DEFAULT_MAX_DISK_MB : maxDiskMb) * 1_000_000L);
+            } catch (final IllegalArgumentException e) {
+                LOG.error("setSharedInstance: failed to create cache, disabling it", e);
+                sharedInstance = DISABLED_CACHE;
+            }
+
+            LOG.info("setSharedInstance: exit, created {}", sharedInstance);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(EncodedImageCache.class);
+
+    private static final int DEFAULT_MAX_MEMORY_MB = 256;
+    private static final int DEFAULT_MAX_DISK_MB = 4096;
+    private static final String FILE_SUFFIX = ".img";
+}
@@ -0,0 +1,384 @@
+package org.janelia.render.service.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists dynamically rendered large data (CATMAID type 5) tiles into a stack's materialized box
+ * directory (using the same [root]/[width]x[height]/[level]/[z]/[row]/[column].[format] layout as the
+ * box generator) so that the box pyramid fills itself in as tiles are requested.
+ *
+ * Each tile is written to a temporary file in its target directory and then atomically linked to its
+ * target location, so partially written tiles are never served and tiles that appear concurrently
+ * (e.g. from the box generator) are never replaced.  The total size of all tiles written by this class is
+ * bounded, with the oldest written tiles removed first when the bound is exceeded.
+ * Tiles generated by other means (e.g. the box generator) are never removed.
+ *
+ * Written tiles are listed in a [root]/.write-through directory along with the last modified
+ * timestamp of the stack they were rendered from.  When a stack's timestamp changes, all of the tiles
+ * written for the previous version are removed before any file in the stack's root is served
+ * (see {@link #removeStaleTiles}).
+ *
+ * Writing is disabled by default and can be enabled with the following server property:
+ * <pre>
+ *   webService.maxWriteThroughTileMb    (default: 0, writing is disabled)
+ * </pre>
+ */
+public class LargeDataTileWriter {
+
+    /** Writer instance that doesn't write anything. */
+    public static final LargeDataTileWriter DISABLED_WRITER = new LargeDataTileWriter(0);
+
+    private static volatile LargeDataTileWriter sharedInstance;
+
+    /**
+     * @return the shared writer for this server (built from configured server properties on first use).
+     */
+    public static LargeDataTileWriter getInstance() {
+        if (sharedInstance == null) {
+            setSharedInstance();
+        }
+        return sharedInstance;
+    }
+
+    private final long maxBytes;
+
+    /** Maps root paths to the stack timestamp for all tiles written in that root. */
+    private final Map<File, Long> rootToTimestamp;
+
+    /** Maps all written tiles (oldest first) to their size in bytes. */
+    private final LinkedHashMap<File, Long> tileToBytes;
+
+    private long totalBytes;
+
+    /**
+     * @param  maxBytes  maximum number of bytes for all written tiles (0 disables writing).
+     */
+    public LargeDataTileWriter(final long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.rootToTimestamp = new HashMap<>();
+        this.tileToBytes = new LinkedHashMap<>();
+        this.totalBytes = 0;
+    }
+
+    /**
+     * @return true if this writer persists tiles; otherwise false.
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return total number of bytes for all tiles currently written by this writer.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Removes all tiles written for a previous version of the stack with the specified root path.
+     * This should be called before checking whether a file exists in the root path.
+     *
+     * @param  rootPath               root path for the stack's materialized boxes.
+     * @param  stackLastModifiedTime  current last modified time for the stack.
+     */
+    public void removeStaleTiles(final String rootPath,
+                                 final long stackLastModifiedTime) {
+
+        // avoid taking the lock (for every request) when writing is disabled
+        if (isEnabled() && (rootPath != null)) {
+            removeStaleTilesForRoot(new File(rootPath).getAbsoluteFile(), stackLastModifiedTime);
+        }
+    }
+
+    /**
+     * Writes the specified encoded tile to its materialized location unless writing is disabled,
+     * the tile has already been materialized, or the tile is larger than the configured bound.
+     * Failures are logged but otherwise ignored since the tile has already been rendered for the request.
+     *
+     * @param  rootPath               root path for the stack's materialized boxes.
+     * @param  stackLastModifiedTime  last modified time of the stack the tile was rendered from.
+     * @param  tileFile               materialized location for the tile.
+     * @param  encodedTile            encoded tile bytes.
+     */
+    public void write(final String rootPath,
+                      final long stackLastModifiedTime,
+                      final File tileFile,
+                      final byte[] encodedTile) {
+
+        if ((! isEnabled()) || (encodedTile.length > maxBytes)) {
+            return;
+        }
+
+        removeStaleTiles(rootPath, stackLastModifiedTime);
+
+        if (tileFile.exists()) {
+            return;
+        }
+
+        final File tileDirectory = tileFile.getParentFile();
+        File tempFile = null;
+        try {
+
+            if (! tileDirectory.exists() && ! tileDirectory.mkdirs() && ! tileDirectory.exists()) {
+                throw new IOException("failed to create " + tileDirectory.getAbsolutePath());
+            }
+
+            tempFile = File.createTempFile(tileFile.getName() + ".", TEMP_FILE_SUFFIX, tileDirectory);
+            Files.write(tempFile.toPath(), encodedTile);
+
+            if (linkWithoutReplacing(tempFile.toPath(), tileFile.toPath())) {
+                addWrittenTile(new File(rootPath).getAbsoluteFile(),
+                               stackLastModifiedTime,
+                               tileFile.getAbsoluteFile());
+                LOG.debug("write: wrote {}", tileFile);
+            } else {
+                LOG.debug("write: skipped {} since it was created by another process", tileFile);
+            }
+
+        } catch (final IOException e) {
+            LOG.warn("write: failed to write " + tileFile, e);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{maxBytes: " + maxBytes + '}';
+    }
+
+    private synchronized void addWrittenTile(final File rootDirectory,
+                                             final long stackLastModifiedTime,
+                                             final File tileFile)
+            throws IOException {
+
+        final Long writtenTimestamp = rootToTimestamp.get(rootDirectory);
+        if ((writtenTimestamp == null) || (writtenTimestamp != stackLastModifiedTime)) {
+            // stack was modified while the tile was being written (or its tile list could not be saved)
+            deleteQuietly(tileFile);
+            return;
+        }
+
+        if (tileToBytes.containsKey(tileFile)) {
+            return;
+        }
+
+        final Path relativePath = rootDirectory.toPath().relativize(tileFile.toPath());
+        Files.write(getTileListPath(rootDirectory),
+                    Collections.singletonList(relativePath.toString()),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        final long tileBytes = tileFile.length();
+        tileToBytes.put(tileFile, tileBytes);
+        totalBytes += tileBytes;
+
+        // removed tiles remain in their root's tile list until the list is next loaded
+        final Iterator<Map.Entry<File, Long>> iterator = tileToBytes.entrySet().iterator();
+        while ((totalBytes > maxBytes) && iterator.hasNext()) {
+            final Map.Entry<File, Long> oldest = iterator.next();
+            deleteQuietly(oldest.getKey());
+            totalBytes -= oldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private synchronized void removeStaleTilesForRoot(final File rootDirectory,
+                                                      final long stackLastModifiedTime) {
+
+        final Long writtenTimestamp = rootToTimestamp.get(rootDirectory);
+
+        if (writtenTimestamp == null) {
+            loadWrittenTiles(rootDirectory, stackLastModifiedTime);
+        } else if (writtenTimestamp != stackLastModifiedTime) {
+            removeWrittenTiles(rootDirectory, stackLastModifiedTime);
+        }
+    }
+
+    private void loadWrittenTiles(final File rootDirectory,
+                                  final long stackLastModifiedTime) {
+
+        final Path timestampPath = getTimestampPath(rootDirectory);
+        final Path tileListPath = getTileListPath(rootDirectory);
+
+        final List<File> existingTiles = new ArrayList<>();
+        Long writtenTimestamp = null;
+        try {
+            if (Files.exists(timestampPath)) {
+                writtenTimestamp = Long.parseLong(new String(Files.readAllBytes(timestampPath),
+                                                             StandardCharsets.UTF_8).trim());
+            }
+            if (Files.exists(tileListPath)) {
+                for (final String relativePath : Files.readAllLines(tileListPath, StandardCharsets.UTF_8)) {
+                    final File tileFile = new File(rootDirectory, relativePath);
+                    if (tileFile.exists()) {
+                        existingTiles.add(tileFile);
+                    }
+                }
+            }
+        } catch (final IOException | NumberFormatException e) {
+            LOG.warn("loadWrittenTiles: failed to read written tile information in " + rootDirectory, e);
+        }
+
+        final boolean isStale = (writtenTimestamp == null) || (writtenTimestamp != stackLastModifiedTime);
+
+        if (isStale) {
+            existingTiles.forEach(LargeDataTileWriter::deleteQuietly);
+            existingTiles.clear();
+        } else {
+            for (final File tileFile : existingTiles) {
+                final long tileBytes = tileFile.length();
+                tileToBytes.put(tileFile, tileBytes);
+                totalBytes += tileBytes;
+            }
+        }
+
+        try {
+            Files.createDirectories(timestampPath.getParent());
+            final List<String> relativePaths = new ArrayList<>(existingTiles.size());
+            for (final File tileFile : existingTiles) {
+                relativePaths.add(rootDirectory.toPath().relativize(tileFile.toPath()).toString());
+            }
+            writeAtomically(tileListPath, relativePaths);
+            writeAtomically(timestampPath, Collections.singletonList(String.valueOf(stackLastModifiedTime)));
+            rootToTimestamp.put(rootDirectory, stackLastModifiedTime);
+        } catch (final IOException e) {
+            // leave root unregistered so that nothing gets written to it
+            LOG.warn("loadWrittenTiles: failed to save written tile information in " + rootDirectory, e);
+        }
+
+        LOG.info("loadWrittenTiles: kept {} tiles in {}, written timestamp was {}, current timestamp is {}",
+                 existingTiles.size(), rootDirectory, writtenTimestamp, stackLastModifiedTime);
+    }
+
+    private void removeWrittenTiles(final File rootDirectory,
+                                    final long stackLastModifiedTime) {
+
+        final Path rootPath = rootDirectory.toPath();
+        int removedCount = 0;
+        final Iterator<Map.Entry<File, Long>> iterator = tileToBytes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<File, Long> entry = iterator.next();
+            if (entry.getKey().toPath().startsWith(rootPath)) {
+                deleteQuietly(entry.getKey());
+                totalBytes -= entry.getValue();
+                iterator.remove();
+                removedCount++;
+            }
+        }
+
+        rootToTimestamp.remove(rootDirectory);
+
+        try {
+            writeAtomically(getTileListPath(rootDirectory), Collections.<String>emptyList());
+            writeAtomically(getTimestampPath(rootDirectory),
+                            Collections.singletonList(String.valueOf(stackLastModifiedTime)));
+            rootToTimestamp.put(rootDirectory, stackLastModifiedTime);
+        } catch (final IOException e) {
+            LOG.warn("removeWrittenTiles: failed to save written tile information in " + rootDirectory, e);
+        }
+
+        LOG.info("removeWrittenTiles: removed {} stale tiles from {}", removedCount, rootDirectory);
+    }
+
+    private static Path getTimestampPath(final File rootDirectory) {
+        return new File(new File(rootDirectory, WRITE_THROUGH_DIRECTORY_NAME), "stackLastModified").toPath();
+    }
+
+    private static Path getTileListPath(final File rootDirectory) {
+        return new File(new File(rootDirectory, WRITE_THROUGH_DIRECTORY_NAME), "tiles").toPath();
+    }
+
+    private static void writeAtomically(final Path path,
+                                        final List<String> lines)
+            throws IOException {
+        final Path tempPath = path.resolveSibling(path.getFileName() + TEMP_FILE_SUFFIX);
+        Files.write(tempPath, lines, StandardCharsets.UTF_8);
+        moveAtomically(tempPath, path);
+    }
+
+    private static void moveAtomically(final Path fromPath,
+                                       final Path toPath)
+            throws IOException {
+        try {
+            Files.move(fromPath, toPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(fromPath, toPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Atomically creates the target file (as a link to the completely written source file)
+     * without ever replacing an existing target.  The source file is left in place
+     * unless the file system does not support links (in which case it is renamed).
+     *
+     * @param  fromPath  completely written source file.
+     * @param  toPath    target location.
+     *
+     * @return true if the target was created; false if it already existed.
+     *
+     * @throws IOException
+     *   if the target cannot be created for any other reason.
+     */
+    static boolean linkWithoutReplacing(final Path fromPath,
+                                        final Path toPath)
+            throws IOException {
+        boolean created = true;
+        try {
+            try {
+                Files.createLink(toPath, fromPath);
+            } catch (final UnsupportedOperationException e) {
+                // fall back to a rename that still fails if the target exists
+                Files.move(fromPath, toPath);
+            }
+        } catch (final FileAlreadyExistsException e) {
+            created = false;
+        }
+        return created;
+    }
+
+    private static void deleteQuietly(final File file) {
+        if ((file != null) && file.exists() && (! file.delete())) {
+            LOG.warn("deleteQuietly: failed to delete {}", file);
+        }
+    }
+
+    private static synchronized void setSharedInstance() {
+        if (sharedInstance == null) {
+
+            final RenderServerProperties properties = RenderServerProperties.getProperties();
+            final Integer maxMb = properties.getInteger("webService.maxWriteThroughTileMb");
+
+            if ((maxMb == null) || (maxMb < 1)) {
+                sharedInstance = DISABLED_WRITER;
+            } else {
+                sharedInstance = new LargeDataTileWriter(maxMb * 1_000_000L);
+            }
+
+            LOG.info("setSharedInstance: exit, created {}", sharedInstance);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(LargeDataTileWriter.class);
+
+    private static final String WRITE_THROUGH_DIRECTORY_NAME = ".write-through";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+}
@@ -0,0 +1,82 @@
+package org.janelia.render.service.util;
+
+import java.util.Map;
+
+import org.janelia.alignment.util.HistogramMetricsRegistry;
+import org.janelia.alignment.util.ImageProcessorCache;
+
+/**
+ * Formats render metrics using the
+ * <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">
+ *     Prometheus text exposition format
+ * </a> (version 0.0.4).
+ *
+ * Timers are exported as cumulative histograms measured in seconds and counters are exported with a
+ * "_total" suffix.
+ */
+public class PrometheusMetricsFormatter {
+
+    /** Content type for the Prometheus text exposition format. */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    /**
+     * @param  registry             registry containing timers and counters to format.
+     * @param  imageProcessorCache  cache whose current size should be exported as a gauge (or null to skip).
+     * @param  gaugeValues          additional current values to export as gauges keyed by name (or null to skip).
+     *
+     * @return text formatted version of the specified metrics.
+     */
+    public static String format(final HistogramMetricsRegistry registry,
+                                final ImageProcessorCache imageProcessorCache,
+                                final Map<String, Long> gaugeValues) {
+
+        final StringBuilder sb = new StringBuilder(4096);
+
+        final long[] upperBounds = HistogramMetricsRegistry.BUCKET_UPPER_BOUNDS_MILLISECONDS;
+
+        for (final Map.Entry<String, HistogramMetricsRegistry.TimerSnapshot> entry :
+                registry.getTimerSnapshots().entrySet()) {
+
+            final String name = entry.getKey() + "_seconds";
+            final HistogramMetricsRegistry.TimerSnapshot snapshot = entry.getValue();
+            final long[] cumulativeCounts = snapshot.getCumulativeBucketCounts();
+            // +Inf bucket and count come from the same bucket values so that they are always consistent
+            final long count = cumulativeCounts[cumulativeCounts.length - 1];
+
+            sb.append("# TYPE ").append(name).append(" histogram\n");
+            for (int i = 0; i < upperBounds.length; i++) {
+                sb.append(name).append("_bucket{le=\"").append(toSeconds(upperBounds[i])).append("\"} ");
+                sb.append(cumulativeCounts[i]).append('\n');
+            }
+            sb.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            sb.append(name).append("_sum ").append(toSeconds(snapshot.getSumMilliseconds())).append('\n');
+            sb.append(name).append("_count ").append(count).append('\n');
+        }
+
+        for (final Map.Entry<String, Long> entry : registry.getCounterValues().entrySet()) {
+            final String name = entry.getKey() + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            sb.append(name).append(' ').append(entry.getValue()).append('\n');
+        }
+
+        if (imageProcessorCache != null) {
+            final String name = "image_processor_cache_entries";
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            sb.append(name).append(' ').append(imageProcessorCache.size()).append('\n');
+        }
+
+        if (gaugeValues != null) {
+            for (final Map.Entry<String, Long> entry : gaugeValues.entrySet()) {
+                sb.append("# TYPE ").append(entry.getKey()).append(" gauge\n");
+                sb.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String toSeconds(final long milliseconds) {
+        return String.valueOf(milliseconds / 1000.0);
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.janelia.render.service.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.janelia.alignment.util.RenderMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces identical concurrent render requests so that only one render is run for each key.
+ *
+ * The first request for a key runs its render task.  Any request for the same key that arrives
+ * while that render is in progress waits for it and receives the same encoded image bytes
+ * (or the same failure).  Nothing is retained once a render completes, so this is not a cache -
+ * it only removes duplicate work for requests that overlap in time
+ * (e.g. shared viewing sessions or tile prefetch storms).
+ */
+public class RenderRequestCoalescer {
+
+    private static final RenderRequestCoalescer SHARED_INSTANCE = new RenderRequestCoalescer();
+
+    /**
+     * @return the shared coalescer for this server.
+     */
+    public static RenderRequestCoalescer getInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> keyToInProgressRender;
+
+    public RenderRequestCoalescer() {
+        this.keyToInProgressRender = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param  key         canonical key identifying the rendered result
+     *                     (requests with equal keys must produce identical bytes).
+     * @param  renderTask  task that renders and encodes the image for the key.
+     *
+     * @return encoded image bytes, either from running the specified task or
+     *         from an identical render that was already in progress.
+     *
+     * @throws Exception
+     *   if the render for the key fails.
+     */
+    public byte[] getEncodedImage(final String key,
+                                  final Callable<byte[]> renderTask)
+            throws Exception {
+
+        final CompletableFuture<byte[]> newRender = new CompletableFuture<>();
+        final CompletableFuture<byte[]> inProgressRender = keyToInProgressRender.putIfAbsent(key, newRender);
+
+        final byte[] encodedImage;
+
+        if (inProgressRender == null) {
+
+            try {
+                encodedImage = renderTask.call();
+                newRender.complete(encodedImage);
+            } catch (final Throwable t) {
+                newRender.completeExceptionally(t);
+                throw t;
+            } finally {
+                keyToInProgressRender.remove(key, newRender);
+            }
+
+        } else {
+
+            LOG.info("getEncodedImage: waiting for in progress render of identical request");
+            RenderMetrics.increment(RenderMetrics.RENDER_COALESCED_COUNTER);
+
+            try {
+                encodedImage = inProgressRender.get();
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw e;
+                }
+            }
+
+        }
+
+        return encodedImage;
+    }
+
+    /**
+     * @param  keyPrefix  prefix of the keys to check (e.g. a render parameters digest).
+     *
+     * @return true if a render is currently in progress for any key that starts with the specified prefix.
+     */
+    public boolean isInProgress(final String keyPrefix) {
+        // the number of in progress renders is bounded by the number of render threads, so a scan is cheap
+        return keyToInProgressRender.keySet().stream().anyMatch(key -> key.startsWith(keyPrefix));
+    }
+
+    /**
+     * @return number of renders currently in progress.
+     */
+    public int getInProgressCount() {
+        return keyToInProgressRender.size();
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderRequestCoalescer.class);
+}
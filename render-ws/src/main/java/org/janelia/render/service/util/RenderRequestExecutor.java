@@ -0,0 +1,307 @@
+package org.janelia.render.service.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.util.RenderMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs render requests on a dedicated bounded thread pool instead of on container request threads.
+ *
+ * Requests are only admitted when the number of queued requests and the total estimated cost
+ * (see {@link #estimateCost}) of all outstanding (queued or running) requests are within configured limits.
+ * Requests that cannot be admitted or that do not complete within the configured timeout are immediately
+ * resumed with a 503 (Service Unavailable) response that includes a Retry-After header,
+ * so that clients back off instead of piling up behind large renders.
+ *
+ * Limits can be configured with the following server properties:
+ * <pre>
+ *   webService.renderThreads                    (default: number of available processors)
+ *   webService.maxQueuedRenderRequests          (default: 8 * renderThreads)
+ *   webService.maxOutstandingRenderMegapixels   (default: 4000)
+ *   webService.renderTimeoutSeconds             (default: 120)
+ *   webService.renderRetryAfterSeconds          (default: 5)
+ * </pre>
+ */
+public class RenderRequestExecutor {
+
+    private static volatile RenderRequestExecutor sharedInstance;
+
+    /**
+     * @return the shared executor for this server (built from configured server properties on first use).
+     */
+    public static RenderRequestExecutor getInstance() {
+        if (sharedInstance == null) {
+            setSharedInstance();
+        }
+        return sharedInstance;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int maxQueuedRequests;
+    private final long maxOutstandingCost;
+    private final long timeoutSeconds;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger activeRequestCount;
+    private int queuedRequestCount;
+    private long outstandingCost;
+
+    /**
+     * @param  numberOfThreads     number of renders that can run concurrently.
+     * @param  maxQueuedRequests   maximum number of admitted requests waiting to run.
+     * @param  maxOutstandingCost  maximum total estimated cost of all queued and running requests.
+     *                             A single request is always admitted when nothing else is outstanding.
+     * @param  timeoutSeconds      maximum number of seconds a request can wait and run before it is abandoned.
+     * @param  retryAfterSeconds   number of seconds clients are told to wait before retrying a rejected request.
+     */
+    public RenderRequestExecutor(final int numberOfThreads,
+                                 final int maxQueuedRequests,
+                                 final long maxOutstandingCost,
+                                 final long timeoutSeconds,
+                                 final int retryAfterSeconds) {
+
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("numberOfThreads must be greater than zero");
+        }
+        if (maxQueuedRequests < 1) {
+            throw new IllegalArgumentException("maxQueuedRequests must be greater than zero");
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        // admission is managed here, so the queue only needs to hold what has been admitted
+        this.executor = new ThreadPoolExecutor(numberOfThreads,
+                                               numberOfThreads,
+                                               0L,
+                                               TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(maxQueuedRequests),
+                                               threadFactory);
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.maxOutstandingCost = maxOutstandingCost;
+        this.timeoutSeconds = timeoutSeconds;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.activeRequestCount = new AtomicInteger(0);
+        this.queuedRequestCount = 0;
+        this.outstandingCost = 0;
+    }
+
+    /**
+     * @param  renderParameters  parameters for a render request (or null if unknown).
+     *
+     * @return estimated cost of rendering the specified parameters
+     *         (number of tiles times the number of pixels in the scaled target image).
+     */
+    public static long estimateCost(final RenderParameters renderParameters) {
+        long cost = 0;
+        if (renderParameters != null) {
+            final double scale = renderParameters.getScale();
+            final long targetPixels = (long) Math.ceil(renderParameters.getWidth() * scale) *
+                                      (long) Math.ceil(renderParameters.getHeight() * scale);
+            cost = Math.max(1, renderParameters.numberOfTileSpecs()) * Math.max(1, targetPixels);
+        }
+        return cost;
+    }
+
+    /**
+     * Submits the specified render task if it can be admitted, otherwise immediately resumes
+     * the response with a 503 (Service Unavailable) status.
+     *
+     * @param  asyncResponse  suspended response to resume with the task result.
+     * @param  cost           estimated cost of the task.
+     * @param  renderTask     task that renders and returns the response
+     *                        (any thrown exception is used to resume the response).
+     */
+    public void submit(final AsyncResponse asyncResponse,
+                       final long cost,
+                       final Callable<Response> renderTask) {
+
+        if (! admit(cost)) {
+            LOG.warn("submit: rejecting request with cost {}, {}", cost, this);
+            RenderMetrics.increment(RenderMetrics.RENDER_REJECTED_COUNTER);
+            asyncResponse.resume(getServiceUnavailableResponse("render queue is full"));
+            return;
+        }
+
+        final long queueStartTime = System.currentTimeMillis();
+        final AtomicBoolean started = new AtomicBoolean(false);
+        final AtomicReference<Future<?>> futureReference = new AtomicReference<>();
+
+        asyncResponse.setTimeoutHandler(timedOutResponse -> {
+            LOG.warn("submit: render request with cost {} timed out after {} seconds", cost, timeoutSeconds);
+            RenderMetrics.increment(RenderMetrics.RENDER_TIMEOUT_COUNTER);
+            if (started.compareAndSet(false, true)) {
+                // request never left the queue, so it will never run
+                removeFromQueue(futureReference.get());
+                release(cost, true);
+            }
+            timedOutResponse.resume(getServiceUnavailableResponse("render request timed out"));
+        });
+
+        asyncResponse.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+
+        try {
+            final Future<?> future = executor.submit(() -> run(asyncResponse, cost, queueStartTime, started, renderTask));
+            futureReference.set(future);
+            if (asyncResponse.isDone() && started.get()) {
+                // request timed out before its future was available to the timeout handler
+                removeFromQueue(future);
+            }
+        } catch (final RejectedExecutionException e) {
+            if (started.compareAndSet(false, true)) {
+                release(cost, true);
+            }
+            RenderMetrics.increment(RenderMetrics.RENDER_REJECTED_COUNTER);
+            asyncResponse.resume(getServiceUnavailableResponse("render queue is full"));
+        }
+    }
+
+    /**
+     * Cancels the specified queued task and removes it from the work queue so that it
+     * does not keep occupying a queue slot until a render thread gets around to discarding it.
+     */
+    private void removeFromQueue(final Future<?> future) {
+        if (future != null) {
+            future.cancel(false);
+            executor.remove((Runnable) future);
+        }
+    }
+
+    /**
+     * @return current values for render queue gauges keyed by metric name.
+     */
+    public synchronized Map<String, Long> getGaugeValues() {
+        final Map<String, Long> values = new LinkedHashMap<>();
+        values.put("render_queue_depth", (long) queuedRequestCount);
+        values.put("render_requests_active", (long) activeRequestCount.get());
+        values.put("render_outstanding_cost", outstandingCost);
+        return values;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "{queuedRequestCount: " + queuedRequestCount +
+               ", maxQueuedRequests: " + maxQueuedRequests +
+               ", activeRequestCount: " + activeRequestCount.get() +
+               ", outstandingCost: " + outstandingCost +
+               ", maxOutstandingCost: " + maxOutstandingCost +
+               '}';
+    }
+
+    private void run(final AsyncResponse asyncResponse,
+                     final long cost,
+                     final long queueStartTime,
+                     final AtomicBoolean started,
+                     final Callable<Response> renderTask) {
+
+        if (! started.compareAndSet(false, true)) {
+            return; // request timed out (and was released) before it could run
+        }
+
+        RenderMetrics.recordTimeSince(RenderMetrics.RENDER_QUEUE_WAIT_TIMER, queueStartTime);
+        startRunning();
+
+        try {
+            if (! asyncResponse.isDone()) {
+                asyncResponse.resume(renderTask.call());
+            }
+        } catch (final Throwable t) {
+            asyncResponse.resume(t);
+        } finally {
+            activeRequestCount.decrementAndGet();
+            release(cost, false);
+        }
+    }
+
+    private synchronized boolean admit(final long cost) {
+        final boolean isAdmitted;
+        if (queuedRequestCount >= maxQueuedRequests) {
+            isAdmitted = false;
+        } else if ((outstandingCost > 0) && ((outstandingCost + cost) > maxOutstandingCost)) {
+            isAdmitted = false;
+        } else {
+            queuedRequestCount++;
+            outstandingCost += cost;
+            isAdmitted = true;
+        }
+        return isAdmitted;
+    }
+
+    private synchronized void startRunning() {
+        queuedRequestCount--;
+        activeRequestCount.incrementAndGet();
+    }
+
+    private synchronized void release(final long cost,
+                                      final boolean wasQueued) {
+        if (wasQueued) {
+            queuedRequestCount--;
+        }
+        outstandingCost -= cost;
+    }
+
+    private Response getServiceUnavailableResponse(final String message) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(message)
+                .type(MediaType.TEXT_PLAIN_TYPE)
+                .build();
+    }
+
+    private static synchronized void setSharedInstance() {
+        if (sharedInstance == null) {
+
+            final RenderServerProperties properties = RenderServerProperties.getProperties();
+
+            final int numberOfThreads = getValue(properties, "webService.renderThreads",
+                                                 Runtime.getRuntime().availableProcessors());
+            final int maxQueuedRequests = getValue(properties, "webService.maxQueuedRenderRequests",
+                                                   8 * numberOfThreads);
+            final int maxOutstandingMegapixels = getValue(properties, "webService.maxOutstandingRenderMegapixels",
+                                                          4000);
+            final int timeoutSeconds = getValue(properties, "webService.renderTimeoutSeconds", 120);
+            final int retryAfterSeconds = getValue(properties, "webService.renderRetryAfterSeconds", 5);
+
+            sharedInstance = new RenderRequestExecutor(numberOfThreads,
+                                                       maxQueuedRequests,
+                                                       maxOutstandingMegapixels * 1_000_000L,
+                                                       timeoutSeconds,
+                                                       retryAfterSeconds);
+
+            LOG.info("setSharedInstance: exit, created executor with {} threads, {}", numberOfThreads, sharedInstance);
+        }
+    }
+
+    private static int getValue(final RenderServerProperties properties,
+                                final String key,
+                                final int defaultValue) {
+        final Integer value = properties.getInteger(key);
+        return value == null ? defaultValue : value;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderRequestExecutor.class);
+}
@@ -1,9 +1,18 @@
 package org.janelia.render.service.util;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.janelia.alignment.ArgbRenderer;
@@ -11,6 +20,11 @@ import org.janelia.alignment.BoundingBoxRenderer;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.ShortRenderer;
 import org.janelia.alignment.Utils;
+import org.janelia.alignment.betterbox.MaterializedBoxSource;
+import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.stack.StackMetaData;
+import org.janelia.alignment.spec.stack.StackStats;
 import org.janelia.render.service.model.IllegalServiceArgumentException;
 import org.janelia.render.service.model.ServiceException;
 import org.slf4j.Logger;
@@ -27,6 +41,43 @@ public class RenderServiceUtil {
     public static final String IMAGE_PNG_MIME_TYPE = "image/png";
     public static final String IMAGE_TIFF_MIME_TYPE = "image/tiff";
 
+    public static final MediaType SMILE_MEDIA_TYPE = MediaType.valueOf(JsonUtils.SMILE_MEDIA_TYPE);
+
+    /**
+     * @param  httpHeaders  headers for the current request (null is treated as a JSON request).
+     *
+     * @return the media type that should be used to encode streamed data for the request:
+     *         Smile if the request's Accept header prefers it over JSON, otherwise JSON.
+     */
+    public static MediaType getStreamedDataMediaType(final HttpHeaders httpHeaders) {
+
+        MediaType mediaType = MediaType.APPLICATION_JSON_TYPE;
+
+        if (httpHeaders != null) {
+            // acceptable types are sorted by preference (quality factor)
+            for (final MediaType acceptableType : httpHeaders.getAcceptableMediaTypes()) {
+                if (SMILE_MEDIA_TYPE.getType().equalsIgnoreCase(acceptableType.getType()) &&
+                    SMILE_MEDIA_TYPE.getSubtype().equalsIgnoreCase(acceptableType.getSubtype())) {
+                    mediaType = SMILE_MEDIA_TYPE;
+                    break;
+                } else if (MediaType.APPLICATION_JSON_TYPE.isCompatible(acceptableType)) {
+                    break;
+                }
+            }
+        }
+
+        return mediaType;
+    }
+
+    /**
+     * @param  mediaType  media type for streamed data (see {@link #getStreamedDataMediaType}).
+     *
+     * @return the mapper that encodes data for the specified media type.
+     */
+    public static ObjectMapper getStreamedDataMapper(final MediaType mediaType) {
+        return SMILE_MEDIA_TYPE.equals(mediaType) ? JsonUtils.SMILE_MAPPER : JsonUtils.FAST_MAPPER;
+    }
+
     public static void throwServiceException(final Throwable t)
             throws ServiceException {
 
@@ -69,22 +120,39 @@ public class RenderServiceUtil {
     public static Response renderJpegImage(final RenderParameters renderParameters,
                                            final Integer maxTileSpecsToRender,
                                            final ResponseHelper responseHelper) {
+        return renderJpegImage(renderParameters, maxTileSpecsToRender, responseHelper, null);
+    }
+
+    public static Response renderJpegImage(final RenderParameters renderParameters,
+                                           final Integer maxTileSpecsToRender,
+                                           final ResponseHelper responseHelper,
+                                           final String parametersDigest) {
         return renderImageStream(renderParameters,
                                  Utils.JPEG_FORMAT,
                                  IMAGE_JPEG_MIME_TYPE,
                                  maxTileSpecsToRender,
-                                 responseHelper);
+                                 responseHelper,
+                                 false,
+                                 parametersDigest);
     }
 
-
     public static Response renderPngImage(final RenderParameters renderParameters,
                                           final Integer maxTileSpecsToRender,
                                           final ResponseHelper responseHelper) {
+        return renderPngImage(renderParameters, maxTileSpecsToRender, responseHelper, null);
+    }
+
+    public static Response renderPngImage(final RenderParameters renderParameters,
+                                          final Integer maxTileSpecsToRender,
+                                          final ResponseHelper responseHelper,
+                                          final String parametersDigest) {
         return renderImageStream(renderParameters,
                                  Utils.PNG_FORMAT,
                                  IMAGE_PNG_MIME_TYPE,
                                  maxTileSpecsToRender,
-                                 responseHelper);
+                                 responseHelper,
+                                 false,
+                                 parametersDigest);
     }
 
     public static Response renderTiffImage(final RenderParameters renderParameters,
@@ -97,12 +165,21 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
                                            final Integer maxTileSpecsToRender,
                                            final ResponseHelper responseHelper,
                                            final boolean render16bit) {
+        return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, render16bit, null);
+    }
+
+    public static Response renderTiffImage(final RenderParameters renderParameters,
+                                           final Integer maxTileSpecsToRender,
+                                           final ResponseHelper responseHelper,
+                                           final boolean render16bit,
+                                           final String parametersDigest) {
         return renderImageStream(renderParameters,
                                  Utils.TIFF_FORMAT,
                                  IMAGE_TIFF_MIME_TYPE,
                                  maxTileSpecsToRender,
                                  responseHelper,
-                                 render16bit);
+                                 render16bit,
+                                 parametersDigest);
     }
     public static Response renderImageStream(final RenderParameters renderParameters,
     final String format,
@@ -117,6 +194,28 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
                                              final Integer maxTileSpecsToRender,
                                              final ResponseHelper responseHelper,
                                              final boolean render16bit) {
+        return renderImageStream(renderParameters, format, mimeType, maxTileSpecsToRender, responseHelper,
+                                 render16bit, null);
+    }
+
+    /**
+     * Renders the specified parameters and returns a response that streams the encoded image.
+     *
+     * Encoded image bytes are only buffered when they can be shared:
+     * with the encoded image cache, with the materialized write-through location,
+     * or with an identical render that is already in progress.
+     * Otherwise, the rendered image is encoded directly into the response stream.
+     *
+     * @param  parametersDigest  previously computed {@link #getParametersDigest digest} of the render parameters
+     *                           (or null to compute it here).
+     */
+    public static Response renderImageStream(final RenderParameters renderParameters,
+                                             final String format,
+                                             final String mimeType,
+                                             final Integer maxTileSpecsToRender,
+                                             final ResponseHelper responseHelper,
+                                             final boolean render16bit,
+                                             final String parametersDigest) {
 
         LOG.info("renderImageStream: entry, format={}, mimeType={}", format, mimeType);
 
@@ -125,7 +224,7 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
 
             // if we need to optimize render time (e.g. when we're rendering a box from a database stack)
             // and there are too many tiles to dynamically render the result quickly,
-            // just render the tile bounding boxes instead ...
+            // render from materialized boxes when possible or just render the tile bounding boxes instead ...
             Integer maxTilesToRender = maxTileSpecsToRender;
             if (maxTileSpecsToRender == null) {
                 maxTilesToRender = RenderServerProperties.getProperties().getInteger("webService.maxTileSpecsToRender");
@@ -134,15 +233,49 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
             final boolean renderBoundingBoxesOnly = (maxTilesToRender != null) &&
                                                     (renderParameters.numberOfTileSpecs() > maxTilesToRender);
 
-            final BufferedImage targetImage = validateParametersAndRenderImage(renderParameters,
-                                                                               renderBoundingBoxesOnly,
-                                                                               render16bit);
-            final BufferedImageStreamingOutput out =
-                    new BufferedImageStreamingOutput(targetImage,
-                                                     format,
-                                                     renderParameters.isConvertToGray(),
-                                                     renderParameters.getQuality());
-            response = responseHelper.getImageByteResponse(out, mimeType);
+            // only complete renders (not bounding boxes or materialized fallbacks) are worth persisting
+            final boolean isWriteThrough = (! renderBoundingBoxesOnly) && responseHelper.isWriteThroughEnabled();
+
+            final String coalescingKey = getCoalescingKey(parametersDigest == null ?
+                                                          getParametersDigest(renderParameters) : parametersDigest,
+                                                          format,
+                                                          renderBoundingBoxesOnly,
+                                                          render16bit,
+                                                          responseHelper);
+
+            final RenderRequestCoalescer coalescer = RenderRequestCoalescer.getInstance();
+
+            if (responseHelper.isEncodedImageCacheEnabled() || isWriteThrough ||
+                coalescer.isInProgress(coalescingKey)) {
+
+                // identical concurrent requests share one render (and the resulting encoded bytes)
+                final byte[] encodedImage = coalescer.getEncodedImage(
+                        coalescingKey,
+                        () -> renderEncodedImage(renderParameters,
+                                                 format,
+                                                 renderBoundingBoxesOnly,
+                                                 render16bit,
+                                                 responseHelper.getStackMetaData()));
+                responseHelper.cacheEncodedImage(encodedImage);
+
+                if (isWriteThrough) {
+                    responseHelper.writeThroughEncodedImage(encodedImage);
+                }
+
+                response = responseHelper.getImageByteResponse(outputStream -> outputStream.write(encodedImage),
+                                                               mimeType);
+
+            } else {
+
+                final BufferedImageStreamingOutput out = renderImage(renderParameters,
+                                                                     format,
+                                                                     renderBoundingBoxesOnly,
+                                                                     render16bit,
+                                                                     responseHelper.getStackMetaData());
+                response = responseHelper.getImageByteResponse(out, mimeType);
+
+            }
+
         } catch (final Throwable t) {
             RenderServiceUtil.throwServiceException(t);
         }
@@ -171,6 +304,110 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
 
         return response;
     }
+
+    /**
+     * @param  renderParameters  parameters to digest.
+     *
+     * @return SHA-256 digest (hex string) of the canonical JSON representation of the specified parameters.
+     *
+     * @throws JsonProcessingException
+     *   if the parameters cannot be serialized.
+     */
+    public static String getParametersDigest(final RenderParameters renderParameters)
+            throws JsonProcessingException {
+        final String json = JsonUtils.FAST_MAPPER.writeValueAsString(renderParameters);
+        return Hashing.sha256().hashString(json, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * @param  parametersDigest  {@link #getParametersDigest digest} of the render parameters.
+     *
+     * @return key that identifies the encoded image for the specified request
+     *         (the parameters digest followed by output options and stack version).
+     */
+    static String getCoalescingKey(final String parametersDigest,
+                                   final String format,
+                                   final boolean renderBoundingBoxesOnly,
+                                   final boolean render16bit,
+                                   final ResponseHelper responseHelper) {
+        return parametersDigest + "|" + responseHelper.getStackVersion() + "|" + format +
+               "|" + renderBoundingBoxesOnly + "|" + render16bit;
+    }
+
+    private static byte[] renderEncodedImage(final RenderParameters renderParameters,
+                                             final String format,
+                                             final boolean renderBoundingBoxesOnly,
+                                             final boolean render16bit,
+                                             final StackMetaData stackMetaData)
+            throws IOException {
+        final BufferedImageStreamingOutput out = renderImage(renderParameters,
+                                                             format,
+                                                             renderBoundingBoxesOnly,
+                                                             render16bit,
+                                                             stackMetaData);
+        final ByteArrayOutputStream encodedImageStream = new ByteArrayOutputStream(64 * 1024);
+        out.write(encodedImageStream);
+        return encodedImageStream.toByteArray();
+    }
+
+    /**
+     * @return output that encodes the rendered image when it is written.
+     */
+    private static BufferedImageStreamingOutput renderImage(final RenderParameters renderParameters,
+                                                            final String format,
+                                                            final boolean renderBoundingBoxesOnly,
+                                                            final boolean render16bit,
+                                                            final StackMetaData stackMetaData) {
+
+        RenderParameters parametersToRender = renderParameters;
+        boolean boundingBoxesOnly = renderBoundingBoxesOnly;
+
+        if (renderBoundingBoxesOnly && (! render16bit) && (stackMetaData != null)) {
+            final RenderParameters materializedParameters = buildMaterializedParameters(renderParameters,
+                                                                                        stackMetaData);
+            if (materializedParameters != null) {
+                parametersToRender = materializedParameters;
+                boundingBoxesOnly = false;
+            }
+        }
+
+        final BufferedImage targetImage = validateParametersAndRenderImage(parametersToRender,
+                                                                           boundingBoxesOnly,
+                                                                           render16bit);
+        return new BufferedImageStreamingOutput(targetImage,
+                                                format,
+                                                renderParameters.isConvertToGray(),
+                                                renderParameters.getQuality());
+    }
+
+    /**
+     * @return parameters for rendering the requested area from the stack's materialized boxes
+     *         (mipmap pyramid levels or layer overviews) or null if none are available.
+     */
+    private static RenderParameters buildMaterializedParameters(final RenderParameters renderParameters,
+                                                                final StackMetaData stackMetaData) {
+
+        final String materializedBoxRootPath = stackMetaData.getCurrentMaterializedBoxRootPath();
+
+        RenderParameters materializedParameters = null;
+        if (materializedBoxRootPath != null) {
+
+            final StackStats stats = stackMetaData.getStats();
+            final Bounds stackBounds = stats == null ? null : stats.getStackBounds();
+
+            materializedParameters = MaterializedBoxSource.buildFallbackParameters(materializedBoxRootPath,
+                                                                                   stackBounds,
+                                                                                   renderParameters,
+                                                                                   MAX_MATERIALIZED_BOXES_TO_RENDER);
+            if (materializedParameters != null) {
+                LOG.info("buildMaterializedParameters: rendering {} materialized boxes instead of {} tiles",
+                         materializedParameters.numberOfTileSpecs(), renderParameters.numberOfTileSpecs());
+            }
+        }
+
+        return materializedParameters;
+    }
+
     private static BufferedImage validateParametersAndRenderImage(final RenderParameters renderParameters,
                                                                   final boolean renderBoundingBoxesOnly){
         return validateParametersAndRenderImage(renderParameters, renderBoundingBoxesOnly,false);
@@ -218,4 +455,6 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(RenderServiceUtil.class);
+
+    private static final int MAX_MATERIALIZED_BOXES_TO_RENDER = 1000;
 }
\ No newline at end of file
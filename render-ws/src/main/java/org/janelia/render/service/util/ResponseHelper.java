@@ -1,11 +1,15 @@
 package org.janelia.render.service.util;
 
+import java.io.File;
+
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
+import org.janelia.alignment.spec.stack.StackId;
 import org.janelia.alignment.spec.stack.StackMetaData;
 import org.janelia.render.service.model.ObjectNotFoundException;
 import org.slf4j.Logger;
@@ -22,18 +26,44 @@ public class ResponseHelper {
     public static final ResponseHelper NO_CACHE_HELPER = new ResponseHelper();
 
     private final StackMetaData stackMetaData;
+    private final String encodedImageCacheKey;
     private Response.ResponseBuilder notModifiedBuilder;
+    private File writeThroughFile;
 
     public ResponseHelper() {
         this.stackMetaData = null;
+        this.encodedImageCacheKey = null;
         this.notModifiedBuilder = null;
+        this.writeThroughFile = null;
     }
 
     public ResponseHelper(final Request request,
                           final StackMetaData stackMetaData)
             throws ObjectNotFoundException {
+        this(request, stackMetaData, null);
+    }
+
+    /**
+     * @param  request        current request.
+     * @param  stackMetaData  metadata for the stack being rendered.
+     * @param  uriInfo        URI information for the current request if encoded images for the request
+     *                        should be cached, or null to skip caching.
+     *                        Images for stacks that are still loading are never cached.
+     */
+    public ResponseHelper(final Request request,
+                          final StackMetaData stackMetaData,
+                          final UriInfo uriInfo)
+            throws ObjectNotFoundException {
 
         this.stackMetaData = stackMetaData;
+        this.writeThroughFile = null;
+
+        if ((uriInfo != null) && isStackCacheable() && EncodedImageCache.getInstance().isEnabled()) {
+            this.encodedImageCacheKey = EncodedImageCache.buildKey(uriInfo, getStackVersion());
+        } else {
+            this.encodedImageCacheKey = null;
+        }
+
         final EntityTag eTag = getStackTag();
         this.notModifiedBuilder = request.evaluatePreconditions(eTag);
         if (this.notModifiedBuilder != null) {
@@ -42,12 +72,33 @@ public class ResponseHelper {
         }
     }
 
+    /**
+     * @return metadata for the stack associated with this response (or null if there is none).
+     */
+    public StackMetaData getStackMetaData() {
+        return stackMetaData;
+    }
+
     public EntityTag getStackTag() {
         // Using eTag based upon last modified time instead of directly specifying the last modified time
         // to allow for other non-time based tags in the future.
         return new EntityTag(String.valueOf(stackMetaData.getLastModifiedTimestamp().getTime()));
     }
 
+    /**
+     * @return string identifying the current version of the stack for this response
+     *         (or null if the response is not associated with a stack).
+     */
+    public String getStackVersion() {
+        String stackVersion = null;
+        if (stackMetaData != null) {
+            final StackId stackId = stackMetaData.getStackId();
+            stackVersion = stackId.getOwner() + "/" + stackId.getProject() + "/" + stackId.getStack() + "@" +
+                           stackMetaData.getLastModifiedTimestamp().getTime();
+        }
+        return stackVersion;
+    }
+
     public boolean isModified() {
         return (notModifiedBuilder == null);
     }
@@ -67,6 +118,80 @@ public class ResponseHelper {
         return responseBuilder.build();
     }
 
+    /**
+     * @param  mimeType  mime type for the cached image.
+     *
+     * @return response containing previously cached encoded image bytes for the current request
+     *         or null if the request is not cached.
+     */
+    public Response getCachedImageResponse(final String mimeType) {
+        Response response = null;
+        if (encodedImageCacheKey != null) {
+            final byte[] encodedImage = EncodedImageCache.getInstance().get(encodedImageCacheKey);
+            if (encodedImage != null) {
+                response = getImageByteResponse(outputStream -> outputStream.write(encodedImage), mimeType);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @return true if encoded images for the current request should be cached.
+     */
+    public boolean isEncodedImageCacheEnabled() {
+        return encodedImageCacheKey != null;
+    }
+
+    /**
+     * Caches the specified encoded image bytes for the current request
+     * (does nothing if the request should not be cached).
+     *
+     * @param  encodedImage  encoded image bytes.
+     */
+    public void cacheEncodedImage(final byte[] encodedImage) {
+        if (encodedImageCacheKey != null) {
+            EncodedImageCache.getInstance().put(encodedImageCacheKey, encodedImage);
+        }
+    }
+
+    /**
+     * @param  writeThroughFile  materialized location for the image rendered for the current request
+     *                           (see {@link LargeDataTileWriter}).
+     */
+    public void setWriteThroughFile(final File writeThroughFile) {
+        this.writeThroughFile = writeThroughFile;
+    }
+
+    /**
+     * @return true if the image rendered for the current request should be written to its materialized location.
+     */
+    public boolean isWriteThroughEnabled() {
+        return (writeThroughFile != null) && isStackCacheable();
+    }
+
+    /**
+     * Writes the specified encoded image bytes to the materialized location for the current request
+     * (does nothing if no location has been set or if the stack is still loading).
+     *
+     * @param  encodedImage  encoded image bytes.
+     */
+    public void writeThroughEncodedImage(final byte[] encodedImage) {
+        if (isWriteThroughEnabled()) {
+            LargeDataTileWriter.getInstance().write(stackMetaData.getCurrentMaterializedBoxRootPath(),
+                                                    stackMetaData.getLastModifiedTimestamp().getTime(),
+                                                    writeThroughFile,
+                                                    encodedImage);
+        }
+    }
+
+    /**
+     * @return true if rendered results for this response's stack can be retained beyond the current request
+     *         (stacks that are still loading can change without their last modified timestamp changing).
+     */
+    private boolean isStackCacheable() {
+        return (stackMetaData != null) && (! stackMetaData.isLoading());
+    }
+
     public static Response.ResponseBuilder setDefaultMaxAge(final Response.ResponseBuilder builder) {
         final CacheControl cc = new CacheControl();
         cc.setMaxAge(3600); // 1 hour
@@ -179,6 +179,7 @@ public class StackMetaDataServiceTest {
                               completeStackId.getProject(),
                               completeStackId.getStack(),
                               COMPLETE,
+                              null,
                               getUriInfo());
 
         final StackMetaData stackMetaData2 = service.getStackMetaData(completeStackId.getOwner(),
@@ -0,0 +1,143 @@
+package org.janelia.render.service.dao;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.match.CanvasMatches;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.TransformSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link JacksonBsonCodec} class.
+ */
+public class JacksonBsonCodecTest {
+
+    @Test
+    public void testTileSpecCodec() throws Exception {
+        final List<TileSpec> tileSpecs;
+        try (final Reader reader = new FileReader("src/test/resources/mongodb/elastic-3903.json")) {
+            tileSpecs = TileSpec.fromJsonArray(reader);
+        }
+        for (final TileSpec tileSpec : tileSpecs) {
+            validateRoundTrip(tileSpec.getTileId(), tileSpec.toJson(), TileSpec.class);
+        }
+    }
+
+    @Test
+    public void testTransformSpecCodec() throws Exception {
+        final List<TransformSpec> transformSpecs;
+        try (final Reader reader = new FileReader("src/test/resources/mongodb/elastic-transform.json")) {
+            transformSpecs = TransformSpec.fromJsonArray(reader);
+        }
+        for (final TransformSpec transformSpec : transformSpecs) {
+            validateRoundTrip(transformSpec.getId(), transformSpec.toJson(), TransformSpec.class);
+        }
+    }
+
+    @Test
+    public void testCanvasMatchesCodec() throws Exception {
+        final List<CanvasMatches> canvasMatchesList;
+        try (final Reader reader = new FileReader("src/test/resources/mongodb/match.json")) {
+            canvasMatchesList = CanvasMatches.fromJsonArray(reader);
+        }
+        for (final CanvasMatches canvasMatches : canvasMatchesList) {
+            validateRoundTrip(canvasMatches.toString(), canvasMatches.toJson(), CanvasMatches.class);
+        }
+    }
+
+    @Test
+    public void testDecodeStoredDocument() throws Exception {
+
+        final TileSpec tileSpec;
+        try (final Reader reader = new FileReader("src/test/resources/mongodb/elastic-3903.json")) {
+            tileSpec = TileSpec.fromJsonArray(reader).get(0);
+        }
+
+        // stored documents include a mongo object id that should be ignored
+        final Document document = Document.parse(tileSpec.toJson());
+        document.put("_id", new ObjectId());
+        final BsonDocument storedDocument =
+                document.toBsonDocument(Document.class, JacksonBsonCodec.RENDER_CODEC_REGISTRY);
+
+        final Codec<TileSpec> codec = JacksonBsonCodec.RENDER_CODEC_REGISTRY.get(TileSpec.class);
+        final TileSpec decodedTileSpec = codec.decode(new BsonDocumentReader(storedDocument),
+                                                      DecoderContext.builder().build());
+
+        Assert.assertEquals("invalid JSON for decoded stored document", tileSpec.toJson(), decodedTileSpec.toJson());
+    }
+
+    @Test
+    public void testTileSpecSpatialKeys() throws Exception {
+
+        final TileSpec tileSpec;
+        try (final Reader reader = new FileReader("src/test/resources/mongodb/elastic-3903.json")) {
+            tileSpec = TileSpec.fromJsonArray(reader).get(0);
+        }
+
+        final Codec<TileSpec> codec = JacksonBsonCodec.RENDER_CODEC_REGISTRY.get(TileSpec.class);
+        final BsonDocument encodedDocument = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(encodedDocument), tileSpec, EncoderContext.builder().build());
+
+        final List<Long> expectedCells = TileSpatialKey.getCoveringCells(tileSpec.getMinX(),
+                                                                         tileSpec.getMinY(),
+                                                                         tileSpec.getMaxX(),
+                                                                         tileSpec.getMaxY(),
+                                                                         TileSpatialKey.MAX_TILE_CELLS);
+        Assert.assertNotNull("cells should be derived for test tile", expectedCells);
+
+        final BsonArray cells = encodedDocument.getArray(TileSpatialKey.CELLS_KEY);
+        Assert.assertEquals("invalid number of cells encoded", expectedCells.size(), cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            Assert.assertEquals("invalid cell " + i + " encoded",
+                                expectedCells.get(i).longValue(), cells.get(i).asInt64().getValue());
+        }
+
+        final TileSpec decodedTileSpec = codec.decode(new BsonDocumentReader(encodedDocument),
+                                                      DecoderContext.builder().build());
+        Assert.assertEquals("spatial keys should be ignored when decoding", tileSpec.toJson(), decodedTileSpec.toJson());
+    }
+
+    private <T> void validateRoundTrip(final String context,
+                                       final String json,
+                                       final Class<T> clazz)
+            throws IOException {
+
+        final Codec<T> codec = JacksonBsonCodec.RENDER_CODEC_REGISTRY.get(clazz);
+
+        final T value = codec.decode(new BsonDocumentReader(BsonDocument.parse(json)),
+                                     DecoderContext.builder().build());
+
+        final BsonDocument encodedDocument = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(encodedDocument), value, EncoderContext.builder().build());
+
+        // derived spatial keys are validated separately (see testTileSpecSpatialKeys)
+        encodedDocument.remove(TileSpatialKey.CELLS_KEY);
+
+        final BsonDocument expectedDocument = Document.parse(json).toBsonDocument(Document.class,
+                                                                                  JacksonBsonCodec.RENDER_CODEC_REGISTRY);
+
+        Assert.assertEquals("encoded document differs from parsed JSON document for " + context,
+                            expectedDocument, encodedDocument);
+
+        final T decodedValue = codec.decode(new BsonDocumentReader(encodedDocument),
+                                            DecoderContext.builder().build());
+        final String decodedJson = JsonUtils.MAPPER.writeValueAsString(decodedValue);
+
+        Assert.assertEquals("decoded JSON differs from original JSON for " + context, json, decodedJson);
+    }
+
+}
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.match.CanvasMatches;
 import org.janelia.alignment.match.MatchCollectionId;
 import org.janelia.alignment.match.MatchCollectionMetaData;
@@ -142,7 +143,7 @@ public class MatchDaoReadOnlyTest {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesWithPGroup(collectionId, null, groupId, outputStream);
+        dao.writeMatchesWithPGroup(collectionId, null, groupId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -155,12 +156,30 @@ public class MatchDaoReadOnlyTest {
         }
     }
 
+    @Test
+    public void testWriteSmileMatchesWithPGroup() throws Exception {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+
+        dao.writeMatchesWithPGroup(collectionId, null, groupId, JsonUtils.SMILE_MAPPER, outputStream);
+
+        final CanvasMatches[] canvasMatchesArray =
+                JsonUtils.SMILE_MAPPER.readValue(outputStream.toByteArray(), CanvasMatches[].class);
+
+        Assert.assertEquals("invalid number of smile matches returned",
+                            3, canvasMatchesArray.length);
+
+        for (final CanvasMatches canvasMatches : canvasMatchesArray) {
+            Assert.assertEquals("invalid source groupId: " + canvasMatches, groupId, canvasMatches.getpGroupId());
+        }
+    }
+
     @Test
     public void testWriteMatchesWithinGroup() throws Exception {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesWithinGroup(collectionId, null, groupId, outputStream);
+        dao.writeMatchesWithinGroup(collectionId, null, groupId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -200,7 +219,7 @@ public class MatchDaoReadOnlyTest {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesOutsideGroup(collectionId, null, groupId, outputStream);
+        dao.writeMatchesOutsideGroup(collectionId, null, groupId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -220,7 +239,7 @@ public class MatchDaoReadOnlyTest {
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
         final String targetGroupId = "section2";
-        dao.writeMatchesBetweenGroups(collectionId, null, groupId, targetGroupId, outputStream);
+        dao.writeMatchesBetweenGroups(collectionId, null, groupId, targetGroupId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -246,7 +265,7 @@ public class MatchDaoReadOnlyTest {
         final String targetGroupId = "section0";
         final String targetId = "tile0.1";
 
-        dao.writeMatchesBetweenObjects(collectionId, null, groupId, sourceId, targetGroupId, targetId, outputStream);
+        dao.writeMatchesBetweenObjects(collectionId, null, groupId, sourceId, targetGroupId, targetId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -274,7 +293,7 @@ public class MatchDaoReadOnlyTest {
         // "pGroupId": "section0", "pId": "tile0.1", "qGroupId": "section1", "qId": "tile1.1",
         final String sourceId = "tile1.1";
 
-        dao.writeMatchesInvolvingObject(collectionId, null, groupId, sourceId, outputStream);
+        dao.writeMatchesInvolvingObject(collectionId, null, groupId, sourceId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -301,7 +320,7 @@ public class MatchDaoReadOnlyTest {
         final String sourceId = "tile1.1";
         final String qGroupId = "section1";
 
-        dao.writeMatchesBetweenObjectAndGroup(collectionId, null, groupId, sourceId,qGroupId, outputStream);
+        dao.writeMatchesBetweenObjectAndGroup(collectionId, null, groupId, sourceId,qGroupId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -335,7 +354,7 @@ public class MatchDaoReadOnlyTest {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesWithinGroup(collectionId, mergeCollectionIdList, groupId, outputStream);
+        dao.writeMatchesWithinGroup(collectionId, mergeCollectionIdList, groupId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
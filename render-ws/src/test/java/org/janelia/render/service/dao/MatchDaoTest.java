@@ -4,6 +4,7 @@ import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.match.CanvasMatches;
 import org.janelia.alignment.match.MatchCollectionId;
 import org.janelia.alignment.match.MatchCollectionMetaData;
@@ -50,7 +51,7 @@ public class MatchDaoTest {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesInvolvingObject(collectionId, null, groupId, sourceId, outputStream);
+        dao.writeMatchesInvolvingObject(collectionId, null, groupId, sourceId, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -65,7 +66,7 @@ public class MatchDaoTest {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesOutsideGroup(collectionId, null, groupId, outputStream);
+        dao.writeMatchesOutsideGroup(collectionId, null, groupId, JsonUtils.FAST_MAPPER, outputStream);
 
         List<CanvasMatches> canvasMatchesList = getListFromStream(outputStream);
 
@@ -74,7 +75,7 @@ public class MatchDaoTest {
 
         outputStream.reset();
 
-        dao.writeMatchesWithinGroup(collectionId, null, groupId, outputStream);
+        dao.writeMatchesWithinGroup(collectionId, null, groupId, JsonUtils.FAST_MAPPER, outputStream);
 
         canvasMatchesList = getListFromStream(outputStream);
 
@@ -102,7 +103,7 @@ public class MatchDaoTest {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesOutsideGroup(collectionId, null, groupId, outputStream);
+        dao.writeMatchesOutsideGroup(collectionId, null, groupId, JsonUtils.FAST_MAPPER, outputStream);
 
         canvasMatchesList = getListFromStream(outputStream);
 
@@ -150,7 +151,7 @@ public class MatchDaoTest {
 
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
 
-        dao.writeMatchesOutsideGroup(collectionId, null, updateGroupA, outputStream);
+        dao.writeMatchesOutsideGroup(collectionId, null, updateGroupA, JsonUtils.FAST_MAPPER, outputStream);
 
         final List<CanvasMatches> retrievedList = getListFromStream(outputStream);
 
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.Bounds;
 import org.janelia.alignment.spec.ListTransformSpec;
 import org.janelia.alignment.spec.ReferenceTransformSpec;
@@ -368,6 +369,51 @@ public class RenderDaoReadOnlyTest {
 
     }
 
+    @Test
+    public void testWriteResolvedTiles() throws Exception {
+        final Double z = 3903.0;
+
+        final ResolvedTileSpecCollection expectedTiles = dao.getResolvedTiles(stackId, z);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+        dao.writeResolvedTiles(stackId, z, JsonUtils.FAST_MAPPER, outputStream);
+
+        ResolvedTileSpecCollection writtenTiles = ResolvedTileSpecCollection.fromJson(outputStream.toString());
+        Assert.assertEquals("invalid number of tiles written for z query",
+                            expectedTiles.getTileCount(), writtenTiles.getTileCount());
+        Assert.assertEquals("invalid number of transforms written for z query",
+                            expectedTiles.getTransformCount(), writtenTiles.getTransformCount());
+
+        outputStream = new ByteArrayOutputStream(1024);
+        dao.writeResolvedTiles(stackId, null, null, groupId, 3950.0, null, null, null, JsonUtils.FAST_MAPPER, outputStream);
+
+        writtenTiles = ResolvedTileSpecCollection.fromJson(outputStream.toString());
+        Assert.assertEquals("invalid number of tiles written for groupId with minX query",
+                            1, writtenTiles.getTileCount());
+    }
+
+    @Test
+    public void testWriteSmileResolvedTiles() throws Exception {
+        final Double z = 3903.0;
+
+        final ResolvedTileSpecCollection expectedTiles = dao.getResolvedTiles(stackId, z);
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+        dao.writeResolvedTiles(stackId, z, JsonUtils.SMILE_MAPPER, outputStream);
+
+        final ResolvedTileSpecCollection writtenTiles =
+                JsonUtils.SMILE_MAPPER.readValue(outputStream.toByteArray(), ResolvedTileSpecCollection.class);
+        Assert.assertEquals("invalid number of tiles written for smile z query",
+                            expectedTiles.getTileCount(), writtenTiles.getTileCount());
+        Assert.assertEquals("invalid number of transforms written for smile z query",
+                            expectedTiles.getTransformCount(), writtenTiles.getTransformCount());
+    }
+
+    @Test(expected = ObjectNotFoundException.class)
+    public void testWriteResolvedTilesWithMissingLayer() throws Exception {
+        dao.writeResolvedTiles(stackId, -1.0, JsonUtils.FAST_MAPPER, new ByteArrayOutputStream(1024));
+    }
+
     @Test
     public void testWriteTileIds() throws Exception {
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
@@ -1,23 +1,33 @@
 package org.janelia.render.service.dao;
 
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.IndexOptions;
+
+import java.awt.Rectangle;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import mpicbg.trakem2.transform.AffineModel2D;
 
+import org.bson.Document;
+import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.Bounds;
 import org.janelia.alignment.spec.LayoutData;
 import org.janelia.alignment.spec.LeafTransformSpec;
 import org.janelia.alignment.spec.ListTransformSpec;
 import org.janelia.alignment.spec.ReferenceTransformSpec;
+import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.SectionData;
 import org.janelia.alignment.spec.TileBounds;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.spec.TransformSpec;
 import org.janelia.alignment.spec.TransformSpecMetaData;
+import org.janelia.alignment.spec.stack.StackCloneProgress;
 import org.janelia.alignment.spec.stack.StackId;
 import org.janelia.alignment.spec.stack.StackMetaData;
 import org.janelia.alignment.spec.stack.StackStats;
@@ -180,6 +190,73 @@ public class RenderDaoTest {
         Assert.assertEquals("invalid z value after clone filter", newZValue, zValues.get(0));
     }
 
+    @Test
+    public void testCloneStackIntoLoadedStack() throws Exception {
+
+        final StackId toStackId = new StackId(stackId.getOwner(), stackId.getProject(), "loadedStack");
+
+        final StackMetaData fromStackMetaData = dao.getStackMetaData(stackId);
+        dao.saveStackMetaData(new StackMetaData(toStackId, fromStackMetaData.getCurrentVersion()));
+
+        // existing tiles and transforms force partitioned (rather than server side) copies
+        final TileSpec existingTileSpec = new TileSpec();
+        existingTileSpec.setTileId("existing-tile-spec");
+        existingTileSpec.setZ(999.0);
+        dao.saveTileSpec(toStackId, existingTileSpec);
+
+        final TransformSpec existingTransformSpec =
+                new LeafTransformSpec("existing-transform", null, AffineModel2D.class.getName(), "1 0 0 1 0 0");
+        dao.saveTransformSpec(toStackId, existingTransformSpec);
+
+        dao.cloneStack(stackId, toStackId, null, null);
+
+        final StackMetaData toStackMetaData = dao.ensureIndexesAndDeriveStats(dao.getStackMetaData(toStackId));
+        final StackStats fromStats = dao.ensureIndexesAndDeriveStats(fromStackMetaData).getStats();
+        final StackStats toStats = toStackMetaData.getStats();
+
+        Assert.assertEquals("invalid cloned tile count",
+                            new Long(fromStats.getTileCount() + 1), toStats.getTileCount());
+        Assert.assertEquals("invalid cloned transform count",
+                            new Long(fromStats.getTransformCount() + 1), toStats.getTransformCount());
+
+        final StackCloneProgress cloneProgress = toStackMetaData.getCloneProgress();
+        Assert.assertNotNull("clone progress missing", cloneProgress);
+        Assert.assertTrue("clone progress should be complete", cloneProgress.isComplete());
+        Assert.assertEquals("invalid clone progress source stack", stackId, cloneProgress.getFromStackId());
+        Assert.assertEquals("invalid clone progress document count",
+                            fromStats.getTileCount(), cloneProgress.getCopiedDocumentCount());
+    }
+
+    @Test
+    public void testCloneStackIntoIndexedStack() throws Exception {
+
+        final StackId toStackId = new StackId(stackId.getOwner(), stackId.getProject(), "indexedStack");
+
+        final StackMetaData fromStackMetaData = dao.getStackMetaData(stackId);
+        dao.saveStackMetaData(new StackMetaData(toStackId, fromStackMetaData.getCurrentVersion()));
+
+        // indexed (but empty) target collection should still be cloned on the server
+        final String indexName = "testCloneIndex";
+        final MongoCollection<Document> toTileCollection =
+                embeddedMongoDb.getMongoClient().getDatabase(RenderDao.RENDER_DB_NAME).getCollection(
+                        toStackId.getTileCollectionName());
+        toTileCollection.createIndex(new Document("layout.sectionId", 1), new IndexOptions().name(indexName));
+
+        dao.cloneStack(stackId, toStackId, null, null);
+
+        final List<String> indexNames = new ArrayList<>();
+        for (final Document index : toTileCollection.listIndexes()) {
+            indexNames.add(index.getString("name"));
+        }
+
+        Assert.assertTrue("target index " + indexName + " missing after clone, found " + indexNames,
+                          indexNames.contains(indexName));
+
+        final StackStats fromStats = dao.ensureIndexesAndDeriveStats(fromStackMetaData).getStats();
+        Assert.assertEquals("invalid cloned tile count",
+                            fromStats.getTileCount().longValue(), toTileCollection.count());
+    }
+
     @Test
     public void testSaveStackMetaDataAndDeriveStats() throws Exception {
 
@@ -436,6 +513,162 @@ public class RenderDaoTest {
         Assert.assertEquals("z not updated for tile '" + tileIdB + "'", updatedZ, zAfterUpdateB);
     }
 
+    @Test
+    public void testIncrementalDeriveStats() throws Exception {
+
+        final StackMetaData stackMetaData = dao.getStackMetaData(stackId);
+        dao.ensureIndexesAndDeriveStats(stackMetaData);
+
+        dao.removeTilesWithIds(stackId, Arrays.asList("134", "135", "136"));
+
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setTileId("testTileId");
+        tileSpec.setZ(999.0);
+        tileSpec.setBoundingBox(new Rectangle(-100, -200, 300, 400), 64.0);
+        dao.saveTileSpec(stackId, tileSpec);
+
+        final StackStats incrementalStats =
+                dao.ensureIndexesAndDeriveStats(dao.getStackMetaData(stackId), true).getStats();
+        final List<SectionData> incrementalSectionData = dao.getSectionData(stackId, null, null);
+
+        Assert.assertEquals("invalid tile count after incremental derivation",
+                            new Long(12), incrementalStats.getTileCount());
+        Assert.assertEquals("invalid min z after incremental derivation",
+                            999.0, incrementalStats.getStackBounds().getMinZ(), 0.01);
+        Assert.assertEquals("invalid min x after incremental derivation",
+                            -100.0, incrementalStats.getStackBounds().getMinX(), 0.01);
+
+        final StackStats fullStats = dao.ensureIndexesAndDeriveStats(dao.getStackMetaData(stackId)).getStats();
+        final List<SectionData> fullSectionData = dao.getSectionData(stackId, null, null);
+
+        Assert.assertEquals("incremental stats differ from full stats",
+                            fullStats.toJson(), incrementalStats.toJson());
+        Assert.assertEquals("incremental section data differs from full section data",
+                            JsonUtils.MAPPER.writeValueAsString(fullSectionData),
+                            JsonUtils.MAPPER.writeValueAsString(incrementalSectionData));
+
+        final StackStats unchangedStats =
+                dao.ensureIndexesAndDeriveStats(dao.getStackMetaData(stackId), true).getStats();
+
+        Assert.assertEquals("stats should not change when no layers have changed",
+                            fullStats.toJson(), unchangedStats.toJson());
+    }
+
+    @Test
+    public void testIncrementalDeriveStatsAfterTileMove() throws Exception {
+
+        final StackMetaData stackMetaData = dao.getStackMetaData(stackId);
+        dao.ensureIndexesAndDeriveStats(stackMetaData);
+
+        // re-save existing tile in a different layer
+        final TileSpec movedTileSpec = dao.getTileSpec(stackId, "134", true);
+        movedTileSpec.setZ(999.0);
+        dao.saveResolvedTiles(stackId,
+                              new ResolvedTileSpecCollection(new ArrayList<>(),
+                                                             Collections.singletonList(movedTileSpec)));
+
+        final StackStats incrementalStats =
+                dao.ensureIndexesAndDeriveStats(dao.getStackMetaData(stackId), true).getStats();
+        final List<SectionData> incrementalSectionData = dao.getSectionData(stackId, null, null);
+
+        final StackStats fullStats = dao.ensureIndexesAndDeriveStats(dao.getStackMetaData(stackId)).getStats();
+        final List<SectionData> fullSectionData = dao.getSectionData(stackId, null, null);
+
+        Assert.assertEquals("incremental stats differ from full stats after tile move",
+                            fullStats.toJson(), incrementalStats.toJson());
+        Assert.assertEquals("incremental section data differs from full section data after tile move",
+                            JsonUtils.MAPPER.writeValueAsString(fullSectionData),
+                            JsonUtils.MAPPER.writeValueAsString(incrementalSectionData));
+    }
+
+    @Test
+    public void testUpdateSpatialKeys() throws Exception {
+
+        final MongoCollection<Document> tileCollection =
+                embeddedMongoDb.getMongoClient().getDatabase(RenderDao.RENDER_DB_NAME).getCollection(
+                        stackId.getTileCollectionName());
+        final Document keyedQuery = new Document(TileSpatialKey.CELLS_KEY, new Document("$exists", true));
+
+        Assert.assertEquals("imported tiles should not have spatial keys", 0, tileCollection.count(keyedQuery));
+
+        final double z = 3903.0;
+        validateIntersectsBoxQueries("before update", tileCollection, z);
+
+        final long updatedCount = dao.updateSpatialKeys(stackId);
+
+        Assert.assertEquals("invalid number of tiles updated", 14, updatedCount);
+        Assert.assertEquals("all tiles should have spatial keys", 14, tileCollection.count(keyedQuery));
+
+        validateIntersectsBoxQueries("after update", tileCollection, z);
+
+        Assert.assertEquals("repeated update should not change any tiles", 0, dao.updateSpatialKeys(stackId));
+    }
+
+    @Test
+    public void testUpdateSpatialKeysCells() throws Exception {
+
+        final MongoCollection<Document> tileCollection =
+                embeddedMongoDb.getMongoClient().getDatabase(RenderDao.RENDER_DB_NAME).getCollection(
+                        stackId.getTileCollectionName());
+
+        final double oversizedMax = 20 * TileSpatialKey.CELL_SIZE;
+        tileCollection.insertOne(new Document("tileId", "oversized").append("z", 3903.0).append(
+                "minX", 0.0).append("minY", 0.0).append("maxX", oversizedMax).append("maxY", oversizedMax));
+        tileCollection.insertOne(new Document("tileId", "unbounded").append("z", 3903.0));
+
+        final long updatedCount = dao.updateSpatialKeys(stackId);
+
+        Assert.assertEquals("oversized and unbounded tiles should not be updated", 14, updatedCount);
+
+        final Document keyedQuery = new Document(TileSpatialKey.CELLS_KEY, new Document("$exists", true));
+        try (final MongoCursor<Document> cursor = tileCollection.find(keyedQuery).iterator()) {
+            Document document;
+            while (cursor.hasNext()) {
+                document = cursor.next();
+                final List<Long> expectedCells = TileSpatialKey.getCoveringCells(document.getDouble("minX"),
+                                                                                 document.getDouble("minY"),
+                                                                                 document.getDouble("maxX"),
+                                                                                 document.getDouble("maxY"),
+                                                                                 TileSpatialKey.MAX_TILE_CELLS);
+                Assert.assertEquals("invalid cells for tile " + document.get("tileId"),
+                                    expectedCells, document.get(TileSpatialKey.CELLS_KEY));
+            }
+        }
+
+        for (final String tileId : Arrays.asList("oversized", "unbounded")) {
+            final Document tileDocument = tileCollection.find(new Document("tileId", tileId)).first();
+            Assert.assertNotNull(tileId + " tile missing", tileDocument);
+            Assert.assertFalse(tileId + " tile should not have cells",
+                               tileDocument.containsKey(TileSpatialKey.CELLS_KEY));
+        }
+    }
+
+    private void validateIntersectsBoxQueries(final String context,
+                                              final MongoCollection<Document> tileCollection,
+                                              final double z) {
+
+        final Bounds layerBounds = dao.getLayerBounds(stackId, z);
+        final double boxWidth = layerBounds.getDeltaX() / 3;
+        final double boxHeight = layerBounds.getDeltaY() / 3;
+
+        long totalCount = 0;
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                final double x = layerBounds.getMinX() + (column * boxWidth);
+                final double y = layerBounds.getMinY() + (row * boxHeight);
+                final long rangeCount = tileCollection.count(
+                        RenderDao.getIntersectsBoxRangeQuery(z, x, y, x + boxWidth, y + boxHeight));
+                final long cellCount = tileCollection.count(
+                        RenderDao.getIntersectsBoxQuery(z, x, y, x + boxWidth, y + boxHeight));
+                Assert.assertEquals("cell and range query counts differ " + context + " for box at (" +
+                                    x + ", " + y + ")", rangeCount, cellCount);
+                totalCount += cellCount;
+            }
+        }
+
+        Assert.assertTrue("no tiles found " + context, totalCount > 0);
+    }
+
     public static void validateStackMetaData(final String context,
                                              final StackMetaData.StackState expectedState,
                                              final Integer expectedVersionNumber,
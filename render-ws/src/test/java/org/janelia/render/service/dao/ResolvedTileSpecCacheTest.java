@@ -0,0 +1,101 @@
+package org.janelia.render.service.dao;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.TransformSpec;
+import org.janelia.alignment.spec.stack.StackId;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ResolvedTileSpecCache} class.
+ */
+public class ResolvedTileSpecCacheTest {
+
+    @Test
+    public void testTileSpecs() throws Exception {
+
+        final ResolvedTileSpecCache cache = new ResolvedTileSpecCache(1024 * 1024);
+        final StackId stackId = new StackId("testOwner", "testProject", "testStack");
+        final Date timestamp = new Date(1000);
+
+        final TransformSpec transformSpec = new LeafTransformSpec("mpicbg.trakem2.transform.AffineModel2D",
+                                                                  "1 0 0 1 10 20");
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setTileId("tile-a");
+        tileSpec.setZ(1.0);
+        tileSpec.addTransformSpecs(Collections.singletonList(transformSpec));
+
+        cache.putTileSpec(stackId, timestamp, tileSpec, 100);
+
+        // changes to the original spec after it has been cached should not be visible
+        tileSpec.removeLastTransformSpec();
+
+        final TileSpec cachedTileSpec = cache.getTileSpec(stackId, new Date(timestamp.getTime()), "tile-a");
+        Assert.assertNotNull("tile spec should be cached", cachedTileSpec);
+        Assert.assertEquals("invalid tile id", "tile-a", cachedTileSpec.getTileId());
+        Assert.assertEquals("invalid number of transforms for cached spec", 1, cachedTileSpec.getTransforms().size());
+
+        // changes to a retrieved spec should not be visible to later callers
+        cachedTileSpec.removeLastTransformSpec();
+        cachedTileSpec.setZ(99.0);
+
+        final TileSpec secondCachedTileSpec = cache.getTileSpec(stackId, timestamp, "tile-a");
+        Assert.assertNotSame("cached spec should be copied", cachedTileSpec, secondCachedTileSpec);
+        Assert.assertEquals("invalid number of transforms for second cached spec",
+                            1, secondCachedTileSpec.getTransforms().size());
+        Assert.assertEquals("invalid z for second cached spec", 1.0, secondCachedTileSpec.getZ(), 0.0);
+
+        Assert.assertNull("spec should not be returned for modified stack",
+                          cache.getTileSpec(stackId, new Date(2000), "tile-a"));
+        Assert.assertEquals("out of date spec should be removed", 0, cache.size());
+    }
+
+    @Test
+    public void testTransformSpecsAndInvalidate() throws Exception {
+
+        final ResolvedTileSpecCache cache = new ResolvedTileSpecCache(1024 * 1024);
+        final StackId stackId = new StackId("testOwner", "testProject", "testStack");
+        final StackId otherStackId = new StackId("testOwner", "testProject", "otherStack");
+        final Date timestamp = new Date(1000);
+
+        final TransformSpec transformSpec = new LeafTransformSpec("transform-a",
+                                                                  null,
+                                                                  "mpicbg.trakem2.transform.AffineModel2D",
+                                                                  "1 0 0 1 10 20");
+        cache.putTransformSpec(stackId, timestamp, transformSpec, 100);
+        cache.putTransformSpec(otherStackId, timestamp, transformSpec, 100);
+
+        Assert.assertSame("transform specs should be shared",
+                          transformSpec, cache.getTransformSpec(stackId, timestamp, "transform-a"));
+        Assert.assertNull("tile and transform ids should be distinct",
+                          cache.getTileSpec(stackId, timestamp, "transform-a"));
+
+        cache.invalidate(stackId);
+
+        Assert.assertNull("transform spec should be removed for invalidated stack",
+                          cache.getTransformSpec(stackId, timestamp, "transform-a"));
+        Assert.assertNotNull("transform spec should remain for other stack",
+                             cache.getTransformSpec(otherStackId, timestamp, "transform-a"));
+    }
+
+    @Test
+    public void testWeightLimit() throws Exception {
+
+        final ResolvedTileSpecCache cache = new ResolvedTileSpecCache(1000);
+        final StackId stackId = new StackId("testOwner", "testProject", "testStack");
+        final Date timestamp = new Date(1000);
+
+        for (int i = 0; i < 50; i++) {
+            final TileSpec tileSpec = new TileSpec();
+            tileSpec.setTileId("tile-" + i);
+            cache.putTileSpec(stackId, timestamp, tileSpec, 100);
+        }
+
+        Assert.assertTrue("cache size " + cache.size() + " exceeds weight limit", cache.size() <= 10);
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.janelia.render.service.dao;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.janelia.alignment.spec.stack.StackId;
+import org.janelia.alignment.spec.stack.StackMetaData;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link StackMetaDataCache} class.
+ */
+public class StackMetaDataCacheTest {
+
+    private final StackId stackId = new StackId("testOwner", "testProject", "testStack");
+
+    @Test
+    public void testExpiration() throws Exception {
+
+        final AtomicLong nanos = new AtomicLong(0);
+        final Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+
+        final StackMetaDataCache cache = new StackMetaDataCache(10, 5, ticker);
+        final AtomicInteger loadCount = new AtomicInteger(0);
+
+        final StackMetaData firstLoad = cache.get(stackId, () -> load(loadCount));
+        final StackMetaData secondLoad = cache.get(stackId, () -> load(loadCount));
+
+        Assert.assertSame("cached metadata should be returned", firstLoad, secondLoad);
+        Assert.assertEquals("invalid number of loads before expiration", 1, loadCount.get());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(6));
+
+        final StackMetaData thirdLoad = cache.get(stackId, () -> load(loadCount));
+
+        Assert.assertNotSame("expired metadata should be reloaded", firstLoad, thirdLoad);
+        Assert.assertEquals("invalid number of loads after expiration", 2, loadCount.get());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+
+        final StackMetaDataCache cache = new StackMetaDataCache(10, 60);
+        final AtomicInteger loadCount = new AtomicInteger(0);
+
+        cache.get(stackId, () -> load(loadCount));
+        cache.invalidate(stackId);
+        cache.get(stackId, () -> load(loadCount));
+
+        Assert.assertEquals("invalidated metadata should be reloaded", 2, loadCount.get());
+
+        // a load that overlaps an invalidation may have read old data, so it should not be cached
+        cache.invalidate(stackId);
+        cache.get(stackId, () -> {
+            cache.invalidate(stackId);
+            return load(loadCount);
+        });
+
+        Assert.assertEquals("overlapping load should not be cached", 0, cache.size());
+    }
+
+    @Test
+    public void testMissingStackIsNotCached() throws Exception {
+
+        final StackMetaDataCache cache = new StackMetaDataCache(10, 60);
+
+        Assert.assertNull("missing stack should return null", cache.get(stackId, () -> null));
+        Assert.assertEquals("missing stack should not be cached", 0, cache.size());
+    }
+
+    private StackMetaData load(final AtomicInteger loadCount) {
+        loadCount.incrementAndGet();
+        return new StackMetaData(stackId, null);
+    }
+
+}
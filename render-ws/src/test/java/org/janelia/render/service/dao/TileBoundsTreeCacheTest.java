@@ -0,0 +1,80 @@
+package org.janelia.render.service.dao;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.janelia.alignment.spec.TileBounds;
+import org.janelia.alignment.spec.TileBoundsRTree;
+import org.janelia.alignment.spec.stack.StackId;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TileBoundsTreeCache} class.
+ */
+public class TileBoundsTreeCacheTest {
+
+    @Test
+    public void testGet() throws Exception {
+
+        final TileBoundsTreeCache cache = new TileBoundsTreeCache(10);
+        final StackId stackId = new StackId("testOwner", "testProject", "testStack");
+        final Double z = 1.0;
+        final AtomicInteger loadCount = new AtomicInteger(0);
+        final Callable<TileBoundsRTree> loader = () -> {
+            loadCount.incrementAndGet();
+            return buildTree(z);
+        };
+
+        final Date firstTimestamp = new Date(1000);
+        final TileBoundsRTree firstTree = cache.get(stackId, z, firstTimestamp, loader);
+        Assert.assertEquals("invalid load count after first get", 1, loadCount.get());
+
+        final TileBoundsRTree cachedTree = cache.get(stackId, z, new Date(firstTimestamp.getTime()), loader);
+        Assert.assertSame("cached tree should be returned for same timestamp", firstTree, cachedTree);
+        Assert.assertEquals("invalid load count after cached get", 1, loadCount.get());
+
+        final TileBoundsRTree modifiedTree = cache.get(stackId, z, new Date(2000), loader);
+        Assert.assertNotSame("tree should be rebuilt for modified timestamp", firstTree, modifiedTree);
+        Assert.assertEquals("invalid load count after modified get", 2, loadCount.get());
+
+        cache.get(stackId, 2.0, new Date(2000), loader);
+        Assert.assertEquals("invalid cache size before invalidate", 2, cache.size());
+
+        cache.invalidate(new StackId("testOwner", "testProject", "otherStack"));
+        Assert.assertEquals("invalidate of other stack should not remove trees", 2, cache.size());
+
+        cache.invalidate(stackId);
+        Assert.assertEquals("invalid cache size after invalidate", 0, cache.size());
+
+        final List<TileBounds> tiles = modifiedTree.findTilesIntersectingBox(90.0, 90.0, 110.0, 110.0);
+        Assert.assertEquals("invalid number of intersecting tiles", 2, tiles.size());
+    }
+
+    @Test
+    public void testEvictionIsBasedOnTileCount() throws Exception {
+
+        // each tree has 3 tiles, so only one tree fits
+        final TileBoundsTreeCache cache = new TileBoundsTreeCache(5);
+        final StackId stackId = new StackId("testOwner", "testProject", "testStack");
+        final Date timestamp = new Date(1000);
+
+        cache.get(stackId, 1.0, timestamp, () -> buildTree(1.0));
+        Assert.assertEquals("invalid cache size after first get", 1, cache.size());
+
+        cache.get(stackId, 2.0, timestamp, () -> buildTree(2.0));
+        Assert.assertEquals("first tree should have been evicted to make room for second tree",
+                            1, cache.size());
+    }
+
+    private TileBoundsRTree buildTree(final Double z) {
+        return new TileBoundsRTree(z,
+                                   Arrays.asList(new TileBounds("a", "1.0", z, 0.0, 0.0, 100.0, 100.0),
+                                                 new TileBounds("b", "1.0", z, 95.0, 0.0, 195.0, 100.0),
+                                                 new TileBounds("c", "1.0", z, 300.0, 300.0, 400.0, 400.0)));
+    }
+
+}
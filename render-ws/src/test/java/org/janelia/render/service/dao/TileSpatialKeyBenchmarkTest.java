@@ -0,0 +1,145 @@
+package org.janelia.render.service.dao;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.stack.StackId;
+import org.janelia.test.EmbeddedMongoDb;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the number of index keys examined by spatial cell key and bounds range box intersection queries
+ * for a synthetic stack with large layers.
+ */
+public class TileSpatialKeyBenchmarkTest {
+
+    private static EmbeddedMongoDb embeddedMongoDb;
+    private static MongoDatabase renderDatabase;
+    private static MongoCollection<Document> tileCollection;
+
+    @BeforeClass
+    public static void before() throws Exception {
+
+        embeddedMongoDb = new EmbeddedMongoDb(RenderDao.RENDER_DB_NAME);
+        renderDatabase = embeddedMongoDb.getMongoClient().getDatabase(RenderDao.RENDER_DB_NAME)
+                .withCodecRegistry(JacksonBsonCodec.RENDER_CODEC_REGISTRY);
+
+        final StackId stackId = new StackId("testOwner", "testProject", "spatialKeyBenchmark");
+        tileCollection = renderDatabase.getCollection(stackId.getTileCollectionName());
+
+        final List<TileSpec> tileSpecs = new ArrayList<>();
+        for (int z = 1; z <= LAYER_COUNT; z++) {
+            for (int row = 0; row < GRID_SIZE; row++) {
+                for (int column = 0; column < GRID_SIZE; column++) {
+                    final TileSpec tileSpec = new TileSpec();
+                    tileSpec.setTileId(z + "." + row + "." + column);
+                    tileSpec.setZ((double) z);
+                    tileSpec.setBoundingBox(new Rectangle(column * TILE_STEP, row * TILE_STEP,
+                                                          TILE_WIDTH, TILE_HEIGHT),
+                                            64.0);
+                    tileSpecs.add(tileSpec);
+                }
+            }
+        }
+
+        // tile documents are saved with the codec so that spatial keys are derived just as they are for the DAO
+        tileCollection.withDocumentClass(TileSpec.class).insertMany(tileSpecs);
+
+        // same key definitions as the DAO's box intersection indexes
+        tileCollection.createIndex(new Document("z", 1).append("minY", 1).append("minX", 1).append(
+                                           "maxY", 1).append("maxX", 1).append("tileId", 1),
+                                   new IndexOptions().name(RANGE_INDEX_NAME));
+        tileCollection.createIndex(new Document("z", 1).append(TileSpatialKey.CELLS_KEY, 1),
+                                   new IndexOptions().name("K"));
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        embeddedMongoDb.stop();
+    }
+
+    @Test
+    public void testKeysExamined() throws Exception {
+
+        final double z = 2.0;
+        final double layerSize = GRID_SIZE * TILE_STEP;
+        final double boxSize = 2000.0;
+
+        final double[] boxOffsets = { 0.1, 0.5, 0.9 };
+
+        long totalRangeKeys = 0;
+        long totalCellKeys = 0;
+
+        for (final double yOffset : boxOffsets) {
+            for (final double xOffset : boxOffsets) {
+
+                final double x = layerSize * xOffset;
+                final double y = layerSize * yOffset;
+
+                final Document rangeQuery =
+                        RenderDao.getIntersectsBoxRangeQuery(z, x, y, x + boxSize, y + boxSize);
+                final Document cellQuery =
+                        RenderDao.getIntersectsBoxQuery(z, x, y, x + boxSize, y + boxSize);
+
+                final Document rangeStats = explain(rangeQuery, RANGE_INDEX_NAME);
+                final Document cellStats = explain(cellQuery, null);
+
+                Assert.assertEquals("cell and range queries returned different results for box at (" +
+                                    x + ", " + y + ")",
+                                    rangeStats.getInteger("nReturned"), cellStats.getInteger("nReturned"));
+
+                final long rangeKeys = rangeStats.getInteger("totalKeysExamined");
+                final long cellKeys = cellStats.getInteger("totalKeysExamined");
+
+                LOG.info("testKeysExamined: box at ({}, {}) returned {} tiles, keys examined: range={}, cell={}",
+                         x, y, cellStats.getInteger("nReturned"), rangeKeys, cellKeys);
+
+                totalRangeKeys += rangeKeys;
+                totalCellKeys += cellKeys;
+            }
+        }
+
+        LOG.info("testKeysExamined: total keys examined for {} tiles per layer: range={}, cell={}",
+                 GRID_SIZE * GRID_SIZE, totalRangeKeys, totalCellKeys);
+
+        Assert.assertTrue("cell queries examined " + totalCellKeys + " keys but range queries only examined " +
+                          totalRangeKeys + " keys",
+                          totalCellKeys < totalRangeKeys);
+    }
+
+    private Document explain(final Document query,
+                             final String hint) {
+
+        final Document find = new Document("find", tileCollection.getNamespace().getCollectionName()).append(
+                "filter", query);
+        if (hint != null) {
+            find.append("hint", hint);
+        }
+
+        final Document result = renderDatabase.runCommand(new Document("explain", find).append(
+                "verbosity", "executionStats"));
+
+        return (Document) result.get("executionStats");
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(TileSpatialKeyBenchmarkTest.class);
+
+    private static final int LAYER_COUNT = 3;
+    private static final int GRID_SIZE = 40;
+    private static final int TILE_WIDTH = 2560;
+    private static final int TILE_HEIGHT = 2160;
+    private static final int TILE_STEP = 2300;
+    private static final String RANGE_INDEX_NAME = "I";
+}
@@ -0,0 +1,61 @@
+package org.janelia.render.service.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TileSpatialKey} class.
+ */
+public class TileSpatialKeyTest {
+
+    @Test
+    public void testGetCellKey() throws Exception {
+        Assert.assertEquals("invalid key for origin", 0L, TileSpatialKey.getCellKey(0, 0));
+        Assert.assertEquals("invalid key for column 1", 1L, TileSpatialKey.getCellKey(1, 0));
+        Assert.assertEquals("invalid key for row 1", 2L, TileSpatialKey.getCellKey(0, 1));
+        Assert.assertEquals("invalid key for column 3, row 5", 39L, TileSpatialKey.getCellKey(3, 5));
+    }
+
+    @Test
+    public void testGetCoveringCells() throws Exception {
+
+        final double cellSize = TileSpatialKey.CELL_SIZE;
+
+        List<Long> cells = TileSpatialKey.getCoveringCells(10.0, 10.0, 20.0, 20.0, 10);
+        Assert.assertNotNull("cells should be found for small box", cells);
+        Assert.assertEquals("invalid number of cells for small box", 1, cells.size());
+
+        cells = TileSpatialKey.getCoveringCells(cellSize - 10, 10.0, cellSize + 10, cellSize + 10, 10);
+        Assert.assertNotNull("cells should be found for box crossing cell boundaries", cells);
+        Assert.assertEquals("invalid number of cells for box crossing cell boundaries", 4, cells.size());
+
+        final List<Long> sortedCells = new ArrayList<>(cells);
+        sortedCells.sort(null);
+        Assert.assertEquals("cells should be sorted", sortedCells, cells);
+
+        Assert.assertNull("cells should not be returned for box covering too many cells",
+                          TileSpatialKey.getCoveringCells(0.0, 0.0, 10 * cellSize, 10 * cellSize, 10));
+
+        Assert.assertNull("cells should not be returned for undefined bounds",
+                          TileSpatialKey.getCoveringCells(null, 0.0, 10.0, 10.0, 10));
+    }
+
+    @Test
+    public void testTouchingBoundsShareCells() throws Exception {
+
+        final double cellSize = TileSpatialKey.CELL_SIZE;
+
+        final List<Long> tileCells = TileSpatialKey.getCoveringCells(-500.0, 100.0, cellSize, 200.0, 10);
+        final List<Long> boxCells = TileSpatialKey.getCoveringCells(cellSize, 200.0, cellSize + 100, 300.0, 10);
+
+        Assert.assertNotNull("tile cells should be found", tileCells);
+        Assert.assertNotNull("box cells should be found", boxCells);
+
+        boxCells.retainAll(tileCells);
+        Assert.assertEquals("touching bounds should share one cell", 1, boxCells.size());
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.janelia.render.service.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompressedRequestInterceptor} class.
+ */
+public class CompressedRequestInterceptorTest {
+
+    @Test
+    public void testUncompressedRequests() throws Exception {
+        final InputStream rawStream = new ByteArrayInputStream(DATA);
+        Assert.assertNull("missing encoding should not be decoded",
+                          CompressedRequestInterceptor.getDecodedInputStream(null, rawStream));
+        Assert.assertNull("identity encoding should not be decoded",
+                          CompressedRequestInterceptor.getDecodedInputStream("identity", rawStream));
+    }
+
+    @Test
+    public void testGzipRequests() throws Exception {
+        final byte[] compressedData = compress(GZIPOutputStream::new);
+        validateDecodedData("gzip", compressedData);
+        validateDecodedData("x-gzip", compressedData);
+        validateDecodedData(" GZIP ", compressedData);
+    }
+
+    @Test
+    public void testDeflateRequests() throws Exception {
+        validateDecodedData("deflate", compress(DeflaterOutputStream::new));
+    }
+
+    private void validateDecodedData(final String contentEncoding,
+                                     final byte[] compressedData)
+            throws Exception {
+
+        final InputStream decodedStream =
+                CompressedRequestInterceptor.getDecodedInputStream(contentEncoding,
+                                                                   new ByteArrayInputStream(compressedData));
+
+        Assert.assertNotNull(contentEncoding + " encoding should be decoded", decodedStream);
+        Assert.assertArrayEquals("invalid data decoded for " + contentEncoding + " encoding",
+                                 DATA, IOUtils.toByteArray(decodedStream));
+    }
+
+    private interface CompressingStreamFactory {
+        OutputStream wrap(final OutputStream outputStream) throws Exception;
+    }
+
+    private static byte[] compress(final CompressingStreamFactory factory)
+            throws Exception {
+        final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (final OutputStream compressingStream = factory.wrap(byteStream)) {
+            compressingStream.write(DATA);
+        }
+        return byteStream.toByteArray();
+    }
+
+    private static final byte[] DATA =
+            "[ { \"tileId\": \"1.1\", \"z\": 1.0 }, { \"tileId\": \"1.2\", \"z\": 1.0 } ]".getBytes(StandardCharsets.UTF_8);
+}
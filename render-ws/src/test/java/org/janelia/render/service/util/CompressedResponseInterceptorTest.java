@@ -0,0 +1,114 @@
+package org.janelia.render.service.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompressedResponseInterceptor} class.
+ */
+public class CompressedResponseInterceptorTest {
+
+    @Test
+    public void testGetAcceptedEncoding() throws Exception {
+        Assert.assertNull("null header should not be accepted",
+                          CompressedResponseInterceptor.getAcceptedEncoding(null));
+        Assert.assertNull("identity should not be accepted",
+                          CompressedResponseInterceptor.getAcceptedEncoding("identity"));
+        Assert.assertEquals("gzip should be preferred",
+                            "gzip", CompressedResponseInterceptor.getAcceptedEncoding("deflate, gzip"));
+        Assert.assertEquals("deflate should be accepted when gzip is refused",
+                            "deflate", CompressedResponseInterceptor.getAcceptedEncoding("gzip;q=0, deflate"));
+        Assert.assertNull("zero quality encodings should not be accepted",
+                          CompressedResponseInterceptor.getAcceptedEncoding("gzip;q=0"));
+        Assert.assertEquals("wildcard should accept gzip",
+                            "gzip", CompressedResponseInterceptor.getAcceptedEncoding("*"));
+        Assert.assertEquals("explicitly refused gzip should take precedence over wildcard",
+                            "deflate", CompressedResponseInterceptor.getAcceptedEncoding("gzip;q=0, *"));
+        Assert.assertEquals("explicitly refused gzip should take precedence over preceding wildcard",
+                            "deflate", CompressedResponseInterceptor.getAcceptedEncoding("*, gzip;q=0"));
+        Assert.assertNull("explicitly refused encodings should take precedence over wildcard",
+                          CompressedResponseInterceptor.getAcceptedEncoding("gzip;q=0, deflate;q=0, *"));
+        Assert.assertNull("refused wildcard should not accept anything",
+                          CompressedResponseInterceptor.getAcceptedEncoding("*;q=0"));
+    }
+
+    @Test
+    public void testIsCompressible() throws Exception {
+        Assert.assertTrue("json should be compressible",
+                          CompressedResponseInterceptor.isCompressible(MediaType.APPLICATION_JSON_TYPE));
+        Assert.assertTrue("text should be compressible",
+                          CompressedResponseInterceptor.isCompressible(MediaType.TEXT_PLAIN_TYPE));
+        Assert.assertFalse("images should not be compressible",
+                           CompressedResponseInterceptor.isCompressible(MediaType.valueOf("image/png")));
+        Assert.assertFalse("wildcard should not be compressible",
+                           CompressedResponseInterceptor.isCompressible(MediaType.WILDCARD_TYPE));
+    }
+
+    @Test
+    public void testSmallResponseIsNotCompressed() throws Exception {
+
+        final MultivaluedMap<String, Object> responseHeaders = new MultivaluedHashMap<>();
+        final ByteArrayOutputStream targetStream = new ByteArrayOutputStream();
+        final CompressedResponseInterceptor.ThresholdCompressingOutputStream outputStream =
+                new CompressedResponseInterceptor.ThresholdCompressingOutputStream(targetStream,
+                                                                                   "gzip",
+                                                                                   1024,
+                                                                                   responseHeaders);
+        final byte[] data = "[ \"small\" ]".getBytes(StandardCharsets.UTF_8);
+        outputStream.write(data);
+        outputStream.finish();
+
+        Assert.assertFalse("small response should not be compressed", outputStream.isCompressing());
+        Assert.assertNull("content encoding should not be set",
+                          responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertArrayEquals("invalid data written", data, targetStream.toByteArray());
+    }
+
+    @Test
+    public void testLargeResponseIsCompressed() throws Exception {
+
+        final MultivaluedMap<String, Object> responseHeaders = new MultivaluedHashMap<>();
+        final ByteArrayOutputStream targetStream = new ByteArrayOutputStream();
+        final CompressedResponseInterceptor.ThresholdCompressingOutputStream outputStream =
+                new CompressedResponseInterceptor.ThresholdCompressingOutputStream(targetStream,
+                                                                                   "gzip",
+                                                                                   1024,
+                                                                                   responseHeaders);
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"pId\": \"tile-").append(i).append("\"}");
+        }
+        json.append(']');
+
+        final byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+        outputStream.write(data, 0, 100);
+        Assert.assertFalse("compression should not start before threshold", outputStream.isCompressing());
+        outputStream.write(data, 100, data.length - 100);
+        outputStream.finish();
+
+        Assert.assertTrue("large response should be compressed", outputStream.isCompressing());
+        Assert.assertEquals("invalid content encoding",
+                            "gzip", responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertTrue("compressed data should be smaller than original data",
+                          targetStream.size() < data.length);
+
+        final byte[] decompressedData =
+                IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(targetStream.toByteArray())));
+        Assert.assertArrayEquals("invalid decompressed data", data, decompressedData);
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.janelia.render.service.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link EncodedImageCache} class.
+ */
+public class EncodedImageCacheTest {
+
+    private File diskDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        diskDirectory = Files.createTempDirectory("encoded-image-cache-test").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(diskDirectory);
+    }
+
+    @Test
+    public void testBuildKey() throws Exception {
+
+        final MultivaluedMap<String, String> queryA = new MultivaluedHashMap<>();
+        queryA.add("scale", "0.5");
+        queryA.add("filter", "true");
+
+        final MultivaluedMap<String, String> queryB = new MultivaluedHashMap<>();
+        queryB.add("filter", "true");
+        queryB.add("scale", "0.5");
+
+        final String path = "/v1/owner/o/project/p/stack/s/z/1/jpeg-image";
+
+        final String keyA = EncodedImageCache.buildKey(path, queryA, "o/p/s@1");
+        Assert.assertEquals("query parameter order should not matter",
+                            keyA, EncodedImageCache.buildKey("v1/owner/o//project/p/stack/s/z/1/jpeg-image",
+                                                             queryB,
+                                                             "o/p/s@1"));
+        Assert.assertFalse("stack version should matter",
+                           keyA.equals(EncodedImageCache.buildKey(path, queryA, "o/p/s@2")));
+        Assert.assertFalse("query parameters should matter",
+                           keyA.equals(EncodedImageCache.buildKey(path, null, "o/p/s@1")));
+    }
+
+    @Test
+    public void testMemoryOnlyCache() throws Exception {
+
+        final EncodedImageCache cache = new EncodedImageCache(100, null, 0);
+
+        cache.put("a", new byte[60]);
+        Assert.assertNotNull("a should be cached", cache.get("a"));
+
+        cache.put("b", new byte[60]);
+        Assert.assertNotNull("b should be cached", cache.get("b"));
+        Assert.assertNull("a should have been evicted", cache.get("a"));
+
+        cache.put("c", new byte[200]);
+        Assert.assertNull("c is larger than the cache and should not be cached", cache.get("c"));
+    }
+
+    @Test
+    public void testDiskOverflow() throws Exception {
+
+        final EncodedImageCache cache = new EncodedImageCache(100, diskDirectory, 1000);
+
+        final byte[] bytesA = new byte[60];
+        bytesA[0] = 1;
+        cache.put("a", bytesA);
+        cache.put("b", new byte[60]);
+
+        final byte[] cachedA = cache.get("a");
+        Assert.assertNotNull("a should have been moved to disk", cachedA);
+        Assert.assertArrayEquals("invalid bytes read from disk", bytesA, cachedA);
+        Assert.assertEquals("invalid number of files in " + diskDirectory,
+                            1, listFiles().length);
+
+        cache.invalidateAll();
+        Assert.assertNull("a should have been removed", cache.get("a"));
+        Assert.assertEquals("files should have been removed from " + diskDirectory,
+                            0, listFiles().length);
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        final EncodedImageCache cache = EncodedImageCache.DISABLED_CACHE;
+        Assert.assertFalse("cache should be disabled", cache.isEnabled());
+        cache.put("a", new byte[1]);
+        Assert.assertNull("nothing should be cached", cache.get("a"));
+    }
+
+    private File[] listFiles() {
+        final File[] files = diskDirectory.listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.janelia.render.service.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link LargeDataTileWriter} class.
+ */
+public class LargeDataTileWriterTest {
+
+    private File rootDirectory;
+    private String rootPath;
+
+    @Before
+    public void setup() throws IOException {
+        rootDirectory = Files.createTempDirectory("large-data-tile-writer-test").toFile();
+        rootPath = rootDirectory.getAbsolutePath();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(rootDirectory);
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+
+        final LargeDataTileWriter writer = new LargeDataTileWriter(1000);
+        final File tileFile = getTileFile(0, 0);
+        final byte[] encodedTile = { 1, 2, 3 };
+
+        writer.write(rootPath, 1L, tileFile, encodedTile);
+
+        Assert.assertTrue(tileFile + " should have been written", tileFile.exists());
+        Assert.assertArrayEquals("invalid bytes written", encodedTile, Files.readAllBytes(tileFile.toPath()));
+        Assert.assertEquals("invalid total bytes", 3, writer.getTotalBytes());
+
+        final File[] tileDirectoryFiles = tileFile.getParentFile().listFiles();
+        Assert.assertNotNull("tile directory should exist", tileDirectoryFiles);
+        Assert.assertEquals("temporary files should not remain", 1, tileDirectoryFiles.length);
+    }
+
+    @Test
+    public void testSizeBound() throws Exception {
+
+        final LargeDataTileWriter writer = new LargeDataTileWriter(100);
+        final File firstTileFile = getTileFile(0, 0);
+        final File secondTileFile = getTileFile(0, 1);
+
+        writer.write(rootPath, 1L, firstTileFile, new byte[60]);
+        writer.write(rootPath, 1L, secondTileFile, new byte[60]);
+
+        Assert.assertFalse("oldest tile should have been removed", firstTileFile.exists());
+        Assert.assertTrue("newest tile should have been kept", secondTileFile.exists());
+        Assert.assertEquals("invalid total bytes", 60, writer.getTotalBytes());
+
+        final File largeTileFile = getTileFile(0, 2);
+        writer.write(rootPath, 1L, largeTileFile, new byte[200]);
+        Assert.assertFalse("tile larger than bound should not have been written", largeTileFile.exists());
+    }
+
+    @Test
+    public void testStaleTilesAreRemoved() throws Exception {
+
+        final File writtenTileFile = getTileFile(0, 0);
+        final File generatedTileFile = getTileFile(0, 1);
+        FileUtils.writeByteArrayToFile(generatedTileFile, new byte[] { 9 });
+
+        new LargeDataTileWriter(1000).write(rootPath, 1L, writtenTileFile, new byte[] { 1 });
+
+        // simulate server restart
+        final LargeDataTileWriter writer = new LargeDataTileWriter(1000);
+
+        writer.removeStaleTiles(rootPath, 1L);
+        Assert.assertTrue("tile for current stack version should be kept", writtenTileFile.exists());
+        Assert.assertEquals("invalid total bytes after reload", 1, writer.getTotalBytes());
+
+        writer.removeStaleTiles(rootPath, 2L);
+        Assert.assertFalse("tile for previous stack version should be removed", writtenTileFile.exists());
+        Assert.assertTrue("generated tile should not be removed", generatedTileFile.exists());
+        Assert.assertEquals("invalid total bytes after removal", 0, writer.getTotalBytes());
+    }
+
+    @Test
+    public void testExistingTilesAreNotReplaced() throws Exception {
+
+        final File generatedTileFile = getTileFile(0, 0);
+        FileUtils.writeByteArrayToFile(generatedTileFile, new byte[] { 9 });
+
+        final File tempFile = new File(rootDirectory, "rendered.tmp");
+        FileUtils.writeByteArrayToFile(tempFile, new byte[] { 1, 2 });
+
+        Assert.assertFalse("existing tile should not be replaced",
+                           LargeDataTileWriter.linkWithoutReplacing(tempFile.toPath(), generatedTileFile.toPath()));
+        Assert.assertArrayEquals("existing tile should not be modified",
+                                 new byte[] { 9 }, Files.readAllBytes(generatedTileFile.toPath()));
+
+        final File newTileFile = getTileFile(0, 1);
+        Assert.assertTrue("missing tile should be created",
+                          LargeDataTileWriter.linkWithoutReplacing(tempFile.toPath(), newTileFile.toPath()));
+        Assert.assertArrayEquals("invalid bytes for created tile",
+                                 new byte[] { 1, 2 }, Files.readAllBytes(newTileFile.toPath()));
+    }
+
+    @Test
+    public void testDisabledWriter() throws Exception {
+        final File tileFile = getTileFile(0, 0);
+        final LargeDataTileWriter writer = LargeDataTileWriter.DISABLED_WRITER;
+        Assert.assertFalse("writer should be disabled", writer.isEnabled());
+        writer.write(rootPath, 1L, tileFile, new byte[] { 1 });
+        Assert.assertFalse("nothing should be written", tileFile.exists());
+    }
+
+    private File getTileFile(final int row,
+                             final int column) {
+        return new File(rootDirectory, "8x8/0/5/" + row + "/" + column + ".png");
+    }
+
+}
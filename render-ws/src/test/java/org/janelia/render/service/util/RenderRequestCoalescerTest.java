@@ -0,0 +1,136 @@
+package org.janelia.render.service.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.janelia.alignment.RenderParameters;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RenderRequestCoalescer} class.
+ */
+public class RenderRequestCoalescerTest {
+
+    @Test
+    public void testIdenticalRequestsShareOneRender() throws Exception {
+
+        final RenderRequestCoalescer coalescer = new RenderRequestCoalescer();
+        final AtomicInteger renderCount = new AtomicInteger(0);
+        final CountDownLatch renderStarted = new CountDownLatch(1);
+        final CountDownLatch finishRender = new CountDownLatch(1);
+        final byte[] renderedBytes = { 1, 2, 3 };
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final Future<byte[]> firstResult = executorService.submit(
+                    () -> coalescer.getEncodedImage("a", () -> {
+                        renderCount.incrementAndGet();
+                        renderStarted.countDown();
+                        finishRender.await(10, TimeUnit.SECONDS);
+                        return renderedBytes;
+                    }));
+
+            Assert.assertTrue("first render never started", renderStarted.await(10, TimeUnit.SECONDS));
+
+            final Future<byte[]> secondResult = executorService.submit(
+                    () -> coalescer.getEncodedImage("a", () -> {
+                        renderCount.incrementAndGet();
+                        return new byte[] { 4 };
+                    }));
+
+            // give second request time to find the in progress render before letting it finish
+            Thread.sleep(100);
+            finishRender.countDown();
+
+            Assert.assertArrayEquals("invalid first result", renderedBytes, firstResult.get(10, TimeUnit.SECONDS));
+            Assert.assertArrayEquals("invalid second result", renderedBytes, secondResult.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals("identical requests should only be rendered once", 1, renderCount.get());
+            Assert.assertEquals("completed renders should not be retained", 0, coalescer.getInProgressCount());
+
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIsInProgress() throws Exception {
+
+        final RenderRequestCoalescer coalescer = new RenderRequestCoalescer();
+        final RenderParameters renderParameters = new RenderParameters(null, 0, 0, 100, 100, 0.5);
+        final String digest = RenderServiceUtil.getParametersDigest(renderParameters);
+
+        final RenderParameters sameParameters = new RenderParameters(null, 0, 0, 100, 100, 0.5);
+        final RenderParameters otherParameters = new RenderParameters(null, 0, 0, 100, 100, 0.25);
+
+        Assert.assertEquals("invalid digest length", 64, digest.length());
+        Assert.assertEquals("digest should be stable",
+                            digest, RenderServiceUtil.getParametersDigest(sameParameters));
+        Assert.assertFalse("different parameters should have different digests",
+                           digest.equals(RenderServiceUtil.getParametersDigest(otherParameters)));
+
+        final CountDownLatch renderStarted = new CountDownLatch(1);
+        final CountDownLatch finishRender = new CountDownLatch(1);
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final Future<byte[]> result = executorService.submit(
+                    () -> coalescer.getEncodedImage(digest + "|png", () -> {
+                        renderStarted.countDown();
+                        finishRender.await(10, TimeUnit.SECONDS);
+                        return new byte[] { 1 };
+                    }));
+
+            Assert.assertTrue("render never started", renderStarted.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue("render should be in progress", coalescer.isInProgress(digest));
+            Assert.assertFalse("other render should not be in progress", coalescer.isInProgress("other"));
+
+            finishRender.countDown();
+            result.get(10, TimeUnit.SECONDS);
+
+            Assert.assertFalse("completed render should not be in progress", coalescer.isInProgress(digest));
+
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialRequestsAreNotShared() throws Exception {
+
+        final RenderRequestCoalescer coalescer = new RenderRequestCoalescer();
+        final AtomicInteger renderCount = new AtomicInteger(0);
+
+        coalescer.getEncodedImage("a", () -> new byte[] { (byte) renderCount.incrementAndGet() });
+        final byte[] secondResult =
+                coalescer.getEncodedImage("a", () -> new byte[] { (byte) renderCount.incrementAndGet() });
+
+        Assert.assertEquals("sequential requests should each be rendered", 2, renderCount.get());
+        Assert.assertEquals("invalid second result", 2, secondResult[0]);
+    }
+
+    @Test
+    public void testFailedRenderIsNotRetained() throws Exception {
+
+        final RenderRequestCoalescer coalescer = new RenderRequestCoalescer();
+
+        try {
+            coalescer.getEncodedImage("a", () -> {
+                throw new IllegalArgumentException("test failure");
+            });
+            Assert.fail("render failure should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals("invalid failure message", "test failure", e.getMessage());
+        }
+
+        Assert.assertEquals("failed renders should not be retained", 0, coalescer.getInProgressCount());
+
+        final byte[] result = coalescer.getEncodedImage("a", () -> new byte[] { 9 });
+        Assert.assertEquals("invalid result after failure", 9, result[0]);
+    }
+
+}
@@ -0,0 +1,334 @@
+package org.janelia.render.service.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.spec.TileSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RenderRequestExecutor} class.
+ */
+public class RenderRequestExecutorTest {
+
+    @Test
+    public void testEstimateCost() throws Exception {
+
+        Assert.assertEquals("null parameters should have no cost",
+                            0, RenderRequestExecutor.estimateCost(null));
+
+        final RenderParameters renderParameters = new RenderParameters(null, 0, 0, 1000, 500, 0.5);
+        Assert.assertEquals("invalid cost for parameters without tiles",
+                            500 * 250, RenderRequestExecutor.estimateCost(renderParameters));
+
+        for (int i = 0; i < 3; i++) {
+            final TileSpec tileSpec = new TileSpec();
+            tileSpec.setTileId("tile-" + i);
+            renderParameters.addTileSpec(tileSpec);
+        }
+        Assert.assertEquals("invalid cost for parameters with tiles",
+                            3 * 500 * 250, RenderRequestExecutor.estimateCost(renderParameters));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumberOfThreads() throws Exception {
+        new RenderRequestExecutor(0, 1, 1, 1, 1);
+    }
+
+    @Test
+    public void testAdmissionAndRelease() throws Exception {
+
+        final RenderRequestExecutor executor = new RenderRequestExecutor(1, 1, 100, 60, RETRY_AFTER_SECONDS);
+
+        final BlockingTask runningTask = new BlockingTask();
+        final StubAsyncResponse runningResponse = new StubAsyncResponse();
+        executor.submit(runningResponse, 60, runningTask);
+        runningTask.awaitStart();
+
+        validateGaugeValues("after first request started", executor, 0, 1, 60);
+
+        final StubAsyncResponse expensiveResponse = new StubAsyncResponse();
+        executor.submit(expensiveResponse, 60, new BlockingTask());
+        validateServiceUnavailable("request exceeding outstanding cost", expensiveResponse);
+
+        final BlockingTask queuedTask = new BlockingTask();
+        final StubAsyncResponse queuedResponse = new StubAsyncResponse();
+        executor.submit(queuedResponse, 30, queuedTask);
+        Assert.assertFalse("affordable request should have been queued", queuedResponse.isDone());
+
+        validateGaugeValues("after second request queued", executor, 1, 1, 90);
+
+        final StubAsyncResponse overflowResponse = new StubAsyncResponse();
+        executor.submit(overflowResponse, 1, new BlockingTask());
+        validateServiceUnavailable("request exceeding queue size", overflowResponse);
+
+        runningTask.finish();
+        queuedTask.finish();
+
+        Assert.assertEquals("invalid status for first request",
+                            Response.Status.OK.getStatusCode(), runningResponse.awaitResponse().getStatus());
+        Assert.assertEquals("invalid status for queued request",
+                            Response.Status.OK.getStatusCode(), queuedResponse.awaitResponse().getStatus());
+
+        waitForIdleGaugeValues("after completion", executor);
+    }
+
+    @Test
+    public void testTimeouts() throws Exception {
+
+        final RenderRequestExecutor executor = new RenderRequestExecutor(1, 1, 100, 60, RETRY_AFTER_SECONDS);
+
+        final BlockingTask runningTask = new BlockingTask();
+        final StubAsyncResponse runningResponse = new StubAsyncResponse();
+        executor.submit(runningResponse, 10, runningTask);
+        runningTask.awaitStart();
+
+        Assert.assertEquals("timeout not set for request", 60L, runningResponse.timeoutSeconds);
+
+        final BlockingTask queuedTask = new BlockingTask();
+        final StubAsyncResponse queuedResponse = new StubAsyncResponse();
+        executor.submit(queuedResponse, 20, queuedTask);
+
+        validateGaugeValues("before timeouts", executor, 1, 1, 30);
+
+        // queued request is released as soon as it times out
+        queuedResponse.timeout();
+        validateServiceUnavailable("queued request timeout", queuedResponse);
+        validateGaugeValues("after queued request timeout", executor, 0, 1, 10);
+
+        // running request keeps its resources until its render completes
+        runningResponse.timeout();
+        validateServiceUnavailable("running request timeout", runningResponse);
+        validateGaugeValues("after running request timeout", executor, 0, 1, 10);
+
+        runningTask.finish();
+        waitForIdleGaugeValues("after timed out request completed", executor);
+
+        Assert.assertEquals("timed out queued request should never run", 1, queuedTask.started.getCount());
+        Assert.assertEquals("response for timed out request should not be replaced",
+                            Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                            runningResponse.awaitResponse().getStatus());
+    }
+
+    @Test
+    public void testQueuedTimeoutFreesQueueSlot() throws Exception {
+
+        final RenderRequestExecutor executor = new RenderRequestExecutor(1, 1, 100, 60, RETRY_AFTER_SECONDS);
+
+        final BlockingTask runningTask = new BlockingTask();
+        final StubAsyncResponse runningResponse = new StubAsyncResponse();
+        executor.submit(runningResponse, 10, runningTask);
+        runningTask.awaitStart();
+
+        final BlockingTask timedOutTask = new BlockingTask();
+        final StubAsyncResponse timedOutResponse = new StubAsyncResponse();
+        executor.submit(timedOutResponse, 10, timedOutTask);
+
+        timedOutResponse.timeout();
+        validateServiceUnavailable("queued request timeout", timedOutResponse);
+
+        final BlockingTask admittedTask = new BlockingTask();
+        final StubAsyncResponse admittedResponse = new StubAsyncResponse();
+        executor.submit(admittedResponse, 10, admittedTask);
+        Assert.assertFalse("request after queued timeout should have been queued", admittedResponse.isDone());
+
+        validateGaugeValues("after request queued behind timed out request", executor, 1, 1, 20);
+
+        runningTask.finish();
+        admittedTask.finish();
+
+        Assert.assertEquals("invalid status for request admitted after timeout",
+                            Response.Status.OK.getStatusCode(), admittedResponse.awaitResponse().getStatus());
+
+        waitForIdleGaugeValues("after completion", executor);
+
+        Assert.assertEquals("timed out queued request should never run", 1, timedOutTask.started.getCount());
+    }
+
+    private static void validateServiceUnavailable(final String context,
+                                                   final StubAsyncResponse asyncResponse)
+            throws InterruptedException {
+
+        final Response response = asyncResponse.awaitResponse();
+        Assert.assertEquals("invalid status for " + context,
+                            Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        Assert.assertEquals("invalid " + HttpHeaders.RETRY_AFTER + " header for " + context,
+                            String.valueOf(RETRY_AFTER_SECONDS),
+                            String.valueOf(response.getMetadata().getFirst(HttpHeaders.RETRY_AFTER)));
+    }
+
+    private static void validateGaugeValues(final String context,
+                                            final RenderRequestExecutor executor,
+                                            final long expectedQueueDepth,
+                                            final long expectedActiveRequests,
+                                            final long expectedOutstandingCost) {
+
+        final Map<String, Long> values = executor.getGaugeValues();
+        Assert.assertEquals("invalid queue depth " + context,
+                            expectedQueueDepth, values.get("render_queue_depth").longValue());
+        Assert.assertEquals("invalid active request count " + context,
+                            expectedActiveRequests, values.get("render_requests_active").longValue());
+        Assert.assertEquals("invalid outstanding cost " + context,
+                            expectedOutstandingCost, values.get("render_outstanding_cost").longValue());
+    }
+
+    /**
+     * Resources are released after responses are resumed, so give render threads a moment to finish.
+     */
+    private static void waitForIdleGaugeValues(final String context,
+                                               final RenderRequestExecutor executor)
+            throws InterruptedException {
+
+        final long stopTime = System.currentTimeMillis() + MAX_WAIT_MILLISECONDS;
+        while ((System.currentTimeMillis() < stopTime) &&
+               (executor.getGaugeValues().values().stream().anyMatch(value -> value != 0))) {
+            Thread.sleep(10);
+        }
+
+        validateGaugeValues(context, executor, 0, 0, 0);
+    }
+
+    /**
+     * Render task that blocks until it is explicitly finished.
+     */
+    private static class BlockingTask
+            implements Callable<Response> {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public Response call() throws Exception {
+            started.countDown();
+            if (! finished.await(MAX_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("task was never finished");
+            }
+            return Response.ok().build();
+        }
+
+        private void awaitStart() throws InterruptedException {
+            Assert.assertTrue("task never started", started.await(MAX_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS));
+        }
+
+        private void finish() {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Suspended response that captures the first resumed response and the registered timeout handler.
+     */
+    private static class StubAsyncResponse
+            implements AsyncResponse {
+
+        private final CountDownLatch resumed = new CountDownLatch(1);
+        private volatile Object resumedValue;
+        private volatile TimeoutHandler timeoutHandler;
+        private volatile long timeoutSeconds;
+
+        private Response awaitResponse() throws InterruptedException {
+            Assert.assertTrue("response was never resumed", resumed.await(MAX_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS));
+            Assert.assertTrue("response was resumed with " + resumedValue, resumedValue instanceof Response);
+            return (Response) resumedValue;
+        }
+
+        private void timeout() {
+            Assert.assertNotNull("timeout handler was never set", timeoutHandler);
+            timeoutHandler.handleTimeout(this);
+        }
+
+        @Override
+        public synchronized boolean resume(final Object response) {
+            final boolean wasSuspended = isSuspended();
+            if (wasSuspended) {
+                resumedValue = response;
+                resumed.countDown();
+            }
+            return wasSuspended;
+        }
+
+        @Override
+        public boolean resume(final Throwable response) {
+            return resume((Object) response);
+        }
+
+        @Override
+        public boolean cancel() {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(final int retryAfter) {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(final Date retryAfter) {
+            return false;
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return resumed.getCount() > 0;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return ! isSuspended();
+        }
+
+        @Override
+        public boolean setTimeout(final long time,
+                                  final TimeUnit unit) {
+            timeoutSeconds = unit.toSeconds(time);
+            return true;
+        }
+
+        @Override
+        public void setTimeoutHandler(final TimeoutHandler handler) {
+            timeoutHandler = handler;
+        }
+
+        @Override
+        public Collection<Class<?>> register(final Class<?> callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(final Class<?> callback,
+                                                           final Class<?>... callbacks) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Collection<Class<?>> register(final Object callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(final Object callback,
+                                                           final Object... callbacks) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private static final int RETRY_AFTER_SECONDS = 7;
+    private static final long MAX_WAIT_MILLISECONDS = 5000;
+}